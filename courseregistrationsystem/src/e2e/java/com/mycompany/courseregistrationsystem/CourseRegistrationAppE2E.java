@@ -277,6 +277,9 @@ private void clickYesOnDialog() {
     preloadCourse("CS101", "Intro to CS", 6, 30);
     openProfessorPortal();
     click(professorWin, "btnRefreshCourse");
+    await()
+        .atMost(5, TimeUnit.SECONDS)
+        .untilAsserted(() -> assertThat(professorWin.table("tblCourses").rowCount()).isEqualTo(1));
     int before = professorWin.table("tblCourses").rowCount();
     professorWin.textBox("txtCode").deleteText().enterText("CS101");
     professorWin.textBox("txtTitle").deleteText().enterText("Anything");
@@ -1,7 +1,13 @@
 package com.mycompany.courseregistrationsystem.controller;
 
 import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.CatalogCacheStats;
 import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.service.EnrollmentService;
+import com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.Counted;
+import com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.Counts;
 import org.junit.*;
 import org.testcontainers.containers.PostgreSQLContainer;
 
@@ -12,7 +18,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import static com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.Type.*;
+import static com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.count;
 import static org.junit.Assert.*;
 
 public class CourseControllerIT {
@@ -140,4 +153,214 @@ public class CourseControllerIT {
   public void testEnrolledCount_nullId_returnsZero() {
     assertEquals(0, courseController.enrolledCount(null));
   }
+
+  @Test
+  public void testLoadSummaries_countsEnrolledPerCourse() {
+    Course cs = courseController.add("CS101", "Intro to CS", 6, 30);
+    Course math = courseController.add("MATH101", "Math 1", 6, 50);
+    enroll("S1", cs);
+    enroll("S2", cs);
+
+    List<CourseSummary> rows = courseController.loadSummaries();
+    assertEquals(2, rows.size());
+    assertEquals(cs.getId(), rows.get(0).getId());
+    assertEquals("CS101", rows.get(0).getCode());
+    assertEquals(30, rows.get(0).getMaxSeats());
+    assertEquals(2, rows.get(0).getEnrolled());
+    assertEquals(math.getId(), rows.get(1).getId());
+    assertEquals(0, rows.get(1).getEnrolled());
+  }
+
+  @Test
+  public void testLoadSummary_returnsOneRowOrEmptyOnceDeleted() {
+    Course cs = courseController.add("CS101", "Intro to CS", 6, 30);
+    enroll("S1", cs);
+
+    CourseSummary row = courseController.loadSummary(cs.getId()).get();
+    assertEquals("CS101", row.getCode());
+    assertEquals(1, row.getEnrolled());
+
+    assertFalse(courseController.loadSummary(cs.getId() + 1000).isPresent());
+  }
+
+  @Test
+  public void testCatalogLookups_areServedFromCache() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 30);
+    courseRepository.findAll();
+    courseRepository.findByCode("CS101");
+    CatalogCacheStats before = courseController.cacheStats();
+
+    courseRepository.findAll();
+    courseRepository.findByCode("CS101");
+    courseRepository.findById(c.getId());
+
+    CatalogCacheStats after = courseController.cacheStats();
+    assertEquals(before.getQueryHits() + 2, after.getQueryHits());
+    assertTrue(after.getEntityHits() > before.getEntityHits());
+  }
+
+  @Test
+  public void testUpdateAndDelete_invalidateCachedCatalog() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 30);
+    assertEquals("Intro to CS", courseRepository.findByCode("CS101").get().getTitle());
+    assertEquals(1, courseRepository.findAll().size());
+
+    courseController.update(c.getId(), "CS102", "Renamed", 6, 40);
+    assertFalse(courseRepository.findByCode("CS101").isPresent());
+    assertEquals("Renamed", courseRepository.findByCode("CS102").get().getTitle());
+    assertEquals(40, courseRepository.findById(c.getId()).get().getMaxSeats());
+
+    courseController.delete(c.getId());
+    assertFalse(courseRepository.findByCode("CS102").isPresent());
+    assertFalse(courseRepository.findById(c.getId()).isPresent());
+    assertTrue(courseRepository.findAll().isEmpty());
+  }
+
+  @Test
+  public void testSeatCounterChange_evictsCachedCourse() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 30);
+    assertEquals(0, courseRepository.findById(c.getId()).get().getEnrolled());
+
+    new EnrollmentService().register("S1", "Student S1", "s1@example.com", c.getId());
+
+    assertEquals(1, courseRepository.findById(c.getId()).get().getEnrolled());
+  }
+
+  // ------------------- SQL budgets -------------------
+
+  @Test
+  public void loadingTheCourseTable_issuesAtMostTwoSelectsRegardlessOfCourseCount() {
+    addCoursesWithEnrollments(0, 3);
+    Counts few = count(() -> courseController.loadSummaries()).counts()
+        .assertAtMost(SELECT, 2).assertTotalAtMost(2);
+    Counts fewSlice = count(() -> courseController.loadSummarySlice(null, 0, 50)).counts()
+        .assertAtMost(SELECT, 2).assertTotalAtMost(2);
+
+    addCoursesWithEnrollments(3, 30);
+    Counts many = count(() -> courseController.loadSummaries()).counts()
+        .assertAtMost(SELECT, 2).assertTotalAtMost(2);
+    Counts manySlice = count(() -> courseController.loadSummarySlice(null, 0, 50)).counts()
+        .assertAtMost(SELECT, 2).assertTotalAtMost(2);
+
+    assertEquals(few.total(), many.total());
+    assertEquals(fewSlice.total(), manySlice.total());
+  }
+
+  @Test
+  public void loadAll_selectsOnceThenServesFromCache() {
+    addCoursesWithEnrollments(0, 10);
+    count(() -> courseController.loadAll()).counts().assertAtMost(SELECT, 1).assertTotalAtMost(1);
+    count(() -> courseController.loadAll()).counts().assertTotalAtMost(0);
+  }
+
+  @Test
+  public void writes_stayWithinTheirStatementBudget() {
+    // duplicate-code check, plus a sequence call when the id block runs out
+    Counted<Course> added = count(() -> courseController.add("CS101", "Intro to CS", 6, 30));
+    added.counts().assertAtMost(SELECT, 2).assertAtMost(INSERT, 1).assertTotalAtMost(4);
+    Course c = added.result();
+    count(() -> courseController.update(c.getId(), "CS101", "Renamed", 6, 40)).counts()
+        .assertAtMost(SELECT, 2).assertAtMost(UPDATE, 1).assertTotalAtMost(3);
+    count(() -> courseController.enrolledCount(c.getId())).counts().assertTotalAtMost(1);
+    count(() -> courseController.delete(c.getId())).counts()
+        .assertAtMost(DELETE, 2).assertTotalAtMost(3);
+  }
+
+  private void addCoursesWithEnrollments(int from, int to) {
+    for (int i = from; i < to; i++) {
+      Course c = courseController.add("C" + i, "Course " + i, 6, 30);
+      enroll("S" + i, c);
+    }
+  }
+
+  private void enroll(String matricola, Course course) {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      Student s = new Student();
+      s.setMatricola(matricola);
+      s.setFullName("Student " + matricola);
+      s.setEmail(matricola + "@example.com");
+      s.getCourses().add(em.find(Course.class, course.getId()));
+      em.persist(s);
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  @Test
+  public void asyncVariants_runOnTheExecutorAndReportFailures() throws Exception {
+    ControllerExecutor executor = new ControllerExecutor(2, 10, false);
+    try {
+      CourseController async = new CourseController(emf, courseRepository, executor);
+      Course c = async.addAsync("CS101", "Intro to CS", 6, 30).get(10, TimeUnit.SECONDS);
+      Course renamed = async.updateAsync(c.getId(), "CS101", "Intro to Computing", 6, 30).get(10, TimeUnit.SECONDS);
+      assertEquals("Intro to Computing", renamed.getTitle());
+
+      assertEquals(1, async.loadAllAsync().get(10, TimeUnit.SECONDS).size());
+      assertEquals(c.getId(), async.loadPageAsync(null, 10).get(10, TimeUnit.SECONDS).getItems().get(0).getId());
+      assertEquals("Intro to Computing", async.loadSummariesAsync().get(10, TimeUnit.SECONDS).get(0).getTitle());
+      assertEquals(Integer.valueOf(0), async.enrolledCountAsync(c.getId()).get(10, TimeUnit.SECONDS));
+
+      try {
+        async.addAsync("CS101", "Duplicate", 6, 30).get(10, TimeUnit.SECONDS);
+        fail("expected the duplicate code to fail the future");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+      }
+
+      async.deleteAsync(c.getId()).get(10, TimeUnit.SECONDS);
+      assertTrue(courseController.loadAll().isEmpty());
+    } finally {
+      executor.close();
+    }
+    ControllerExecutorStats stats = executor.stats();
+    assertEquals(8, stats.getSubmitted());
+    assertEquals(8, stats.getCompleted());
+    assertEquals(0, stats.getRejected());
+  }
+
+  @Test
+  public void asyncLoads_areRejectedWhileTheExecutorIsSaturated() throws Exception {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 30);
+    ControllerExecutor executor = new ControllerExecutor(1, 0, false);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      CourseController async = new CourseController(emf, courseRepository, executor);
+      CompletableFuture<Void> busy = executor.run(() -> awaitQuietly(release));
+
+      assertRejected(async.loadAllAsync());
+      assertRejected(async.loadPageAsync(null, 10));
+      assertRejected(async.loadSummariesAsync());
+      assertRejected(async.enrolledCountAsync(c.getId()));
+
+      release.countDown();
+      busy.get(10, TimeUnit.SECONDS);
+      assertEquals(1, async.loadAllAsync().get(10, TimeUnit.SECONDS).size());
+    } finally {
+      release.countDown();
+      executor.close();
+    }
+    assertEquals(4, executor.stats().getRejected());
+  }
+
+  private static void assertRejected(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail("expected the saturated executor to reject the call");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
 }
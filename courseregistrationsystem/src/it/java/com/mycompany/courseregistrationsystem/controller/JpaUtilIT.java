@@ -0,0 +1,213 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+public class JpaUtilIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("pool_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+  private static final Map<String, String> props = new HashMap<>();
+
+  @BeforeClass
+  public static void startContainer() {
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    props.put("hibernate.hikari.maximumPoolSize", "4");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Test
+  public void poolMetrics_reflectConfiguredPool() {
+    PoolMetrics m = JpaUtil.poolMetrics();
+    assertEquals(4, m.getMaxSize());
+    assertTrue(m.getTotal() <= 4);
+  }
+
+  @Test
+  public void poolMetrics_trackActiveConnectionsAndAcquires() {
+    long before = JpaUtil.poolMetrics().getAcquisitions();
+    EntityManager em = emf.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      em.createNativeQuery("select 1").getSingleResult();
+      assertEquals(1, JpaUtil.poolMetrics().getActive());
+      em.getTransaction().commit();
+    } finally {
+      em.close();
+    }
+
+    PoolMetrics after = JpaUtil.poolMetrics();
+    assertEquals(0, after.getActive());
+    assertEquals(0, after.getWaiting());
+    assertTrue(after.getAcquisitions() > before);
+    assertTrue(after.getMaxAcquireMillis() >= 0d);
+  }
+
+  @Test
+  public void queryStats_countExecutionsPerQuery() {
+    JpaUtil.clearStatistics();
+    for (int i = 0; i < 3; i++) {
+      EntityManager em = emf.createEntityManager();
+      try {
+        em.createQuery("select count(c) from Course c where c.code = :code")
+            .setParameter("code", "C" + i).getSingleResult();
+      } finally {
+        em.close();
+      }
+    }
+
+    List<QueryStats> stats = JpaUtil.queryStats();
+    QueryStats count = stats.stream().filter(s -> s.getQuery().contains("count(c)")).findFirst().orElse(null);
+    assertNotNull(stats.toString(), count);
+    assertEquals(3, count.getExecutions());
+
+    JpaUtil.setStatisticsEnabled(false);
+    try {
+      assertTrue(JpaUtil.queryStats().isEmpty());
+    } finally {
+      JpaUtil.setStatisticsEnabled(true);
+    }
+  }
+
+  @Test
+  public void slowQueryLog_seesEveryPooledStatement() {
+    SlowQueryLog slow = JpaUtil.slowQueryLog();
+    long threshold = slow.getThresholdMillis();
+    long before = slow.getLogged();
+    slow.setThresholdMillis(0);
+    try {
+      EntityManager em = emf.createEntityManager();
+      try {
+        em.createNativeQuery("select 'secret'").getSingleResult();
+      } finally {
+        em.close();
+      }
+      await().atMost(5, TimeUnit.SECONDS).until(() -> slow.getLogged() > before);
+    } finally {
+      slow.setThresholdMillis(threshold);
+    }
+  }
+
+  @Test
+  public void rebuild_swapsInNewFactoryAndDrainsTheOldOne() throws Exception {
+    Map<String, String> hot = new HashMap<>(props);
+    hot.put("hibernate.hbm2ddl.auto", "update");
+    JpaUtil.rebuild(hot);   // the create-drop factory is replaced cold
+    EntityManagerFactory old = JpaUtil.emf();
+
+    EntityManager inFlight = old.createEntityManager();
+    inFlight.getTransaction().begin();
+    ExecutorService rebuilder = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> rebuilt = rebuilder.submit(() -> JpaUtil.rebuild(hot));
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (JpaUtil.emf() == old && System.currentTimeMillis() < deadline) Thread.sleep(10);
+      assertNotSame(old, JpaUtil.emf());
+
+      // The old factory stays open for the transaction that was already running.
+      assertFalse(rebuilt.isDone());
+      assertEquals(1, ((Number) inFlight.createNativeQuery("select 1").getSingleResult()).intValue());
+      inFlight.getTransaction().commit();
+      inFlight.close();
+      rebuilt.get(10, TimeUnit.SECONDS);
+    } finally {
+      rebuilder.shutdownNow();
+    }
+
+    // A handle taken before the rebuild now opens EntityManagers on the new factory.
+    EntityManager em = old.createEntityManager();
+    try {
+      assertEquals(1, ((Number) em.createNativeQuery("select 1").getSingleResult()).intValue());
+    } finally {
+      em.close();
+    }
+    emf = JpaUtil.emf();
+  }
+
+  @Test
+  public void otherConnectionProvider_isKeptAsConfigured() {
+    Map<String, String> plain = new HashMap<>(props);
+    plain.put("hibernate.hbm2ddl.auto", "update");
+    plain.put(AvailableSettings.CONNECTION_PROVIDER, DriverManagerConnectionProviderImpl.class.getName());
+    JpaUtil.rebuild(plain);
+    try {
+      ConnectionProvider provider = JpaUtil.emf().unwrap(SessionFactoryImplementor.class)
+          .getServiceRegistry().getService(ConnectionProvider.class);
+      assertTrue(provider.getClass().getName(), provider instanceof DriverManagerConnectionProviderImpl);
+    } finally {
+      Map<String, String> hikari = new HashMap<>(props);
+      hikari.put("hibernate.hbm2ddl.auto", "update");
+      JpaUtil.rebuild(hikari);
+      emf = JpaUtil.emf();
+    }
+  }
+
+  @Test
+  public void applicationUnit_startsWithoutStatisticsOrCaches_untilTheCacheIsSwitchedOn() {
+    String unit = System.getProperty("persistence.unit");
+    Map<String, String> app = new HashMap<>(props);
+    app.put("hibernate.hbm2ddl.auto", "update");
+    app.put("javax.persistence.jdbc.url", POSTGRES.getJdbcUrl());
+    app.put("javax.persistence.jdbc.user", POSTGRES.getUsername());
+    app.put("javax.persistence.jdbc.password", POSTGRES.getPassword());
+    System.setProperty("persistence.unit", "crsPU");
+    try {
+      JpaUtil.rebuild(app);
+      SessionFactoryOptions options = JpaUtil.emf().unwrap(SessionFactoryImplementor.class).getSessionFactoryOptions();
+      assertFalse(JpaUtil.isStatisticsEnabled());
+      assertFalse(options.isSecondLevelCacheEnabled());
+      assertFalse(options.isQueryCacheEnabled());
+
+      System.setProperty(JpaUtil.CACHE_PROPERTY, "true");
+      JpaUtil.rebuild(app);
+      options = JpaUtil.emf().unwrap(SessionFactoryImplementor.class).getSessionFactoryOptions();
+      assertTrue(options.isSecondLevelCacheEnabled());
+      assertTrue(options.isQueryCacheEnabled());
+    } finally {
+      System.clearProperty(JpaUtil.CACHE_PROPERTY);
+      if (unit == null) System.clearProperty("persistence.unit");
+      else System.setProperty("persistence.unit", unit);
+      Map<String, String> hikari = new HashMap<>(props);
+      hikari.put("hibernate.hbm2ddl.auto", "update");
+      JpaUtil.rebuild(hikari);
+      emf = JpaUtil.emf();
+    }
+  }
+}
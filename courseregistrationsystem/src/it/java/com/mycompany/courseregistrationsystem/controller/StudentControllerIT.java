@@ -1,7 +1,15 @@
 package com.mycompany.courseregistrationsystem.controller;
 
+import com.mycompany.courseregistrationsystem.model.Course;
 import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.KeysetPage;
 import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWorkStats;
+import com.mycompany.courseregistrationsystem.service.EnrollmentService;
+import com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.Counted;
+import com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.Counts;
 import org.junit.*;
 import org.testcontainers.containers.PostgreSQLContainer;
 
@@ -12,7 +20,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import static com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.Type.*;
+import static com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.count;
 import static org.junit.Assert.*;
 
 public class StudentControllerIT {
@@ -107,4 +122,181 @@ public class StudentControllerIT {
     Optional<Student> fetched = repo.findById(id);
     assertFalse(fetched.isPresent());
   }
+
+  @Test
+  public void testFindWithCourses_returnsOneStudentOrEmptyOnceDeleted() {
+    Student s = controller.add("M310", "Dana", "dana@example.com");
+
+    Optional<Student> fetched = controller.findWithCourses(s.getId());
+    assertTrue(fetched.isPresent());
+    assertEquals("Dana", fetched.get().getFullName());
+    assertTrue(fetched.get().getCourses().isEmpty());
+
+    controller.delete(s.getId());
+    assertFalse(controller.findWithCourses(s.getId()).isPresent());
+  }
+
+  @Test
+  public void update_usesOneEntityManagerForTheWholeOperation() {
+    Student s = controller.add("M400", "Erin", "erin@example.com");
+    UnitOfWorkStats before = controller.unitOfWorkStats();
+
+    controller.update(s.getId(), "M400", "Erin Smith", "erin.s@example.com");
+
+    UnitOfWorkStats after = controller.unitOfWorkStats();
+    assertEquals(1, after.getOperations() - before.getOperations());
+    assertEquals(1, after.getEntityManagers() - before.getEntityManagers());
+    assertEquals(before.getMultiEntityManagerOperations(), after.getMultiEntityManagerOperations());
+  }
+
+  @Test
+  public void unitOfWork_rollsBackEveryRepositoryCallTogether() {
+    try {
+      UnitOfWork.run(em -> {
+        repo.save(newStudent("M500", "Frank", "frank@example.com"));
+        repo.save(newStudent("M501", "Grace", "grace@example.com"));
+        throw new IllegalStateException("boom");
+      });
+      fail("expected the unit of work to fail");
+    } catch (IllegalStateException expected) {
+      assertEquals("boom", expected.getMessage());
+    }
+    assertFalse(repo.findByMatricola("M500").isPresent());
+    assertFalse(repo.findByMatricola("M501").isPresent());
+    assertFalse(UnitOfWork.isActive());
+  }
+
+  // ------------------- SQL budgets -------------------
+
+  @Test
+  public void loadingStudentsWithCourses_issuesAtMostTwoSelectsRegardlessOfStudentCount() {
+    Course course = new CourseController().add("CS101", "Intro to CS", 6, 100);
+    addEnrolledStudents(course, 0, 3);
+    Counts[] few = loadStudentTable();
+
+    addEnrolledStudents(course, 3, 30);
+    Counts[] many = loadStudentTable();
+
+    for (int i = 0; i < few.length; i++) assertEquals(few[i].total(), many[i].total());
+  }
+
+  @Test
+  public void writes_stayWithinTheirStatementBudget() {
+    Course course = new CourseController().add("CS101", "Intro to CS", 6, 100);
+
+    // a sequence call when the id block runs out
+    count(() -> controller.add("M600", "Hank", "hank@example.com")).counts()
+        .assertAtMost(SELECT, 1).assertAtMost(INSERT, 1).assertTotalAtMost(2);
+    // student row, enrollment row, seat counter
+    Counted<Student> added = count(() -> controller.addStudent("M601", "Ivy", "ivy@example.com", course.getId()));
+    added.counts().assertAtMost(SELECT, 2).assertAtMost(INSERT, 2).assertAtMost(UPDATE, 1).assertTotalAtMost(5);
+    Long id = added.result().getId();
+
+    count(() -> controller.update(id, "M601", "Ivy Jones", "ivy@example.com")).counts()
+        .assertAtMost(SELECT, 3).assertAtMost(UPDATE, 1).assertTotalAtMost(4);
+    count(() -> controller.updateStudent(id, "M601", "Ivy J.", "ivy@example.com", course.getId())).counts()
+        .assertAtMost(SELECT, 3).assertAtMost(UPDATE, 1).assertTotalAtMost(4);
+    // enrollment rows, seat counter, student row
+    count(() -> controller.deleteStudent(id)).counts()
+        .assertAtMost(SELECT, 2).assertAtMost(UPDATE, 1).assertAtMost(DELETE, 2).assertTotalAtMost(5);
+  }
+
+  @Test
+  public void asyncVariants_runOnTheExecutorAndReportFailures() throws Exception {
+    Course course = new CourseController().add("CS101", "Intro to CS", 6, 100);
+    ControllerExecutor executor = new ControllerExecutor(2, 10, false);
+    try {
+      StudentController async = new StudentController(repo, new CourseRepository(), new EnrollmentService(), executor);
+      Student s = async.addAsync("M700", "Jack", "jack@example.com").get(10, TimeUnit.SECONDS);
+      Student renamed = async.updateAsync(s.getId(), "M700", "Jack Black", "jack@example.com").get(10, TimeUnit.SECONDS);
+      assertEquals("Jack Black", renamed.getFullName());
+      async.addStudentAsync("M701", "Kim", "kim@example.com", course.getId()).get(10, TimeUnit.SECONDS);
+
+      assertEquals(2, async.loadAllAsync().get(10, TimeUnit.SECONDS).size());
+      assertEquals(s.getId(), async.loadPageAsync(null, 10).get(10, TimeUnit.SECONDS).getItems().get(0).getId());
+      assertEquals(2, async.findAllWithCoursesAsync().get(10, TimeUnit.SECONDS).size());
+      KeysetPage<Student> page = async.findPageWithCoursesAsync(s.getId(), 10).get(10, TimeUnit.SECONDS);
+      assertEquals(1, page.getItems().get(0).getCourses().size());
+      assertEquals(Integer.valueOf(1), async.enrolledCountAsync(course.getId()).get(10, TimeUnit.SECONDS));
+
+      try {
+        async.addAsync("M700", "Duplicate", "dup@example.com").get(10, TimeUnit.SECONDS);
+        fail("expected the duplicate matricola to fail the future");
+      } catch (ExecutionException e) {
+        assertNotNull(e.getCause());
+      }
+    } finally {
+      executor.close();
+    }
+    ControllerExecutorStats stats = executor.stats();
+    assertEquals(9, stats.getSubmitted());
+    assertEquals(9, stats.getCompleted());
+    assertEquals(0, stats.getRejected());
+  }
+
+  @Test
+  public void asyncLoads_areRejectedWhileTheExecutorIsSaturated() throws Exception {
+    Course course = new CourseController().add("CS101", "Intro to CS", 6, 100);
+    controller.add("M800", "Liam", "liam@example.com");
+    ControllerExecutor executor = new ControllerExecutor(1, 0, false);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      StudentController async = new StudentController(repo, new CourseRepository(), new EnrollmentService(), executor);
+      CompletableFuture<Void> busy = executor.run(() -> awaitQuietly(release));
+
+      assertRejected(async.loadAllAsync());
+      assertRejected(async.loadPageAsync(null, 10));
+      assertRejected(async.findAllWithCoursesAsync());
+      assertRejected(async.findPageWithCoursesAsync(null, 10));
+      assertRejected(async.enrolledCountAsync(course.getId()));
+
+      release.countDown();
+      busy.get(10, TimeUnit.SECONDS);
+      assertEquals(1, async.loadAllAsync().get(10, TimeUnit.SECONDS).size());
+    } finally {
+      release.countDown();
+      executor.close();
+    }
+    assertEquals(5, executor.stats().getRejected());
+  }
+
+  private Counts[] loadStudentTable() {
+    return new Counts[] {
+        count(() -> controller.loadAll()).counts().assertAtMost(SELECT, 1).assertTotalAtMost(1),
+        count(() -> controller.findAllWithCourses()).counts().assertAtMost(SELECT, 2).assertTotalAtMost(2),
+        count(() -> controller.findSliceWithCourses(null, 0, 50)).counts().assertAtMost(SELECT, 2).assertTotalAtMost(2),
+        count(() -> controller.findPageWithCourses(null, 50)).counts().assertAtMost(SELECT, 2).assertTotalAtMost(2)
+    };
+  }
+
+  private void addEnrolledStudents(Course course, int from, int to) {
+    for (int i = from; i < to; i++) {
+      controller.addStudent("B" + i, "Student " + i, "b" + i + "@example.com", course.getId());
+    }
+  }
+
+  private static void assertRejected(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail("expected the saturated executor to reject the call");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static Student newStudent(String matricola, String fullName, String email) {
+    Student s = new Student();
+    s.setMatricola(matricola);
+    s.setFullName(fullName);
+    s.setEmail(email);
+    return s;
+  }
 }
@@ -2,6 +2,7 @@ package com.mycompany.courseregistrationsystem.repository;
 
 import com.mycompany.courseregistrationsystem.controller.JpaUtil;
 import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
 import org.junit.*;
 import org.testcontainers.containers.PostgreSQLContainer;
 
@@ -140,6 +141,43 @@ public class CourseRepositoryIT {
     }
   }
 
+  @Test
+  public void findPage_walksAllCoursesInIdOrder() {
+    for (int i = 0; i < 5; i++) repo.save(newCourse("PG" + i + "_" + System.nanoTime(), "Paged " + i, 6, 30));
+
+    KeysetPage<Course> first = repo.findPage(null, 2);
+    assertEquals(2, first.getItems().size());
+    assertTrue(first.hasNext());
+
+    KeysetPage<Course> second = repo.findPage(first.getNextAfterId(), 2);
+    assertEquals(2, second.getItems().size());
+    assertTrue(second.getItems().get(0).getId() > first.getNextAfterId());
+
+    KeysetPage<Course> last = repo.findPage(second.getNextAfterId(), 2);
+    assertEquals(1, last.getItems().size());
+    assertFalse(last.hasNext());
+  }
+
+  @Test
+  public void findSummarySlice_seeksOrSkipsToTheSameRows() {
+    for (int i = 0; i < 5; i++) repo.save(newCourse("SL" + i + "_" + System.nanoTime(), "Sliced " + i, 6, 30));
+    assertEquals(5, repo.count());
+
+    List<CourseSummary> first = repo.findSummarySlice(null, 0, 2);
+    List<CourseSummary> byOffset = repo.findSummarySlice(null, 2, 2);
+    List<CourseSummary> bySeek = repo.findSummarySlice(first.get(1).getId(), 0, 2);
+
+    assertEquals(2, byOffset.size());
+    assertEquals(byOffset.get(0).getId(), bySeek.get(0).getId());
+    assertEquals(byOffset.get(1).getId(), bySeek.get(1).getId());
+    assertEquals(1, repo.findSummarySlice(null, 4, 2).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void findPage_nonPositiveSize_throws() {
+    repo.findPage(null, 0);
+  }
+
   private static Course newCourse(String code, String title, int cfu, int maxSeats) {
     Course c = new Course();
     c.setCode(code);
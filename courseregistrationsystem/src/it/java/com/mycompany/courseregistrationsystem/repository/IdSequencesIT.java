@@ -0,0 +1,120 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class IdSequencesIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("sequences_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    sql("delete from enrollments");
+    sql("delete from students");
+    sql("delete from courses");
+  }
+
+  @Test
+  public void sequenceBehindTheTable_isMovedPastItsLargestId() {
+    Course c = new CourseRepository().save(course("SEQ1"));
+    sql("update courses set id = 1000 where id = " + c.getId());
+    sql("alter sequence course_seq restart with 1");
+
+    IdSequences.catchUp(emf);
+
+    long next = nextValue("course_seq");
+    assertTrue("first id of the next block must be past 1000, sequence at " + next,
+        next - IdSequences.ALLOCATION_SIZE + 1 > 1000);
+  }
+
+  @Test
+  public void sequenceAhead_isNeverMovedBack() {
+    Course c = new CourseRepository().save(course("SEQ2"));
+    sql("update courses set id = 1000 where id = " + c.getId());
+    sql("alter sequence course_seq restart with 5000");
+
+    IdSequences.catchUp(emf);
+
+    assertTrue(nextValue("course_seq") > 5000);
+  }
+
+  @Test
+  public void emptyTables_areLeftAlone() {
+    sql("alter sequence student_seq restart with 1");
+
+    IdSequences.catchUp(emf);
+
+    assertEquals(1, nextValue("student_seq"));
+  }
+
+  private static Course course(String code) {
+    Course c = new Course();
+    c.setCode(code);
+    c.setTitle("Sequences");
+    c.setCfu(6);
+    c.setMaxSeats(10);
+    return c;
+  }
+
+  private static long nextValue(String sequence) {
+    EntityManager em = emf.createEntityManager();
+    try {
+      String sql = em.unwrap(SessionImplementor.class).getJdbcServices().getDialect()
+          .getSequenceNextValString(sequence);
+      return ((Number) em.createNativeQuery(sql).getSingleResult()).longValue();
+    } finally {
+      em.close();
+    }
+  }
+
+  private static void sql(String statement) {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery(statement).executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+}
@@ -10,10 +10,15 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -154,6 +159,27 @@ public class StudentRepositoryIT {
     assertTrue(students.findAll().isEmpty());
   }
 
+  @Test
+  public void deleteById_releasesSeats_andEvictsOnlyThoseCourses() {
+    Course c1 = courses.save(newCourse("ALG101", "Algebra", 6, 30));
+    Course c2 = courses.save(newCourse("GEO101", "Geometry", 6, 30));
+    Course other = courses.save(newCourse("BIO101", "Biology", 6, 30));
+    Student s = newStudent("1234578", "Lena Moss", "lena@example.com");
+    s.getCourses().add(c1);
+    s.getCourses().add(c2);
+    s = students.save(s);
+    for (Course c : Arrays.asList(c1, c2, other)) courses.findById(c.getId());
+    assertTrue(emf.getCache().contains(Course.class, other.getId()));
+
+    students.deleteById(s.getId());
+
+    assertTrue(emf.getCache().contains(Course.class, other.getId()));
+    assertFalse(emf.getCache().contains(Course.class, c1.getId()));
+    assertFalse(emf.getCache().contains(Course.class, c2.getId()));
+    assertEquals(0, courses.findById(c1.getId()).get().getEnrolled());
+    assertEquals(0, courses.findById(c2.getId()).get().getEnrolled());
+  }
+
   @Test
   public void deleteById_nonExisting_noError() {
     students.deleteById(999999L);
@@ -182,6 +208,89 @@ public class StudentRepositoryIT {
     assertEquals("John K.", found.get().getFullName());
   }
 
+  @Test
+  public void findPageWithCourses_pagesOnStudentsNotJoinRows() {
+    Course c1 = courses.save(newCourse("ALG101", "Algebra", 6, 30));
+    Course c2 = courses.save(newCourse("GEO101", "Geometry", 6, 30));
+    for (int i = 0; i < 3; i++) {
+      Student s = newStudent("20000" + i, "Paged " + i, "paged" + i + "@example.com");
+      s.getCourses().add(c1);
+      s.getCourses().add(c2);
+      students.save(s);
+    }
+
+    KeysetPage<Student> first = students.findPageWithCourses(null, 2);
+    assertEquals(2, first.getItems().size());
+    assertEquals(2, first.getItems().get(0).getCourses().size());
+    assertTrue(first.hasNext());
+
+    KeysetPage<Student> last = students.findPageWithCourses(first.getNextAfterId(), 2);
+    assertEquals(1, last.getItems().size());
+    assertEquals(2, last.getItems().get(0).getCourses().size());
+    assertFalse(last.hasNext());
+  }
+
+  @Test
+  public void findSliceWithCourses_seeksOrSkipsToTheSameStudents() {
+    Course c1 = courses.save(newCourse("ALG101", "Algebra", 6, 30));
+    for (int i = 0; i < 3; i++) {
+      Student s = newStudent("30000" + i, "Sliced " + i, "sliced" + i + "@example.com");
+      s.getCourses().add(c1);
+      students.save(s);
+    }
+    assertEquals(3, students.count());
+
+    List<Student> first = students.findSliceWithCourses(null, 0, 2);
+    List<Student> byOffset = students.findSliceWithCourses(null, 2, 2);
+    List<Student> bySeek = students.findSliceWithCourses(first.get(1).getId(), 0, 2);
+
+    assertEquals(2, first.size());
+    assertEquals(1, first.get(0).getCourses().size());
+    assertEquals(1, byOffset.size());
+    assertEquals(byOffset.get(0).getId(), bySeek.get(0).getId());
+  }
+
+  @Test
+  public void findPage_emptyTable_returnsEmptyLastPage() {
+    KeysetPage<Student> page = students.findPage(null, 10);
+    assertTrue(page.getItems().isEmpty());
+    assertFalse(page.hasNext());
+  }
+
+  @Test
+  public void concurrentUpdateStudentSwaps_lockCoursesInOrder_andNeverFail() throws Exception {
+    final Course a = courses.save(newCourse("A101", "A", 6, 20));
+    final Course b = courses.save(newCourse("B101", "B", 6, 20));
+    final List<Student> swappers = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      Student s = newStudent("S" + i, "Swap " + i, "s" + i + "@example.com");
+      s.getCourses().add(i % 2 == 0 ? a : b);
+      swappers.add(students.save(s));
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<?>> moves = new ArrayList<>();
+    try {
+      for (int i = 0; i < swappers.size(); i++) {
+        // Half move A -> B -> A ..., the other half B -> A -> B ... at the same time.
+        final Student s = swappers.get(i);
+        final boolean startsInA = i % 2 == 0;
+        moves.add(pool.submit(() -> {
+          for (int round = 0; round < 10; round++) {
+            boolean toB = startsInA == (round % 2 == 0);
+            students.updateStudent(s.getId(), s.getMatricola(), s.getFullName(), s.getEmail(),
+                toB ? b.getId() : a.getId());
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : moves) f.get();
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(8, courses.findById(a.getId()).get().getEnrolled());
+    assertEquals(8, courses.findById(b.getId()).get().getEnrolled());
+  }
+
   private Student newStudent(String matricola, String fullName, String email) {
     Student s = new Student();
     s.setMatricola(matricola);
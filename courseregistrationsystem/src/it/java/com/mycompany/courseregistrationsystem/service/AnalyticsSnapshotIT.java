@@ -0,0 +1,126 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class AnalyticsSnapshotIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("analytics_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  private ForkJoinPool pool;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    clearDb();
+    pool = new ForkJoinPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+    emf.getCache().evictAll();
+  }
+
+  @Test
+  public void load_matchesTheTables() {
+    new DatasetGenerator(21L, 500, 15, 1_200, 1.0).load();
+    StudentRepository students = new StudentRepository();
+    Student idle = new Student();
+    idle.setMatricola("IDLE-1");
+    idle.setFullName("No Courses");
+    idle.setEmail("idle@example.com");
+    Long idleId = students.save(idle).getId();
+
+    AnalyticsSnapshot s = AnalyticsSnapshot.load(new CourseRepository(), students, 64, pool);
+
+    assertEquals(15, s.courseCount());
+    assertEquals(501, s.studentCount());
+    assertEquals(1_200, s.enrollmentCount());
+    int enrolled = 0;
+    for (int c = 0; c < s.courseCount(); c++) enrolled += s.enrolled(c);
+    assertEquals(1_200, enrolled);
+
+    Map<Long, Integer> expected = cfuByStudent();
+    int[] totals = s.cfuTotals();
+    int idlePosition = -1;
+    for (int i = 0; i < s.studentCount(); i++) {
+      Integer cfu = expected.get(s.studentId(i));
+      assertEquals("student " + s.studentId(i), cfu == null ? 0 : cfu.intValue(), totals[i]);
+      if (s.studentId(i) == idleId) idlePosition = i;
+    }
+    assertEquals(0, s.courseCountOf(idlePosition));
+    assertEquals(501, Arrays.stream(s.cfuLoadHistogram(6)).sum());
+    assertEquals(15, Arrays.stream(s.fillRatioHistogram(10)).sum());
+  }
+
+  private Map<Long, Integer> cfuByStudent() {
+    EntityManager em = emf.createEntityManager();
+    try {
+      List<Object[]> rows = em.createQuery(
+          "select s.id, sum(c.cfu) from Student s join s.courses c group by s.id", Object[].class)
+          .getResultList();
+      Map<Long, Integer> m = new HashMap<>();
+      for (Object[] row : rows) m.put((Long) row[0], ((Number) row[1]).intValue());
+      return m;
+    } finally {
+      em.close();
+    }
+  }
+}
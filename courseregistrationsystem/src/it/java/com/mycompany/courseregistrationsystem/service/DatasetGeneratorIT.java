@@ -0,0 +1,122 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DatasetGeneratorIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("dataset_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  private StudentRepository students;
+  private CourseRepository courses;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    students = new StudentRepository();
+    courses = new CourseRepository();
+    clearDb();
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  @Test
+  public void load_writesTheRequestedScaleWithMatchingSeatCounters() {
+    DatasetReport report = new DatasetGenerator(1L, 2000, 40, 8000, 1.0).load();
+
+    assertEquals(8000, report.getEnrollments());
+    assertTrue(report.getOversubscribedCourses() > 0);
+    assertTrue(report.getRowsPerSecond() > 0);
+    assertEquals(2000, students.count());
+    assertEquals(40, courses.count());
+    assertEquals(8000L, scalar("select count(*) from enrollments"));
+    assertEquals(8000L, scalar("select sum(enrolled) from courses"));
+    assertEquals(0L, scalar("select count(*) from courses c where c.enrolled <> "
+        + "(select count(*) from enrollments e where e.course_id = c.id)"));
+    assertEquals(0L, scalar("select count(*) from courses where enrolled > maxSeats"));
+    assertEquals(report.getFullCourses(), scalar("select count(*) from courses where enrolled = maxSeats"));
+  }
+
+  @Test
+  public void load_leavesTheSequencesPastTheNewRows() {
+    new DatasetGenerator(1L, 300, 10, 900, 1.0).load();
+
+    Student s = new Student();
+    s.setMatricola("AFTER-LOAD");
+    s.setFullName("After Load");
+    s.setEmail("after@example.com");
+    students.save(s);
+    Course c = new Course();
+    c.setCode("AFTER-LOAD");
+    c.setTitle("After Load");
+    c.setCfu(6);
+    c.setMaxSeats(10);
+    courses.save(c);
+    new DatasetGenerator(2L, 300, 10, 900, 1.0).load();
+
+    assertEquals(601, students.count());
+    assertEquals(21, courses.count());
+    assertEquals(1800L, scalar("select count(*) from enrollments"));
+  }
+
+  private long scalar(String sql) {
+    EntityManager em = emf.createEntityManager();
+    try {
+      return ((Number) em.createNativeQuery(sql).getSingleResult()).longValue();
+    } finally {
+      em.close();
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.CourseController;
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EnrollmentIndexIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("index_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  private StudentRepository students;
+  private CourseController courseController;
+  private EnrollmentIndex index;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    students = new StudentRepository();
+    courseController = new CourseController(emf);
+    clearDb();
+    index = new EnrollmentIndex(students, 64);
+  }
+
+  @After
+  public void tearDown() {
+    index.close();
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+    emf.getCache().evictAll();
+  }
+
+  @Test
+  public void load_holdsEveryEnrollment() {
+    new DatasetGenerator(11L, 400, 12, 900, 1.0).load();
+    index.load();
+
+    assertEquals(900, index.enrollmentCount());
+    List<Course> all = new CourseRepository().findAll();
+    for (Course c : all) assertEquals(c.getCode(), c.getEnrolled(), index.count(c.getId()));
+    Long a = all.get(0).getId(), b = all.get(1).getId();
+    assertEquals(countInBoth(a, b), index.overlap(a, b));
+    assertEquals(countInBoth(a, b), index.allOf(a, b).size());
+  }
+
+  @Test
+  public void writes_throughEveryPath_areSeenByTheNextQuestion() {
+    Course a = courseController.add("IDX101", "A", 6, 50);
+    Course b = courseController.add("IDX102", "B", 6, 50);
+    EnrollmentService direct = new EnrollmentService(new DatabaseSeatInventory());
+    Student ann = direct.register("IDX-1", "Ann", "ann@example.com", a.getId());
+    Student bob = direct.register("IDX-2", "Bob", "bob@example.com", a.getId());
+    index.load();
+    assertEquals(2, index.count(a.getId()));
+
+    direct.enroll(bob.getId(), b.getId()).join();
+    assertEquals(ids(bob), index.allOf(a.getId(), b.getId()).studentIds());
+
+    direct.reassign(ann.getId(), "IDX-1", "Ann", "ann@example.com", b.getId());
+    assertEquals(ids(bob), index.course(a.getId()).studentIds());
+    assertEquals(ids(ann, bob), index.course(b.getId()).studentIds());
+
+    students.deleteById(bob.getId());
+    assertEquals(ids(ann), index.anyOf(a.getId(), b.getId()).studentIds());
+
+    direct.deleteStudent(ann.getId());
+    assertTrue(index.anyOf(a.getId(), b.getId()).isEmpty());
+
+    Student cy = students.save(withCourse("IDX-3", "Cy", a));
+    students.updateStudent(cy.getId(), "IDX-3", "Cy", "cy@example.com", b.getId());
+    assertEquals(ids(cy), index.course(b.getId()).andNot(index.course(a.getId())).studentIds());
+    assertEquals(reloaded(), contents(index));
+  }
+
+  @Test
+  public void batchedWriters_areSeenOnceTheirBatchCommitted() throws Exception {
+    Course a = courseController.add("IDX201", "A", 6, 50);
+    Course b = courseController.add("IDX202", "B", 6, 50);
+    Student s = new EnrollmentService(new DatabaseSeatInventory()).register("IDX-9", "Sam", "s@example.com", null);
+    index.load();
+
+    try (GroupCommitEnrollmentWriter writer = new GroupCommitEnrollmentWriter(20, 50, 1000)) {
+      new EnrollmentService(new DatabaseSeatInventory(), writer).enroll(s.getId(), a.getId()).join();
+    }
+    assertEquals(ids(s), index.course(a.getId()).studentIds());
+
+    InMemorySeatInventory inventory = new InMemorySeatInventory(20);
+    try {
+      new EnrollmentService(inventory).enroll(s.getId(), b.getId()).join();
+      assertTrue(inventory.sync(10, TimeUnit.SECONDS));
+      assertEquals(1, index.overlap(a.getId(), b.getId()));
+    } finally {
+      inventory.close();
+    }
+
+    new DatasetGenerator(12L, 50, 3, 80, 1.0).load();
+    assertEquals(reloaded(), contents(index));
+    assertEquals(82, index.enrollmentCount());
+  }
+
+  private Student withCourse(String matricola, String name, Course c) {
+    Student st = new Student();
+    st.setMatricola(matricola);
+    st.setFullName(name);
+    st.setEmail(matricola.toLowerCase() + "@example.com");
+    st.getCourses().add(c);
+    return st;
+  }
+
+  private long countInBoth(Long a, Long b) {
+    EntityManager em = emf.createEntityManager();
+    try {
+      return em.createQuery(
+          "select count(s) from Student s join s.courses ca join s.courses cb where ca.id = :a and cb.id = :b",
+          Long.class).setParameter("a", a).setParameter("b", b).getSingleResult();
+    } finally {
+      em.close();
+    }
+  }
+
+  private Map<Long, List<Long>> reloaded() {
+    EnrollmentIndex fresh = new EnrollmentIndex(students, 64).load();
+    try {
+      return contents(fresh);
+    } finally {
+      fresh.close();
+    }
+  }
+
+  private static Map<Long, List<Long>> contents(EnrollmentIndex ix) {
+    Map<Long, List<Long>> m = new TreeMap<>();
+    for (Long id : ix.courseIds()) m.put(id, ix.course(id).studentIds());
+    return m;
+  }
+
+  private static List<Long> ids(Student... list) {
+    List<Long> ids = new ArrayList<>();
+    for (Student st : list) ids.add(st.getId());
+    return ids;
+  }
+}
@@ -0,0 +1,246 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.CourseController;
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class EnrollmentServiceIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("enrollment_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  private EnrollmentService enrollment;
+  private StudentRepository students;
+  private CourseRepository courses;
+  private CourseController courseController;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    enrollment = new EnrollmentService();
+    students = new StudentRepository();
+    courses = new CourseRepository();
+    courseController = new CourseController();
+    clearDb();
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  @Test
+  public void register_takesSeatAndUpdatesCounter() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 2);
+    Student s = enrollment.register("M1", "Alice", "alice@example.com", c.getId());
+
+    assertNotNull(s.getId());
+    assertEquals(1, courses.findById(c.getId()).get().getEnrolled());
+    assertEquals(1, courseController.enrolledCount(c.getId()));
+  }
+
+  @Test
+  public void register_fullCourse_throwsAndRollsBackStudent() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 1);
+    enrollment.register("M1", "Alice", "alice@example.com", c.getId());
+    try {
+      enrollment.register("M2", "Bob", "bob@example.com", c.getId());
+      fail("Expected CourseFullException");
+    } catch (CourseFullException e) {
+      assertEquals(c.getId(), e.getCourseId());
+      assertEquals("Course is full: CS101", e.getMessage());
+    }
+    assertFalse(students.findByMatricola("M2").isPresent());
+    assertEquals(1, courses.findById(c.getId()).get().getEnrolled());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void register_duplicateMatricola_throws() {
+    enrollment.register("M1", "Alice", "alice@example.com", null);
+    enrollment.register("m1", "Alice Again", "alice2@example.com", null);
+  }
+
+  @Test
+  public void concurrentRegistrations_neverOverbook() throws Exception {
+    final Course c = courseController.add("HOT101", "Popular", 6, 5);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < 40; i++) {
+        final String m = "R" + i;
+        results.add(pool.submit(new Callable<Boolean>() {
+          @Override public Boolean call() {
+            try {
+              enrollment.register(m, "Rush " + m, m + "@example.com", c.getId());
+              return true;
+            } catch (CourseFullException full) {
+              return false;
+            }
+          }
+        }));
+      }
+      int ok = 0;
+      for (Future<Boolean> f : results) if (f.get()) ok++;
+      assertEquals(5, ok);
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(5, courseController.enrolledCount(c.getId()));
+    assertEquals(5, courses.findById(c.getId()).get().getEnrolled());
+  }
+
+  @Test
+  public void reassign_movesSeatBetweenCourses() {
+    Course a = courseController.add("A101", "A", 6, 1);
+    Course b = courseController.add("B101", "B", 6, 1);
+    Student s = enrollment.register("M1", "Alice", "alice@example.com", a.getId());
+
+    enrollment.reassign(s.getId(), "M1", "Alice", "alice@example.com", b.getId());
+
+    assertEquals(0, courses.findById(a.getId()).get().getEnrolled());
+    assertEquals(1, courses.findById(b.getId()).get().getEnrolled());
+    assertEquals("B101", students.findByIdWithCourses(s.getId()).get()
+        .getCourses().iterator().next().getCode());
+  }
+
+  @Test
+  public void concurrentSwaps_lockCoursesInOrder_andNeverFail() throws Exception {
+    final Course a = courseController.add("A101", "A", 6, 20);
+    final Course b = courseController.add("B101", "B", 6, 20);
+    final List<Student> rushers = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      rushers.add(enrollment.register("S" + i, "Swap " + i, "s" + i + "@example.com",
+          i % 2 == 0 ? a.getId() : b.getId()));
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<?>> moves = new ArrayList<>();
+    try {
+      for (final Student s : rushers) {
+        // Half move A -> B -> A ..., the other half B -> A -> B ... at the same time.
+        final boolean startsInA = rushers.indexOf(s) % 2 == 0;
+        moves.add(pool.submit(() -> {
+          for (int round = 0; round < 10; round++) {
+            boolean toB = startsInA == (round % 2 == 0);
+            enrollment.reassign(s.getId(), s.getMatricola(), s.getFullName(), s.getEmail(),
+                toB ? b.getId() : a.getId());
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : moves) f.get();
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(8, courses.findById(a.getId()).get().getEnrolled());
+    assertEquals(8, courses.findById(b.getId()).get().getEnrolled());
+    assertEquals(8, courseController.enrolledCount(a.getId()));
+    assertEquals(8, courseController.enrolledCount(b.getId()));
+  }
+
+  @Test
+  public void reassign_sameCourse_doesNotNeedFreeSeat() {
+    Course a = courseController.add("A101", "A", 6, 1);
+    Student s = enrollment.register("M1", "Alice", "alice@example.com", a.getId());
+
+    enrollment.reassign(s.getId(), "M1", "Alice Updated", "alice@example.com", a.getId());
+
+    assertEquals(1, courses.findById(a.getId()).get().getEnrolled());
+    assertEquals("Alice Updated", students.findById(s.getId()).get().getFullName());
+  }
+
+  @Test
+  public void deleteStudent_releasesSeat() {
+    Course a = courseController.add("A101", "A", 6, 1);
+    Student s = enrollment.register("M1", "Alice", "alice@example.com", a.getId());
+
+    students.deleteById(s.getId());
+
+    assertEquals(0, courses.findById(a.getId()).get().getEnrolled());
+    enrollment.register("M2", "Bob", "bob@example.com", a.getId());
+  }
+
+  @Test
+  public void resyncSeatCounters_matchesEnrollments() {
+    Course a = courseController.add("A101", "A", 6, 5);
+    enrollment.register("M1", "Alice", "alice@example.com", a.getId());
+    enrollment.register("M2", "Bob", "bob@example.com", a.getId());
+
+    assertEquals(1, enrollment.resyncSeatCounters());
+    assertEquals(2, courses.findById(a.getId()).get().getEnrolled());
+  }
+
+  @Test
+  public void resyncSeatCounters_duringRegistrations_losesNoChange() throws Exception {
+    Course a = courseController.add("A101", "A", 6, 100);
+    Course b = courseController.add("B101", "B", 6, 100);
+    ExecutorService pool = Executors.newFixedThreadPool(6);
+    List<Future<?>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < 60; i++) {
+        final String m = "R" + i;
+        final Long target = i % 2 == 0 ? a.getId() : b.getId();
+        results.add(pool.submit(() -> enrollment.register(m, "Rush " + m, m + "@example.com", target)));
+        if (i % 10 == 0) results.add(pool.submit(() -> enrollment.resyncSeatCounters()));
+      }
+      for (Future<?> f : results) f.get();
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(30, courses.findById(a.getId()).get().getEnrolled());
+    assertEquals(30, courses.findById(b.getId()).get().getEnrolled());
+  }
+}
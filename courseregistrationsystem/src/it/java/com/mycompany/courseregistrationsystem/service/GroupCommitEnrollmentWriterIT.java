@@ -0,0 +1,331 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.CourseController;
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GroupCommitEnrollmentWriterIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("groupcommit_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  private GroupCommitEnrollmentWriter writer;
+  private EnrollmentService enrollment;
+  private CourseRepository courses;
+  private CourseController courseController;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    clearDb();
+    courses = new CourseRepository();
+    courseController = new CourseController();
+    writer = new GroupCommitEnrollmentWriter(20, 50, 1000);
+    enrollment = new EnrollmentService(new DatabaseSeatInventory(), writer);
+  }
+
+  @After
+  public void tearDown() {
+    writer.close();
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  private Long student(String m) {
+    return enrollment.register(m, "Student " + m, m + "@example.com", null).getId();
+  }
+
+  private static Throwable failureOf(CompletableFuture<?> f) throws InterruptedException {
+    try {
+      f.get();
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  @Test
+  public void concurrentEnrollments_areBatchedAndNeverOverbook() throws Exception {
+    Course c = courseController.add("HOT101", "Popular", 6, 10);
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < 40; i++) ids.add(student("R" + i));
+    GroupCommitStats before = writer.stats();
+
+    List<CompletableFuture<EnrollmentOutcome>> futures = new ArrayList<>();
+    for (Long id : ids) futures.add(enrollment.enroll(id, c.getId()));
+
+    int enrolled = 0, full = 0;
+    for (CompletableFuture<EnrollmentOutcome> f : futures) {
+      Throwable failure = failureOf(f);
+      if (failure == null) enrolled++;
+      else if (failure instanceof CourseFullException) full++;
+    }
+    assertEquals(10, enrolled);
+    assertEquals(30, full);
+    assertEquals(10, courseController.enrolledCount(c.getId()));
+    assertEquals(10, courses.findById(c.getId()).get().getEnrolled());
+
+    GroupCommitStats stats = writer.stats();
+    assertEquals(40, stats.getRequests() - before.getRequests());
+    assertTrue("expected fewer transactions than requests: " + stats,
+        stats.getBatches() - before.getBatches() < 40);
+  }
+
+  @Test
+  public void seatsAreGrantedInArrivalOrder() throws Exception {
+    Course c = courseController.add("A101", "A", 6, 1);
+    Long first = student("M1"), second = student("M2");
+
+    CompletableFuture<EnrollmentOutcome> f1 = enrollment.enroll(first, c.getId());
+    CompletableFuture<EnrollmentOutcome> f2 = enrollment.enroll(second, c.getId());
+
+    assertEquals(EnrollmentOutcome.ENROLLED, f1.get());
+    assertTrue(failureOf(f2) instanceof CourseFullException);
+  }
+
+  @Test
+  public void batch_locksCoursesInIdOrder_soRawMovesNeverDeadlockIt() throws Exception {
+    final Course a = courseController.add("A101", "A", 6, 1000);
+    final Course b = courseController.add("B101", "B", 6, 1000);
+    final List<Student> movers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      movers.add(enrollment.register("W" + i, "Mover " + i, "w" + i + "@example.com", a.getId()));
+    }
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < 60; i++) ids.add(student("E" + i));
+    GroupCommitStats before = writer.stats();
+
+    // Raw repository moves take A then B, the id order, while the batches run.
+    final StudentRepository raw = new StudentRepository();
+    ExecutorService pool = Executors.newFixedThreadPool(movers.size());
+    List<Future<?>> moves = new ArrayList<>();
+    try {
+      for (final Student m : movers) {
+        moves.add(pool.submit(() -> {
+          for (int round = 0; round < 20; round++) {
+            raw.updateStudent(m.getId(), m.getMatricola(), m.getFullName(), m.getEmail(),
+                round % 2 == 0 ? b.getId() : a.getId());
+          }
+          return null;
+        }));
+      }
+      // Each batch gets B's enrollments before A's.
+      List<CompletableFuture<EnrollmentOutcome>> futures = new ArrayList<>();
+      for (int i = 0; i < ids.size(); i++) {
+        futures.add(enrollment.enroll(ids.get(i), i % 2 == 0 ? b.getId() : a.getId()));
+      }
+      for (CompletableFuture<EnrollmentOutcome> f : futures) assertEquals(EnrollmentOutcome.ENROLLED, f.get());
+      for (Future<?> f : moves) f.get();
+    } finally {
+      pool.shutdownNow();
+    }
+
+    assertEquals(0, writer.stats().getFallbackBatches() - before.getFallbackBatches());
+    assertEquals(34, courses.findById(a.getId()).get().getEnrolled());
+    assertEquals(30, courses.findById(b.getId()).get().getEnrolled());
+    assertEquals(34, courseController.enrolledCount(a.getId()));
+    assertEquals(30, courseController.enrolledCount(b.getId()));
+  }
+
+  @Test
+  public void duplicateAndUnknownRequests_failOnlyThemselves() throws Exception {
+    Course c = courseController.add("A101", "A", 6, 5);
+    Long s = student("M1");
+
+    CompletableFuture<EnrollmentOutcome> ok = enrollment.enroll(s, c.getId());
+    CompletableFuture<EnrollmentOutcome> again = enrollment.enroll(s, c.getId());
+    CompletableFuture<EnrollmentOutcome> noStudent = enrollment.enroll(999_999L, c.getId());
+    CompletableFuture<EnrollmentOutcome> noCourse = enrollment.enroll(s, 999_999L);
+
+    assertEquals(EnrollmentOutcome.ENROLLED, ok.get());
+    assertEquals(EnrollmentOutcome.ALREADY_ENROLLED, again.get());
+    assertEquals("Student not found: 999999", failureOf(noStudent).getMessage());
+    assertEquals("Course not found: 999999", failureOf(noCourse).getMessage());
+    assertEquals(1, courses.findById(c.getId()).get().getEnrolled());
+  }
+
+  @Test
+  public void concurrentRegistrations_shareCommits_andNeverOverbook() throws Exception {
+    Course c = courseController.add("HOT201", "Popular", 6, 10);
+    ExecutorService callers = Executors.newFixedThreadPool(20);
+    List<Future<Boolean>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < 40; i++) {
+        final String m = "G" + i;
+        results.add(callers.submit(() -> {
+          try {
+            enrollment.register(m, "Rush " + m, m + "@example.com", c.getId());
+            return true;
+          } catch (CourseFullException full) {
+            return false;
+          }
+        }));
+      }
+      int ok = 0;
+      for (Future<Boolean> f : results) if (f.get()) ok++;
+      assertEquals(10, ok);
+    } finally {
+      callers.shutdownNow();
+    }
+    assertEquals(10, courseController.enrolledCount(c.getId()));
+    assertEquals(10, courses.findById(c.getId()).get().getEnrolled());
+
+    GroupCommitStats stats = writer.stats();
+    assertEquals(40, stats.getRequests());
+    assertTrue("expected fewer batches than requests: " + stats,
+        stats.getBatches() - stats.getRerunBatches() < 40);
+  }
+
+  @Test
+  public void rejectedOperation_rollsBackOnlyItself() throws Exception {
+    Course small = courseController.add("S101", "Small", 6, 1);
+    Course big = courseController.add("B101", "Big", 6, 10);
+    Long taken = enrollment.register("T1", "Taken", "t1@example.com", small.getId()).getId();
+    Long mover = enrollment.register("T2", "Mover", "t2@example.com", big.getId()).getId();
+    writer.setWindowMillis(200);
+    GroupCommitStats stats = writer.stats();
+
+    CompletableFuture<Student> before = writer.submit(
+        em -> enrollment.register("T3", "Before", "t3@example.com", big.getId()));
+    CompletableFuture<Student> move = writer.submit(
+        em -> enrollment.reassign(mover, "T2-renamed", "Mover", "t2@example.com", small.getId()));
+    CompletableFuture<Student> after = writer.submit(
+        em -> enrollment.register("T4", "After", "t4@example.com", big.getId()));
+
+    assertNotNull(before.get().getId());
+    assertTrue(failureOf(move) instanceof CourseFullException);
+    assertNotNull(after.get().getId());
+    assertEquals("one transaction for all three", stats.getBatches() + 1, writer.stats().getBatches());
+    assertEquals(0, writer.stats().getRerunBatches());
+
+    StudentRepository students = new StudentRepository();
+    Student unchanged = students.findByIdWithCourses(mover).get();
+    assertEquals("T2", unchanged.getMatricola());
+    assertEquals("B101", unchanged.getCourses().iterator().next().getCode());
+    assertEquals(3, courses.findById(big.getId()).get().getEnrolled());
+    assertEquals(1, courses.findById(small.getId()).get().getEnrolled());
+    assertTrue(students.findById(taken).isPresent());
+  }
+
+  @Test
+  public void inMemoryInventory_enrollsThroughTheBatch() throws Exception {
+    Course c = courseController.add("MEM101", "Memory", 6, 1);
+    Long first = student("MM1"), second = student("MM2");
+    InMemorySeatInventory inventory = new InMemorySeatInventory(20);
+    try {
+      EnrollmentService memory = new EnrollmentService(inventory, writer);
+      CompletableFuture<EnrollmentOutcome> f1 = memory.enroll(first, c.getId());
+      CompletableFuture<EnrollmentOutcome> f2 = memory.enroll(second, c.getId());
+
+      assertEquals(EnrollmentOutcome.ENROLLED, f1.get());
+      assertTrue(failureOf(f2) instanceof CourseFullException);
+      assertTrue(inventory.sync(10, TimeUnit.SECONDS));
+      assertEquals(1, courses.findById(c.getId()).get().getEnrolled());
+      assertEquals(1, inventory.taken(c.getId()));
+    } finally {
+      inventory.close();
+    }
+  }
+
+  @Test
+  public void inMemoryInventory_rejectedMove_keepsTheSeatItHeld() throws Exception {
+    Course a = courseController.add("A101", "A", 6, 1);
+    Course full = courseController.add("Z101", "Z", 6, 1);
+    InMemorySeatInventory inventory = new InMemorySeatInventory(20);
+    try {
+      EnrollmentService memory = new EnrollmentService(inventory, writer);
+      memory.register("T1", "Taken", "t1@example.com", full.getId());
+      Long mover = memory.register("T2", "Mover", "t2@example.com", a.getId()).getId();
+      writer.setWindowMillis(200);
+
+      CompletableFuture<Student> move = writer.submit(
+          em -> memory.reassign(mover, "T2", "Mover", "t2@example.com", full.getId()));
+      CompletableFuture<Student> other = writer.submit(
+          em -> memory.register("T3", "Other", "t3@example.com", null));
+
+      assertTrue(failureOf(move) instanceof CourseFullException);
+      assertNotNull(other.get().getId());
+      assertTrue(inventory.sync(10, TimeUnit.SECONDS));
+      assertEquals(1, inventory.taken(a.getId()));
+      assertEquals(1, inventory.taken(full.getId()));
+      assertEquals(1, courses.findById(a.getId()).get().getEnrolled());
+      assertEquals(1, courses.findById(full.getId()).get().getEnrolled());
+    } finally {
+      inventory.close();
+    }
+  }
+
+  @Test
+  public void tuning_isAppliedAndReported() {
+    writer.setWindowMillis(2);
+    writer.setMaxBatch(10);
+
+    GroupCommitStats stats = writer.stats();
+    assertEquals(2, stats.getWindowMillis());
+    assertEquals(10, stats.getMaxBatch());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void maxBatch_aboveInListLimit_isRejected() {
+    writer.setMaxBatch(GroupCommitEnrollmentWriter.MAX_BATCH_LIMIT + 1);
+  }
+}
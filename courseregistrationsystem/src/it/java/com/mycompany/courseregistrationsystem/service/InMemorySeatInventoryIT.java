@@ -0,0 +1,243 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.CourseController;
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InMemorySeatInventoryIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("inventory_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  private InMemorySeatInventory inventory;
+  private EnrollmentService enrollment;
+  private StudentRepository students;
+  private CourseRepository courses;
+  private CourseController courseController;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    clearDb();
+    students = new StudentRepository();
+    courses = new CourseRepository();
+    courseController = new CourseController();
+  }
+
+  @After
+  public void tearDown() {
+    if (inventory != null) inventory.close();
+  }
+
+  private void start() {
+    inventory = new InMemorySeatInventory(20);
+    enrollment = new EnrollmentService(inventory);
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  @Test
+  public void load_countsExistingEnrollments() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 3);
+    new EnrollmentService(new DatabaseSeatInventory()).register("M1", "Alice", "alice@example.com", c.getId());
+    start();
+
+    assertEquals(1, inventory.taken(c.getId()));
+  }
+
+  @Test
+  public void register_writesTheRowAtCommit_andTheCounterBehind() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 2);
+    start();
+    Student s = enrollment.register("M1", "Alice", "alice@example.com", c.getId());
+
+    assertEquals("CS101", students.findByIdWithCourses(s.getId()).get()
+        .getCourses().iterator().next().getCode());
+    assertTrue(inventory.sync(10, TimeUnit.SECONDS));
+    assertEquals(0, inventory.pendingCounterChanges());
+    assertEquals(1, inventory.taken(c.getId()));
+    assertEquals(1, courses.findById(c.getId()).get().getEnrolled());
+  }
+
+  @Test
+  public void register_fullCourse_throwsAndRollsBackStudent() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 1);
+    start();
+    enrollment.register("M1", "Alice", "alice@example.com", c.getId());
+    try {
+      enrollment.register("M2", "Bob", "bob@example.com", c.getId());
+      fail("Expected CourseFullException");
+    } catch (CourseFullException e) {
+      assertEquals("Course is full: CS101", e.getMessage());
+    }
+    assertFalse(students.findByMatricola("M2").isPresent());
+    assertEquals(1, inventory.taken(c.getId()));
+  }
+
+  @Test
+  public void rolledBackReservation_givesSeatBack() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 1);
+    start();
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      assertTrue(inventory.tryReserve(em, c.getId()));
+      assertFalse(inventory.tryReserve(em, c.getId()));
+      tx.rollback();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+    assertEquals(0, inventory.taken(c.getId()));
+    enrollment.register("M1", "Alice", "alice@example.com", c.getId());
+  }
+
+  @Test
+  public void concurrentRegistrations_neverOverbook() throws Exception {
+    final Course c = courseController.add("HOT101", "Popular", 6, 5);
+    start();
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < 40; i++) {
+        final String m = "R" + i;
+        results.add(pool.submit(new Callable<Boolean>() {
+          @Override public Boolean call() {
+            try {
+              enrollment.register(m, "Rush " + m, m + "@example.com", c.getId());
+              return true;
+            } catch (CourseFullException full) {
+              return false;
+            }
+          }
+        }));
+      }
+      int ok = 0;
+      for (Future<Boolean> f : results) if (f.get()) ok++;
+      assertEquals(5, ok);
+    } finally {
+      pool.shutdownNow();
+    }
+    assertTrue(inventory.sync(10, TimeUnit.SECONDS));
+    assertEquals(5, courseController.enrolledCount(c.getId()));
+    assertEquals(5, courses.findById(c.getId()).get().getEnrolled());
+  }
+
+  @Test
+  public void reassignAndDelete_releaseSeats() {
+    Course a = courseController.add("A101", "A", 6, 1);
+    Course b = courseController.add("B101", "B", 6, 1);
+    start();
+    Student s = enrollment.register("M1", "Alice", "alice@example.com", a.getId());
+
+    enrollment.reassign(s.getId(), "M1", "Alice", "alice@example.com", b.getId());
+    assertTrue(inventory.sync(10, TimeUnit.SECONDS));
+    assertEquals(0, inventory.taken(a.getId()));
+    assertEquals(1, inventory.taken(b.getId()));
+    assertEquals(0, courses.findById(a.getId()).get().getEnrolled());
+    assertEquals(1, courses.findById(b.getId()).get().getEnrolled());
+
+    enrollment.deleteStudent(s.getId());
+    assertEquals(0, inventory.taken(b.getId()));
+    assertTrue(inventory.sync(10, TimeUnit.SECONDS));
+    assertEquals(0, courses.findById(b.getId()).get().getEnrolled());
+  }
+
+  @Test
+  public void rejectedRow_rollsBackTheCaller_andGivesTheSeatBack() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 1);
+    start();
+
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      assertTrue(inventory.tryReserve(em, c.getId()));
+      inventory.record(em, Long.MAX_VALUE, c.getId());
+      fail("Expected the enrollment of an unknown student to be rejected");
+    } catch (PersistenceException expected) {
+      // foreign key violation, in the caller's transaction
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+    assertEquals(0, inventory.taken(c.getId()));
+    assertTrue(inventory.sync(10, TimeUnit.SECONDS));
+    assertEquals(0, courses.findById(c.getId()).get().getEnrolled());
+    enrollment.register("M1", "Alice", "alice@example.com", c.getId());
+  }
+
+  @Test
+  public void close_flushesPendingCounterChanges() {
+    Course c = courseController.add("CS101", "Intro to CS", 6, 5);
+    inventory = new InMemorySeatInventory(60_000);
+    enrollment = new EnrollmentService(inventory);
+    enrollment.register("M1", "Alice", "alice@example.com", c.getId());
+    enrollment.register("M2", "Bob", "bob@example.com", c.getId());
+    assertEquals(2, inventory.pendingCounterChanges());
+
+    inventory.close();
+    inventory = null;
+    assertEquals(2, courses.findById(c.getId()).get().getEnrolled());
+  }
+}
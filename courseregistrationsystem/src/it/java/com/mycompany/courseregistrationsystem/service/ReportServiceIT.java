@@ -0,0 +1,208 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.CourseFillRate;
+import com.mycompany.courseregistrationsystem.model.Distribution;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.model.StudentCreditLoad;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.ReportRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.Type.*;
+import static com.mycompany.courseregistrationsystem.testsupport.SqlStatementCounter.count;
+import static org.junit.Assert.*;
+
+public class ReportServiceIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("reports_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    clearDb();
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+    emf.getCache().evictAll();
+  }
+
+  @Test
+  public void reports_matchTheAnalyticsSnapshot() {
+    new DatasetGenerator(31L, 500, 15, 1_200, 1.0).load();
+    Student idle = new Student();
+    idle.setMatricola("IDLE-1");
+    idle.setFullName("No Courses");
+    idle.setEmail("idle@example.com");
+    Long idleId = new StudentRepository().save(idle).getId();
+    ReportService reports = new ReportService(new ReportRepository(false));
+
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      assertMatch(reports, AnalyticsSnapshot.load(new CourseRepository(), new StudentRepository(), 64, pool), idleId);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static void assertMatch(ReportService reports, AnalyticsSnapshot s, Long idleId) {
+    FillRateReport fill = reports.fillRates();
+    assertEquals(15, fill.getCourses().size());
+    assertEquals(1_200, fill.getTotalEnrolled());
+    for (int c = 0; c < s.courseCount(); c++) {
+      CourseFillRate row = fill.getCourses().get(c);
+      assertEquals(s.courseId(c), row.getId().longValue());
+      assertEquals(s.enrolled(c), row.getEnrolled());
+    }
+
+    List<StudentCreditLoad> loads = reports.creditLoads();
+    assertEquals(501, loads.size());
+    int[] totals = s.cfuTotals();
+    Map<Long, Integer> cfuById = new HashMap<>();
+    for (int i = 0; i < s.studentCount(); i++) cfuById.put(s.studentId(i), totals[i]);
+    for (StudentCreditLoad l : loads) {
+      assertEquals("student " + l.getId(), cfuById.get(l.getId()).intValue(), l.getCfu());
+      if (l.getId().equals(idleId)) assertEquals(0, l.getCourses());
+    }
+
+    assertArrayEquals(s.cfuLoadHistogram(6), reports.creditLoadDistribution(6).getCounts());
+    long[] byFill = new long[11];
+    for (CourseFillRate c : fill.getCourses()) {
+      byFill[c.getEnrolled() >= c.getMaxSeats() ? 10 : c.getEnrolled() * 100 / c.getMaxSeats() / 10]++;
+    }
+    assertEquals(new Distribution(10, byFill), reports.fillRateDistribution(10));
+  }
+
+  @Test
+  public void overCapacity_countsTheEnrollmentRows() {
+    CourseRepository courses = new CourseRepository();
+    Course small = courses.save(newCourse("SMALL", 1));
+    Course big = courses.save(newCourse("BIG", 10));
+    StudentRepository students = new StudentRepository();
+    for (int i = 0; i < 3; i++) {
+      Student s = newStudent("OVER-" + i);
+      s.getCourses().add(small);
+      if (i == 0) s.getCourses().add(big);
+      students.save(s);
+    }
+    ReportService reports = new ReportService(new ReportRepository(false));
+
+    List<CourseFillRate> over = reports.overCapacity();
+    assertEquals(1, over.size());
+    assertEquals("SMALL", over.get(0).getCode());
+    assertEquals(3, over.get(0).getEnrolled());
+    assertEquals(3d, over.get(0).getFillRate(), 1e-9);
+    assertEquals(over.size(), reports.fillRates().getOverCapacity().size());
+
+    assertEquals(new Distribution(10, new long[] {0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1}),
+        reports.fillRateDistribution(10));
+  }
+
+  @Test
+  public void cachedReports_areServedWithoutSql_untilTheTablesChange() throws Exception {
+    new DatasetGenerator(32L, 100, 5, 200, 1.0).load();
+    ReportService reports = new ReportService(new ReportRepository(true));
+
+    FillRateReport before = reports.fillRates();
+    Distribution loads = reports.creditLoadDistribution(6);
+    count(() -> {
+      reports.fillRates();
+      reports.creditLoadDistribution(6);
+    }).counts().assertTotalAtMost(0);
+
+    // Hibernate writes invalidate through the tables' update timestamps...
+    Course extra = new CourseRepository().save(newCourse("EXTRA", 5));
+    Student s = new StudentRepository().save(newStudent("LATE-1"));
+    FillRateReport added = reports.fillRates();
+    assertEquals(before.getCourses().size() + 1, added.getCourses().size());
+    assertEquals(0, enrolledIn(added, extra.getId()));
+    Distribution withLate = reports.creditLoadDistribution(6);
+    assertEquals(loads.getTotal() + 1, withLate.getTotal());
+    count(() -> {
+      reports.fillRates();
+      reports.creditLoadDistribution(6);
+    }).counts().assertTotalAtMost(0);
+
+    // ...and JDBC batch writes through SeatCounter.evictCached.
+    try (GroupCommitEnrollmentWriter writer = new GroupCommitEnrollmentWriter(5, 10, 100)) {
+      assertEquals(EnrollmentOutcome.ENROLLED, writer.enroll(s.getId(), extra.getId()).get());
+    }
+    count(() -> {
+      FillRateReport after = reports.fillRates();
+      assertEquals(1, enrolledIn(after, extra.getId()));
+      assertEquals(before.getTotalEnrolled() + 1, after.getTotalEnrolled());
+      assertEquals(withLate.getCount(0) - 1, reports.creditLoadDistribution(6).getCount(0));
+    }).counts().assertAtMost(SELECT, 2);
+  }
+
+  private static int enrolledIn(FillRateReport report, Long courseId) {
+    for (CourseFillRate c : report.getCourses()) if (c.getId().equals(courseId)) return c.getEnrolled();
+    throw new AssertionError("course " + courseId + " not in the report");
+  }
+
+  private static Course newCourse(String code, int seats) {
+    Course c = new Course();
+    c.setCode(code);
+    c.setTitle("Course " + code);
+    c.setCfu(6);
+    c.setMaxSeats(seats);
+    return c;
+  }
+
+  private static Student newStudent(String matricola) {
+    Student s = new Student();
+    s.setMatricola(matricola);
+    s.setFullName("Student " + matricola);
+    s.setEmail(matricola.toLowerCase() + "@example.com");
+    return s;
+  }
+}
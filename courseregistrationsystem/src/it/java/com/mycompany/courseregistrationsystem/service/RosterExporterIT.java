@@ -0,0 +1,184 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class RosterExporterIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("export_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  private StudentRepository students;
+  private Path file;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    students = new StudentRepository();
+    clearDb();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (file != null) Files.deleteIfExists(file);
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  @Test
+  public void csvExport_hasOneLinePerStudentAndImportsBack() throws IOException {
+    new DatasetGenerator(3L, 400, 15, 1200, 1.0).load();
+    file = Files.createTempFile("roster", ".csv.gz");
+
+    ExportReport report = new RosterExporter(students, 64).export(file, RosterExporter.Format.CSV, true);
+
+    assertEquals(400, report.getStudents());
+    assertEquals(1200, report.getEnrollments());
+    assertEquals(report.getBytes(), Files.size(file));
+    List<String> lines = gunzip(file);
+    assertEquals(RosterExporter.CSV_HEADER, lines.get(0));
+    assertEquals(401, lines.size());
+    long enrollments = 0;
+    for (String line : lines.subList(1, lines.size())) {
+      List<String> fields = StudentImportService.parseLine(line);
+      assertEquals(4, fields.size());
+      if (!fields.get(3).isEmpty()) enrollments += fields.get(3).split(";").length;
+    }
+    assertEquals(1200, enrollments);
+
+    clearStudentsKeepingCourses();
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+      ImportReport imported = new StudentImportService().importCsv(in);
+      assertEquals(400, imported.getImported());
+      assertEquals(1200, imported.getEnrollments());
+    }
+  }
+
+  @Test
+  public void jsonlExport_includesStudentsWithoutCourses() throws IOException {
+    Student s = new Student();
+    s.setMatricola("M1");
+    s.setFullName("Ann \"Quote\" Lee");
+    s.setEmail("ann@example.com");
+    students.save(s);
+    file = Files.createTempFile("roster", ".jsonl");
+
+    ExportReport report = new RosterExporter().export(file, RosterExporter.Format.JSONL, false);
+
+    assertEquals(1, report.getStudents());
+    assertEquals(0, report.getEnrollments());
+    assertEquals("{\"matricola\":\"M1\",\"fullName\":\"Ann \\\"Quote\\\" Lee\","
+        + "\"email\":\"ann@example.com\",\"courses\":[]}",
+        new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+  }
+
+  @Test
+  public void forEach_streamsDetachedStudentsInIdOrder() {
+    new DatasetGenerator(4L, 250, 5, 0, 1.0).load();
+    List<Student> seen = new ArrayList<>();
+
+    long n = UnitOfWork.call(em -> {
+      long count = students.forEach(16, st -> {
+        assertTrue(em.contains(st));
+        seen.add(st);
+      });
+      for (Student st : seen) assertFalse(em.contains(st));
+      return count;
+    });
+
+    assertEquals(250, n);
+    assertEquals(250, seen.size());
+    for (int i = 1; i < seen.size(); i++) assertTrue(seen.get(i - 1).getId() < seen.get(i).getId());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void nonPositiveFetchSize_isRejected() {
+    students.forEachRosterRow(0, row -> { });
+  }
+
+  private void clearStudentsKeepingCourses() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createNativeQuery("UPDATE courses SET enrolled = 0").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+    emf.getCache().evictAll();
+  }
+
+  private static List<String> gunzip(Path file) throws IOException {
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = in.readLine()) != null) lines.add(line);
+    }
+    return lines;
+  }
+}
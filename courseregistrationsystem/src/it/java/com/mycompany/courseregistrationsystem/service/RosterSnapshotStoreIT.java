@@ -0,0 +1,218 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.CourseController;
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import com.mycompany.courseregistrationsystem.model.StudentSummary;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RosterSnapshotStoreIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("snapshot_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  private StudentRepository students;
+  private EnrollmentService enrollment;
+  private Path file;
+  private Path reference;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    students = new StudentRepository();
+    enrollment = new EnrollmentService();
+    clearDb();
+    file = Files.createTempFile("roster", ".snapshot");
+    reference = Files.createTempFile("reference", ".snapshot");
+    Files.delete(file);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path p : withVersions(file)) Files.deleteIfExists(p);
+    for (Path p : withVersions(reference)) Files.deleteIfExists(p);
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+    emf.getCache().evictAll();
+  }
+
+  @Test
+  public void catchUp_withoutSnapshot_writesTheWholeRoster() throws IOException {
+    new DatasetGenerator(5L, 300, 10, 600, 1.0).load();
+    RosterSnapshotStore store = store(file);
+    assertNull(store.opened());
+
+    RosterSnapshot s = store.catchUp();
+
+    assertEquals(10, s.courseCount());
+    assertEquals(300, s.studentCount());
+    long enrollments = 0;
+    for (StudentSummary st : s.students(0, 300)) enrollments += st.getCourseCodes().size();
+    assertEquals(600, enrollments);
+    int enrolled = 0;
+    for (CourseSummary c : s.courses(0, 10)) enrolled += c.getEnrolled();
+    assertEquals(600, enrolled);
+    assertEquals(dump(s), dump(store(file).opened()));
+  }
+
+  @Test
+  public void catchUp_appliesEditsEnrollmentsInsertsAndDeletes() throws IOException {
+    new DatasetGenerator(6L, 200, 8, 300, 1.0).load();
+    RosterSnapshotStore store = store(file);
+    store.catchUp();
+
+    List<StudentSummary> before = store.opened().students(0, 200);
+    Long renamed = before.get(3).getId();
+    Long deleted = before.get(10).getId();
+    StudentSummary dropped = firstWithCourses(before.subList(100, before.size()));
+    StudentSummary s = before.get(20);
+    Course extra = new CourseController(emf).add("NEW101", "New", 6, 10);
+
+    students.updateStudent(renamed, before.get(3).getMatricola(), "Renamed Student",
+        before.get(3).getEmail(), null);
+    // Only leaves their course, which does not make the entity dirty.
+    students.updateStudent(dropped.getId(), dropped.getMatricola(), dropped.getFullName(),
+        dropped.getEmail(), null);
+    enrollment.deleteStudent(deleted);
+    enrollment.enroll(s.getId(), extra.getId()).join();
+    enrollment.register("NEW-1", "New Student", "new@example.com", extra.getId());
+
+    RosterSnapshot merged = store.catchUp();
+
+    assertEquals(dump(store(reference).rebuild()), dump(merged));
+    assertEquals(200, merged.studentCount());
+    assertEquals(9, merged.courseCount());
+    assertEquals(dump(merged), dump(store(file).opened()));
+  }
+
+  @Test
+  public void catchUp_withNothingChanged_keepsTheFile() throws IOException {
+    new DatasetGenerator(7L, 100, 5, 150, 1.0).load();
+    RosterSnapshotStore store = store(file);
+    RosterSnapshot first = store.catchUp();
+    FileTime written = Files.getLastModifiedTime(file);
+
+    // Everything is inside the overlap window, so it is all read again but found unchanged.
+    assertSame(first, store.catchUp());
+    assertEquals(written, Files.getLastModifiedTime(file));
+  }
+
+  @Test
+  public void unusableSnapshot_isIgnoredAndRebuilt() throws IOException {
+    new DatasetGenerator(8L, 50, 3, 60, 1.0).load();
+    Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+    RosterSnapshotStore store = store(file);
+
+    assertNull(store.opened());
+    assertEquals(50, store.catchUp().studentCount());
+    assertEquals(50, store(file).opened().studentCount());
+  }
+
+  @Test
+  public void catchUp_neverWritesOverTheMappedSnapshot() throws IOException {
+    new DatasetGenerator(9L, 80, 4, 100, 1.0).load();
+    RosterSnapshotStore store = store(file);
+    RosterSnapshot first = store.catchUp();
+    List<String> before = dump(first);
+    enrollment.register("NEW-1", "New Student", "new@example.com", null);
+
+    RosterSnapshot second = store.catchUp();
+
+    // The first mapping still reads what it read, from a file that was not replaced.
+    assertEquals(before, dump(first));
+    assertEquals(81, second.studentCount());
+    assertEquals(dump(second), dump(store(file).opened()));
+    assertEquals("only the pointer and the current version are left", 2, withVersions(file).size());
+  }
+
+  /** The pointer file and every version file next to it. */
+  private static List<Path> withVersions(Path pointer) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(pointer.toAbsolutePath().getParent(),
+        pointer.getFileName() + "*")) {
+      for (Path p : dir) files.add(p);
+    }
+    return files;
+  }
+
+  private RosterSnapshotStore store(Path path) {
+    return new RosterSnapshotStore(path, RosterSnapshotStore.DEFAULT_OVERLAP_MILLIS,
+        students, new CourseRepository(), 32);
+  }
+
+  private static StudentSummary firstWithCourses(List<StudentSummary> list) {
+    for (StudentSummary st : list) if (!st.getCourseCodes().isEmpty()) return st;
+    throw new AssertionError("no enrolled student");
+  }
+
+  private static List<String> dump(RosterSnapshot s) {
+    List<String> rows = new ArrayList<>();
+    for (CourseSummary c : s.courses(0, s.courseCount())) {
+      rows.add(c.getId() + " " + c.getCode() + " " + c.getTitle() + " " + c.getCfu() + " "
+          + c.getMaxSeats() + " " + c.getEnrolled());
+    }
+    for (StudentSummary st : s.students(0, s.studentCount())) {
+      rows.add(st.getId() + " " + st.getMatricola() + " " + st.getFullName() + " " + st.getEmail() + " "
+          + st.getCourseCodes());
+    }
+    return rows;
+  }
+}
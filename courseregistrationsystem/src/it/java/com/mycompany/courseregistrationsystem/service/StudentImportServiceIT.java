@@ -0,0 +1,133 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class StudentImportServiceIT {
+
+  @SuppressWarnings("resource")
+  @ClassRule
+  public static PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("import_testdb")
+          .withUsername("user")
+          .withPassword("pass");
+
+  private static EntityManagerFactory emf;
+
+  private StudentRepository students;
+  private CourseRepository courses;
+
+  @BeforeClass
+  public static void startContainer() {
+    Map<String, String> props = new HashMap<>();
+    props.put("hibernate.connection.url", POSTGRES.getJdbcUrl());
+    props.put("hibernate.connection.username", POSTGRES.getUsername());
+    props.put("hibernate.connection.password", POSTGRES.getPassword());
+    props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+    props.put("hibernate.hbm2ddl.auto", "create-drop");
+    props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+    JpaUtil.rebuild(props);
+    emf = JpaUtil.emf();
+    assertNotNull(emf);
+  }
+
+  @AfterClass
+  public static void stopContainer() {
+    if (emf != null) emf.close();
+  }
+
+  @Before
+  public void setUp() {
+    students = new StudentRepository();
+    courses = new CourseRepository();
+    clearDb();
+  }
+
+  private void clearDb() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.createNativeQuery("DELETE FROM enrollments").executeUpdate();
+      em.createQuery("DELETE FROM Student").executeUpdate();
+      em.createQuery("DELETE FROM Course").executeUpdate();
+      tx.commit();
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  @Test
+  public void importCsv_insertsStudentsAndEnrollmentsAcrossChunks() throws Exception {
+    courses.save(newCourse("CS101", "Intro to CS", 6, 30));
+    courses.save(newCourse("MATH101", "Math 1", 6, 30));
+    String csv =
+        "matricola,fullName,email,courses\n" +
+        "M1,Alice,alice@example.com,CS101;MATH101\n" +
+        "M2,\"Brown, Bob\",bob@example.com,CS101\n" +
+        "M3,Carol,carol@example.com,\n";
+
+    ImportReport report = new StudentImportService(2, 1).importCsv(new StringReader(csv));
+
+    assertEquals(3, report.getRowsRead());
+    assertEquals(3, report.getImported());
+    assertEquals(3, report.getEnrollments());
+    assertTrue(report.getRowsPerSecond() > 0);
+
+    Optional<Student> bob = students.findByMatricola("M2");
+    assertTrue(bob.isPresent());
+    assertEquals("Brown, Bob", bob.get().getFullName());
+    assertEquals(2, students.findByIdWithCourses(students.findByMatricola("M1").get().getId())
+        .get().getCourses().size());
+  }
+
+  @Test
+  public void importCsv_skipsDuplicatesInvalidRowsAndUnknownCourses() throws Exception {
+    Student existing = new Student();
+    existing.setMatricola("M1");
+    existing.setFullName("Already There");
+    existing.setEmail("there@example.com");
+    students.save(existing);
+    String csv =
+        "M1,Alice,alice@example.com,\n" +
+        "M2,Bob,bob@example.com,NOPE\n" +
+        "M2,Bob Again,bob2@example.com,\n" +
+        "M3,,missing@example.com,\n";
+
+    ImportReport report = new StudentImportService().importCsv(new StringReader(csv));
+
+    assertEquals(4, report.getRowsRead());
+    assertEquals(1, report.getImported());
+    assertEquals(2, report.getDuplicates());
+    assertEquals(1, report.getInvalid());
+    assertEquals(0, report.getEnrollments());
+    assertTrue(report.getUnknownCourseCodes().contains("NOPE"));
+    assertEquals("Already There", students.findByMatricola("M1").get().getFullName());
+  }
+
+  private Course newCourse(String code, String title, int cfu, int maxSeats) {
+    Course c = new Course();
+    c.setCode(code);
+    c.setTitle(title);
+    c.setCfu(cfu);
+    c.setMaxSeats(maxSeats);
+    return c;
+  }
+}
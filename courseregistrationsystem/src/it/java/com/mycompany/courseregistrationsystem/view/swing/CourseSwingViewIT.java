@@ -190,6 +190,8 @@ private void clickYesOnConfirm() {
   public void add_duplicate_code_shows_warning() {
     preloadCourse("CS101", "Intro to CS", 6, 30);
     click(window, "btnRefreshCourse");
+    await().atMost(5, TimeUnit.SECONDS)
+    .untilAsserted(() -> assertThat(window.table("tblCourses").rowCount()).isEqualTo(1));
 
     int before = window.table("tblCourses").rowCount();
 
@@ -115,6 +115,9 @@ public class StudentSwingViewIT extends AssertJSwingJUnitTestCase {
 
   private void uiAddStudent(String matricola, String name, String email, int courseIndexOrZero) {
     window.button("btnRefreshStudent").click();
+    // The combo reloads in the background.
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+        assertThat(window.comboBox("cmbCourse").target().getItemCount()).isGreaterThan(courseIndexOrZero));
     window.textBox("txtMatricola").setText(matricola);
     window.textBox("txtFullName").setText(name);
     window.textBox("txtEmail").setText(email);
@@ -123,6 +126,11 @@ public class StudentSwingViewIT extends AssertJSwingJUnitTestCase {
     execute(() -> { addBtn.requestFocusInWindow(); addBtn.doClick(); });
   }
 
+  private void awaitRows(int n) {
+    await().atMost(7, TimeUnit.SECONDS).untilAsserted(() ->
+        assertThat(window.table("tblStudents").rowCount()).isEqualTo(n));
+  }
+
   // ---------------- Tests ----------------
 
   @Test
@@ -144,6 +152,7 @@ public class StudentSwingViewIT extends AssertJSwingJUnitTestCase {
   @Test
   public void add_duplicate_matricola_no_extra_row() {
     uiAddStudent("1234567", "John Doe", "john@example.com", 1);
+    awaitRows(1);
     int before = window.table("tblStudents").rowCount();
 
     window.textBox("txtMatricola").setText("1234567");
@@ -159,6 +168,7 @@ public class StudentSwingViewIT extends AssertJSwingJUnitTestCase {
   @Test
   public void update_full_name_updates_row() {
     uiAddStudent("1234567", "John Doe", "john@example.com", 1);
+    awaitRows(1);
 
     org.assertj.swing.fixture.JTableFixture tbl = window.table("tblStudents");
     org.assertj.swing.data.TableCell firstCell = org.assertj.swing.data.TableCell.row(0).column(0);
@@ -183,6 +193,7 @@ public class StudentSwingViewIT extends AssertJSwingJUnitTestCase {
   @Test
   public void update_course_to_MATH101_updates_cell() {
     uiAddStudent("1234567", "John Doe", "john@example.com", 1);
+    awaitRows(1);
 
     org.assertj.swing.fixture.JTableFixture tbl = window.table("tblStudents");
     org.assertj.swing.data.TableCell firstCell = org.assertj.swing.data.TableCell.row(0).column(0);
@@ -207,6 +218,7 @@ public class StudentSwingViewIT extends AssertJSwingJUnitTestCase {
   @Test
   public void delete_student_removes_row() {
     uiAddStudent("1234567", "John Doe", "john@example.com", 1);
+    awaitRows(1);
 
     org.assertj.swing.fixture.JTableFixture tbl = window.table("tblStudents");
     org.assertj.swing.data.TableCell firstCell = org.assertj.swing.data.TableCell.row(0).column(0);
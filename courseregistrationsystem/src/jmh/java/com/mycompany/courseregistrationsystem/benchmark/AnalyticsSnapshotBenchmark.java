@@ -0,0 +1,56 @@
+package com.mycompany.courseregistrationsystem.benchmark;
+
+import com.mycompany.courseregistrationsystem.service.AnalyticsSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The columnar analytics snapshot: reading it from the database, and the
+ * fork/join aggregates over one built per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsSnapshotBenchmark {
+
+  private AnalyticsSnapshot snapshot;
+
+  @Setup(Level.Trial)
+  public void load(BenchmarkDatabase db) {
+    snapshot = AnalyticsSnapshot.load();
+  }
+
+  @Benchmark
+  public AnalyticsSnapshot build(BenchmarkDatabase db) {
+    return AnalyticsSnapshot.load();
+  }
+
+  @Benchmark
+  public int[] cfuTotals(BenchmarkDatabase db) {
+    return snapshot.cfuTotals();
+  }
+
+  @Benchmark
+  public double[] fillRatios(BenchmarkDatabase db) {
+    return snapshot.fillRatios();
+  }
+
+  @Benchmark
+  public long[] cfuLoadHistogram(BenchmarkDatabase db) {
+    return snapshot.cfuLoadHistogram(6);
+  }
+}
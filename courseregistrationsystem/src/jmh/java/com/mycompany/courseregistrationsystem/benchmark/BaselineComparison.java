@@ -0,0 +1,194 @@
+package com.mycompany.courseregistrationsystem.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result with the committed baseline and flags every
+ * benchmark that got slower than the allowed ratio.
+ * <p>
+ * Usage: {@code BaselineComparison <baseline.json> <result.json> <maxRegression> [failOnRegression]},
+ * e.g. {@code 0.25} to allow 25%. The comparison is a report: only with
+ * {@code failOnRegression} set to {@code true} does a regression fail the
+ * run (exit status 1), since timings from another machine than the
+ * baseline's are not comparable. Benchmarks missing from either side are
+ * listed but never fail the run; a missing baseline only prints how to
+ * record one.
+ */
+public final class BaselineComparison {
+
+  private BaselineComparison() { }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 3 && args.length != 4) {
+      System.err.println("usage: BaselineComparison <baseline.json> <result.json> <maxRegression> [failOnRegression]");
+      System.exit(2);
+    }
+    Path baselineFile = Paths.get(args[0]);
+    Path resultFile = Paths.get(args[1]);
+    double maxRegression = Double.parseDouble(args[2]);
+    boolean failOnRegression = args.length == 4 && Boolean.parseBoolean(args[3]);
+
+    Map<String, Score> result = read(resultFile);
+    if (!Files.exists(baselineFile)) {
+      System.out.printf("No baseline at %s; to record this run as the baseline:%n  cp %s %s%n",
+          baselineFile, resultFile, baselineFile);
+      return;
+    }
+    Map<String, Score> baseline = read(baselineFile);
+
+    int regressions = 0;
+    System.out.printf("%-70s %14s %14s %8s%n", "Benchmark", "baseline", "now", "change");
+    for (Map.Entry<String, Score> e : result.entrySet()) {
+      Score now = e.getValue();
+      Score before = baseline.get(e.getKey());
+      if (before == null || !before.unit.equals(now.unit)) {
+        System.out.printf("%-70s %14s %14.3f %8s  (new)%n", e.getKey(), "-", now.value, "");
+        continue;
+      }
+      // positive = worse, whichever way the unit points
+      double change = now.lowerIsBetter()
+          ? (now.value - before.value) / before.value
+          : (before.value - now.value) / before.value;
+      boolean regressed = change > maxRegression;
+      if (regressed) regressions++;
+      System.out.printf("%-70s %14.3f %14.3f %+7.1f%%%s  %s%n", e.getKey(), before.value, now.value,
+          change * 100, regressed ? " REGRESSION" : "", now.unit);
+    }
+    for (String gone : baseline.keySet()) {
+      if (!result.containsKey(gone)) System.out.printf("%-70s (not run)%n", gone);
+    }
+    if (regressions > 0) {
+      System.out.printf("%d benchmark(s) regressed by more than %.0f%% against %s%n",
+          regressions, maxRegression * 100, baselineFile);
+      if (failOnRegression) System.exit(1);
+    }
+  }
+
+  /** Benchmark name plus parameters -> primary score. */
+  static Map<String, Score> read(Path file) throws IOException {
+    Object json = new JsonReader(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)).value();
+    Map<String, Score> scores = new TreeMap<>();
+    for (Object run : (List<?>) json) {
+      Map<?, ?> r = (Map<?, ?>) run;
+      StringBuilder key = new StringBuilder(r.get("benchmark").toString()
+          .replace("com.mycompany.courseregistrationsystem.benchmark.", ""));
+      Object params = r.get("params");
+      if (params instanceof Map) {
+        new TreeMap<Object, Object>((Map<?, ?>) params).forEach((k, v) -> key.append(' ').append(k).append('=').append(v));
+      }
+      Map<?, ?> metric = (Map<?, ?>) r.get("primaryMetric");
+      scores.put(key.toString(), new Score(((Number) metric.get("score")).doubleValue(),
+          metric.get("scoreUnit").toString()));
+    }
+    return scores;
+  }
+
+  static final class Score {
+    final double value;
+    final String unit;
+
+    Score(double value, String unit) {
+      this.value = value;
+      this.unit = unit;
+    }
+
+    /** Time per operation (us/op) shrinks as things improve; throughput (ops/us) grows. */
+    boolean lowerIsBetter() {
+      return unit.endsWith("/op");
+    }
+  }
+
+  /** Just enough JSON for JMH's result files: objects, arrays, strings, numbers, literals. */
+  static final class JsonReader {
+    private final String s;
+    private int i;
+
+    JsonReader(String s) {
+      this.s = s;
+    }
+
+    Object value() {
+      skipSpace();
+      char c = s.charAt(i);
+      if (c == '{') return object();
+      if (c == '[') return array();
+      if (c == '"') return string();
+      if (s.startsWith("true", i)) { i += 4; return Boolean.TRUE; }
+      if (s.startsWith("false", i)) { i += 5; return Boolean.FALSE; }
+      if (s.startsWith("null", i)) { i += 4; return null; }
+      return number();
+    }
+
+    private Map<String, Object> object() {
+      Map<String, Object> m = new LinkedHashMap<>();
+      i++;
+      skipSpace();
+      if (s.charAt(i) == '}') { i++; return m; }
+      while (true) {
+        skipSpace();
+        String k = string();
+        skipSpace();
+        expect(':');
+        m.put(k, value());
+        skipSpace();
+        if (s.charAt(i++) == '}') return m;
+      }
+    }
+
+    private List<Object> array() {
+      List<Object> l = new ArrayList<>();
+      i++;
+      skipSpace();
+      if (s.charAt(i) == ']') { i++; return l; }
+      while (true) {
+        l.add(value());
+        skipSpace();
+        if (s.charAt(i++) == ']') return l;
+      }
+    }
+
+    private String string() {
+      expect('"');
+      StringBuilder b = new StringBuilder();
+      for (char c; (c = s.charAt(i++)) != '"'; ) {
+        if (c != '\\') { b.append(c); continue; }
+        char e = s.charAt(i++);
+        switch (e) {
+          case 'n': b.append('\n'); break;
+          case 't': b.append('\t'); break;
+          case 'r': b.append('\r'); break;
+          case 'b': b.append('\b'); break;
+          case 'f': b.append('\f'); break;
+          case 'u': b.append((char) Integer.parseInt(s.substring(i, i + 4), 16)); i += 4; break;
+          default: b.append(e);
+        }
+      }
+      return b.toString();
+    }
+
+    private Object number() {
+      int start = i;
+      while (i < s.length() && "+-0123456789.eE".indexOf(s.charAt(i)) >= 0) i++;
+      String n = s.substring(start, i);
+      if (n.isEmpty()) throw new IllegalArgumentException("Unexpected '" + s.charAt(i) + "' at " + i);
+      return Double.valueOf(n);
+    }
+
+    private void expect(char c) {
+      if (s.charAt(i++) != c) throw new IllegalArgumentException("Expected '" + c + "' at " + (i - 1));
+    }
+
+    private void skipSpace() {
+      while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+    }
+  }
+}
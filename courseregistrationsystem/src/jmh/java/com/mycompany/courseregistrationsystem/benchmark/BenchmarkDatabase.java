@@ -0,0 +1,136 @@
+package com.mycompany.courseregistrationsystem.benchmark;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.SeatCounter;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The database every benchmark runs against, seeded once per trial (one
+ * forked JVM per benchmark and parameter combination).
+ * <p>
+ * By default it is the embedded H2 of the {@code crsPU-test} unit; with
+ * {@code -Dcrs.bench.db=postgres} a throwaway PostgreSQL container is
+ * started instead, configured the same way as the ITs.
+ * <p>
+ * The dataset is deterministic: course {@code i} has code
+ * {@link #courseCode(int)}, student {@code i} has matricola
+ * {@link #matricola(int)} and is enrolled in course {@code i % courses},
+ * plus a second course for every other student.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+  public static final String DB_PROPERTY = "crs.bench.db";
+
+  private static final int SEED_BATCH = 1_000;
+
+  @Param({"1000", "20000"})
+  public int students;
+
+  @Param({"50"})
+  public int courses;
+
+  private PostgreSQLContainer<?> postgres;
+  private Long[] courseIds;
+  private Long[] studentIds;
+
+  @Setup(Level.Trial)
+  public void start() {
+    if ("postgres".equalsIgnoreCase(System.getProperty(DB_PROPERTY, "h2"))) {
+      postgres = new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("crs_bench")
+          .withUsername("bench")
+          .withPassword("bench");
+      postgres.start();
+      Map<String, String> props = new HashMap<>();
+      props.put("hibernate.connection.url", postgres.getJdbcUrl());
+      props.put("hibernate.connection.username", postgres.getUsername());
+      props.put("hibernate.connection.password", postgres.getPassword());
+      props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+      props.put("hibernate.hbm2ddl.auto", "create-drop");
+      props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+      JpaUtil.rebuild(props);
+    }
+    seed();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    JpaUtil.close();
+    if (postgres != null) postgres.stop();
+  }
+
+  public static String courseCode(int i) {
+    return String.format("C%04d", i);
+  }
+
+  public static String matricola(int i) {
+    return String.format("S%07d", i);
+  }
+
+  public Long courseId(int i) {
+    return courseIds[i];
+  }
+
+  public Long studentId(int i) {
+    return studentIds[i];
+  }
+
+  public int randomCourse() {
+    return ThreadLocalRandom.current().nextInt(courses);
+  }
+
+  public int randomStudent() {
+    return ThreadLocalRandom.current().nextInt(students);
+  }
+
+  private void seed() {
+    courseIds = UnitOfWork.call(em -> {
+      Long[] ids = new Long[courses];
+      for (int i = 0; i < courses; i++) {
+        Course c = new Course();
+        c.setCode(courseCode(i));
+        c.setTitle("Course " + i);
+        c.setCfu(6);
+        c.setMaxSeats(students + 1_000);   // never full, whatever the benchmark reserves
+        em.persist(c);
+        ids[i] = c.getId();
+      }
+      return ids;
+    });
+
+    studentIds = new Long[students];
+    for (int from = 0; from < students; from += SEED_BATCH) {
+      int to = Math.min(from + SEED_BATCH, students);
+      int first = from;
+      UnitOfWork.run(em -> {
+        for (int i = first; i < to; i++) {
+          Student s = new Student();
+          s.setMatricola(matricola(i));
+          s.setFullName("Student " + i);
+          s.setEmail("student" + i + "@example.com");
+          s.getCourses().add(em.getReference(Course.class, courseIds[i % courses]));
+          if (i % 2 == 0 && courses > 1) {
+            s.getCourses().add(em.getReference(Course.class, courseIds[(i * 7 + 3) % courses]));
+          }
+          em.persist(s);
+          studentIds[i] = s.getId();
+        }
+      });
+    }
+    UnitOfWork.call(SeatCounter::resync);
+  }
+}
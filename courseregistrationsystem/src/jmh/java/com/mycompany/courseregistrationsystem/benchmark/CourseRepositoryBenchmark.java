@@ -0,0 +1,51 @@
+package com.mycompany.courseregistrationsystem.benchmark;
+
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Catalog reads (served from the second-level cache once warm) and course inserts. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CourseRepositoryBenchmark {
+
+  private final CourseRepository courses = new CourseRepository();
+  private final AtomicLong saved = new AtomicLong();
+
+  @Benchmark
+  public List<Course> findAll(BenchmarkDatabase db) {
+    return courses.findAll();
+  }
+
+  @Benchmark
+  public Optional<Course> findByCode(BenchmarkDatabase db) {
+    return courses.findByCode(BenchmarkDatabase.courseCode(db.randomCourse()));
+  }
+
+  @Benchmark
+  public Course save(BenchmarkDatabase db) {
+    Course c = new Course();
+    c.setCode("B" + saved.incrementAndGet());
+    c.setTitle("Benchmark course");
+    c.setCfu(6);
+    c.setMaxSeats(30);
+    return courses.save(c);
+  }
+}
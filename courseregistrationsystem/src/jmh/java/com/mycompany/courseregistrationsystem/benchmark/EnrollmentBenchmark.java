@@ -0,0 +1,83 @@
+package com.mycompany.courseregistrationsystem.benchmark;
+
+import com.mycompany.courseregistrationsystem.controller.CourseController;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.service.DatabaseSeatInventory;
+import com.mycompany.courseregistrationsystem.service.EnrollmentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seat counting: the enrolled-count query behind the course table, and the
+ * seat check every enrollment goes through, taken the way the application
+ * takes it: EnrollmentService moves one student per thread to another
+ * course, releasing the old seat and reserving the new one, so the totals
+ * stay put. The contended variant has eight threads moving their students
+ * between the same two course rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnrollmentBenchmark {
+
+  private final CourseController courses = new CourseController();
+  // One transaction per call, like a write made outside a group-commit batch.
+  private final EnrollmentService enrollment = new EnrollmentService(new DatabaseSeatInventory());
+
+  /** The student a benchmark thread moves around, and the course it is in. */
+  @State(Scope.Thread)
+  public static class Mover {
+    private static final AtomicInteger NEXT = new AtomicInteger();
+
+    int student;
+    int course;
+
+    @Setup(Level.Trial)
+    public void pick(BenchmarkDatabase db) {
+      student = NEXT.getAndIncrement() % db.students;
+      course = student % db.courses;
+    }
+  }
+
+  @Benchmark
+  public int enrolledCount(BenchmarkDatabase db) {
+    return courses.enrolledCount(db.courseId(db.randomCourse()));
+  }
+
+  @Benchmark
+  public Student seatCheck(BenchmarkDatabase db, Mover m) {
+    int next = (m.course + 1 + ThreadLocalRandom.current().nextInt(db.courses - 1)) % db.courses;
+    return moveTo(db, m, next);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Student seatCheck_contended(BenchmarkDatabase db, Mover m) {
+    return moveTo(db, m, m.course == 0 ? 1 : 0);
+  }
+
+  private Student moveTo(BenchmarkDatabase db, Mover m, int course) {
+    int i = m.student;
+    Student s = enrollment.reassign(db.studentId(i), BenchmarkDatabase.matricola(i), "Student " + i,
+        "student" + i + "@example.com", db.courseId(course));
+    m.course = course;
+    return s;
+  }
+}
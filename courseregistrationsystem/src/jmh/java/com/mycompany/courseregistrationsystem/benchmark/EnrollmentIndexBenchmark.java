@@ -0,0 +1,61 @@
+package com.mycompany.courseregistrationsystem.benchmark;
+
+import com.mycompany.courseregistrationsystem.service.EnrollmentIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cohort questions answered from the in-memory enrollment index, loaded once
+ * per trial: the overlap of two courses, "in A and B but not C", and the
+ * students of any of three courses. None of them touches the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnrollmentIndexBenchmark {
+
+  private EnrollmentIndex index;
+
+  @Setup(Level.Trial)
+  public void load(BenchmarkDatabase db) {
+    index = new EnrollmentIndex().load();
+  }
+
+  @TearDown(Level.Trial)
+  public void close() {
+    index.close();
+  }
+
+  @Benchmark
+  public int overlap(BenchmarkDatabase db) {
+    return index.overlap(db.courseId(db.randomCourse()), db.courseId(db.randomCourse()));
+  }
+
+  @Benchmark
+  public int allOfAndNot(BenchmarkDatabase db) {
+    return index.allOf(db.courseId(db.randomCourse()), db.courseId(db.randomCourse()))
+        .andNot(index.course(db.courseId(db.randomCourse())))
+        .size();
+  }
+
+  @Benchmark
+  public int anyOf(BenchmarkDatabase db) {
+    return index.anyOf(db.courseId(db.randomCourse()), db.courseId(db.randomCourse()),
+        db.courseId(db.randomCourse())).size();
+  }
+}
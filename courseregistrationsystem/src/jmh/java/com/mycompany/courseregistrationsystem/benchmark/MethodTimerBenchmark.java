@@ -0,0 +1,66 @@
+package com.mycompany.courseregistrationsystem.benchmark;
+
+import com.mycompany.courseregistrationsystem.metrics.MethodMetrics;
+import com.mycompany.courseregistrationsystem.metrics.MethodTimer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-method instrumentation: the same trivial call bare and
+ * through a MethodTimer, alone and with eight threads recording into one
+ * timer. The difference is what every repository and controller call pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MethodTimerBenchmark {
+
+  private final MethodTimer timer = MethodMetrics.timer(MethodTimerBenchmark.class, "work");
+  private long value = 42;
+
+  @Benchmark
+  public long bare() {
+    return work();
+  }
+
+  @Benchmark
+  public long timed() {
+    return timedWork();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public long timed_contended() {
+    return timedWork();
+  }
+
+  /** The start/stop pattern of the repositories and controllers. */
+  private long timedWork() {
+    long start = timer.start();
+    boolean ok = false;
+    try {
+      long result = work();
+      ok = true;
+      return result;
+    } finally {
+      timer.stop(start, ok);
+    }
+  }
+
+  private long work() {
+    return value * 31 + 7;
+  }
+}
@@ -0,0 +1,62 @@
+package com.mycompany.courseregistrationsystem.benchmark;
+
+import com.mycompany.courseregistrationsystem.model.CourseFillRate;
+import com.mycompany.courseregistrationsystem.model.Distribution;
+import com.mycompany.courseregistrationsystem.model.StudentCreditLoad;
+import com.mycompany.courseregistrationsystem.repository.ReportRepository;
+import com.mycompany.courseregistrationsystem.service.FillRateReport;
+import com.mycompany.courseregistrationsystem.service.ReportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SQL-side reports, each one aggregate statement over the whole
+ * dataset; {@code cachedFillRates} is the same report answered from the
+ * report query cache region.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBenchmark {
+
+  private final ReportService reports = new ReportService(new ReportRepository(false));
+  private final ReportService cached = new ReportService(new ReportRepository(true));
+
+  @Benchmark
+  public FillRateReport fillRates(BenchmarkDatabase db) {
+    return reports.fillRates();
+  }
+
+  @Benchmark
+  public List<CourseFillRate> overCapacity(BenchmarkDatabase db) {
+    return reports.overCapacity();
+  }
+
+  @Benchmark
+  public List<StudentCreditLoad> creditLoads(BenchmarkDatabase db) {
+    return reports.creditLoads();
+  }
+
+  @Benchmark
+  public Distribution creditLoadDistribution(BenchmarkDatabase db) {
+    return reports.creditLoadDistribution(6);
+  }
+
+  @Benchmark
+  public FillRateReport cachedFillRates(BenchmarkDatabase db) {
+    return cached.fillRates();
+  }
+}
@@ -0,0 +1,48 @@
+package com.mycompany.courseregistrationsystem.benchmark;
+
+import com.mycompany.courseregistrationsystem.controller.StudentController;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The student table load and the update behind the Update button. The
+ * update keeps each student in the course they are already in, so the
+ * dataset does not drift between iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentBenchmark {
+
+  private final StudentRepository students = new StudentRepository();
+  private final StudentController controller = new StudentController();
+
+  @Benchmark
+  public List<Student> findAllWithCourses(BenchmarkDatabase db) {
+    return students.findAllWithCourses();
+  }
+
+  @Benchmark
+  public Student updateStudent(BenchmarkDatabase db) {
+    int i = db.randomStudent();
+    return controller.updateStudent(db.studentId(i), BenchmarkDatabase.matricola(i),
+        "Student " + i + (ThreadLocalRandom.current().nextBoolean() ? "" : " Jr."),
+        "student" + i + "@example.com", db.courseId(i % db.courses));
+  }
+}
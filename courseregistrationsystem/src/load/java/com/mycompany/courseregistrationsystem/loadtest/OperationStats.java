@@ -0,0 +1,79 @@
+package com.mycompany.courseregistrationsystem.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcomes and latencies of one controller operation during a rush.
+ * Thread-safe; every call's latency is kept, which is fine for the few
+ * thousand calls of a run and gives exact percentiles.
+ */
+final class OperationStats {
+
+  private final String name;
+  private long[] latencies = new long[1024];
+  private int calls;
+  private int ok;
+  private int full;
+  private int failed;
+  private int deadlocked;
+
+  OperationStats(String name) {
+    this.name = name;
+  }
+
+  synchronized void ok(long nanos) {
+    record(nanos);
+    ok++;
+  }
+
+  /** Rejected by the capacity check: the expected answer once a course fills up. */
+  synchronized void full(long nanos) {
+    record(nanos);
+    full++;
+  }
+
+  /** Any other exception: a bug or an overloaded system. */
+  synchronized void failed(long nanos) {
+    record(nanos);
+    failed++;
+  }
+
+  /** A failure the database reported as a deadlock, even after UnitOfWork's retries. */
+  synchronized void deadlocked(long nanos) {
+    failed(nanos);
+    deadlocked++;
+  }
+
+  synchronized int getCalls() { return calls; }
+  synchronized int getOk() { return ok; }
+  synchronized int getFull() { return full; }
+  synchronized int getFailed() { return failed; }
+  synchronized int getDeadlocked() { return deadlocked; }
+
+  synchronized double failureRate() {
+    return calls == 0 ? 0d : (double) failed / calls;
+  }
+
+  /** @return the latency at quantile {@code q} (0..1) in milliseconds */
+  synchronized double percentileMillis(double q) {
+    if (calls == 0) return 0d;
+    long[] sorted = Arrays.copyOf(latencies, calls);
+    Arrays.sort(sorted);
+    int i = (int) Math.ceil(q * calls) - 1;
+    return sorted[Math.max(0, Math.min(calls - 1, i))] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  private void record(long nanos) {
+    if (calls == latencies.length) latencies = Arrays.copyOf(latencies, calls * 2);
+    latencies[calls++] = nanos;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%-14s calls=%d ok=%d full=%d failed=%d (%.2f%%) deadlocked=%d "
+        + "p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+        name, calls, ok, full, failed, failureRate() * 100, deadlocked,
+        percentileMillis(0.50), percentileMillis(0.90), percentileMillis(0.99), percentileMillis(1.0));
+  }
+}
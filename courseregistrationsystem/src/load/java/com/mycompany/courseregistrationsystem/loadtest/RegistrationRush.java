@@ -0,0 +1,264 @@
+package com.mycompany.courseregistrationsystem.loadtest;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.controller.StudentController;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+import com.mycompany.courseregistrationsystem.service.CourseFullException;
+import com.mycompany.courseregistrationsystem.service.DatasetGenerator;
+import com.mycompany.courseregistrationsystem.service.SeatInventories;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Headless registration-rush load generator: the moment registration opens,
+ * N virtual students hit the enrollment path at once.
+ * <p>
+ * The catalog is seeded with DatasetGenerator; the rush then targets the
+ * {@code targets} courses with the most free seats. Each virtual student is
+ * a thread that waits for the start signal, thinks, and registers with
+ * {@code StudentController.addStudent} in its first choice. A full course
+ * sends it, after another think, to its next choice; after {@code choices}
+ * refusals it registers without a course. A share of the enrolled students
+ * then change their mind and move to another target with
+ * {@code updateStudent}. Think times are exponential around
+ * {@code thinkMillis}.
+ * <p>
+ * Afterwards the enrollments table is checked against capacity. The run
+ * fails (exit status 1) if any course is overbooked, if a seat counter does
+ * not match its enrollments, if any call failed with a deadlock, or if more
+ * than {@code maxFailureRate} of the calls failed with anything but a full
+ * course.
+ * <p>
+ * Run with {@code mvn -Pload-test verify}; settings are the {@code crs.load.*}
+ * system properties below (the profile maps {@code -Dload.students=...} and
+ * friends onto them). {@code -Dcrs.inventory=memory} rushes the in-memory
+ * seat inventory instead of the database counter.
+ */
+public final class RegistrationRush {
+
+  public static final String DB_PROPERTY = "crs.load.db";
+  public static final String STUDENTS_PROPERTY = "crs.load.students";
+  public static final String COURSES_PROPERTY = "crs.load.courses";
+  public static final String TARGETS_PROPERTY = "crs.load.targets";
+  public static final String CHOICES_PROPERTY = "crs.load.choices";
+  public static final String THINK_PROPERTY = "crs.load.thinkMillis";
+  public static final String SWITCH_PROPERTY = "crs.load.switchRate";
+  public static final String SEED_PROPERTY = "crs.load.seed";
+  public static final String MAX_FAILURE_PROPERTY = "crs.load.maxFailureRate";
+
+  public static final int DEFAULT_STUDENTS = 1000;
+  public static final int DEFAULT_COURSES = 50;
+  public static final int DEFAULT_TARGETS = 5;
+  public static final int DEFAULT_CHOICES = 3;
+  public static final long DEFAULT_THINK_MILLIS = 50;
+  public static final double DEFAULT_SWITCH_RATE = 0.2;
+  public static final double DEFAULT_MAX_FAILURE_RATE = 0.01;
+
+  /** Students already registered before the rush, and their enrollments, per catalog course. */
+  private static final int BACKGROUND_STUDENTS_PER_COURSE = 40;
+  private static final int BACKGROUND_ENROLLMENTS_PER_STUDENT = 2;
+
+  private final int students;
+  private final int courses;
+  private final int targets;
+  private final int choices;
+  private final long thinkMillis;
+  private final double switchRate;
+  private final long seed;
+
+  private final StudentController controller = new StudentController();
+  private final OperationStats add = new OperationStats("addStudent");
+  private final OperationStats update = new OperationStats("updateStudent");
+  private final AtomicInteger unplaced = new AtomicInteger();
+
+  RegistrationRush(int students, int courses, int targets, int choices, long thinkMillis,
+                   double switchRate, long seed) {
+    if (students <= 0 || courses <= 0)
+      throw new IllegalArgumentException("Student and course counts must be positive.");
+    if (targets <= 0 || targets > courses)
+      throw new IllegalArgumentException("Targets must be between 1 and the number of courses.");
+    if (choices <= 0 || thinkMillis < 0 || switchRate < 0 || switchRate > 1)
+      throw new IllegalArgumentException("Invalid choices, think time or switch rate.");
+    this.students = students;
+    this.courses = courses;
+    this.targets = targets;
+    this.choices = Math.min(choices, targets);
+    this.thinkMillis = thinkMillis;
+    this.switchRate = switchRate;
+    this.seed = seed;
+  }
+
+  /** @return true if the run passed its checks */
+  boolean run(double maxFailureRate) throws InterruptedException {
+    int background = courses * BACKGROUND_STUDENTS_PER_COURSE;
+    System.out.println("Seeding: " + new DatasetGenerator(seed, background, courses,
+        (long) background * BACKGROUND_ENROLLMENTS_PER_STUDENT, DatasetGenerator.DEFAULT_SKEW).load());
+
+    List<Object[]> open = UnitOfWork.read(em -> em.createQuery(
+        "select c.id, c.maxSeats - c.enrolled from Course c order by c.maxSeats - c.enrolled desc, c.id",
+        Object[].class).setMaxResults(targets).getResultList());
+    Long[] targetIds = new Long[open.size()];
+    int freeSeats = 0;
+    for (int i = 0; i < targetIds.length; i++) {
+      targetIds[i] = (Long) open.get(i)[0];
+      freeSeats += ((Number) open.get(i)[1]).intValue();
+    }
+    System.out.printf("Rush: %d students on %d courses with %d free seats, %d choices each, "
+        + "think %dms, switch rate %.2f, inventory=%s%n", students, targets, freeSeats, choices,
+        thinkMillis, switchRate, System.getProperty(SeatInventories.MODE_PROPERTY, "database"));
+
+    CountDownLatch opening = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>(students);
+    for (int i = 0; i < students; i++) {
+      final int n = i;
+      Thread t = new Thread(() -> {
+        try {
+          opening.await();
+          session(n, targetIds, new Random(seed * 31 + n));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }, "student-" + i);
+      t.setDaemon(true);
+      threads.add(t);
+      t.start();
+    }
+    long start = System.nanoTime();
+    opening.countDown();
+    for (Thread t : threads) t.join();
+    long elapsed = System.nanoTime() - start;
+
+    if (!SeatInventories.shared().sync(30, TimeUnit.SECONDS))
+      System.err.println("Seat counter writes still pending; expect counter mismatches.");
+    long[] check = capacityCheck();
+    int calls = add.getCalls() + update.getCalls();
+    int failed = add.getFailed() + update.getFailed();
+    int deadlocked = add.getDeadlocked() + update.getDeadlocked();
+    double failureRate = calls == 0 ? 0d : (double) failed / calls;
+
+    System.out.println(add);
+    System.out.println(update);
+    System.out.printf("throughput=%.0f calls/s over %dms, registered without a course=%d%n",
+        calls * 1e9 / elapsed, TimeUnit.NANOSECONDS.toMillis(elapsed), unplaced.get());
+    System.out.println("group commit: " + SeatInventories.sharedWriter().stats());
+    System.out.printf("overbooked courses=%d (%d seats), counter mismatches=%d, deadlocks=%d, "
+        + "failure rate=%.2f%%%n", check[0], check[1], check[2], deadlocked, failureRate * 100);
+    return check[0] == 0 && check[2] == 0 && deadlocked == 0 && failureRate <= maxFailureRate;
+  }
+
+  private void session(int n, Long[] targetIds, Random rnd) throws InterruptedException {
+    String matricola = String.format("R%07d", n);
+    String name = "Rush Student " + n;
+    String email = "rush" + n + "@example.com";
+    int first = rnd.nextInt(targetIds.length);
+
+    Student s = null;
+    for (int c = 0; c < choices && s == null; c++) {
+      think(rnd);
+      Long course = targetIds[(first + c) % targetIds.length];
+      s = timed(add, () -> controller.addStudent(matricola, name, email, course));
+    }
+    if (s == null) {
+      think(rnd);
+      if (timed(add, () -> controller.addStudent(matricola, name, email, null)) != null) unplaced.incrementAndGet();
+      return;
+    }
+    if (targetIds.length > 1 && rnd.nextDouble() < switchRate) {
+      think(rnd);
+      Long other = targetIds[(first + 1 + rnd.nextInt(targetIds.length - 1)) % targetIds.length];
+      Long id = s.getId();
+      timed(update, () -> controller.updateStudent(id, matricola, name, email, other));
+    }
+  }
+
+  /** @return the result, or null if the call was refused or failed (the outcome is recorded) */
+  private static <T> T timed(OperationStats stats, Supplier<T> call) {
+    long t0 = System.nanoTime();
+    try {
+      T result = call.get();
+      stats.ok(System.nanoTime() - t0);
+      return result;
+    } catch (CourseFullException e) {
+      stats.full(System.nanoTime() - t0);
+    } catch (RuntimeException e) {
+      if (UnitOfWork.isDeadlock(e)) stats.deadlocked(System.nanoTime() - t0);
+      else stats.failed(System.nanoTime() - t0);
+      System.err.println(Thread.currentThread().getName() + ": " + e);
+    }
+    return null;
+  }
+
+  private void think(Random rnd) throws InterruptedException {
+    if (thinkMillis == 0) return;
+    Thread.sleep((long) (-thinkMillis * Math.log(1 - rnd.nextDouble())));
+  }
+
+  /** @return overbooked courses, seats taken beyond capacity, counters that disagree with the rows */
+  private static long[] capacityCheck() {
+    List<Object[]> rows = UnitOfWork.read(em -> em.createQuery(
+        "select c.maxSeats, c.enrolled, (select count(s) from Student s join s.courses sc where sc.id = c.id) "
+            + "from Course c", Object[].class).getResultList());
+    long[] check = new long[3];
+    for (Object[] r : rows) {
+      int max = ((Number) r[0]).intValue();
+      int counter = ((Number) r[1]).intValue();
+      long actual = ((Number) r[2]).longValue();
+      if (actual > max) {
+        check[0]++;
+        check[1] += actual - max;
+      }
+      if (counter != actual) check[2]++;
+    }
+    return check;
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    PostgreSQLContainer<?> postgres = null;
+    if ("postgres".equalsIgnoreCase(System.getProperty(DB_PROPERTY, "h2"))) {
+      postgres = new PostgreSQLContainer<>("postgres:15")
+          .withDatabaseName("crs_load")
+          .withUsername("load")
+          .withPassword("load");
+      postgres.start();
+      Map<String, String> props = new HashMap<>();
+      props.put("hibernate.connection.url", postgres.getJdbcUrl());
+      props.put("hibernate.connection.username", postgres.getUsername());
+      props.put("hibernate.connection.password", postgres.getPassword());
+      props.put("hibernate.connection.driver_class", "org.postgresql.Driver");
+      props.put("hibernate.hbm2ddl.auto", "create-drop");
+      props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
+      JpaUtil.rebuild(props);
+    }
+    boolean passed;
+    try {
+      passed = new RegistrationRush(
+          Integer.getInteger(STUDENTS_PROPERTY, DEFAULT_STUDENTS),
+          Integer.getInteger(COURSES_PROPERTY, DEFAULT_COURSES),
+          Integer.getInteger(TARGETS_PROPERTY, DEFAULT_TARGETS),
+          Integer.getInteger(CHOICES_PROPERTY, DEFAULT_CHOICES),
+          Long.getLong(THINK_PROPERTY, DEFAULT_THINK_MILLIS),
+          doubleProperty(SWITCH_PROPERTY, DEFAULT_SWITCH_RATE),
+          Long.getLong(SEED_PROPERTY, 42L))
+          .run(doubleProperty(MAX_FAILURE_PROPERTY, DEFAULT_MAX_FAILURE_RATE));
+    } finally {
+      JpaUtil.close();
+      if (postgres != null) postgres.stop();
+    }
+    System.exit(passed ? 0 : 1);
+  }
+
+  private static double doubleProperty(String name, double def) {
+    String v = System.getProperty(name);
+    return v == null || v.trim().isEmpty() ? def : Double.parseDouble(v.trim());
+  }
+}
@@ -15,7 +15,10 @@ import javax.swing.JPanel;
 import javax.swing.LayoutStyle.ComponentPlacement;
 import javax.swing.border.EmptyBorder;
 
+import com.mycompany.courseregistrationsystem.controller.ControllerExecutor;
 import com.mycompany.courseregistrationsystem.controller.CourseController;
+import com.mycompany.courseregistrationsystem.service.RosterSnapshotStore;
+import com.mycompany.courseregistrationsystem.service.SeatInventories;
 import com.mycompany.courseregistrationsystem.view.swing.StudentSwingView;
 import com.mycompany.courseregistrationsystem.view.swing.CourseSwingView;
 
@@ -28,6 +31,16 @@ public class CourseRegistrationApp extends JFrame {
     private CourseController injectedCourseController;
 
     public static void main(String[] args) {
+        // Seat counters may predate this schema or be off after manual edits.
+        // Resynced in the background: the portals start from the roster
+        // snapshot meanwhile instead of waiting for the database. Writes
+        // that come first wait on the course rows the resync locks, and the
+        // in-memory inventory is only loaded once it is done.
+        SeatInventories.resyncAtStartup(ControllerExecutor.shared())
+            .exceptionally(e -> {
+                e.printStackTrace();
+                return null;
+            });
         EventQueue.invokeLater(() -> {
             try {
                 CourseRegistrationApp frame = new CourseRegistrationApp();
@@ -95,6 +108,7 @@ public class CourseRegistrationApp extends JFrame {
 
         StudentSwingView studentView = new StudentSwingView();
         studentView.setTitle("Student's Portal");
+        studentView.setSnapshotStore(RosterSnapshotStore.shared());
 
         studentView.addWindowListener(new WindowAdapter() {
             @Override public void windowClosed(WindowEvent we)  { reenableMain(); }
@@ -112,6 +126,8 @@ public class CourseRegistrationApp extends JFrame {
 
         if (injectedCourseController != null) {
             courseView.setController(injectedCourseController);
+        } else {
+            courseView.setSnapshotStore(RosterSnapshotStore.shared());
         }
 
         courseView.addWindowListener(new WindowAdapter() {
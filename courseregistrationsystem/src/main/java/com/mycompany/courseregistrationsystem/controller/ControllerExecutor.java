@@ -0,0 +1,246 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor behind the controllers' async methods.
+ * <p>
+ * At most {@code threads} operations run at once and at most
+ * {@code queueCapacity} more wait; past that a submission is rejected
+ * (the returned future fails with RejectedExecutionException) instead of
+ * piling up. Each operation runs on the worker thread in its own
+ * UnitOfWork, as a blocking call would on the caller's thread.
+ * <p>
+ * With {@code -Dcrs.async.virtualThreads=true} on Java 21+ every operation
+ * gets a virtual thread; the same limits apply, with waiting operations
+ * parked on a semaphore. On older JDKs the flag falls back to a platform
+ * thread pool.
+ */
+public final class ControllerExecutor implements Executor, AutoCloseable {
+
+  public static final String THREADS_PROPERTY = "crs.async.threads";
+  public static final String QUEUE_PROPERTY = "crs.async.queueCapacity";
+  public static final String VIRTUAL_PROPERTY = "crs.async.virtualThreads";
+
+  /** Matches the default connection pool size; more would only queue on the pool. */
+  public static final int DEFAULT_THREADS = 20;
+  public static final int DEFAULT_QUEUE_CAPACITY = 1_000;
+
+  private static final Logger log = LoggerFactory.getLogger(ControllerExecutor.class);
+
+  private static ControllerExecutor shared;   // guarded by ControllerExecutor.class
+
+  private final ExecutorService workers;
+  private final Semaphore running;   // virtual threads only; a platform pool is bounded by its size
+  private final boolean virtual;
+  private final int threads;
+  private final int queueCapacity;
+  private volatile boolean closed;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger largestQueued = new AtomicInteger();
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  /** Sizes from {@value #THREADS_PROPERTY} / {@value #QUEUE_PROPERTY} / {@value #VIRTUAL_PROPERTY}, or the defaults. */
+  public ControllerExecutor() {
+    this(Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS),
+        Integer.getInteger(QUEUE_PROPERTY, DEFAULT_QUEUE_CAPACITY),
+        Boolean.getBoolean(VIRTUAL_PROPERTY));
+  }
+
+  public ControllerExecutor(int threads, int queueCapacity, boolean virtualThreads) {
+    if (threads <= 0) throw new IllegalArgumentException("Thread count must be positive.");
+    if (queueCapacity < 0) throw new IllegalArgumentException("Queue capacity must not be negative.");
+    this.threads = threads;
+    this.queueCapacity = queueCapacity;
+    ExecutorService perTask = virtualThreads ? virtualThreadPerTask() : null;
+    this.virtual = perTask != null;
+    if (virtual) {
+      this.workers = perTask;
+      this.running = new Semaphore(threads, true);
+    } else {
+      // Admission is counted in execute(), so the pool's own queue never rejects.
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), daemonThreads());
+      pool.allowCoreThreadTimeOut(true);
+      this.workers = pool;
+      this.running = null;
+    }
+  }
+
+  /** The process-wide executor the controllers use unless given their own. */
+  public static synchronized ControllerExecutor shared() {
+    if (shared == null || shared.closed) shared = new ControllerExecutor();
+    return shared;
+  }
+
+  /**
+   * Runs {@code work} on a worker. The future fails with
+   * RejectedExecutionException when the executor is saturated or closed;
+   * work whose future was cancelled before it started is skipped.
+   */
+  public <T> CompletableFuture<T> submit(Supplier<T> work) {
+    Task<T> task = new Task<>(work);
+    try {
+      admit(task, task::complete);
+    } catch (RejectedExecutionException e) {
+      task.result.completeExceptionally(e);
+    }
+    return task.result;
+  }
+
+  public CompletableFuture<Void> run(Runnable work) {
+    return submit(() -> {
+      work.run();
+      return null;
+    });
+  }
+
+  /** @throws RejectedExecutionException if the executor is saturated or closed */
+  @Override
+  public void execute(Runnable task) {
+    admit(task, null);
+  }
+
+  /** Runs {@code task}, then {@code then} once the task's slot is free again. */
+  private void admit(Runnable task, Runnable then) {
+    if (closed) {
+      rejected.increment();
+      throw new RejectedExecutionException("Controller executor is closed.");
+    }
+    int n;
+    do {
+      n = inFlight.get();
+      if (n >= threads + queueCapacity) {
+        rejected.increment();
+        throw new RejectedExecutionException("Controller executor is saturated (" + n + " operations in flight).");
+      }
+    } while (!inFlight.compareAndSet(n, n + 1));
+    submitted.increment();
+    // Workers that are just starting still count as queued here, hence the cap.
+    int queued = Math.min(n + 1 - active.get(), queueCapacity);
+    int largest;
+    while (queued > (largest = largestQueued.get())) {
+      if (largestQueued.compareAndSet(largest, queued)) break;
+    }
+    try {
+      workers.execute(() -> runTask(task, then));
+    } catch (RejectedExecutionException e) {   // shut down concurrently
+      inFlight.decrementAndGet();
+      rejected.increment();
+      throw e;
+    }
+  }
+
+  private void runTask(Runnable task, Runnable then) {
+    boolean acquired = false;
+    try {
+      if (running != null) {
+        running.acquireUninterruptibly();
+        acquired = true;
+      }
+      active.incrementAndGet();
+      try {
+        task.run();
+      } finally {
+        active.decrementAndGet();
+      }
+    } finally {
+      if (acquired) running.release();
+      inFlight.decrementAndGet();
+      completed.increment();
+    }
+    // Completing a future runs its callers' callbacks; by now they can submit again.
+    if (then != null) then.run();
+  }
+
+  public ControllerExecutorStats stats() {
+    int a = active.get();
+    return new ControllerExecutorStats(virtual, threads, queueCapacity, a,
+        Math.max(0, Math.min(inFlight.get() - a, queueCapacity)), largestQueued.get(),
+        submitted.sum(), completed.sum(), rejected.sum());
+  }
+
+  /** Stops accepting operations and waits for the accepted ones to finish. */
+  @Override
+  public void close() {
+    closed = true;
+    workers.shutdown();
+    boolean interrupted = false;
+    while (!workers.isTerminated()) {
+      try {
+        workers.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  /** Runs the work, keeping the outcome until the slot is released. */
+  private static final class Task<T> implements Runnable {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    private final Supplier<T> work;
+    private boolean ran;
+    private T value;
+    private Throwable failure;
+
+    Task(Supplier<T> work) {
+      this.work = work;
+    }
+
+    @Override
+    public void run() {
+      if (result.isDone()) return;   // cancelled before it started
+      ran = true;
+      try {
+        value = work.get();
+      } catch (Throwable t) {
+        failure = t;
+      }
+    }
+
+    void complete() {
+      if (!ran) return;
+      if (failure != null) result.completeExceptionally(failure);
+      else result.complete(value);
+    }
+  }
+
+  private static ExecutorService virtualThreadPerTask() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.warn("Virtual threads are not available on Java {}; using a platform thread pool",
+          System.getProperty("java.version"));
+      return null;
+    }
+  }
+
+  private static ThreadFactory daemonThreads() {
+    AtomicInteger seq = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, "controller-async-" + seq.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+}
@@ -0,0 +1,50 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+/** Point-in-time counters of a ControllerExecutor. */
+public final class ControllerExecutorStats {
+
+  private final boolean virtualThreads;
+  private final int threads;
+  private final int queueCapacity;
+  private final int active;
+  private final int queued;
+  private final int largestQueued;
+  private final long submitted;
+  private final long completed;
+  private final long rejected;
+
+  ControllerExecutorStats(boolean virtualThreads, int threads, int queueCapacity, int active,
+                          int queued, int largestQueued, long submitted, long completed,
+                          long rejected) {
+    this.virtualThreads = virtualThreads;
+    this.threads = threads;
+    this.queueCapacity = queueCapacity;
+    this.active = active;
+    this.queued = queued;
+    this.largestQueued = largestQueued;
+    this.submitted = submitted;
+    this.completed = completed;
+    this.rejected = rejected;
+  }
+
+  public boolean isVirtualThreads() { return virtualThreads; }
+  /** Operations allowed to run at once. */
+  public int getThreads() { return threads; }
+  public int getQueueCapacity() { return queueCapacity; }
+  /** Operations running right now. */
+  public int getActive() { return active; }
+  /** Operations accepted but not started yet (the queue depth). */
+  public int getQueued() { return queued; }
+  public int getLargestQueued() { return largestQueued; }
+  public long getSubmitted() { return submitted; }
+  public long getCompleted() { return completed; }
+  /** Submissions turned away because the queue was full or the executor closed. */
+  public long getRejected() { return rejected; }
+
+  @Override
+  public String toString() {
+    return String.format("%s threads=%d active=%d queued=%d/%d largestQueued=%d submitted=%d "
+        + "completed=%d rejected=%d", virtualThreads ? "virtual" : "platform", threads, active,
+        queued, queueCapacity, largestQueued, submitted, completed, rejected);
+  }
+}
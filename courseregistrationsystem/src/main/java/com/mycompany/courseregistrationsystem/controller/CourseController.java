@@ -1,13 +1,19 @@
 package com.mycompany.courseregistrationsystem.controller;
 
+import com.mycompany.courseregistrationsystem.metrics.MethodMetrics;
+import com.mycompany.courseregistrationsystem.metrics.MethodTimer;
 import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import com.mycompany.courseregistrationsystem.repository.CatalogCacheStats;
 import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.KeysetPage;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+import com.mycompany.courseregistrationsystem.service.SeatInventories;
 
-import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.EntityTransaction;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * CourseController wired to a shared EntityManagerFactory.
@@ -17,11 +23,33 @@ import java.util.Optional;
  *   so tests that preload data (via the same EMF) will see it after Refresh.
  * - Still supports your existing code: you can construct it with no args,
  *   a repo only, an EMF only, or both.
+ * - Each command is one UnitOfWork on that EMF: the repository calls inside
+ *   it share one EntityManager, connection and transaction.
  */
 public class CourseController {
 
+  // Latency of each public method, published over JMX (see MethodMetrics).
+  private static final MethodTimer LOAD_ALL = MethodMetrics.timer(CourseController.class, "loadAll");
+  private static final MethodTimer LOAD_PAGE = MethodMetrics.timer(CourseController.class, "loadPage");
+  private static final MethodTimer LOAD_SUMMARIES = MethodMetrics.timer(CourseController.class, "loadSummaries");
+  private static final MethodTimer LOAD_SUMMARY_SLICE = MethodMetrics.timer(CourseController.class, "loadSummarySlice");
+  private static final MethodTimer COUNT_COURSES = MethodMetrics.timer(CourseController.class, "countCourses");
+  private static final MethodTimer LOAD_SUMMARY = MethodMetrics.timer(CourseController.class, "loadSummary");
+  private static final MethodTimer ENROLLED_COUNT = MethodMetrics.timer(CourseController.class, "enrolledCount");
+  private static final MethodTimer ADD = MethodMetrics.timer(CourseController.class, "add");
+  private static final MethodTimer UPDATE = MethodMetrics.timer(CourseController.class, "update");
+  private static final MethodTimer DELETE = MethodMetrics.timer(CourseController.class, "delete");
+  private static final MethodTimer LOAD_ALL_ASYNC = MethodMetrics.timer(CourseController.class, "loadAllAsync");
+  private static final MethodTimer LOAD_PAGE_ASYNC = MethodMetrics.timer(CourseController.class, "loadPageAsync");
+  private static final MethodTimer LOAD_SUMMARIES_ASYNC = MethodMetrics.timer(CourseController.class, "loadSummariesAsync");
+  private static final MethodTimer ADD_ASYNC = MethodMetrics.timer(CourseController.class, "addAsync");
+  private static final MethodTimer UPDATE_ASYNC = MethodMetrics.timer(CourseController.class, "updateAsync");
+  private static final MethodTimer DELETE_ASYNC = MethodMetrics.timer(CourseController.class, "deleteAsync");
+  private static final MethodTimer ENROLLED_COUNT_ASYNC = MethodMetrics.timer(CourseController.class, "enrolledCountAsync");
+
   private final CourseRepository repo;
   private final EntityManagerFactory emf;
+  private final ControllerExecutor async;
 
   /** Default app run — uses global EMF and a default repository. */
   public CourseController() {
@@ -40,90 +68,234 @@ public class CourseController {
 
   /** Fully injectable: share the exact EMF and repository the caller wants. */
   public CourseController(EntityManagerFactory emf, CourseRepository repo) {
+    this(emf, repo, ControllerExecutor.shared());
+  }
+
+  /** As above, with the executor that runs the *Async variants. */
+  public CourseController(EntityManagerFactory emf, CourseRepository repo, ControllerExecutor async) {
     this.emf = emf;
     this.repo = repo;
+    this.async = async;
   }
 
   // ------------------- Queries -------------------
 
   public List<Course> loadAll() {
-    return repo.findAll();
+    long start = LOAD_ALL.start();
+    boolean ok = false;
+    try {
+      List<Course> all = repo.findAll();
+      ok = true;
+      return all;
+    } finally {
+      LOAD_ALL.stop(start, ok);
+    }
+  }
+
+  /** Keyset page of courses after {@code afterId}; pass the page's token back for the next one. */
+  public KeysetPage<Course> loadPage(Long afterId, int pageSize) {
+    long start = LOAD_PAGE.start();
+    boolean ok = false;
+    try {
+      KeysetPage<Course> page = repo.findPage(afterId, pageSize);
+      ok = true;
+      return page;
+    } finally {
+      LOAD_PAGE.stop(start, ok);
+    }
+  }
+
+  /** Rows for the course table, enrolled counts included, in one query. */
+  public List<CourseSummary> loadSummaries() {
+    long start = LOAD_SUMMARIES.start();
+    boolean ok = false;
+    try {
+      List<CourseSummary> summaries = repo.findAllSummaries();
+      ok = true;
+      return summaries;
+    } finally {
+      LOAD_SUMMARIES.stop(start, ok);
+    }
+  }
+
+  /**
+   * A slice of {@link #loadSummaries()} for a paged table: after {@code afterId}
+   * if known (a cheap seek), otherwise from row {@code offset}.
+   */
+  public List<CourseSummary> loadSummarySlice(Long afterId, int offset, int limit) {
+    long start = LOAD_SUMMARY_SLICE.start();
+    boolean ok = false;
+    try {
+      List<CourseSummary> slice = repo.findSummarySlice(afterId, offset, limit);
+      ok = true;
+      return slice;
+    } finally {
+      LOAD_SUMMARY_SLICE.stop(start, ok);
+    }
+  }
+
+  public int countCourses() {
+    long start = COUNT_COURSES.start();
+    boolean ok = false;
+    try {
+      int count = repo.count();
+      ok = true;
+      return count;
+    } finally {
+      COUNT_COURSES.stop(start, ok);
+    }
+  }
+
+  /** The course table row of one course, e.g. after it changed; empty if it was deleted. */
+  public Optional<CourseSummary> loadSummary(Long id) {
+    long start = LOAD_SUMMARY.start();
+    boolean ok = false;
+    try {
+      Optional<CourseSummary> summary = repo.findSummary(id);
+      ok = true;
+      return summary;
+    } finally {
+      LOAD_SUMMARY.stop(start, ok);
+    }
+  }
+
+  /** Second-level / query cache hit and miss counters for the course catalog. */
+  public CatalogCacheStats cacheStats() {
+    return CatalogCacheStats.of(emf);
   }
 
   public int enrolledCount(Long courseId) {
-    if (courseId == null) return 0;
-    EntityManager em = emf.createEntityManager();
+    long start = ENROLLED_COUNT.start();
+    boolean ok = false;
     try {
-      Integer count = em.createQuery(
+      Integer count = courseId == null ? null : UnitOfWork.read(emf, em -> em.createQuery(
           "select size(c.students) from Course c where c.id = :id", Integer.class)
           .setParameter("id", courseId)
-          .getSingleResult();
-      return count == null ? 0 : count;
+          .getSingleResult());
+      int enrolled = count == null ? 0 : count;
+      ok = true;
+      return enrolled;
     } finally {
-      em.close();
+      ENROLLED_COUNT.stop(start, ok);
     }
   }
 
   // ------------------- Commands -------------------
 
   public Course add(String code, String title, int cfu, int maxSeats) {
-    if (isBlank(code) || isBlank(title))
-      throw new IllegalArgumentException("Code and Title are required.");
-    if (cfu <= 0 || maxSeats <= 0)
-      throw new IllegalArgumentException("CFU and Max Seats must be positive.");
+    long start = ADD.start();
+    boolean ok = false;
+    try {
+      if (isBlank(code) || isBlank(title))
+        throw new IllegalArgumentException("Code and Title are required.");
+      if (cfu <= 0 || maxSeats <= 0)
+        throw new IllegalArgumentException("CFU and Max Seats must be positive.");
 
-    Optional<Course> existing = repo.findByCode(code.trim());
-    if (existing.isPresent())
-      throw new IllegalArgumentException("Course code already exists: " + code);
+      Course added = UnitOfWork.call(emf, em -> {
+        Optional<Course> existing = repo.findByCode(code.trim());
+        if (existing.isPresent())
+          throw new IllegalArgumentException("Course code already exists: " + code);
 
-    Course c = new Course();
-    c.setCode(code.trim());
-    c.setTitle(title.trim());
-    c.setCfu(cfu);
-    c.setMaxSeats(maxSeats);
-    return repo.save(c);
+        Course c = new Course();
+        c.setCode(code.trim());
+        c.setTitle(title.trim());
+        c.setCfu(cfu);
+        c.setMaxSeats(maxSeats);
+        return repo.save(c);
+      });
+      ok = true;
+      return added;
+    } finally {
+      ADD.stop(start, ok);
+    }
   }
 
   public Course update(Long id, String code, String title, int cfu, int maxSeats) {
-    if (id == null) throw new IllegalArgumentException("Course id is required.");
-    if (isBlank(code) || isBlank(title))
-      throw new IllegalArgumentException("Code and Title are required.");
-    if (cfu <= 0 || maxSeats <= 0)
-      throw new IllegalArgumentException("CFU and Max Seats must be positive.");
-
-    EntityManager em = emf.createEntityManager();
-    EntityTransaction tx = em.getTransaction();
+    long start = UPDATE.start();
+    boolean ok = false;
     try {
-      tx.begin();
+      if (id == null) throw new IllegalArgumentException("Course id is required.");
+      if (isBlank(code) || isBlank(title))
+        throw new IllegalArgumentException("Code and Title are required.");
+      if (cfu <= 0 || maxSeats <= 0)
+        throw new IllegalArgumentException("CFU and Max Seats must be positive.");
 
-      Course entity = em.find(Course.class, id);
-      if (entity == null)
-        throw new IllegalArgumentException("Course not found with id: " + id);
+      Course updated = UnitOfWork.call(emf, em -> {
+        Course entity = em.find(Course.class, id);
+        if (entity == null)
+          throw new IllegalArgumentException("Course not found with id: " + id);
 
-      String newCode = code.trim();
-      if (!entity.getCode().equals(newCode)) {
-        Optional<Course> dup = repo.findByCode(newCode);
-        if (dup.isPresent() && !dup.get().getId().equals(id))
-          throw new IllegalArgumentException("Course code already exists: " + code);
-      }
+        String newCode = code.trim();
+        if (!entity.getCode().equals(newCode)) {
+          Optional<Course> dup = repo.findByCode(newCode);
+          if (dup.isPresent() && !dup.get().getId().equals(id))
+            throw new IllegalArgumentException("Course code already exists: " + code);
+        }
 
-      entity.setCode(newCode);
-      entity.setTitle(title.trim());
-      entity.setCfu(cfu);
-      entity.setMaxSeats(maxSeats);
+        entity.setCode(newCode);
+        entity.setTitle(title.trim());
+        entity.setCfu(cfu);
+        entity.setMaxSeats(maxSeats);
 
-      Course merged = em.merge(entity);
-      tx.commit();
-      return merged;
+        return em.merge(entity);
+      });
+      SeatInventories.courseChanged(id);
+      ok = true;
+      return updated;
     } finally {
-      if (tx.isActive()) tx.rollback();
-      em.close();
+      UPDATE.stop(start, ok);
     }
   }
 
   public void delete(Long id) {
-    if (id == null) throw new IllegalArgumentException("Course id is required.");
-    repo.deleteById(id);
+    long start = DELETE.start();
+    boolean ok = false;
+    try {
+      if (id == null) throw new IllegalArgumentException("Course id is required.");
+      repo.deleteById(id);
+      SeatInventories.courseChanged(id);
+      ok = true;
+    } finally {
+      DELETE.stop(start, ok);
+    }
+  }
+
+  // ------------------- Async variants -------------------
+  // For callers that must not block (the EDT, a server's request threads):
+  // same semantics as the blocking methods, run on the ControllerExecutor;
+  // failures complete the future exceptionally.
+
+  public CompletableFuture<List<Course>> loadAllAsync() {
+    return LOAD_ALL_ASYNC.timeAsync(() -> async.submit(this::loadAll));
+  }
+
+  public CompletableFuture<KeysetPage<Course>> loadPageAsync(Long afterId, int pageSize) {
+    return LOAD_PAGE_ASYNC.timeAsync(() -> async.submit(() -> loadPage(afterId, pageSize)));
+  }
+
+  public CompletableFuture<List<CourseSummary>> loadSummariesAsync() {
+    return LOAD_SUMMARIES_ASYNC.timeAsync(() -> async.submit(this::loadSummaries));
+  }
+
+  public CompletableFuture<Course> addAsync(String code, String title, int cfu, int maxSeats) {
+    return ADD_ASYNC.timeAsync(() -> async.submit(() -> add(code, title, cfu, maxSeats)));
+  }
+
+  public CompletableFuture<Course> updateAsync(Long id, String code, String title, int cfu, int maxSeats) {
+    return UPDATE_ASYNC.timeAsync(() -> async.submit(() -> update(id, code, title, cfu, maxSeats)));
+  }
+
+  public CompletableFuture<Void> deleteAsync(Long id) {
+    return DELETE_ASYNC.timeAsync(() -> async.run(() -> delete(id)));
+  }
+
+  public CompletableFuture<Integer> enrolledCountAsync(Long courseId) {
+    return ENROLLED_COUNT_ASYNC.timeAsync(() -> async.submit(() -> enrolledCount(courseId)));
+  }
+
+  /** Queue depth, rejections and throughput of the executor behind the async variants. */
+  public ControllerExecutorStats executorStats() {
+    return async.stats();
   }
 
   // ------------------- Helpers -------------------
@@ -0,0 +1,31 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+/**
+ * JMX view of JpaUtil's observability: Hibernate statistics of the current
+ * factory and the slow-query log, both adjustable while the application
+ * runs.
+ */
+public interface JpaObservabilityMXBean {
+
+  boolean isStatisticsEnabled();
+
+  void setStatisticsEnabled(boolean enabled);
+
+  void clearStatistics();
+
+  /** Statements at least this slow are logged; negative turns the log off. */
+  long getSlowQueryMillis();
+
+  void setSlowQueryMillis(long millis);
+
+  double getSlowQuerySampleRate();
+
+  void setSlowQuerySampleRate(double rate);
+
+  long getSlowStatements();
+
+  long getSlowStatementsDropped();
+
+  /** The queries that took the most total time, one line each. */
+  String[] getTopQueries();
+}
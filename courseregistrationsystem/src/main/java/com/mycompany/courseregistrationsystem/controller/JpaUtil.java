@@ -1,9 +1,47 @@
 package com.mycompany.courseregistrationsystem.controller;
 
+import com.mycompany.courseregistrationsystem.metrics.MethodMetrics;
+import com.mycompany.courseregistrationsystem.repository.IdSequences;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+import org.hibernate.jpa.boot.internal.ParsedPersistenceXmlDescriptor;
+import org.hibernate.jpa.boot.internal.PersistenceXmlParser;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.CacheException;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.persistence.Cache;
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Query;
+import javax.persistence.SynchronizationType;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.metamodel.Metamodel;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * JPA utility with a rebuildable EntityManagerFactory.
@@ -12,11 +50,49 @@ import java.util.Map;
  *   (defaults to "crsPU"). You can also set env var PERSISTENCE_UNIT.
  * - Reads standard Hibernate/JPA overrides from System properties.
  * - Tests can call JpaUtil.rebuild(overrides) to point JPA at Testcontainers/H2.
+ * - Connections come from a HikariCP pool (sized in persistence.xml; any
+ *   "hibernate.hikari.*" system property overrides it). poolMetrics() reports
+ *   its gauges and acquire latency.
+ * - emf() is lock-free: it reads the current factory generation from an
+ *   AtomicReference. rebuild() builds the new factory first, swaps it in, and
+ *   only closes the old one once the EntityManagers opened on it are closed
+ *   (or "crs.jpa.drainTimeoutMs" has passed). A factory handle kept from
+ *   before a rebuild forwards to the current factory, so callers never see
+ *   a closed one. A "create-drop" factory is still closed before its
+ *   replacement is built, since closing it drops the schema.
+ * - Observability: when the unit (or an override) names the HikariCP
+ *   provider, JpaUtil swaps in ObservedConnectionProvider, which reports the ones slower than
+ *   "crs.jpa.slowQueryMillis" to the asynchronous SlowQueryLog, and
+ *   queryStats() lists Hibernate's per-query counts and times. Both can be
+ *   switched and tuned at runtime, here or over JMX
+ *   (com.mycompany.courseregistrationsystem:type=Jpa). Any other
+ *   provider is left as configured, without statement timing.
+ * - Every new factory first moves the id sequences past the ids already in
+ *   their tables (IdSequences).
+ * - The second-level and query caches are off in crsPU; "crs.jpa.cache=true"
+ *   turns both on. Hibernate statistics are off too, and can be switched on
+ *   at runtime (setStatisticsEnabled, or over JMX).
  */
 public final class JpaUtil {
 
+  public static final String DRAIN_TIMEOUT_PROPERTY = "crs.jpa.drainTimeoutMs";
+  public static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 30_000;
+
+  /** {@code true} turns on the second-level and query caches; the hibernate.cache.* settings still win. */
+  public static final String CACHE_PROPERTY = "crs.jpa.cache";
+
+  private static final Logger log = LoggerFactory.getLogger(JpaUtil.class);
+
   private static final String DEFAULT_PU = "crsPU";
-  private static EntityManagerFactory EMF;
+  private static final AtomicReference<Generation> CURRENT = new AtomicReference<>();
+  private static final Object LOCK = new Object();   // serializes factory creation, never taken by emf() on the hot path
+  private static final AtomicInteger GENERATIONS = new AtomicInteger();
+  private static final int TOP_QUERIES = 20;
+  private static final ThreadLocal<long[]> OPENED_BY_THREAD = ThreadLocal.withInitial(() -> new long[1]);
+
+  static {
+    registerMXBean();
+  }
 
   private JpaUtil() { }
 
@@ -30,35 +106,320 @@ public final class JpaUtil {
   }
 
 
-  public static synchronized EntityManagerFactory emf() {
-    if (EMF == null || !EMF.isOpen()) {
-      EMF = Persistence.createEntityManagerFactory(puName(), defaultProps());
-    }
-    return EMF;
+  public static EntityManagerFactory emf() {
+    return current().handle;
   }
 
   /**
-   * 
-   * Any previous EMF is closed first.
+   * Builds a factory with the overrides and swaps it in; the previous one is
+   * closed once its in-flight EntityManagers are done. If building fails the
+   * previous factory stays in service.
    */
-  public static synchronized void rebuild(Map<String, String> overrides) {
-    if (EMF != null && EMF.isOpen()) {
-      EMF.close();
-    }
+  public static void rebuild(Map<String, String> overrides) {
     Map<String, String> props = defaultProps();
     if (overrides != null && !overrides.isEmpty()) {
       props.putAll(overrides);
     }
-    EMF = Persistence.createEntityManagerFactory(puName(), props);
+    Generation old;
+    synchronized (LOCK) {
+      old = CURRENT.get();
+      if (old != null && old.dropsSchemaOnClose()) {
+        // Closing it drops the schema, so it has to go before the new one creates it.
+        old.retire();
+      }
+      old = CURRENT.getAndSet(new Generation(open(props)));
+    }
+    if (old != null) old.retire();
+  }
+
+  /** Current pool gauges and acquire latency; all zero when no factory is open or it is not pooled. */
+  public static PoolMetrics poolMetrics() {
+    Generation g = CURRENT.get();
+    if (g == null || !g.accepting() || g.pool == null) return PoolMetrics.NONE;
+    return g.pool.snapshot();
+  }
+
+  /** Per-query executions and times of the current factory, the most total time first; empty when statistics are off. */
+  public static List<QueryStats> queryStats() {
+    Generation g = CURRENT.get();
+    if (g == null || !g.accepting()) return Collections.emptyList();
+    return QueryStats.of(g.emf);
+  }
+
+  public static boolean isStatisticsEnabled() {
+    Statistics stats = statistics();
+    return stats != null && stats.isStatisticsEnabled();
+  }
+
+  /**
+   * Switches Hibernate statistics of the current factory on or off; a
+   * rebuilt factory starts from "hibernate.generate_statistics" again.
+   */
+  public static void setStatisticsEnabled(boolean enabled) {
+    Statistics stats = statistics();
+    if (stats != null) stats.setStatisticsEnabled(enabled);
+  }
+
+  /** Starts the statistics of the current factory from zero. */
+  public static void clearStatistics() {
+    Statistics stats = statistics();
+    if (stats != null) stats.clear();
   }
 
-  /** optional helper */
-  public static synchronized void close() {
-    if (EMF != null && EMF.isOpen()) {
-      EMF.close();
+  /** The slow-query log every pooled connection reports to. */
+  public static SlowQueryLog slowQueryLog() {
+    return SlowQueryLog.shared();
+  }
+
+  /**
+   * EntityManagers the calling thread has opened through emf() so far;
+   * the difference of two readings counts the ones opened in between.
+   */
+  public static long entityManagersOpenedByThread() {
+    return OPENED_BY_THREAD.get()[0];
+  }
+
+  /** Closes the current factory after its in-flight EntityManagers are done; the next emf() opens a new one. */
+  public static void close() {
+    Generation g = CURRENT.getAndSet(null);
+    if (g != null) g.retire();
+  }
+
+  private static Generation current() {
+    Generation g = CURRENT.get();
+    if (g != null && g.accepting()) return g;
+    synchronized (LOCK) {
+      g = CURRENT.get();
+      if (g == null || !g.accepting()) {
+        g = new Generation(open(defaultProps()));
+        CURRENT.set(g);
+      }
+      return g;
+    }
+  }
+
+  private static EntityManagerFactory open(Map<String, String> props) {
+    Map<String, Object> config = new HashMap<>(props);
+    // Hibernate closes its cache manager along with the factory, and the provider hands
+    // every factory the same default one; a private manager per generation keeps a
+    // retiring factory from closing the caches of the one that replaced it.
+    CacheManager caches = "false".equalsIgnoreCase(configured(props, AvailableSettings.USE_SECOND_LEVEL_CACHE))
+        ? null : privateCacheManager();
+    if (caches != null) config.put(ConfigSettings.CACHE_MANAGER, caches);
+    String provider = configured(props, AvailableSettings.CONNECTION_PROVIDER);
+    if (HikariCPConnectionProvider.class.getName().equals(provider)) {
+      // The observed provider is HikariCP plus statement timing; any other provider is kept as is.
+      config.put(AvailableSettings.CONNECTION_PROVIDER, ObservedConnectionProvider.class.getName());
+    } else {
+      log.info("Connection provider {} is not HikariCP; statements are not timed for the slow query log",
+          provider);
+    }
+    EntityManagerFactory emf;
+    try {
+      emf = Persistence.createEntityManagerFactory(puName(), config);
+    } catch (RuntimeException e) {
+      if (caches != null) caches.close();
+      throw e;
+    }
+    try {
+      IdSequences.catchUp(emf);
+    } catch (RuntimeException e) {
+      log.warn("Could not move the id sequences past the existing ids; new rows may collide with them", e);
+    }
+    return emf;
+  }
+
+  /** The override of {@code key} in {@code props}, else the unit's value in persistence.xml, else null. */
+  private static String configured(Map<String, String> props, String key) {
+    String value = props.get(key);
+    if (value != null) return value;
+    String unit = puName();
+    for (ParsedPersistenceXmlDescriptor d : PersistenceXmlParser.locatePersistenceUnits(Collections.emptyMap())) {
+      if (unit.equals(d.getName())) return d.getProperties().getProperty(key);
     }
+    return null;
   }
 
+  private static CacheManager privateCacheManager() {
+    try {
+      CachingProvider provider = Caching.getCachingProvider();
+      return provider.getCacheManager(URI.create("crs-jpa-" + GENERATIONS.incrementAndGet()),
+          provider.getDefaultClassLoader());
+    } catch (CacheException noSingleProvider) {
+      return null;
+    }
+  }
+
+  private static Statistics statistics() {
+    Generation g = CURRENT.get();
+    return g == null || !g.accepting() ? null : g.emf.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  private static long drainTimeoutMillis() {
+    return Long.getLong(DRAIN_TIMEOUT_PROPERTY, DEFAULT_DRAIN_TIMEOUT_MILLIS);
+  }
+
+  // ------------------- Factory generations -------------------
+
+  /**
+   * One factory and the EntityManagers open on it. Callers get {@link #handle},
+   * which counts every EntityManager it creates until that one is closed.
+   */
+  private static final class Generation {
+
+    final EntityManagerFactory emf;
+    final PoolMetrics.Recorder pool;
+    final EntityManagerFactory handle = new Handle();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean retired = new AtomicBoolean();
+
+    Generation(EntityManagerFactory emf) {
+      this.emf = emf;
+      this.pool = PoolMetrics.of(emf);
+    }
+
+    boolean dropsSchemaOnClose() {
+      return emf.isOpen() && "create-drop".equals(emf.getProperties().get("hibernate.hbm2ddl.auto"));
+    }
+
+    boolean accepting() {
+      return !retired.get() && emf.isOpen();
+    }
+
+    /** Stops handing out EntityManagers, waits for the open ones, then closes the factory. */
+    void retire() {
+      if (!retired.compareAndSet(false, true)) return;
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis());
+      boolean interrupted = false;
+      while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+        try {
+          Thread.sleep(5);
+        } catch (InterruptedException e) {
+          interrupted = true;
+          break;
+        }
+      }
+      int left = inFlight.get();
+      if (left > 0) log.warn("Closing EntityManagerFactory with {} EntityManager(s) still open", left);
+      if (emf.isOpen()) emf.close();
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /** The factory to answer for: this one, or the current one once this has retired. */
+    EntityManagerFactory target() {
+      return accepting() ? emf : current().emf;
+    }
+
+    EntityManager createEntityManager(Function<EntityManagerFactory, EntityManager> create) {
+      // Count first, then check: retire() flips the flag before it starts waiting,
+      // so an EntityManager is either counted here or created on the next generation.
+      inFlight.incrementAndGet();
+      if (!accepting()) {
+        inFlight.decrementAndGet();
+        return create.apply(current().handle);
+      }
+      try {
+        EntityManager em = create.apply(emf);
+        // Hibernate ends the session's listeners exactly once, when it closes.
+        em.unwrap(Session.class).addEventListeners(new BaseSessionEventListener() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          public void end() {
+            inFlight.decrementAndGet();
+          }
+        });
+        OPENED_BY_THREAD.get()[0]++;
+        return em;
+      } catch (RuntimeException | Error e) {
+        inFlight.decrementAndGet();
+        throw e;
+      }
+    }
+
+    /**
+     * What emf() hands out: counts the EntityManagers it creates, and once
+     * its generation has retired answers for the current one, so a handle
+     * kept from before a rebuild keeps working.
+     */
+    private final class Handle implements EntityManagerFactory {
+
+      @Override
+      public EntityManager createEntityManager() {
+        return Generation.this.createEntityManager(f -> f.createEntityManager());
+      }
+
+      @Override
+      @SuppressWarnings("rawtypes")
+      public EntityManager createEntityManager(Map map) {
+        return Generation.this.createEntityManager(f -> f.createEntityManager(map));
+      }
+
+      @Override
+      public EntityManager createEntityManager(SynchronizationType synchronizationType) {
+        return Generation.this.createEntityManager(f -> f.createEntityManager(synchronizationType));
+      }
+
+      @Override
+      @SuppressWarnings("rawtypes")
+      public EntityManager createEntityManager(SynchronizationType synchronizationType, Map map) {
+        return Generation.this.createEntityManager(f -> f.createEntityManager(synchronizationType, map));
+      }
+
+      @Override
+      public void close() {
+        CURRENT.compareAndSet(Generation.this, null);
+        retire();
+      }
+
+      @Override public CriteriaBuilder getCriteriaBuilder() { return target().getCriteriaBuilder(); }
+      @Override public Metamodel getMetamodel() { return target().getMetamodel(); }
+      @Override public boolean isOpen() { return target().isOpen(); }
+      @Override public Map<String, Object> getProperties() { return target().getProperties(); }
+      @Override public Cache getCache() { return target().getCache(); }
+      @Override public PersistenceUnitUtil getPersistenceUnitUtil() { return target().getPersistenceUnitUtil(); }
+      @Override public void addNamedQuery(String name, Query query) { target().addNamedQuery(name, query); }
+      @Override public <T> T unwrap(Class<T> cls) { return target().unwrap(cls); }
+
+      @Override
+      public <T> void addNamedEntityGraph(String graphName, EntityGraph<T> entityGraph) {
+        target().addNamedEntityGraph(graphName, entityGraph);
+      }
+    }
+  }
+
+  // ------------------- JMX -------------------
+
+  private static void registerMXBean() {
+    try {
+      ObjectName name = new ObjectName(MethodMetrics.DOMAIN + ":type=Jpa");
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new Observability(), name);
+    } catch (InstanceAlreadyExistsException e) {
+      log.debug("JPA observability MXBean already registered");
+    } catch (JMException e) {
+      log.warn("Could not publish JPA observability over JMX", e);
+    }
+  }
+
+  private static final class Observability implements JpaObservabilityMXBean {
+    @Override public boolean isStatisticsEnabled() { return JpaUtil.isStatisticsEnabled(); }
+    @Override public void setStatisticsEnabled(boolean enabled) { JpaUtil.setStatisticsEnabled(enabled); }
+    @Override public void clearStatistics() { JpaUtil.clearStatistics(); }
+    @Override public long getSlowQueryMillis() { return SlowQueryLog.shared().getThresholdMillis(); }
+    @Override public void setSlowQueryMillis(long millis) { SlowQueryLog.shared().setThresholdMillis(millis); }
+    @Override public double getSlowQuerySampleRate() { return SlowQueryLog.shared().getSampleRate(); }
+    @Override public void setSlowQuerySampleRate(double rate) { SlowQueryLog.shared().setSampleRate(rate); }
+    @Override public long getSlowStatements() { return SlowQueryLog.shared().getSlowStatements(); }
+    @Override public long getSlowStatementsDropped() { return SlowQueryLog.shared().getDropped(); }
+
+    @Override
+    public String[] getTopQueries() {
+      List<QueryStats> all = queryStats();
+      String[] top = new String[Math.min(TOP_QUERIES, all.size())];
+      for (int i = 0; i < top.length; i++) top[i] = all.get(i).toString();
+      return top;
+    }
+  }
 
   private static Map<String, String> defaultProps() {
     Map<String, String> p = new HashMap<>();
@@ -72,6 +433,18 @@ public final class JpaUtil {
     putIfPresent(p, "hibernate.dialect",                System.getProperty("hibernate.dialect"));
     putIfPresent(p, "hibernate.show_sql",               System.getProperty("hibernate.show_sql"));
     putIfPresent(p, "hibernate.format_sql",             System.getProperty("hibernate.format_sql"));
+    putIfPresent(p, "hibernate.jdbc.batch_size",        System.getProperty("hibernate.jdbc.batch_size"));
+    putIfPresent(p, "hibernate.cache.use_second_level_cache", System.getProperty(CACHE_PROPERTY));
+    putIfPresent(p, "hibernate.cache.use_query_cache",  System.getProperty(CACHE_PROPERTY));
+    putIfPresent(p, "hibernate.cache.use_second_level_cache", System.getProperty("hibernate.cache.use_second_level_cache"));
+    putIfPresent(p, "hibernate.cache.use_query_cache",  System.getProperty("hibernate.cache.use_query_cache"));
+    putIfPresent(p, "hibernate.generate_statistics",    System.getProperty("hibernate.generate_statistics"));
+    putIfPresent(p, "hibernate.connection.provider_class", System.getProperty("hibernate.connection.provider_class"));
+
+    // Pool sizing and timeouts, e.g. -Dhibernate.hikari.maximumPoolSize=40
+    for (String key : System.getProperties().stringPropertyNames()) {
+      if (key.startsWith("hibernate.hikari.")) putIfPresent(p, key, System.getProperty(key));
+    }
 
     // JPA-style overrides - optional
     putIfPresent(p, "javax.persistence.jdbc.driver",    System.getProperty("javax.persistence.jdbc.driver"));
@@ -0,0 +1,169 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.hikaricp.internal.HikariConfigurationUtil;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * HikariCP connection provider that times every statement execution and
+ * reports it to the {@link SlowQueryLog}, and records the pool's acquire
+ * latency for {@link PoolMetrics}. JpaUtil installs it in place of the
+ * plain HikariCP provider; everything else (the "hibernate.hikari.*" pool
+ * settings, unwrapping to the HikariDataSource, {@code Connection.unwrap}
+ * to the driver's connection) behaves as before.
+ */
+public class ObservedConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+
+  private static final long serialVersionUID = 1L;
+
+  private HikariDataSource pool;
+  private PoolMetrics.Recorder recorder;
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public void configure(Map props) {
+    try {
+      HikariConfig config = HikariConfigurationUtil.loadConfiguration(props);
+      // A started pool takes no metrics tracker, so it goes on the config the pool is built from.
+      PoolMetrics.Recorder created = new PoolMetrics.Recorder();
+      config.setMetricsTrackerFactory(created);
+      pool = new HikariDataSource(config);
+      created.bind(pool);
+      recorder = created;
+    } catch (Exception e) {
+      throw new HibernateException(e);
+    }
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    Connection conn = pool.getConnection();
+    return (Connection) Proxy.newProxyInstance(ObservedConnectionProvider.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, new ConnectionHandler(conn, SlowQueryLog.shared()));
+  }
+
+  @Override
+  public void closeConnection(Connection conn) throws SQLException {
+    conn.close();
+  }
+
+  @Override
+  public boolean supportsAggressiveRelease() {
+    return false;
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public boolean isUnwrappableAs(Class type) {
+    return type.isAssignableFrom(ObservedConnectionProvider.class)
+        || type.isAssignableFrom(HikariDataSource.class)
+        || type == PoolMetrics.Recorder.class;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T unwrap(Class<T> type) {
+    if (type.isAssignableFrom(ObservedConnectionProvider.class)) return (T) this;
+    if (type.isAssignableFrom(HikariDataSource.class)) return (T) pool;
+    if (type == PoolMetrics.Recorder.class) return (T) recorder;
+    throw new UnknownUnwrapTypeException(type);
+  }
+
+  @Override
+  public void stop() {
+    if (pool != null) pool.close();
+  }
+
+  /** Wraps the statements the connection creates; passes everything else through. */
+  private static final class ConnectionHandler implements InvocationHandler {
+    private final Connection conn;
+    private final SlowQueryLog slowLog;
+
+    ConnectionHandler(Connection conn, SlowQueryLog slowLog) {
+      this.conn = conn;
+      this.slowLog = slowLog;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "createStatement":
+          return wrap(Statement.class, call(conn, method, args), null);
+        case "prepareStatement":
+          return wrap(PreparedStatement.class, call(conn, method, args), (String) args[0]);
+        case "prepareCall":
+          return wrap(CallableStatement.class, call(conn, method, args), (String) args[0]);
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          return call(conn, method, args);
+      }
+    }
+
+    private Object wrap(Class<? extends Statement> type, Object statement, String sql) {
+      return Proxy.newProxyInstance(ObservedConnectionProvider.class.getClassLoader(),
+          new Class<?>[] { type }, new StatementHandler((Statement) statement, sql, slowLog));
+    }
+  }
+
+  /** Times the execute* calls; the SQL is the prepared one or the one passed to execute. */
+  private static final class StatementHandler implements InvocationHandler {
+    private final Statement statement;
+    private final String sql;
+    private final SlowQueryLog slowLog;
+
+    StatementHandler(Statement statement, String sql, SlowQueryLog slowLog) {
+      this.statement = statement;
+      this.sql = sql;
+      this.slowLog = slowLog;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (name.startsWith("execute")) {
+        long t0 = System.nanoTime();
+        try {
+          return call(statement, method, args);
+        } finally {
+          String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+          slowLog.record(executed, System.nanoTime() - t0);
+        }
+      }
+      switch (name) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          return call(statement, method, args);
+      }
+    }
+  }
+
+  private static Object call(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Snapshot of the connection pool behind JpaUtil's EntityManagerFactory:
+ * the pool gauges (active, idle, waiting threads) plus the acquire latency
+ * and timeouts recorded since the pool started.
+ * <p>
+ * All zero when the factory does not run on ObservedConnectionProvider
+ * (e.g. a test that overrides the connection provider).
+ */
+public final class PoolMetrics {
+
+  static final PoolMetrics NONE = new PoolMetrics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+  private final int active;
+  private final int idle;
+  private final int total;
+  private final int waiting;
+  private final int minIdle;
+  private final int maxSize;
+  private final long acquisitions;
+  private final long acquireNanosTotal;
+  private final long acquireNanosMax;
+  private final long timeouts;
+
+  private PoolMetrics(int active, int idle, int total, int waiting, int minIdle, int maxSize,
+                      long acquisitions, long acquireNanosTotal, long acquireNanosMax, long timeouts) {
+    this.active = active;
+    this.idle = idle;
+    this.total = total;
+    this.waiting = waiting;
+    this.minIdle = minIdle;
+    this.maxSize = maxSize;
+    this.acquisitions = acquisitions;
+    this.acquireNanosTotal = acquireNanosTotal;
+    this.acquireNanosMax = acquireNanosMax;
+    this.timeouts = timeouts;
+  }
+
+  /** Connections handed out right now. */
+  public int getActive() { return active; }
+  public int getIdle() { return idle; }
+  public int getTotal() { return total; }
+  /** Threads blocked waiting for a connection right now. */
+  public int getWaiting() { return waiting; }
+  public int getMinIdle() { return minIdle; }
+  public int getMaxSize() { return maxSize; }
+  public long getAcquisitions() { return acquisitions; }
+  /** Acquires that gave up after the connection timeout. */
+  public long getTimeouts() { return timeouts; }
+
+  public double getAverageAcquireMillis() {
+    return acquisitions == 0 ? 0d : acquireNanosTotal / 1e6 / acquisitions;
+  }
+
+  public double getMaxAcquireMillis() {
+    return acquireNanosMax / 1e6;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("active=%d idle=%d total=%d waiting=%d min=%d max=%d acquisitions=%d "
+        + "avgAcquire=%.3fms maxAcquire=%.3fms timeouts=%d",
+        active, idle, total, waiting, minIdle, maxSize, acquisitions,
+        getAverageAcquireMillis(), getMaxAcquireMillis(), timeouts);
+  }
+
+  // ------------------- Wiring -------------------
+
+  /**
+   * The recorder ObservedConnectionProvider installed on the factory's pool,
+   * or null when the factory uses another connection provider.
+   */
+  static Recorder of(EntityManagerFactory emf) {
+    ConnectionProvider cp = emf.unwrap(SessionFactoryImplementor.class)
+        .getServiceRegistry().getService(ConnectionProvider.class);
+    return cp != null && cp.isUnwrappableAs(Recorder.class) ? cp.unwrap(Recorder.class) : null;
+  }
+
+  /**
+   * Records acquire latency and timeouts reported by HikariCP. It has to be
+   * the metrics tracker factory of the HikariConfig the pool is built from;
+   * {@link #bind} then hands it the pool for the gauges.
+   */
+  static final class Recorder implements MetricsTrackerFactory, IMetricsTracker {
+
+    private volatile HikariDataSource ds;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final AtomicLong acquireNanosMax = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+
+    void bind(HikariDataSource ds) {
+      this.ds = ds;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+      return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+      acquisitions.increment();
+      acquireNanos.add(elapsedAcquiredNanos);
+      long max;
+      while (elapsedAcquiredNanos > (max = acquireNanosMax.get())) {
+        if (acquireNanosMax.compareAndSet(max, elapsedAcquiredNanos)) break;
+      }
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+      timeouts.increment();
+    }
+
+    PoolMetrics snapshot() {
+      HikariDataSource ds = this.ds;
+      HikariPoolMXBean pool = ds == null || ds.isClosed() ? null : ds.getHikariPoolMXBean();
+      if (pool == null) return NONE;   // pool not started or closed
+      return new PoolMetrics(pool.getActiveConnections(), pool.getIdleConnections(),
+          pool.getTotalConnections(), pool.getThreadsAwaitingConnection(),
+          ds.getMinimumIdle(), ds.getMaximumPoolSize(),
+          acquisitions.sum(), acquireNanos.sum(), acquireNanosMax.get(), timeouts.sum());
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Executions and times of one HQL or native query, from Hibernate
+ * statistics, since the factory opened or the statistics were last cleared.
+ * Times are in milliseconds, as Hibernate records them.
+ */
+public final class QueryStats {
+
+  private final String query;
+  private final long executions;
+  private final long rows;
+  private final long totalMillis;
+  private final long maxMillis;
+  private final long minMillis;
+
+  private QueryStats(String query, QueryStatistics s) {
+    this.query = query;
+    this.executions = s.getExecutionCount();
+    this.rows = s.getExecutionRowCount();
+    this.totalMillis = s.getExecutionTotalTime();
+    this.maxMillis = s.getExecutionMaxTime();
+    this.minMillis = executions == 0 ? 0 : s.getExecutionMinTime();
+  }
+
+  /** Every query executed so far, the most total time first; empty when statistics are off. */
+  static List<QueryStats> of(EntityManagerFactory emf) {
+    Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+    if (!stats.isStatisticsEnabled()) return Collections.emptyList();
+    List<QueryStats> all = new ArrayList<>();
+    for (String q : stats.getQueries()) {
+      QueryStats s = new QueryStats(q, stats.getQueryStatistics(q));
+      if (s.executions > 0) all.add(s);
+    }
+    all.sort(Comparator.comparingLong(QueryStats::getTotalMillis).reversed()
+        .thenComparing(Comparator.comparingLong(QueryStats::getExecutions).reversed()));
+    return Collections.unmodifiableList(all);
+  }
+
+  public String getQuery() { return query; }
+  public long getExecutions() { return executions; }
+  /** Rows returned (or updated) over all executions. */
+  public long getRows() { return rows; }
+  public long getTotalMillis() { return totalMillis; }
+  public long getMaxMillis() { return maxMillis; }
+  public long getMinMillis() { return minMillis; }
+
+  public double getAverageMillis() {
+    return executions == 0 ? 0d : (double) totalMillis / executions;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("executions=%d rows=%d total=%dms avg=%.2fms min=%dms max=%dms %s",
+        executions, rows, totalMillis, getAverageMillis(), minMillis, maxMillis,
+        query.replaceAll("\\s+", " ").trim());
+  }
+}
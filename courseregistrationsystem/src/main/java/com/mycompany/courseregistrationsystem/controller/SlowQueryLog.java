@@ -0,0 +1,158 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Asynchronous log of the JDBC statements that ran longer than a threshold.
+ * <p>
+ * The statement thread only compares the elapsed time with the threshold,
+ * draws the sample and offers the statement to a bounded queue; a daemon
+ * thread formats and writes the entries at WARN on the
+ * {@code com.mycompany.courseregistrationsystem.sql.slow} logger. When the
+ * queue is full the entry is dropped and counted rather than slowing the
+ * caller down.
+ * <p>
+ * Bound parameters never reach the log: prepared statements carry only their
+ * {@code ?} placeholders, and string and number literals inlined in the SQL
+ * are replaced by {@code ?} too.
+ * <p>
+ * Threshold and sample rate start from {@code crs.jpa.slowQueryMillis}
+ * (default 200, negative = off) and {@code crs.jpa.slowQuerySampleRate}
+ * (0..1, default 1) and can be changed at any time, also over JMX.
+ */
+public final class SlowQueryLog {
+
+  public static final String THRESHOLD_PROPERTY = "crs.jpa.slowQueryMillis";
+  public static final String SAMPLE_RATE_PROPERTY = "crs.jpa.slowQuerySampleRate";
+  public static final long DEFAULT_THRESHOLD_MILLIS = 200;
+  public static final double DEFAULT_SAMPLE_RATE = 1.0;
+
+  static final int QUEUE_CAPACITY = 1024;
+
+  private static final Logger log = LoggerFactory.getLogger("com.mycompany.courseregistrationsystem.sql.slow");
+  private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'|\\b\\d+(?:\\.\\d+)?\\b");
+  private static final SlowQueryLog SHARED = new SlowQueryLog(
+      Long.getLong(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD_MILLIS), sampleRateProperty(), log::warn);
+
+  private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Consumer<String> sink;
+  private final LongAdder slow = new LongAdder();
+  private final LongAdder logged = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private volatile long thresholdNanos;
+  private volatile double sampleRate;
+  private volatile Thread writer;
+
+  SlowQueryLog(long thresholdMillis, double sampleRate, Consumer<String> sink) {
+    setThresholdMillis(thresholdMillis);
+    setSampleRate(sampleRate);
+    this.sink = sink;
+  }
+
+  /** The log every connection from JpaUtil reports to. */
+  public static SlowQueryLog shared() {
+    return SHARED;
+  }
+
+  /** Called by the connection wrapper after every statement execution. */
+  void record(String sql, long nanos) {
+    long threshold = thresholdNanos;
+    if (threshold < 0 || nanos < threshold) return;
+    slow.increment();
+    double rate = sampleRate;
+    if (rate < 1d && ThreadLocalRandom.current().nextDouble() >= rate) return;
+    if (!queue.offer(new Entry(sql, nanos, Thread.currentThread().getName()))) {
+      dropped.increment();
+      return;
+    }
+    if (writer == null) startWriter();
+  }
+
+  public boolean isEnabled() {
+    return thresholdNanos >= 0;
+  }
+
+  /** Negative turns the log off. */
+  public long getThresholdMillis() {
+    long t = thresholdNanos;
+    return t < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(t);
+  }
+
+  public void setThresholdMillis(long millis) {
+    thresholdNanos = millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  /** Share of the slow statements that are logged. */
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  public void setSampleRate(double rate) {
+    if (!(rate >= 0d && rate <= 1d))
+      throw new IllegalArgumentException("Sample rate must be between 0 and 1.");
+    sampleRate = rate;
+  }
+
+  /** Statements over the threshold, sampled or not. */
+  public long getSlowStatements() { return slow.sum(); }
+  public long getLogged() { return logged.sum(); }
+  /** Sampled statements lost because the writer fell behind. */
+  public long getDropped() { return dropped.sum(); }
+
+  /** The SQL with its string and number literals replaced by {@code ?}. */
+  static String redact(String sql) {
+    if (sql == null) return "(batch)";
+    return LITERAL.matcher(sql.replaceAll("\\s+", " ").trim()).replaceAll("?");
+  }
+
+  private synchronized void startWriter() {
+    if (writer != null) return;
+    Thread t = new Thread(this::drain, "slow-query-log");
+    t.setDaemon(true);
+    t.start();
+    writer = t;
+  }
+
+  private void drain() {
+    while (true) {
+      Entry e;
+      try {
+        e = queue.take();
+      } catch (InterruptedException stop) {
+        return;
+      }
+      try {
+        sink.accept(String.format("%.1fms [%s] %s", e.nanos / 1e6, e.thread, redact(e.sql)));
+        logged.increment();
+      } catch (RuntimeException failed) {
+        log.debug("Could not write slow query entry", failed);
+      }
+    }
+  }
+
+  private static double sampleRateProperty() {
+    String v = System.getProperty(SAMPLE_RATE_PROPERTY);
+    return v == null || v.trim().isEmpty() ? DEFAULT_SAMPLE_RATE : Double.parseDouble(v.trim());
+  }
+
+  private static final class Entry {
+    final String sql;
+    final long nanos;
+    final String thread;
+
+    Entry(String sql, long nanos, String thread) {
+      this.sql = sql;
+      this.nanos = nanos;
+      this.thread = thread;
+    }
+  }
+}
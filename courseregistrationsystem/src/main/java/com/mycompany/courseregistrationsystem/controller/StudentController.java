@@ -1,18 +1,68 @@
 package com.mycompany.courseregistrationsystem.controller;
 
+import com.mycompany.courseregistrationsystem.metrics.MethodMetrics;
+import com.mycompany.courseregistrationsystem.metrics.MethodTimer;
 import com.mycompany.courseregistrationsystem.model.Course;
 import com.mycompany.courseregistrationsystem.model.Student;
 import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.KeysetPage;
 import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWorkStats;
+import com.mycompany.courseregistrationsystem.service.CourseFullException;
+import com.mycompany.courseregistrationsystem.service.EnrollmentOutcome;
+import com.mycompany.courseregistrationsystem.service.EnrollmentService;
+import com.mycompany.courseregistrationsystem.service.ExportReport;
+import com.mycompany.courseregistrationsystem.service.ImportReport;
+import com.mycompany.courseregistrationsystem.service.RosterExporter;
+import com.mycompany.courseregistrationsystem.service.StudentImportService;
 
-import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class StudentController {
 
+  // Latency of each public method, published over JMX (see MethodMetrics).
+  private static final MethodTimer LOAD_ALL = MethodMetrics.timer(StudentController.class, "loadAll");
+  private static final MethodTimer LOAD_PAGE = MethodMetrics.timer(StudentController.class, "loadPage");
+  private static final MethodTimer ADD = MethodMetrics.timer(StudentController.class, "add");
+  private static final MethodTimer UPDATE = MethodMetrics.timer(StudentController.class, "update");
+  private static final MethodTimer DELETE = MethodMetrics.timer(StudentController.class, "delete");
+  private static final MethodTimer FIND_ALL_WITH_COURSES = MethodMetrics.timer(StudentController.class, "findAllWithCourses");
+  private static final MethodTimer FIND_SLICE_WITH_COURSES = MethodMetrics.timer(StudentController.class, "findSliceWithCourses");
+  private static final MethodTimer COUNT_STUDENTS = MethodMetrics.timer(StudentController.class, "countStudents");
+  private static final MethodTimer FIND_WITH_COURSES = MethodMetrics.timer(StudentController.class, "findWithCourses");
+  private static final MethodTimer FIND_PAGE_WITH_COURSES = MethodMetrics.timer(StudentController.class, "findPageWithCourses");
+  private static final MethodTimer LOAD_ALL_COURSES = MethodMetrics.timer(StudentController.class, "loadAllCourses");
+  private static final MethodTimer IMPORT_STUDENTS = MethodMetrics.timer(StudentController.class, "importStudents");
+  private static final MethodTimer EXPORT_ROSTER = MethodMetrics.timer(StudentController.class, "exportRoster");
+  private static final MethodTimer ADD_STUDENT = MethodMetrics.timer(StudentController.class, "addStudent");
+  private static final MethodTimer UPDATE_STUDENT = MethodMetrics.timer(StudentController.class, "updateStudent");
+  private static final MethodTimer ENROLL = MethodMetrics.timer(StudentController.class, "enroll");
+  private static final MethodTimer DELETE_STUDENT = MethodMetrics.timer(StudentController.class, "deleteStudent");
+  private static final MethodTimer ENROLLED_COUNT = MethodMetrics.timer(StudentController.class, "enrolledCount");
+  private static final MethodTimer FIND_MAX_SEATS = MethodMetrics.timer(StudentController.class, "findMaxSeats");
+  private static final MethodTimer IS_STUDENT_IN_COURSE = MethodMetrics.timer(StudentController.class, "isStudentInCourse");
+  private static final MethodTimer LOAD_ALL_ASYNC = MethodMetrics.timer(StudentController.class, "loadAllAsync");
+  private static final MethodTimer LOAD_PAGE_ASYNC = MethodMetrics.timer(StudentController.class, "loadPageAsync");
+  private static final MethodTimer FIND_ALL_WITH_COURSES_ASYNC = MethodMetrics.timer(StudentController.class, "findAllWithCoursesAsync");
+  private static final MethodTimer FIND_PAGE_WITH_COURSES_ASYNC = MethodMetrics.timer(StudentController.class, "findPageWithCoursesAsync");
+  private static final MethodTimer LOAD_ALL_COURSES_ASYNC = MethodMetrics.timer(StudentController.class, "loadAllCoursesAsync");
+  private static final MethodTimer ADD_ASYNC = MethodMetrics.timer(StudentController.class, "addAsync");
+  private static final MethodTimer ADD_STUDENT_ASYNC = MethodMetrics.timer(StudentController.class, "addStudentAsync");
+  private static final MethodTimer UPDATE_ASYNC = MethodMetrics.timer(StudentController.class, "updateAsync");
+  private static final MethodTimer UPDATE_STUDENT_ASYNC = MethodMetrics.timer(StudentController.class, "updateStudentAsync");
+  private static final MethodTimer DELETE_ASYNC = MethodMetrics.timer(StudentController.class, "deleteAsync");
+  private static final MethodTimer ENROLLED_COUNT_ASYNC = MethodMetrics.timer(StudentController.class, "enrolledCountAsync");
+
   private final StudentRepository studentRepo;
   private final CourseRepository  courseRepo;
+  private final EnrollmentService enrollment;
+  private final ControllerExecutor async;
 
   public StudentController() {
     this(new StudentRepository(), new CourseRepository());
@@ -23,107 +73,357 @@ public class StudentController {
   }
 
   public StudentController(StudentRepository studentRepo, CourseRepository courseRepo) {
+    this(studentRepo, courseRepo, new EnrollmentService());
+  }
+
+  public StudentController(StudentRepository studentRepo, CourseRepository courseRepo,
+                           EnrollmentService enrollment) {
+    this(studentRepo, courseRepo, enrollment, ControllerExecutor.shared());
+  }
+
+  /** {@code async} runs the *Async variants. */
+  public StudentController(StudentRepository studentRepo, CourseRepository courseRepo,
+                           EnrollmentService enrollment, ControllerExecutor async) {
     this.studentRepo = studentRepo;
     this.courseRepo  = courseRepo;
+    this.enrollment  = enrollment;
+    this.async       = async;
   }
 
   // ---------- Existing simple CRUD you wrote ----------
   public List<Student> loadAll() {
-    return studentRepo.findAll();
+    long start = LOAD_ALL.start();
+    boolean ok = false;
+    try {
+      List<Student> all = studentRepo.findAll();
+      ok = true;
+      return all;
+    } finally {
+      LOAD_ALL.stop(start, ok);
+    }
+  }
+
+  public KeysetPage<Student> loadPage(Long afterId, int pageSize) {
+    long start = LOAD_PAGE.start();
+    boolean ok = false;
+    try {
+      KeysetPage<Student> page = studentRepo.findPage(afterId, pageSize);
+      ok = true;
+      return page;
+    } finally {
+      LOAD_PAGE.stop(start, ok);
+    }
   }
 
   public Student add(String matricola, String fullName, String email) {
-    Student s = new Student();
-    s.setMatricola(matricola);
-    s.setFullName(fullName);
-    s.setEmail(email);
-    return studentRepo.save(s);
+    long start = ADD.start();
+    boolean ok = false;
+    try {
+      Student s = new Student();
+      s.setMatricola(matricola);
+      s.setFullName(fullName);
+      s.setEmail(email);
+      Student added = studentRepo.save(s);
+      ok = true;
+      return added;
+    } finally {
+      ADD.stop(start, ok);
+    }
   }
 
   public Student update(Long id, String matricola, String fullName, String email) {
-    Student s = studentRepo.findById(id).orElseThrow(() -> new IllegalArgumentException("Student not found"));
-    s.setMatricola(matricola);
-    s.setFullName(fullName);
-    s.setEmail(email);
-    return studentRepo.save(s);
+    long start = UPDATE.start();
+    boolean ok = false;
+    try {
+      Student updated = UnitOfWork.call(em -> {
+        Student s = studentRepo.findById(id).orElseThrow(() -> new IllegalArgumentException("Student not found"));
+        s.setMatricola(matricola);
+        s.setFullName(fullName);
+        s.setEmail(email);
+        return studentRepo.save(s);
+      });
+      ok = true;
+      return updated;
+    } finally {
+      UPDATE.stop(start, ok);
+    }
   }
 
   public void delete(Long id) {
-    studentRepo.deleteById(id);
+    long start = DELETE.start();
+    boolean ok = false;
+    try {
+      enrollment.deleteStudent(id);
+      ok = true;
+    } finally {
+      DELETE.stop(start, ok);
+    }
   }
 
   // ---------- Minimal extras that StudentSwingView uses ----------
   public List<Student> findAllWithCourses() {
-    return studentRepo.findAllWithCourses();
+    long start = FIND_ALL_WITH_COURSES.start();
+    boolean ok = false;
+    try {
+      List<Student> all = studentRepo.findAllWithCourses();
+      ok = true;
+      return all;
+    } finally {
+      FIND_ALL_WITH_COURSES.stop(start, ok);
+    }
+  }
+
+  /**
+   * A slice of {@link #findAllWithCourses()} for a paged table: after
+   * {@code afterId} if known (a cheap seek), otherwise from row {@code offset}.
+   */
+  public List<Student> findSliceWithCourses(Long afterId, int offset, int limit) {
+    long start = FIND_SLICE_WITH_COURSES.start();
+    boolean ok = false;
+    try {
+      List<Student> slice = studentRepo.findSliceWithCourses(afterId, offset, limit);
+      ok = true;
+      return slice;
+    } finally {
+      FIND_SLICE_WITH_COURSES.stop(start, ok);
+    }
+  }
+
+  public int countStudents() {
+    long start = COUNT_STUDENTS.start();
+    boolean ok = false;
+    try {
+      int count = studentRepo.count();
+      ok = true;
+      return count;
+    } finally {
+      COUNT_STUDENTS.stop(start, ok);
+    }
+  }
+
+  /** One student table row, e.g. after it changed; empty if the student was deleted. */
+  public Optional<Student> findWithCourses(Long id) {
+    long start = FIND_WITH_COURSES.start();
+    boolean ok = false;
+    try {
+      Optional<Student> student = studentRepo.findByIdWithCourses(id);
+      ok = true;
+      return student;
+    } finally {
+      FIND_WITH_COURSES.stop(start, ok);
+    }
+  }
+
+  public KeysetPage<Student> findPageWithCourses(Long afterId, int pageSize) {
+    long start = FIND_PAGE_WITH_COURSES.start();
+    boolean ok = false;
+    try {
+      KeysetPage<Student> page = studentRepo.findPageWithCourses(afterId, pageSize);
+      ok = true;
+      return page;
+    } finally {
+      FIND_PAGE_WITH_COURSES.stop(start, ok);
+    }
   }
 
   public List<Course> loadAllCourses() {
-    return courseRepo.findAll();
+    long start = LOAD_ALL_COURSES.start();
+    boolean ok = false;
+    try {
+      List<Course> courses = courseRepo.findAll();
+      ok = true;
+      return courses;
+    } finally {
+      LOAD_ALL_COURSES.stop(start, ok);
+    }
+  }
+
+  /** Bulk-loads students and enrollments from CSV (see StudentImportService for the format). */
+  public ImportReport importStudents(Reader csv) throws IOException {
+    long start = IMPORT_STUDENTS.start();
+    boolean ok = false;
+    try {
+      ImportReport report = new StudentImportService().importCsv(csv);
+      ok = true;
+      return report;
+    } finally {
+      IMPORT_STUDENTS.stop(start, ok);
+    }
   }
 
-  public void addStudent(String matricola, String fullName, String email, Long courseId) {
-    Student s = new Student();
-    s.setMatricola(matricola);
-    s.setFullName(fullName);
-    s.setEmail(email);
+  /** Streams every student with their courses to {@code target} (see RosterExporter for the formats). */
+  public ExportReport exportRoster(Path target, RosterExporter.Format format, boolean gzip) throws IOException {
+    long start = EXPORT_ROSTER.start();
+    boolean ok = false;
+    try {
+      ExportReport report = new RosterExporter(studentRepo, StudentRepository.DEFAULT_FETCH_SIZE)
+          .export(target, format, gzip);
+      ok = true;
+      return report;
+    } finally {
+      EXPORT_ROSTER.stop(start, ok);
+    }
+  }
+
+  /**
+   * Creates the student and takes a seat in {@code courseId} (if given) in one transaction.
+   *
+   * @throws CourseFullException if the course has no free seat
+   */
+  public Student addStudent(String matricola, String fullName, String email, Long courseId) {
+    long start = ADD_STUDENT.start();
+    boolean ok = false;
+    try {
+      Student added = enrollment.register(matricola, fullName, email, courseId);
+      ok = true;
+      return added;
+    } finally {
+      ADD_STUDENT.stop(start, ok);
+    }
+  }
 
-    if (courseId != null) {
-      Optional<Course> c = courseRepo.findById(courseId);
-      c.ifPresent(course -> s.getCourses().add(course));
+  /**
+   * Updates the student and moves them to {@code courseId}; the seat check is atomic.
+   *
+   * @throws CourseFullException if the target course has no free seat
+   */
+  public Student updateStudent(Long id, String matricola, String fullName, String email, Long courseId) {
+    long start = UPDATE_STUDENT.start();
+    boolean ok = false;
+    try {
+      Student updated = enrollment.reassign(id, matricola, fullName, email, courseId);
+      ok = true;
+      return updated;
+    } finally {
+      UPDATE_STUDENT.stop(start, ok);
     }
-    studentRepo.save(s);
   }
 
-  public void updateStudent(Long id, String matricola, String fullName, String email, Long courseId) {
-    // Use repository helper if you already have it; this matches your view’s call
-    studentRepo.updateStudent(id, matricola, fullName, email, courseId);
+  /**
+   * Enrolls an existing student; concurrent calls are committed together
+   * (see GroupCommitEnrollmentWriter).
+   */
+  public CompletableFuture<EnrollmentOutcome> enroll(Long studentId, Long courseId) {
+    return ENROLL.timeAsync(() -> enrollment.enroll(studentId, courseId));
   }
 
+  /** Deletes the student and gives their seats back to the inventory. */
   public void deleteStudent(Long id) {
-    studentRepo.deleteById(id);
+    long start = DELETE_STUDENT.start();
+    boolean ok = false;
+    try {
+      enrollment.deleteStudent(id);
+      ok = true;
+    } finally {
+      DELETE_STUDENT.stop(start, ok);
+    }
+  }
+
+  /** EntityManagers opened per operation; 1 on average when every repository call joined its unit. */
+  public UnitOfWorkStats unitOfWorkStats() {
+    return UnitOfWork.stats();
   }
 
   public int enrolledCount(Long courseId) {
-    if (courseId == null) return 0;
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = ENROLLED_COUNT.start();
+    boolean ok = false;
     try {
-      Long cnt = em.createQuery(
+      Long cnt = courseId == null ? null : UnitOfWork.read(em -> em.createQuery(
           "select count(s) from Course c join c.students s where c.id = :cid", Long.class)
           .setParameter("cid", courseId)
-          .getSingleResult();
-      return cnt == null ? 0 : cnt.intValue();
+          .getSingleResult());
+      int enrolled = cnt == null ? 0 : cnt.intValue();
+      ok = true;
+      return enrolled;
     } finally {
-      em.close();
+      ENROLLED_COUNT.stop(start, ok);
     }
   }
 
   public int findMaxSeats(Long courseId) {
-    if (courseId == null) return 0;
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = FIND_MAX_SEATS.start();
+    boolean ok = false;
     try {
-      Integer seats = em.createQuery(
+      Integer seats = courseId == null ? null : UnitOfWork.read(em -> em.createQuery(
           "select c.maxSeats from Course c where c.id = :cid", Integer.class)
           .setParameter("cid", courseId)
-          .getSingleResult();
-      return seats == null ? 0 : seats;
+          .getSingleResult());
+      int maxSeats = seats == null ? 0 : seats;
+      ok = true;
+      return maxSeats;
     } finally {
-      em.close();
+      FIND_MAX_SEATS.stop(start, ok);
     }
   }
 
   public boolean isStudentInCourse(Long studentId, Long courseId) {
-    if (studentId == null || courseId == null) return false;
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = IS_STUDENT_IN_COURSE.start();
+    boolean ok = false;
     try {
-      Long cnt = em.createQuery(
+      Long cnt = studentId == null || courseId == null ? null : UnitOfWork.read(em -> em.createQuery(
           "select count(s) from Course c join c.students s " +
           "where c.id = :cid and s.id = :sid", Long.class)
           .setParameter("cid", courseId)
           .setParameter("sid", studentId)
-          .getSingleResult();
-      return cnt != null && cnt > 0;
+          .getSingleResult());
+      boolean enrolled = cnt != null && cnt > 0;
+      ok = true;
+      return enrolled;
     } finally {
-      em.close();
+      IS_STUDENT_IN_COURSE.stop(start, ok);
     }
   }
+
+  // ---------- Async variants, for callers that must not block (the EDT, a server's request threads) ----------
+  // Same semantics as the blocking methods; failures complete the future exceptionally.
+
+  public CompletableFuture<List<Student>> loadAllAsync() {
+    return LOAD_ALL_ASYNC.timeAsync(() -> async.submit(this::loadAll));
+  }
+
+  public CompletableFuture<KeysetPage<Student>> loadPageAsync(Long afterId, int pageSize) {
+    return LOAD_PAGE_ASYNC.timeAsync(() -> async.submit(() -> loadPage(afterId, pageSize)));
+  }
+
+  public CompletableFuture<List<Student>> findAllWithCoursesAsync() {
+    return FIND_ALL_WITH_COURSES_ASYNC.timeAsync(() -> async.submit(this::findAllWithCourses));
+  }
+
+  public CompletableFuture<KeysetPage<Student>> findPageWithCoursesAsync(Long afterId, int pageSize) {
+    return FIND_PAGE_WITH_COURSES_ASYNC.timeAsync(() -> async.submit(() -> findPageWithCourses(afterId, pageSize)));
+  }
+
+  public CompletableFuture<List<Course>> loadAllCoursesAsync() {
+    return LOAD_ALL_COURSES_ASYNC.timeAsync(() -> async.submit(this::loadAllCourses));
+  }
+
+  public CompletableFuture<Student> addAsync(String matricola, String fullName, String email) {
+    return ADD_ASYNC.timeAsync(() -> async.submit(() -> add(matricola, fullName, email)));
+  }
+
+  public CompletableFuture<Student> addStudentAsync(String matricola, String fullName, String email, Long courseId) {
+    return ADD_STUDENT_ASYNC.timeAsync(() -> async.submit(() -> addStudent(matricola, fullName, email, courseId)));
+  }
+
+  public CompletableFuture<Student> updateAsync(Long id, String matricola, String fullName, String email) {
+    return UPDATE_ASYNC.timeAsync(() -> async.submit(() -> update(id, matricola, fullName, email)));
+  }
+
+  public CompletableFuture<Student> updateStudentAsync(Long id, String matricola, String fullName, String email,
+                                                       Long courseId) {
+    return UPDATE_STUDENT_ASYNC.timeAsync(() -> async.submit(() -> updateStudent(id, matricola, fullName, email, courseId)));
+  }
+
+  public CompletableFuture<Void> deleteAsync(Long id) {
+    return DELETE_ASYNC.timeAsync(() -> async.run(() -> deleteStudent(id)));
+  }
+
+  public CompletableFuture<Integer> enrolledCountAsync(Long courseId) {
+    return ENROLLED_COUNT_ASYNC.timeAsync(() -> async.submit(() -> enrolledCount(courseId)));
+  }
+
+  /** Queue depth, rejections and throughput of the executor behind the async variants. */
+  public ControllerExecutorStats executorStats() {
+    return async.stats();
+  }
 }
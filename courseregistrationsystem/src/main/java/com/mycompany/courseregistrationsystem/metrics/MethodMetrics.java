@@ -0,0 +1,122 @@
+package com.mycompany.courseregistrationsystem.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide registry of {@link MethodTimer}s for the repositories and
+ * controllers.
+ * <p>
+ * Each timer is published as an MXBean named
+ * {@code com.mycompany.courseregistrationsystem:type=MethodTimer,class=<Class>,name=<method>}
+ * (see it in JConsole or VisualVM), and every {@code crs.metrics.logSeconds}
+ * (default 60, 0 = never) the methods called during the interval are logged
+ * at INFO, the ones that took the most total time first.
+ * <p>
+ * {@code -Dcrs.metrics=off} turns recording off; the timers then cost one
+ * branch per call. MethodTimerBenchmark (JMH) measures the overhead.
+ */
+public final class MethodMetrics {
+
+  public static final String ENABLED_PROPERTY = "crs.metrics";
+  public static final String LOG_INTERVAL_PROPERTY = "crs.metrics.logSeconds";
+  public static final long DEFAULT_LOG_INTERVAL_SECONDS = 60;
+
+  public static final String DOMAIN = "com.mycompany.courseregistrationsystem";
+
+  private static final Logger log = LoggerFactory.getLogger(MethodMetrics.class);
+  private static final boolean ENABLED = !System.getProperty(ENABLED_PROPERTY, "on").trim().matches("(?i)off|false");
+  private static final ConcurrentMap<String, MethodTimer> timers = new ConcurrentHashMap<>();
+
+  private static ScheduledExecutorService logger;   // guarded by MethodMetrics.class
+
+  private MethodMetrics() { }
+
+  /** The timer of {@code owner.method}, created and published on first use. */
+  public static MethodTimer timer(Class<?> owner, String method) {
+    String name = owner.getSimpleName() + "." + method;
+    MethodTimer existing = timers.get(name);
+    if (existing != null) return existing;
+    MethodTimer created = new MethodTimer(name, ENABLED);
+    existing = timers.putIfAbsent(name, created);
+    if (existing != null) return existing;
+    if (ENABLED) {
+      register(owner.getSimpleName(), method, created);
+      startLogger();
+    }
+    return created;
+  }
+
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /** Every timer created so far, by name. */
+  public static Collection<MethodTimer> timers() {
+    List<MethodTimer> all = new ArrayList<>(timers.values());
+    all.sort(Comparator.comparing(MethodTimer::getMethod));
+    return Collections.unmodifiableList(all);
+  }
+
+  /** Logs the methods called since the previous summary; does nothing if none were. */
+  public static void logSummary() {
+    List<MethodTimer.Summary> lines = new ArrayList<>();
+    for (MethodTimer t : timers.values()) {
+      MethodTimer.Summary s = t.takeSummary();
+      if (s != null) lines.add(s);
+    }
+    if (lines.isEmpty() || !log.isInfoEnabled()) return;
+    lines.sort(Comparator.comparingDouble((MethodTimer.Summary s) -> s.totalNanos).reversed());
+    StringBuilder b = new StringBuilder("Method latencies since the last summary:");
+    for (MethodTimer.Summary s : lines) b.append(System.lineSeparator()).append("  ").append(s);
+    log.info(b.toString());
+  }
+
+  private static void register(String owner, String method, MethodTimer timer) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(DOMAIN + ":type=MethodTimer,class=" + owner
+          + ",name=" + ObjectName.quote(method));
+      server.registerMBean(timer, name);
+    } catch (InstanceAlreadyExistsException e) {
+      // Another class loader in this JVM (e.g. a test runner) published it first.
+      log.debug("MethodTimer {}.{} already registered", owner, method);
+    } catch (JMException e) {
+      log.warn("Could not publish MethodTimer {}.{} over JMX", owner, method, e);
+    }
+  }
+
+  private static synchronized void startLogger() {
+    if (logger != null) return;
+    long seconds = Long.getLong(LOG_INTERVAL_PROPERTY, DEFAULT_LOG_INTERVAL_SECONDS);
+    if (seconds <= 0) return;
+    logger = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "method-metrics-log");
+      t.setDaemon(true);
+      return t;
+    });
+    logger.scheduleAtFixedRate(() -> {
+      try {
+        logSummary();
+      } catch (RuntimeException e) {
+        log.warn("Method metrics summary failed", e);
+      }
+    }, seconds, seconds, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,168 @@
+package com.mycompany.courseregistrationsystem.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Call count, error count and latency histogram of one method.
+ * <p>
+ * Recording is wait-free and allocation-free: the latency goes into an
+ * HdrHistogram {@link Recorder}, whose active histogram is only swapped out
+ * when someone reads (JMX, the periodic log). Readers fold each swapped-out
+ * interval into the running totals.
+ * <p>
+ * Obtain instances from {@link MethodMetrics#timer} and time a call with
+ * {@link #start}/{@link #stop}, or {@link #timeAsync} for a future; with
+ * {@code -Dcrs.metrics=off} they record nothing.
+ */
+public final class MethodTimer implements MethodTimerMXBean {
+
+  /** 1% resolution at any magnitude, from nanoseconds to minutes. */
+  static final int SIGNIFICANT_DIGITS = 2;
+
+  private final String method;
+  private final boolean enabled;
+  private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+  private final LongAdder errors = new LongAdder();
+
+  // guarded by this
+  private Histogram interval;
+  private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+  private final Histogram sinceLog = new Histogram(SIGNIFICANT_DIGITS);
+  private long errorsBeforeReset;
+  private long errorsAtLog;
+
+  MethodTimer(String method, boolean enabled) {
+    this.method = method;
+    this.enabled = enabled;
+  }
+
+  /** Times an asynchronous call up to the completion of its future, queueing included. */
+  public <T> CompletableFuture<T> timeAsync(Supplier<CompletableFuture<T>> call) {
+    if (!enabled) return call.get();
+    long start = System.nanoTime();
+    CompletableFuture<T> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException | Error e) {
+      stop(start, false);
+      throw e;
+    }
+    future.whenComplete((result, error) -> stop(start, error == null));
+    return future;
+  }
+
+  /**
+   * With {@link #stop}, times a method body without wrapping it in a
+   * lambda: {@code long start = t.start(); boolean ok = false;
+   * try { ...; ok = true; } finally { t.stop(start, ok); }}
+   */
+  public long start() {
+    return enabled ? System.nanoTime() : 0L;
+  }
+
+  public void stop(long start, boolean ok) {
+    if (!enabled) return;
+    recorder.recordValue(System.nanoTime() - start);
+    if (!ok) errors.increment();
+  }
+
+  @Override public String getMethod() { return method; }
+
+  @Override
+  public synchronized long getCount() {
+    return drain().getTotalCount();
+  }
+
+  @Override
+  public synchronized long getErrors() {
+    return errors.sum() - errorsBeforeReset;
+  }
+
+  @Override public double getMeanMicros() { return micros(drainAndGet(-1)); }
+  @Override public double getP50Micros() { return micros(drainAndGet(50)); }
+  @Override public double getP99Micros() { return micros(drainAndGet(99)); }
+  @Override public double getP999Micros() { return micros(drainAndGet(99.9)); }
+  @Override public double getMaxMicros() { return micros(drainAndGet(100)); }
+
+  @Override
+  public synchronized void reset() {
+    drain();
+    total.reset();
+    errorsBeforeReset = errors.sum();
+  }
+
+  /**
+   * The calls since the previous summary, formatted for the log, or null if
+   * there were none; starts the next interval.
+   */
+  synchronized Summary takeSummary() {
+    drain();
+    long count = sinceLog.getTotalCount();
+    long errorCount = errors.sum();
+    Summary s = count == 0 ? null : new Summary(method, count, errorCount - errorsAtLog,
+        sinceLog.getValueAtPercentile(50), sinceLog.getValueAtPercentile(99),
+        sinceLog.getValueAtPercentile(99.9), sinceLog.getMaxValue(), sinceLog.getMean() * count);
+    sinceLog.reset();
+    errorsAtLog = errorCount;
+    return s;
+  }
+
+  private synchronized double drainAndGet(double percentile) {
+    Histogram h = drain();
+    if (h.getTotalCount() == 0) return 0d;
+    if (percentile < 0) return h.getMean();
+    return percentile >= 100 ? h.getMaxValue() : h.getValueAtPercentile(percentile);
+  }
+
+  private Histogram drain() {
+    interval = recorder.getIntervalHistogram(interval);
+    total.add(interval);
+    sinceLog.add(interval);
+    return total;
+  }
+
+  private static double micros(double nanos) {
+    return nanos / 1_000d;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s count=%d errors=%d p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+        method, getCount(), getErrors(), getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+  }
+
+  /** One method's line in the periodic log. */
+  static final class Summary {
+    final String method;
+    final long count;
+    final long errors;
+    final long p50;
+    final long p99;
+    final long p999;
+    final long max;
+    final double totalNanos;
+
+    Summary(String method, long count, long errors, long p50, long p99, long p999, long max,
+            double totalNanos) {
+      this.method = method;
+      this.count = count;
+      this.errors = errors;
+      this.p50 = p50;
+      this.p99 = p99;
+      this.p999 = p999;
+      this.max = max;
+      this.totalNanos = totalNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-40s calls=%d errors=%d p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms",
+          method, count, errors, p50 / 1e6, p99 / 1e6, p999 / 1e6, max / 1e6);
+    }
+  }
+}
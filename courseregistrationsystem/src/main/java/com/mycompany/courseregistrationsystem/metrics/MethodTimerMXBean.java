@@ -0,0 +1,28 @@
+package com.mycompany.courseregistrationsystem.metrics;
+
+/**
+ * JMX view of one instrumented method: calls and latencies since start (or
+ * the last {@link #reset()}). Latencies are in microseconds, with two
+ * significant digits.
+ */
+public interface MethodTimerMXBean {
+
+  String getMethod();
+
+  long getCount();
+
+  /** Calls that ended with an exception (included in the count and latencies). */
+  long getErrors();
+
+  double getMeanMicros();
+
+  double getP50Micros();
+
+  double getP99Micros();
+
+  double getP999Micros();
+
+  double getMaxMicros();
+
+  void reset();
+}
@@ -1,15 +1,22 @@
 package com.mycompany.courseregistrationsystem.model;
 
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "course")
 @Table(name = "courses",
        uniqueConstraints = @UniqueConstraint(name = "uk_course_code", columnNames = "code"))
 public class Course {
 
-  @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "course_seq")
+  @SequenceGenerator(name = "course_seq", sequenceName = "course_seq", allocationSize = 50)
   private Long id;
 
   @Column(nullable = false, length = 32, unique = true)
@@ -24,6 +31,25 @@ public class Course {
   @Column(nullable = false)
   private int maxSeats;
 
+  /**
+   * Seats taken. Maintained only by the guarded update statements in
+   * SeatCounter, never written through the entity, so a merge of a stale
+   * Course cannot overwrite it. Those statements evict the cached Course
+   * after commit; the value is for display, capacity checks never read it.
+   */
+  @Column(name = "enrolled", nullable = false, insertable = false, updatable = false,
+          columnDefinition = "integer default 0")
+  private int enrolled;
+
+  /**
+   * When the row last changed: set on every write through the entity and
+   * by the SeatCounter statements. Null for rows no one touched since the
+   * column was added. The roster snapshot catches up from it (see
+   * RosterSnapshotStore).
+   */
+  @Column(name = "modified_at")
+  private Instant modifiedAt;
+
   @ManyToMany(mappedBy = "courses")
   private Set<Student> students = new HashSet<>();
 
@@ -38,5 +64,11 @@ public class Course {
   public void setCfu(int cfu) { this.cfu = cfu; }
   public int getMaxSeats() { return maxSeats; }
   public void setMaxSeats(int maxSeats) { this.maxSeats = maxSeats; }
+  public int getEnrolled() { return enrolled; }
+  public Instant getModifiedAt() { return modifiedAt; }
   public Set<Student> getStudents() { return students; }
+
+  @PrePersist
+  @PreUpdate
+  public void touch() { modifiedAt = Instant.now(); }
 }
@@ -0,0 +1,43 @@
+package com.mycompany.courseregistrationsystem.model;
+
+/**
+ * Read-only report row: one course with the number of students enrolled in
+ * it, counted from the enrollments table (see ReportRepository).
+ */
+public final class CourseFillRate {
+
+  private final Long id;
+  private final String code;
+  private final String title;
+  private final int maxSeats;
+  private final int enrolled;
+
+  /** Constructor-expression target for JPQL ("select new ...CourseFillRate(...)"). */
+  public CourseFillRate(Long id, String code, String title, Integer maxSeats, Long enrolled) {
+    this(id, code, title, maxSeats == null ? 0 : maxSeats, enrolled == null ? 0 : enrolled.intValue());
+  }
+
+  public CourseFillRate(Long id, String code, String title, int maxSeats, int enrolled) {
+    this.id = id;
+    this.code = code;
+    this.title = title;
+    this.maxSeats = maxSeats;
+    this.enrolled = enrolled;
+  }
+
+  public Long getId() { return id; }
+  public String getCode() { return code; }
+  public String getTitle() { return title; }
+  public int getMaxSeats() { return maxSeats; }
+  public int getEnrolled() { return enrolled; }
+
+  /** {@code enrolled / maxSeats}; 0 for a course without seats. Above 1 when over capacity. */
+  public double getFillRate() {
+    return maxSeats <= 0 ? 0d : (double) enrolled / maxSeats;
+  }
+
+  /** More students than seats, which only administrative writes (imports, raw saves) can cause. */
+  public boolean isOverCapacity() {
+    return enrolled > maxSeats;
+  }
+}
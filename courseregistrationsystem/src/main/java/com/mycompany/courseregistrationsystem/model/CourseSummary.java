@@ -0,0 +1,40 @@
+package com.mycompany.courseregistrationsystem.model;
+
+/**
+ * Read-only row of the course table: the course columns plus the number of
+ * enrolled students, produced by a single grouped query
+ * (see CourseRepository#findAllSummaries).
+ */
+public final class CourseSummary {
+
+  private final Long id;
+  private final String code;
+  private final String title;
+  private final int cfu;
+  private final int maxSeats;
+  private final int enrolled;
+
+  /** Constructor-expression target for JPQL ("select new ...CourseSummary(...)"). */
+  public CourseSummary(Long id, String code, String title, Integer cfu, Integer maxSeats, Long enrolled) {
+    this(id, code, title,
+        cfu == null ? 0 : cfu,
+        maxSeats == null ? 0 : maxSeats,
+        enrolled == null ? 0 : enrolled.intValue());
+  }
+
+  public CourseSummary(Long id, String code, String title, int cfu, int maxSeats, int enrolled) {
+    this.id = id;
+    this.code = code;
+    this.title = title;
+    this.cfu = cfu;
+    this.maxSeats = maxSeats;
+    this.enrolled = enrolled;
+  }
+
+  public Long getId() { return id; }
+  public String getCode() { return code; }
+  public String getTitle() { return title; }
+  public int getCfu() { return cfu; }
+  public int getMaxSeats() { return maxSeats; }
+  public int getEnrolled() { return enrolled; }
+}
@@ -0,0 +1,55 @@
+package com.mycompany.courseregistrationsystem.model;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of a report: bucket {@code i} counts the values from
+ * {@code i * bucketWidth} to {@code (i + 1) * bucketWidth - 1}. What the
+ * values are, and whether the last bucket also holds everything above it,
+ * is up to the report that made it (see ReportService).
+ */
+public final class Distribution {
+
+  private final int bucketWidth;
+  private final long[] counts;
+
+  public Distribution(int bucketWidth, long[] counts) {
+    if (bucketWidth <= 0) throw new IllegalArgumentException("Bucket width must be positive.");
+    this.bucketWidth = bucketWidth;
+    this.counts = counts.clone();
+  }
+
+  public int getBucketWidth() { return bucketWidth; }
+  public int size() { return counts.length; }
+
+  public long getCount(int bucket) { return counts[bucket]; }
+
+  /** The smallest value bucket {@code bucket} holds. */
+  public int lowerBound(int bucket) { return bucket * bucketWidth; }
+
+  public long[] getCounts() { return counts.clone(); }
+
+  public long getTotal() {
+    long n = 0;
+    for (long c : counts) n += c;
+    return n;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof Distribution)) return false;
+    Distribution d = (Distribution) o;
+    return bucketWidth == d.bucketWidth && Arrays.equals(counts, d.counts);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * bucketWidth + Arrays.hashCode(counts);
+  }
+
+  @Override
+  public String toString() {
+    return "Distribution[width=" + bucketWidth + ", counts=" + Arrays.toString(counts) + "]";
+  }
+}
@@ -0,0 +1,21 @@
+package com.mycompany.courseregistrationsystem.model;
+
+/**
+ * Read-only row of the enrollments join table: one student in one course.
+ * Produced in course id order by StudentRepository#forEachEnrollment, so a
+ * course's rows are adjacent.
+ */
+public final class EnrollmentRow {
+
+  private final Long studentId;
+  private final Long courseId;
+
+  /** Constructor-expression target for JPQL ("select new ...EnrollmentRow(...)"). */
+  public EnrollmentRow(Long studentId, Long courseId) {
+    this.studentId = studentId;
+    this.courseId = courseId;
+  }
+
+  public Long getStudentId() { return studentId; }
+  public Long getCourseId() { return courseId; }
+}
@@ -0,0 +1,32 @@
+package com.mycompany.courseregistrationsystem.model;
+
+/**
+ * Read-only row of the roster: one student and one of their courses, or the
+ * student alone (null course code) if they take none. Produced in student id
+ * order by StudentRepository#forEachRosterRow, so a student's rows are
+ * adjacent.
+ */
+public final class RosterRow {
+
+  private final Long studentId;
+  private final String matricola;
+  private final String fullName;
+  private final String email;
+  private final String courseCode;
+
+  /** Constructor-expression target for JPQL ("select new ...RosterRow(...)"). */
+  public RosterRow(Long studentId, String matricola, String fullName, String email, String courseCode) {
+    this.studentId = studentId;
+    this.matricola = matricola;
+    this.fullName = fullName;
+    this.email = email;
+    this.courseCode = courseCode;
+  }
+
+  public Long getStudentId() { return studentId; }
+  public String getMatricola() { return matricola; }
+  public String getFullName() { return fullName; }
+  public String getEmail() { return email; }
+  /** Null when the student takes no course. */
+  public String getCourseCode() { return courseCode; }
+}
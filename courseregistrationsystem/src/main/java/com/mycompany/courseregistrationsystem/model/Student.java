@@ -1,6 +1,7 @@
 package com.mycompany.courseregistrationsystem.model;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -10,7 +11,8 @@ import java.util.Set;
 public class Student {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+  @SequenceGenerator(name = "student_seq", sequenceName = "student_seq", allocationSize = 50)
   private Long id;
 
   @Column(nullable = false, length = 32, unique = true)
@@ -28,6 +30,14 @@ public class Student {
       inverseJoinColumns = @JoinColumn(name = "course_id"))
   private Set<Course> courses = new HashSet<Course>();
 
+  /**
+   * When the row last changed, as for Course#getModifiedAt. Changing only
+   * the courses does not make the entity dirty, so writers that do that
+   * call {@link #touch()} themselves.
+   */
+  @Column(name = "modified_at")
+  private Instant modifiedAt;
+
   public Student() {}
 
   public Long getId() { return id; }
@@ -38,4 +48,9 @@ public class Student {
   public String getEmail() { return email; }
   public void setEmail(String email) { this.email = email; }
   public Set<Course> getCourses() { return courses; }
+  public Instant getModifiedAt() { return modifiedAt; }
+
+  @PrePersist
+  @PreUpdate
+  public void touch() { modifiedAt = Instant.now(); }
 }
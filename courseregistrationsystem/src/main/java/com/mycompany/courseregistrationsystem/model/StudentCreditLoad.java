@@ -0,0 +1,33 @@
+package com.mycompany.courseregistrationsystem.model;
+
+/**
+ * Read-only report row: one student with the number of courses they take
+ * and those courses' CFU added up (see ReportRepository).
+ */
+public final class StudentCreditLoad {
+
+  private final Long id;
+  private final String matricola;
+  private final String fullName;
+  private final int courses;
+  private final int cfu;
+
+  /** Constructor-expression target for JPQL ("select new ...StudentCreditLoad(...)"). */
+  public StudentCreditLoad(Long id, String matricola, String fullName, Long courses, Long cfu) {
+    this(id, matricola, fullName, courses == null ? 0 : courses.intValue(), cfu == null ? 0 : cfu.intValue());
+  }
+
+  public StudentCreditLoad(Long id, String matricola, String fullName, int courses, int cfu) {
+    this.id = id;
+    this.matricola = matricola;
+    this.fullName = fullName;
+    this.courses = courses;
+    this.cfu = cfu;
+  }
+
+  public Long getId() { return id; }
+  public String getMatricola() { return matricola; }
+  public String getFullName() { return fullName; }
+  public int getCourses() { return courses; }
+  public int getCfu() { return cfu; }
+}
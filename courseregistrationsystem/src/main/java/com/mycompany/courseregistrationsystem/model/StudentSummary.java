@@ -0,0 +1,32 @@
+package com.mycompany.courseregistrationsystem.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only row of the student table: the student columns plus the codes of
+ * their courses, as served from a roster snapshot (see RosterSnapshot).
+ */
+public final class StudentSummary {
+
+  private final Long id;
+  private final String matricola;
+  private final String fullName;
+  private final String email;
+  private final List<String> courseCodes;
+
+  public StudentSummary(Long id, String matricola, String fullName, String email, List<String> courseCodes) {
+    this.id = id;
+    this.matricola = matricola;
+    this.fullName = fullName;
+    this.email = email;
+    this.courseCodes = Collections.unmodifiableList(new ArrayList<>(courseCodes));
+  }
+
+  public Long getId() { return id; }
+  public String getMatricola() { return matricola; }
+  public String getFullName() { return fullName; }
+  public String getEmail() { return email; }
+  public List<String> getCourseCodes() { return courseCodes; }
+}
@@ -0,0 +1,71 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Hit/miss counters of the Course entity region and the catalog query
+ * region. All zero when the cache or {@code hibernate.generate_statistics}
+ * is off.
+ */
+public final class CatalogCacheStats {
+
+  /** Region of the Course entity, as declared on the class. */
+  public static final String COURSE_REGION = "course";
+
+  private final long entityHits;
+  private final long entityMisses;
+  private final long entityPuts;
+  private final long queryHits;
+  private final long queryMisses;
+  private final long queryPuts;
+
+  private CatalogCacheStats(CacheRegionStatistics entity, CacheRegionStatistics query) {
+    this.entityHits = entity == null ? 0 : entity.getHitCount();
+    this.entityMisses = entity == null ? 0 : entity.getMissCount();
+    this.entityPuts = entity == null ? 0 : entity.getPutCount();
+    this.queryHits = query == null ? 0 : query.getHitCount();
+    this.queryMisses = query == null ? 0 : query.getMissCount();
+    this.queryPuts = query == null ? 0 : query.getPutCount();
+  }
+
+  public static CatalogCacheStats of(EntityManagerFactory emf) {
+    Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+    if (!stats.isStatisticsEnabled()) return new CatalogCacheStats(null, null);
+    return new CatalogCacheStats(region(stats, COURSE_REGION, false),
+        region(stats, CourseRepository.CATALOG_QUERY_REGION, true));
+  }
+
+  /** Null when the region does not exist (cache disabled). */
+  private static CacheRegionStatistics region(Statistics stats, String name, boolean query) {
+    try {
+      return query ? stats.getQueryRegionStatistics(name) : stats.getDomainDataRegionStatistics(name);
+    } catch (IllegalArgumentException noSuchRegion) {
+      return null;
+    }
+  }
+
+  public long getEntityHits() { return entityHits; }
+  public long getEntityMisses() { return entityMisses; }
+  public long getEntityPuts() { return entityPuts; }
+  public long getQueryHits() { return queryHits; }
+  public long getQueryMisses() { return queryMisses; }
+  public long getQueryPuts() { return queryPuts; }
+
+  /** Fraction of entity plus query lookups served from the cache. */
+  public double getHitRatio() {
+    long hits = entityHits + queryHits;
+    long total = hits + entityMisses + queryMisses;
+    return total == 0 ? 0d : (double) hits / total;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("course hits=%d misses=%d puts=%d | catalog queries hits=%d misses=%d puts=%d "
+        + "| hit ratio=%.2f", entityHits, entityMisses, entityPuts, queryHits, queryMisses, queryPuts,
+        getHitRatio());
+  }
+}
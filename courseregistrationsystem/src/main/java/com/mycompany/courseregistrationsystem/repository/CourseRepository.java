@@ -1,87 +1,274 @@
 package com.mycompany.courseregistrationsystem.repository;
 
-import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.metrics.MethodMetrics;
+import com.mycompany.courseregistrationsystem.metrics.MethodTimer;
 import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import org.hibernate.jpa.QueryHints;
 
-import javax.persistence.EntityManager;
-import javax.persistence.EntityTransaction;
 import javax.persistence.TypedQuery;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
+/** Course persistence; every method joins the thread's UnitOfWork when one is open. */
 public class CourseRepository {
 
+  /**
+   * Query cache region for the catalog lookups. Results are invalidated by
+   * any Hibernate write to the courses table; seat-counter statements do not
+   * touch it (see SeatCounter).
+   */
+  public static final String CATALOG_QUERY_REGION = "catalog-queries";
+
+  // Latency of each public method, published over JMX (see MethodMetrics).
+  private static final MethodTimer SAVE = MethodMetrics.timer(CourseRepository.class, "save");
+  private static final MethodTimer FIND_ALL = MethodMetrics.timer(CourseRepository.class, "findAll");
+  private static final MethodTimer FIND_PAGE = MethodMetrics.timer(CourseRepository.class, "findPage");
+  private static final MethodTimer FIND_ALL_SUMMARIES = MethodMetrics.timer(CourseRepository.class, "findAllSummaries");
+  private static final MethodTimer FIND_SUMMARY_SLICE = MethodMetrics.timer(CourseRepository.class, "findSummarySlice");
+  private static final MethodTimer FIND_SUMMARIES_CHANGED_SINCE = MethodMetrics.timer(CourseRepository.class, "findSummariesChangedSince");
+  private static final MethodTimer FIND_IDS = MethodMetrics.timer(CourseRepository.class, "findIds");
+  private static final MethodTimer COUNT = MethodMetrics.timer(CourseRepository.class, "count");
+  private static final MethodTimer FIND_SUMMARY = MethodMetrics.timer(CourseRepository.class, "findSummary");
+  private static final MethodTimer FIND_BY_CODE = MethodMetrics.timer(CourseRepository.class, "findByCode");
+  private static final MethodTimer DELETE_BY_ID = MethodMetrics.timer(CourseRepository.class, "deleteById");
+  private static final MethodTimer FIND_BY_ID = MethodMetrics.timer(CourseRepository.class, "findById");
+
   public Course save(Course c) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
-    EntityTransaction tx = em.getTransaction();
+    long start = SAVE.start();
+    boolean ok = false;
     try {
-      tx.begin();
-
-      if (c.getId() == null) {
+      Course result = UnitOfWork.call(em -> {
+        Course saved = c;
+        if (c.getId() == null) {
 
-        TypedQuery<Long> q = em.createQuery(
-            "select count(x) from Course x where x.code = :code", Long.class);
-        q.setParameter("code", c.getCode());
-        if (q.getSingleResult() > 0L) {
-          throw new javax.persistence.PersistenceException("Duplicate course code: " + c.getCode());
+          TypedQuery<Long> q = em.createQuery(
+              "select count(x) from Course x where x.code = :code", Long.class);
+          q.setParameter("code", c.getCode());
+          if (q.getSingleResult() > 0L) {
+            throw new javax.persistence.PersistenceException("Duplicate course code: " + c.getCode());
+          }
+          em.persist(c);
+        } else {
+          saved = em.merge(c);
         }
-        em.persist(c);
-      } else {
-        c = em.merge(c);
-      }
-
-      em.flush();
-      tx.commit();
-      return c;
+
+        em.flush();
+        return saved;
+      });
+      ok = true;
+      return result;
     } finally {
-      if (tx.isActive()) tx.rollback();
-      em.close();
+      SAVE.stop(start, ok);
     }
   }
 
   public List<Course> findAll() {
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = FIND_ALL.start();
+    boolean ok = false;
+    try {
+      List<Course> all = UnitOfWork.read(em ->
+          em.createQuery("from Course c order by c.id", Course.class)
+              .setHint(QueryHints.HINT_CACHEABLE, true)
+              .setHint(QueryHints.HINT_CACHE_REGION, CATALOG_QUERY_REGION)
+              .getResultList());
+      ok = true;
+      return all;
+    } finally {
+      FIND_ALL.stop(start, ok);
+    }
+  }
+
+  /** Keyset page of courses with id greater than {@code afterId} (null = from the start). */
+  public KeysetPage<Course> findPage(Long afterId, int pageSize) {
+    long start = FIND_PAGE.start();
+    boolean ok = false;
+    try {
+      KeysetPage.checkPageSize(pageSize);
+      KeysetPage<Course> page = UnitOfWork.read(em -> {
+        TypedQuery<Course> q = afterId == null
+            ? em.createQuery("from Course c order by c.id", Course.class)
+            : em.createQuery("from Course c where c.id > :after order by c.id", Course.class)
+                .setParameter("after", afterId);
+        return KeysetPage.of(q.setMaxResults(pageSize + 1).getResultList(), pageSize, Course::getId);
+      });
+      ok = true;
+      return page;
+    } finally {
+      FIND_PAGE.stop(start, ok);
+    }
+  }
+
+  /**
+   * One grouped left join over the enrollments: every course with its
+   * enrolled-student count, without a per-course count query.
+   */
+  public List<CourseSummary> findAllSummaries() {
+    long start = FIND_ALL_SUMMARIES.start();
+    boolean ok = false;
+    try {
+      List<CourseSummary> summaries = UnitOfWork.read(em -> em.createQuery(
+          "select new com.mycompany.courseregistrationsystem.model.CourseSummary(" +
+          "c.id, c.code, c.title, c.cfu, c.maxSeats, count(s.id)) " +
+          "from Course c left join c.students s " +
+          "group by c.id, c.code, c.title, c.cfu, c.maxSeats " +
+          "order by c.id", CourseSummary.class).getResultList());
+      ok = true;
+      return summaries;
+    } finally {
+      FIND_ALL_SUMMARIES.stop(start, ok);
+    }
+  }
+
+  /**
+   * Up to {@code limit} rows of {@link #findAllSummaries()}: the ones after
+   * {@code afterId} when the caller knows the id just before the slice (a
+   * seek), otherwise from row {@code offset}.
+   */
+  public List<CourseSummary> findSummarySlice(Long afterId, int offset, int limit) {
+    long start = FIND_SUMMARY_SLICE.start();
+    boolean ok = false;
+    try {
+      KeysetPage.checkPageSize(limit);
+      if (offset < 0) throw new IllegalArgumentException("Offset must not be negative.");
+      List<CourseSummary> slice = UnitOfWork.read(em -> {
+        TypedQuery<CourseSummary> q = em.createQuery(
+            "select new com.mycompany.courseregistrationsystem.model.CourseSummary(" +
+            "c.id, c.code, c.title, c.cfu, c.maxSeats, count(s.id)) " +
+            "from Course c left join c.students s " +
+            (afterId == null ? "" : "where c.id > :after ") +
+            "group by c.id, c.code, c.title, c.cfu, c.maxSeats " +
+            "order by c.id", CourseSummary.class);
+        if (afterId == null) q.setFirstResult(offset);
+        else q.setParameter("after", afterId);
+        return q.setMaxResults(limit).getResultList();
+      });
+      ok = true;
+      return slice;
+    } finally {
+      FIND_SUMMARY_SLICE.stop(start, ok);
+    }
+  }
+
+  /**
+   * The rows of {@link #findAllSummaries()} that changed after {@code since}
+   * or whose id is above {@code afterId} (created since, stamped or not).
+   */
+  public List<CourseSummary> findSummariesChangedSince(Instant since, long afterId) {
+    long start = FIND_SUMMARIES_CHANGED_SINCE.start();
+    boolean ok = false;
+    try {
+      List<CourseSummary> changed = UnitOfWork.read(em -> em.createQuery(
+          "select new com.mycompany.courseregistrationsystem.model.CourseSummary(" +
+          "c.id, c.code, c.title, c.cfu, c.maxSeats, count(s.id)) " +
+          "from Course c left join c.students s " +
+          "where c.id > :after or c.modifiedAt > :since " +
+          "group by c.id, c.code, c.title, c.cfu, c.maxSeats " +
+          "order by c.id", CourseSummary.class)
+          .setParameter("after", afterId)
+          .setParameter("since", since)
+          .getResultList());
+      ok = true;
+      return changed;
+    } finally {
+      FIND_SUMMARIES_CHANGED_SINCE.stop(start, ok);
+    }
+  }
+
+  /** Every course id, ascending. */
+  public List<Long> findIds() {
+    long start = FIND_IDS.start();
+    boolean ok = false;
+    try {
+      List<Long> ids = UnitOfWork.read(em ->
+          em.createQuery("select c.id from Course c order by c.id", Long.class).getResultList());
+      ok = true;
+      return ids;
+    } finally {
+      FIND_IDS.stop(start, ok);
+    }
+  }
+
+  public int count() {
+    long start = COUNT.start();
+    boolean ok = false;
+    try {
+      int count = UnitOfWork.read(em ->
+          em.createQuery("select count(c) from Course c", Long.class).getSingleResult().intValue());
+      ok = true;
+      return count;
+    } finally {
+      COUNT.stop(start, ok);
+    }
+  }
+
+  /** One row of {@link #findAllSummaries()}; empty if the course is gone. */
+  public Optional<CourseSummary> findSummary(Long id) {
+    long start = FIND_SUMMARY.start();
+    boolean ok = false;
     try {
-      return em.createQuery("from Course c order by c.id", Course.class).getResultList();
+      Optional<CourseSummary> summary = UnitOfWork.read(em -> em.createQuery(
+          "select new com.mycompany.courseregistrationsystem.model.CourseSummary(" +
+          "c.id, c.code, c.title, c.cfu, c.maxSeats, count(s.id)) " +
+          "from Course c left join c.students s " +
+          "where c.id = :id " +
+          "group by c.id, c.code, c.title, c.cfu, c.maxSeats", CourseSummary.class)
+          .setParameter("id", id)
+          .getResultList()
+          .stream()
+          .findFirst());
+      ok = true;
+      return summary;
     } finally {
-      em.close();
+      FIND_SUMMARY.stop(start, ok);
     }
   }
 
   public Optional<Course> findByCode(String code) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = FIND_BY_CODE.start();
+    boolean ok = false;
     try {
-      return em.createQuery("from Course c where c.code = :code", Course.class)
-          .setParameter("code", code)
-          .getResultStream()
-          .findFirst();
+      Optional<Course> course = UnitOfWork.read(em ->
+          em.createQuery("from Course c where c.code = :code", Course.class)
+              .setParameter("code", code)
+              .setHint(QueryHints.HINT_CACHEABLE, true)
+              .setHint(QueryHints.HINT_CACHE_REGION, CATALOG_QUERY_REGION)
+              .getResultList()
+              .stream()
+              .findFirst());
+      ok = true;
+      return course;
     } finally {
-      em.close();
+      FIND_BY_CODE.stop(start, ok);
     }
   }
 
   public void deleteById(Long id) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
-    EntityTransaction tx = em.getTransaction();
+    long start = DELETE_BY_ID.start();
+    boolean ok = false;
     try {
-      tx.begin();
-      Course c = em.find(Course.class, id);
-      if (c != null) {
-        em.remove(c);
-      }
-      tx.commit();
+      UnitOfWork.run(em -> {
+        Course c = em.find(Course.class, id);
+        if (c != null) {
+          em.remove(c);
+        }
+      });
+      ok = true;
     } finally {
-      if (tx.isActive()) tx.rollback();
-      em.close();
+      DELETE_BY_ID.stop(start, ok);
     }
   }
 
   public Optional<Course> findById(Long id) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = FIND_BY_ID.start();
+    boolean ok = false;
     try {
-      return Optional.ofNullable(em.find(Course.class, id));
+      Optional<Course> course = UnitOfWork.read(em -> Optional.ofNullable(em.find(Course.class, id)));
+      ok = true;
+      return course;
     } finally {
-      em.close();
+      FIND_BY_ID.stop(start, ok);
     }
   }
 }
@@ -0,0 +1,43 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import javax.persistence.EntityManager;
+import java.util.function.Consumer;
+
+/**
+ * Forward-only cursor reads for the streaming repository methods. Rows come
+ * from the database {@code fetchSize} at a time and are handed to the action
+ * one by one; entities are evicted from the persistence context as soon as
+ * the action returns, so nothing accumulates however long the result is.
+ */
+final class Cursors {
+
+  private Cursors() { }
+
+  static void checkFetchSize(int fetchSize) {
+    if (fetchSize <= 0) throw new IllegalArgumentException("Fetch size must be positive.");
+  }
+
+  /** @return the number of rows passed to {@code action} */
+  static <T> long forEach(EntityManager em, Query<T> query, int fetchSize, boolean entities,
+                          Consumer<? super T> action) {
+    query.setFetchSize(fetchSize).setReadOnly(true).setCacheMode(CacheMode.IGNORE);
+    Session session = em.unwrap(Session.class);
+    long n = 0;
+    try (ScrollableResults rows = query.scroll(ScrollMode.FORWARD_ONLY)) {
+      while (rows.next()) {
+        @SuppressWarnings("unchecked")
+        T row = (T) rows.get(0);
+        action.accept(row);
+        if (entities) session.evict(row);
+        n++;
+      }
+    }
+    return n;
+  }
+}
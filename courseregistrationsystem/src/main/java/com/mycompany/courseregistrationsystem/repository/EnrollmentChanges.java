@@ -0,0 +1,95 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells in-memory copies of the enrollments table (EnrollmentIndex) which
+ * rows moved, once the writing transaction has committed.
+ * <p>
+ * Writers that change one student's enrollments (EnrollmentService, the
+ * group-commit writer, StudentRepository) announce exactly what changed,
+ * and only for a committed transaction, so listeners can apply it as is.
+ * Bulk writers (CSV import, DatasetGenerator) announce the courses they
+ * touched; listeners read those again.
+ */
+public final class EnrollmentChanges {
+
+  /** Called on the writing thread after its transaction committed; must not block. */
+  public interface Listener {
+
+    /** The student joined the courses {@code joined} and left the courses {@code left}. */
+    void studentMoved(Long studentId, Collection<Long> joined, Collection<Long> left);
+
+    /** The student was deleted, together with their enrollments. */
+    void studentRemoved(Long studentId);
+
+    /** Any number of students joined or left these courses. */
+    void coursesChanged(Collection<Long> courseIds);
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(EnrollmentChanges.class);
+
+  private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  private EnrollmentChanges() { }
+
+  /** Adds the listener unless it is already registered. */
+  public static void addListener(Listener l) {
+    listeners.addIfAbsent(l);
+  }
+
+  public static void removeListener(Listener l) {
+    listeners.remove(l);
+  }
+
+  /** Announces the student's move once {@code em}'s transaction commits; nothing on rollback. */
+  public static void afterCommit(EntityManager em, Long studentId, Collection<Long> joined, Collection<Long> left) {
+    if (joined.isEmpty() && left.isEmpty()) return;
+    UnitOfWork.afterCompletion(em, committed -> {
+      if (committed) fireStudentMoved(studentId, joined, left);
+    });
+  }
+
+  /** Announces a single enrollment once {@code em}'s transaction commits. */
+  public static void joinedAfterCommit(EntityManager em, Long studentId, Long courseId) {
+    afterCommit(em, studentId, Collections.singleton(courseId), Collections.<Long>emptySet());
+  }
+
+  public static void fireStudentMoved(Long studentId, Collection<Long> joined, Collection<Long> left) {
+    for (Listener l : listeners) {
+      try {
+        l.studentMoved(studentId, joined, left);
+      } catch (RuntimeException e) {
+        log.warn("Enrollment listener {} failed", l, e);
+      }
+    }
+  }
+
+  public static void fireStudentRemoved(Long studentId) {
+    for (Listener l : listeners) {
+      try {
+        l.studentRemoved(studentId);
+      } catch (RuntimeException e) {
+        log.warn("Enrollment listener {} failed", l, e);
+      }
+    }
+  }
+
+  public static void fireCoursesChanged(Collection<Long> courseIds) {
+    if (courseIds.isEmpty()) return;
+    for (Listener l : listeners) {
+      try {
+        l.coursesChanged(courseIds);
+      } catch (RuntimeException e) {
+        log.warn("Enrollment listener {} failed", l, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Keeps the id sequences of Course and Student ahead of the ids already in
+ * their tables.
+ * <p>
+ * The ids used to come from identity columns; {@code hbm2ddl=update}
+ * creates the sequences that replaced them starting at 1, so on a database
+ * with existing rows the first pooled blocks would collide with them. Rows
+ * written with plain SQL can leave a sequence behind the same way.
+ * {@link #catchUp} runs when JpaUtil opens a factory, before its first
+ * write, and only ever moves a sequence forward: a block another process
+ * already holds is never handed out twice.
+ */
+public final class IdSequences {
+
+  /** Matches the allocationSize of the entities' @SequenceGenerator. */
+  static final int ALLOCATION_SIZE = 50;
+
+  private static final String[][] SEQUENCES = {
+      { "course_seq", "courses" },
+      { "student_seq", "students" },
+  };
+
+  private IdSequences() { }
+
+  /** Restarts every sequence whose next block would start at or below its table's largest id. */
+  public static void catchUp(EntityManagerFactory emf) {
+    UnitOfWork.call(emf, em -> {
+      Dialect dialect = em.unwrap(SessionImplementor.class).getJdbcServices().getDialect();
+      em.unwrap(Session.class).doWork(conn -> {
+        for (String[] s : SEQUENCES) catchUp(conn, dialect, s[0], s[1]);
+      });
+      return null;
+    });
+  }
+
+  private static void catchUp(Connection conn, Dialect dialect, String sequence, String table)
+      throws SQLException {
+    long maxId;
+    try (Statement st = conn.createStatement();
+         ResultSet rs = st.executeQuery("select coalesce(max(id), 0) from " + table)) {
+      rs.next();
+      maxId = rs.getLong(1);
+    }
+    if (maxId == 0) return;
+    long next;
+    try (PreparedStatement ps = conn.prepareStatement(dialect.getSequenceNextValString(sequence));
+         ResultSet rs = ps.executeQuery()) {
+      rs.next();
+      next = rs.getLong(1);
+    }
+    // The pooled optimizer hands out the ids up to the value it reads, a block below it.
+    long needed = maxId + ALLOCATION_SIZE;
+    if (next >= needed) return;
+    try (Statement st = conn.createStatement()) {
+      st.execute("alter sequence " + sequence + " restart with " + needed);
+    }
+  }
+}
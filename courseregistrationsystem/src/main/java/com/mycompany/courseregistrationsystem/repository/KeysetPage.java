@@ -0,0 +1,42 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (seek) scan ordered by id.
+ * <p>
+ * The continuation token is the last id on this page: pass it back as
+ * {@code afterId} to read the next page. It is {@code null} on the last page.
+ */
+public final class KeysetPage<T> {
+
+  private final List<T> items;
+  private final Long nextAfterId;
+
+  public KeysetPage(List<T> items, Long nextAfterId) {
+    this.items = Collections.unmodifiableList(items);
+    this.nextAfterId = nextAfterId;
+  }
+
+  /**
+   * Builds a page from a query that fetched up to {@code pageSize + 1} rows;
+   * the extra row only tells whether another page exists.
+   */
+  static <T> KeysetPage<T> of(List<T> fetched, int pageSize, Function<T, Long> idOf) {
+    if (fetched.size() <= pageSize) {
+      return new KeysetPage<T>(fetched, null);
+    }
+    List<T> items = fetched.subList(0, pageSize);
+    return new KeysetPage<T>(items, idOf.apply(items.get(pageSize - 1)));
+  }
+
+  static void checkPageSize(int pageSize) {
+    if (pageSize <= 0) throw new IllegalArgumentException("Page size must be positive.");
+  }
+
+  public List<T> getItems() { return items; }
+  public Long getNextAfterId() { return nextAfterId; }
+  public boolean hasNext() { return nextAfterId != null; }
+}
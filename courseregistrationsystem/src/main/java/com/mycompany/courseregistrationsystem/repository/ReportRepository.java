@@ -0,0 +1,203 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+import com.mycompany.courseregistrationsystem.metrics.MethodMetrics;
+import com.mycompany.courseregistrationsystem.metrics.MethodTimer;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.CourseFillRate;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.model.StudentCreditLoad;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.LongType;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Set-based report queries: each method is one statement that aggregates in
+ * the database, whatever the number of courses and students.
+ * <p>
+ * With caching on, results are kept in the {@link #REPORT_QUERY_REGION}
+ * query cache region. Hibernate drops them on any write to the courses,
+ * students or enrollments tables it knows about; the JDBC enrollment
+ * writers evict the region themselves (see SeatCounter#evictCached).
+ */
+public class ReportRepository {
+
+  public static final String REPORT_QUERY_REGION = "report-queries";
+
+  /** {@code true} turns result caching on for the no-argument constructor. */
+  public static final String CACHE_PROPERTY = "crs.reports.cache";
+
+  // Latency of each public method, published over JMX (see MethodMetrics).
+  private static final MethodTimer FIND_FILL_RATES = MethodMetrics.timer(ReportRepository.class, "findFillRates");
+  private static final MethodTimer FIND_OVER_CAPACITY = MethodMetrics.timer(ReportRepository.class, "findOverCapacity");
+  private static final MethodTimer FIND_CREDIT_LOADS = MethodMetrics.timer(ReportRepository.class, "findCreditLoads");
+  private static final MethodTimer COUNT_STUDENTS_BY_CREDIT_LOAD = MethodMetrics.timer(ReportRepository.class, "countStudentsByCreditLoad");
+  private static final MethodTimer COUNT_COURSES_BY_FILL_RATE = MethodMetrics.timer(ReportRepository.class, "countCoursesByFillRate");
+
+  /** The Student.courses join table; entity classes only bring their own tables. */
+  private static final String ENROLLMENTS_SPACE = "enrollments";
+
+  private static final String FILL_RATE_SELECT =
+      "select new com.mycompany.courseregistrationsystem.model.CourseFillRate(" +
+      "c.id, c.code, c.title, c.maxSeats, count(s.id)) " +
+      "from Course c left join c.students s " +
+      "group by c.id, c.code, c.title, c.maxSeats ";
+
+  private final boolean cached;
+
+  public ReportRepository() {
+    this(Boolean.getBoolean(CACHE_PROPERTY));
+  }
+
+  public ReportRepository(boolean cached) {
+    this.cached = cached;
+  }
+
+  public boolean isCached() { return cached; }
+
+  /** Every course with the number of students enrolled, in id order. */
+  public List<CourseFillRate> findFillRates() {
+    long start = FIND_FILL_RATES.start();
+    boolean ok = false;
+    try {
+      List<CourseFillRate> rates = UnitOfWork.read(em -> em.createQuery(
+          FILL_RATE_SELECT + "order by c.id", CourseFillRate.class)
+          .setHint(QueryHints.HINT_CACHEABLE, cached)
+          .setHint(QueryHints.HINT_CACHE_REGION, REPORT_QUERY_REGION)
+          .getResultList());
+      ok = true;
+      return rates;
+    } finally {
+      FIND_FILL_RATES.stop(start, ok);
+    }
+  }
+
+  /** The courses with more students than seats, fullest first. */
+  public List<CourseFillRate> findOverCapacity() {
+    long start = FIND_OVER_CAPACITY.start();
+    boolean ok = false;
+    try {
+      List<CourseFillRate> over = UnitOfWork.read(em -> em.createQuery(
+          FILL_RATE_SELECT + "having count(s.id) > c.maxSeats order by count(s.id) - c.maxSeats desc, c.id",
+          CourseFillRate.class)
+          .setHint(QueryHints.HINT_CACHEABLE, cached)
+          .setHint(QueryHints.HINT_CACHE_REGION, REPORT_QUERY_REGION)
+          .getResultList());
+      ok = true;
+      return over;
+    } finally {
+      FIND_OVER_CAPACITY.stop(start, ok);
+    }
+  }
+
+  /** Every student with their course count and CFU total, in id order. */
+  public List<StudentCreditLoad> findCreditLoads() {
+    long start = FIND_CREDIT_LOADS.start();
+    boolean ok = false;
+    try {
+      List<StudentCreditLoad> loads = UnitOfWork.read(em -> em.createQuery(
+          "select new com.mycompany.courseregistrationsystem.model.StudentCreditLoad(" +
+          "s.id, s.matricola, s.fullName, count(c.id), sum(c.cfu)) " +
+          "from Student s left join s.courses c " +
+          "group by s.id, s.matricola, s.fullName " +
+          "order by s.id", StudentCreditLoad.class)
+          .setHint(QueryHints.HINT_CACHEABLE, cached)
+          .setHint(QueryHints.HINT_CACHE_REGION, REPORT_QUERY_REGION)
+          .getResultList());
+      ok = true;
+      return loads;
+    } finally {
+      FIND_CREDIT_LOADS.stop(start, ok);
+    }
+  }
+
+  /**
+   * Students per CFU total: element {@code i} counts those whose courses add
+   * up to between {@code i * width} and {@code (i + 1) * width - 1}. The
+   * array ends at the highest non-empty bucket.
+   */
+  public long[] countStudentsByCreditLoad(int width) {
+    if (width <= 0) throw new IllegalArgumentException("Bucket width must be positive.");
+    long start = COUNT_STUDENTS_BY_CREDIT_LOAD.start();
+    boolean ok = false;
+    try {
+      long[] counts = UnitOfWork.read(em -> toCounts(bucketQuery(em,
+          "select t.bucket, count(*) as n from (" +
+          "select coalesce(sum(c.cfu), 0) / :width as bucket " +
+          "from students s " +
+          "left join enrollments e on e.student_id = s.id " +
+          "left join courses c on c.id = e.course_id " +
+          "group by s.id) t " +
+          "group by t.bucket order by t.bucket")
+          .setParameter("width", width)
+          .getResultList(), 0));
+      ok = true;
+      return counts;
+    } finally {
+      COUNT_STUDENTS_BY_CREDIT_LOAD.stop(start, ok);
+    }
+  }
+
+  /**
+   * Courses per fill rate in percent: element {@code i} counts those filled
+   * from {@code i * width}% to {@code (i + 1) * width - 1}%, and the last
+   * element, at {@code ceil(100 / width)}, the full and over-capacity ones.
+   * Courses without seats count as empty.
+   */
+  public long[] countCoursesByFillRate(int width) {
+    if (width <= 0 || width > 100) throw new IllegalArgumentException("Bucket width must be between 1 and 100.");
+    int full = (100 + width - 1) / width;
+    long start = COUNT_COURSES_BY_FILL_RATE.start();
+    boolean ok = false;
+    try {
+      long[] counts = UnitOfWork.read(em -> toCounts(bucketQuery(em,
+          "select t.bucket, count(*) as n from (" +
+          "select case when c.maxSeats <= 0 then 0 " +
+          "when count(e.student_id) >= c.maxSeats then :full " +
+          "else count(e.student_id) * 100 / c.maxSeats / :width end as bucket " +
+          "from courses c " +
+          "left join enrollments e on e.course_id = c.id " +
+          "group by c.id, c.maxSeats) t " +
+          "group by t.bucket order by t.bucket")
+          .setParameter("full", full)
+          .setParameter("width", width)
+          .getResultList(), full + 1));
+      ok = true;
+      return counts;
+    } finally {
+      COUNT_COURSES_BY_FILL_RATE.stop(start, ok);
+    }
+  }
+
+  /**
+   * A native (bucket, n) query over courses, students and enrollments. The
+   * query spaces are declared so that cached results are dropped on writes
+   * to any of the three tables, as for the JPQL reports.
+   */
+  @SuppressWarnings("rawtypes")
+  private NativeQuery bucketQuery(EntityManager em, String sql) {
+    return em.createNativeQuery(sql)
+        .unwrap(NativeQuery.class)
+        .addScalar("bucket", LongType.INSTANCE)
+        .addScalar("n", LongType.INSTANCE)
+        .addSynchronizedEntityClass(Course.class)
+        .addSynchronizedEntityClass(Student.class)
+        .addSynchronizedQuerySpace(ENROLLMENTS_SPACE)
+        .setCacheable(cached)
+        .setCacheRegion(REPORT_QUERY_REGION);
+  }
+
+  /** Spreads (bucket, n) rows into an array of at least {@code minLength} counts. */
+  private static long[] toCounts(List<?> rows, int minLength) {
+    int length = minLength;
+    for (Object r : rows) length = Math.max(length, ((Long) ((Object[]) r)[0]).intValue() + 1);
+    long[] counts = new long[length];
+    for (Object r : rows) {
+      Object[] row = (Object[]) r;
+      counts[((Long) row[0]).intValue()] = (Long) row[1];
+    }
+    return counts;
+  }
+}
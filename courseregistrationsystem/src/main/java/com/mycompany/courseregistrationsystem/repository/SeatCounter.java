@@ -0,0 +1,134 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+import com.mycompany.courseregistrationsystem.model.Course;
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+import java.util.Collection;
+
+/**
+ * Statements on the per-course seat counter ({@code courses.enrolled}).
+ * Each also stamps the course's {@code modified_at}, which the enrolled
+ * count shown from a roster snapshot is caught up from.
+ * <p>
+ * Every method runs inside the caller's transaction. {@link #tryReserve} is
+ * the only capacity check: a single conditional update that the database
+ * serializes on the course row, so two concurrent reservations can never
+ * both take the last seat.
+ * <p>
+ * The counters do not say which student moved, so announcing the
+ * enrollment change (EnrollmentChanges) is up to the writer.
+ */
+public final class SeatCounter {
+
+  /**
+   * Query space of the counter statements. No entity maps to it, so they do
+   * not invalidate the whole Course cache region; the one course touched is
+   * evicted after the transaction instead (see {@link #evictAfterCompletion}).
+   */
+  static final String COUNTER_SPACE = "courses_enrolled";
+
+  private SeatCounter() { }
+
+  /** @return true if a seat was taken, false if the course is full or does not exist */
+  public static boolean tryReserve(EntityManager em, Long courseId) {
+    return update(em, courseId,
+        "update courses set enrolled = enrolled + 1, modified_at = current_timestamp " +
+        "where id = :id and enrolled < maxSeats") == 1;
+  }
+
+  public static void release(EntityManager em, Long courseId) {
+    update(em, courseId,
+        "update courses set enrolled = enrolled - 1, modified_at = current_timestamp where id = :id and enrolled > 0");
+  }
+
+  /**
+   * Frees the seats of every course the student is enrolled in (before
+   * deleting the student), one counter update per course in id order.
+   */
+  public static void releaseAllOf(EntityManager em, Long studentId) {
+    for (Long courseId : em.createQuery(
+        "select c.id from Student s join s.courses c where s.id = :sid order by c.id", Long.class)
+        .setParameter("sid", studentId)
+        .getResultList()) {
+      release(em, courseId);
+    }
+    UnitOfWork.afterCompletion(em, committed -> {
+      if (committed) EnrollmentChanges.fireStudentRemoved(studentId);
+    });
+  }
+
+  /** Unguarded adjustment, for administrative paths (bulk import, raw repository saves). */
+  public static void add(EntityManager em, Long courseId, int delta) {
+    if (delta == 0) return;
+    em.createNativeQuery("update courses set enrolled = enrolled + :d, modified_at = current_timestamp where id = :id")
+        .unwrap(NativeQuery.class)
+        .addSynchronizedQuerySpace(COUNTER_SPACE)
+        .setParameter("d", delta)
+        .setParameter("id", courseId)
+        .executeUpdate();
+    evictAfterCompletion(em, courseId);
+  }
+
+  /**
+   * Recomputes every counter from the enrollments table; returns the number
+   * of courses updated. Only the courses whose counter was off are stamped
+   * as modified.
+   * <p>
+   * Safe while enrollments are written: the course rows are locked first,
+   * in id order like every counter update, so a writer that already moved a
+   * counter has committed before the counts are read, and one that has not
+   * yet waits and applies its change on top of the recount.
+   */
+  public static int resync(EntityManager em) {
+    em.createQuery("select c.id from Course c order by c.id", Long.class)
+        .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+        .getResultList();
+    em.createQuery(
+        "update Course c set c.modifiedAt = current_timestamp where c.enrolled <> " +
+        "(select count(s) from Student s join s.courses sc where sc.id = c.id)")
+        .executeUpdate();
+    return em.createQuery(
+        "update Course c set c.enrolled = " +
+        "(select count(s) from Student s join s.courses sc where sc.id = c.id)")
+        .executeUpdate();
+  }
+
+  /**
+   * Drops the cached copy of courses whose counter was changed outside
+   * Hibernate (plain JDBC), and the cached reports; call after the writing
+   * transaction committed.
+   */
+  public static void evictCached(EntityManagerFactory emf, Collection<Long> courseIds) {
+    Cache cache = emf.getCache();
+    for (Long id : courseIds) cache.evict(Course.class, id);
+    cache.unwrap(org.hibernate.Cache.class).evictQueryRegion(ReportRepository.REPORT_QUERY_REGION);
+  }
+
+  /**
+   * Drops the cached copy of courses whose counter alone was changed
+   * outside Hibernate; their enrollments did not change.
+   */
+  public static void evictCourses(EntityManagerFactory emf, Collection<Long> courseIds) {
+    Cache cache = emf.getCache();
+    for (Long id : courseIds) cache.evict(Course.class, id);
+  }
+
+  private static int update(EntityManager em, Long courseId, String sql) {
+    int n = em.createNativeQuery(sql)
+        .unwrap(NativeQuery.class)
+        .addSynchronizedQuerySpace(COUNTER_SPACE)
+        .setParameter("id", courseId)
+        .executeUpdate();
+    if (n > 0) evictAfterCompletion(em, courseId);
+    return n;
+  }
+
+  private static void evictAfterCompletion(EntityManager em, Long courseId) {
+    EntityManagerFactory emf = em.getEntityManagerFactory();
+    UnitOfWork.afterCompletion(em, committed -> emf.getCache().evict(Course.class, courseId));
+  }
+}
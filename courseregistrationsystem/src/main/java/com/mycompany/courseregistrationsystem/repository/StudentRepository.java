@@ -1,138 +1,508 @@
 package com.mycompany.courseregistrationsystem.repository;
 
-import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.metrics.MethodMetrics;
+import com.mycompany.courseregistrationsystem.metrics.MethodTimer;
 import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.EnrollmentRow;
+import com.mycompany.courseregistrationsystem.model.RosterRow;
 import com.mycompany.courseregistrationsystem.model.Student;
+import org.hibernate.Session;
 
 import javax.persistence.EntityManager;
-import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/** Student persistence; every method joins the thread's UnitOfWork when one is open. */
 public class StudentRepository {
 
+  /** JDBC fetch size of the streaming reads when the caller has no better idea. */
+  public static final int DEFAULT_FETCH_SIZE = 500;
+
+  // Latency of each public method, published over JMX (see MethodMetrics).
+  private static final MethodTimer SAVE = MethodMetrics.timer(StudentRepository.class, "save");
+  private static final MethodTimer FIND_ALL = MethodMetrics.timer(StudentRepository.class, "findAll");
+  private static final MethodTimer FIND_ALL_WITH_COURSES = MethodMetrics.timer(StudentRepository.class, "findAllWithCourses");
+  private static final MethodTimer FIND_PAGE = MethodMetrics.timer(StudentRepository.class, "findPage");
+  private static final MethodTimer FIND_PAGE_WITH_COURSES = MethodMetrics.timer(StudentRepository.class, "findPageWithCourses");
+  private static final MethodTimer FIND_SLICE_WITH_COURSES = MethodMetrics.timer(StudentRepository.class, "findSliceWithCourses");
+  private static final MethodTimer FOR_EACH = MethodMetrics.timer(StudentRepository.class, "forEach");
+  private static final MethodTimer FOR_EACH_ROSTER_ROW = MethodMetrics.timer(StudentRepository.class, "forEachRosterRow");
+  private static final MethodTimer FOR_EACH_ROSTER_ROW_CHANGED_SINCE = MethodMetrics.timer(StudentRepository.class, "forEachRosterRowChangedSince");
+  private static final MethodTimer FOR_EACH_ENROLLMENT = MethodMetrics.timer(StudentRepository.class, "forEachEnrollment");
+  private static final MethodTimer FOR_EACH_ENROLLMENT_IN = MethodMetrics.timer(StudentRepository.class, "forEachEnrollmentIn");
+  private static final MethodTimer FOR_EACH_ID_UP_TO = MethodMetrics.timer(StudentRepository.class, "forEachIdUpTo");
+  private static final MethodTimer COUNT = MethodMetrics.timer(StudentRepository.class, "count");
+  private static final MethodTimer COUNT_UP_TO = MethodMetrics.timer(StudentRepository.class, "countUpTo");
+  private static final MethodTimer FIND_BY_ID = MethodMetrics.timer(StudentRepository.class, "findById");
+  private static final MethodTimer FIND_BY_ID_WITH_COURSES = MethodMetrics.timer(StudentRepository.class, "findByIdWithCourses");
+  private static final MethodTimer FIND_BY_MATRICOLA = MethodMetrics.timer(StudentRepository.class, "findByMatricola");
+  private static final MethodTimer DELETE_BY_ID = MethodMetrics.timer(StudentRepository.class, "deleteById");
+  private static final MethodTimer UPDATE_STUDENT = MethodMetrics.timer(StudentRepository.class, "updateStudent");
+
   public Student save(Student s) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
-    EntityTransaction tx = em.getTransaction();
+    long start = SAVE.start();
+    boolean ok = false;
     try {
-      tx.begin();
-      if (s.getId() == null) {
-        em.persist(s);
-      } else {
-        s = em.merge(s);
-      }
-      em.flush();        // ensures unique-constraint violations surface immediately
-      tx.commit();
-      return s;
+      // A retried new student keeps the id of the rolled-back attempt; the
+      // merge below then inserts it as a new row and returns that copy.
+      Student result = UnitOfWork.callRetryingDeadlocks(em -> {
+        Student saved = s;
+        if (s.getId() == null) {
+          em.persist(s);
+          adjustSeats(em, s.getId(), Collections.<Long>emptySet(), courseIdsOf(s));
+        } else {
+          Set<Long> before = new HashSet<>(courseIdsOf(em, s.getId()));
+          saved = em.merge(s);
+          saved.touch();   // a change of courses alone would not stamp it
+          adjustSeats(em, saved.getId(), before, courseIdsOf(saved));
+        }
+        em.flush();        // ensures unique-constraint violations surface immediately
+        return saved;
+      });
+      ok = true;
+      return result;
     } finally {
-      if (tx.isActive()) tx.rollback();
-      em.close();
+      SAVE.stop(start, ok);
     }
   }
 
   public List<Student> findAll() {
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = FIND_ALL.start();
+    boolean ok = false;
     try {
-      return em.createQuery("from Student", Student.class).getResultList();
+      List<Student> all = UnitOfWork.read(em -> em.createQuery("from Student", Student.class).getResultList());
+      ok = true;
+      return all;
     } finally {
-      em.close();
+      FIND_ALL.stop(start, ok);
     }
   }
 
   public List<Student> findAllWithCourses() {
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = FIND_ALL_WITH_COURSES.start();
+    boolean ok = false;
     try {
-      return em.createQuery(
-          "select distinct s from Student s left join fetch s.courses",
+      List<Student> all = UnitOfWork.read(em -> em.createQuery(
+          "select distinct s from Student s left join fetch s.courses order by s.id",
           Student.class
-      ).getResultList();
+      ).getResultList());
+      ok = true;
+      return all;
+    } finally {
+      FIND_ALL_WITH_COURSES.stop(start, ok);
+    }
+  }
+
+  /** Keyset page of students with id greater than {@code afterId} (null = from the start). */
+  public KeysetPage<Student> findPage(Long afterId, int pageSize) {
+    long start = FIND_PAGE.start();
+    boolean ok = false;
+    try {
+      KeysetPage.checkPageSize(pageSize);
+      KeysetPage<Student> page = UnitOfWork.read(em -> {
+        TypedQuery<Student> q = afterId == null
+            ? em.createQuery("from Student s order by s.id", Student.class)
+            : em.createQuery("from Student s where s.id > :after order by s.id", Student.class)
+                .setParameter("after", afterId);
+        return KeysetPage.of(q.setMaxResults(pageSize + 1).getResultList(), pageSize, Student::getId);
+      });
+      ok = true;
+      return page;
+    } finally {
+      FIND_PAGE.stop(start, ok);
+    }
+  }
+
+  /**
+   * Keyset page of students with their courses. The page is cut on student
+   * ids first and only then fetch-joined, so the row multiplication of the
+   * join never interferes with the page limit.
+   */
+  public KeysetPage<Student> findPageWithCourses(Long afterId, int pageSize) {
+    long start = FIND_PAGE_WITH_COURSES.start();
+    boolean ok = false;
+    try {
+      KeysetPage.checkPageSize(pageSize);
+      KeysetPage<Student> page = UnitOfWork.read(em -> {
+        TypedQuery<Long> idq = afterId == null
+            ? em.createQuery("select s.id from Student s order by s.id", Long.class)
+            : em.createQuery("select s.id from Student s where s.id > :after order by s.id", Long.class)
+                .setParameter("after", afterId);
+        List<Long> ids = idq.setMaxResults(pageSize + 1).getResultList();
+        KeysetPage<Long> idPage = KeysetPage.of(ids, pageSize, Function.identity());
+        if (idPage.getItems().isEmpty()) {
+          return new KeysetPage<Student>(Collections.<Student>emptyList(), null);
+        }
+        List<Student> students = em.createQuery(
+            "select distinct s from Student s left join fetch s.courses " +
+            "where s.id in :ids order by s.id", Student.class)
+            .setParameter("ids", idPage.getItems())
+            .getResultList();
+        return new KeysetPage<Student>(students, idPage.getNextAfterId());
+      });
+      ok = true;
+      return page;
+    } finally {
+      FIND_PAGE_WITH_COURSES.stop(start, ok);
+    }
+  }
+
+  /**
+   * Up to {@code limit} students with their courses, in id order, for a
+   * paged view: the ones after {@code afterId} when the caller knows the id
+   * just before the slice (a seek), otherwise from row {@code offset}.
+   */
+  public List<Student> findSliceWithCourses(Long afterId, int offset, int limit) {
+    long start = FIND_SLICE_WITH_COURSES.start();
+    boolean ok = false;
+    try {
+      KeysetPage.checkPageSize(limit);
+      if (offset < 0) throw new IllegalArgumentException("Offset must not be negative.");
+      List<Student> slice = UnitOfWork.read(em -> {
+        TypedQuery<Long> idq = afterId == null
+            ? em.createQuery("select s.id from Student s order by s.id", Long.class)
+                .setFirstResult(offset)
+            : em.createQuery("select s.id from Student s where s.id > :after order by s.id", Long.class)
+                .setParameter("after", afterId);
+        List<Long> ids = idq.setMaxResults(limit).getResultList();
+        if (ids.isEmpty()) return Collections.<Student>emptyList();
+        return em.createQuery(
+            "select distinct s from Student s left join fetch s.courses " +
+            "where s.id in :ids order by s.id", Student.class)
+            .setParameter("ids", ids)
+            .getResultList();
+      });
+      ok = true;
+      return slice;
     } finally {
-      em.close();
+      FIND_SLICE_WITH_COURSES.stop(start, ok);
+    }
+  }
+
+  /**
+   * Streams every student, in id order, through a forward-only cursor that
+   * fetches {@code fetchSize} rows at a time. Each student is read-only,
+   * has its courses unloaded, and is detached once {@code action} returns,
+   * so memory stays flat however many there are. Runs in the thread's unit
+   * of work or in a transaction of its own (PostgreSQL only streams inside
+   * one).
+   *
+   * @return the number of students
+   */
+  public long forEach(int fetchSize, Consumer<? super Student> action) {
+    long start = FOR_EACH.start();
+    boolean ok = false;
+    try {
+      Cursors.checkFetchSize(fetchSize);
+      long count = UnitOfWork.call(em -> Cursors.forEach(em, em.unwrap(Session.class)
+          .createQuery("from Student s order by s.id", Student.class), fetchSize, true, action));
+      ok = true;
+      return count;
+    } finally {
+      FOR_EACH.stop(start, ok);
+    }
+  }
+
+  /**
+   * Streams the roster as one row per enrollment (one course-less row for a
+   * student without courses), ordered by student id and course code, with
+   * the same cursor as {@link #forEach}. The rows are projections, never
+   * entities, so neither the persistence context nor the heap grows with
+   * the number of enrollments.
+   *
+   * @return the number of rows
+   */
+  public long forEachRosterRow(int fetchSize, Consumer<? super RosterRow> action) {
+    long start = FOR_EACH_ROSTER_ROW.start();
+    boolean ok = false;
+    try {
+      Cursors.checkFetchSize(fetchSize);
+      long rows = UnitOfWork.call(em -> Cursors.forEach(em, em.unwrap(Session.class).createQuery(
+          "select new com.mycompany.courseregistrationsystem.model.RosterRow("
+              + "s.id, s.matricola, s.fullName, s.email, c.code) "
+              + "from Student s left join s.courses c order by s.id, c.code", RosterRow.class),
+          fetchSize, false, action));
+      ok = true;
+      return rows;
+    } finally {
+      FOR_EACH_ROSTER_ROW.stop(start, ok);
+    }
+  }
+
+  /**
+   * As {@link #forEachRosterRow}, for the students that may have changed
+   * after {@code since}: those stamped later, those whose id is above
+   * {@code afterId} (created since, stamped or not), and those in a course
+   * stamped later, since enrolling only stamps the course.
+   *
+   * @return the number of rows
+   */
+  public long forEachRosterRowChangedSince(Instant since, long afterId, int fetchSize,
+                                           Consumer<? super RosterRow> action) {
+    long start = FOR_EACH_ROSTER_ROW_CHANGED_SINCE.start();
+    boolean ok = false;
+    try {
+      Cursors.checkFetchSize(fetchSize);
+      long rows = UnitOfWork.call(em -> Cursors.forEach(em, em.unwrap(Session.class).createQuery(
+          "select new com.mycompany.courseregistrationsystem.model.RosterRow("
+              + "s.id, s.matricola, s.fullName, s.email, c.code) "
+              + "from Student s left join s.courses c "
+              + "where s.id > :after or s.modifiedAt > :since or s.id in "
+              + "(select s2.id from Student s2 join s2.courses c2 where c2.modifiedAt > :since) "
+              + "order by s.id, c.code", RosterRow.class)
+          .setParameter("after", afterId)
+          .setParameter("since", since),
+          fetchSize, false, action));
+      ok = true;
+      return rows;
+    } finally {
+      FOR_EACH_ROSTER_ROW_CHANGED_SINCE.stop(start, ok);
+    }
+  }
+
+  /**
+   * Streams the enrollments table, ordered by course id and student id, with
+   * the same cursor as {@link #forEach}. The rows are projections, never
+   * entities.
+   *
+   * @return the number of rows
+   */
+  public long forEachEnrollment(int fetchSize, Consumer<? super EnrollmentRow> action) {
+    long start = FOR_EACH_ENROLLMENT.start();
+    boolean ok = false;
+    try {
+      Cursors.checkFetchSize(fetchSize);
+      long rows = UnitOfWork.call(em -> Cursors.forEach(em, em.unwrap(Session.class).createQuery(
+          "select new com.mycompany.courseregistrationsystem.model.EnrollmentRow(s.id, c.id) "
+              + "from Student s join s.courses c order by c.id, s.id", EnrollmentRow.class),
+          fetchSize, false, action));
+      ok = true;
+      return rows;
+    } finally {
+      FOR_EACH_ENROLLMENT.stop(start, ok);
+    }
+  }
+
+  /** As {@link #forEachEnrollment}, for the courses in {@code courseIds} only. */
+  public long forEachEnrollmentIn(Collection<Long> courseIds, int fetchSize,
+                                  Consumer<? super EnrollmentRow> action) {
+    long start = FOR_EACH_ENROLLMENT_IN.start();
+    boolean ok = false;
+    try {
+      Cursors.checkFetchSize(fetchSize);
+      long rows = courseIds.isEmpty() ? 0L : UnitOfWork.call(em -> Cursors.forEach(em, em.unwrap(Session.class).createQuery(
+          "select new com.mycompany.courseregistrationsystem.model.EnrollmentRow(s.id, c.id) "
+              + "from Student s join s.courses c where c.id in (:ids) order by c.id, s.id",
+          EnrollmentRow.class)
+          .setParameterList("ids", courseIds), fetchSize, false, action));
+      ok = true;
+      return rows;
+    } finally {
+      FOR_EACH_ENROLLMENT_IN.stop(start, ok);
+    }
+  }
+
+  /** Streams the ids up to {@code maxId}, ascending, with the same cursor as {@link #forEach}. */
+  public long forEachIdUpTo(long maxId, int fetchSize, Consumer<? super Long> action) {
+    long start = FOR_EACH_ID_UP_TO.start();
+    boolean ok = false;
+    try {
+      Cursors.checkFetchSize(fetchSize);
+      long count = UnitOfWork.call(em -> Cursors.forEach(em, em.unwrap(Session.class).createQuery(
+          "select s.id from Student s where s.id <= :max order by s.id", Long.class)
+          .setParameter("max", maxId), fetchSize, false, action));
+      ok = true;
+      return count;
+    } finally {
+      FOR_EACH_ID_UP_TO.stop(start, ok);
+    }
+  }
+
+  public int count() {
+    long start = COUNT.start();
+    boolean ok = false;
+    try {
+      int count = UnitOfWork.read(em ->
+          em.createQuery("select count(s) from Student s", Long.class).getSingleResult().intValue());
+      ok = true;
+      return count;
+    } finally {
+      COUNT.stop(start, ok);
+    }
+  }
+
+  /** The number of students with an id up to {@code maxId}. */
+  public long countUpTo(long maxId) {
+    long start = COUNT_UP_TO.start();
+    boolean ok = false;
+    try {
+      long count = UnitOfWork.read(em ->
+          em.createQuery("select count(s) from Student s where s.id <= :max", Long.class)
+              .setParameter("max", maxId)
+              .getSingleResult());
+      ok = true;
+      return count;
+    } finally {
+      COUNT_UP_TO.stop(start, ok);
     }
   }
 
   public Optional<Student> findById(Long id) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = FIND_BY_ID.start();
+    boolean ok = false;
     try {
-      return Optional.ofNullable(em.find(Student.class, id));
+      Optional<Student> student = UnitOfWork.read(em -> Optional.ofNullable(em.find(Student.class, id)));
+      ok = true;
+      return student;
     } finally {
-      em.close();
+      FIND_BY_ID.stop(start, ok);
     }
   }
 
   public Optional<Student> findByIdWithCourses(Long id) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = FIND_BY_ID_WITH_COURSES.start();
+    boolean ok = false;
     try {
-      List<Student> list = em.createQuery(
-          "select s from Student s left join fetch s.courses where s.id = :id",
-          Student.class
-      ).setParameter("id", id).getResultList();
-      return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+      Optional<Student> student = UnitOfWork.read(em -> {
+        List<Student> list = em.createQuery(
+            "select s from Student s left join fetch s.courses where s.id = :id",
+            Student.class
+        ).setParameter("id", id).getResultList();
+        return list.isEmpty() ? Optional.<Student>empty() : Optional.of(list.get(0));
+      });
+      ok = true;
+      return student;
     } finally {
-      em.close();
+      FIND_BY_ID_WITH_COURSES.stop(start, ok);
     }
   }
 
   public Optional<Student> findByMatricola(String m) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
+    long start = FIND_BY_MATRICOLA.start();
+    boolean ok = false;
     try {
-      List<Student> list = em.createQuery(
-          "from Student s where s.matricola = :m", Student.class)
-          .setParameter("m", m)
-          .getResultList();
-      return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+      Optional<Student> student = UnitOfWork.read(em -> {
+        List<Student> list = em.createQuery(
+            "from Student s where s.matricola = :m", Student.class)
+            .setParameter("m", m)
+            .getResultList();
+        return list.isEmpty() ? Optional.<Student>empty() : Optional.of(list.get(0));
+      });
+      ok = true;
+      return student;
     } finally {
-      em.close();
+      FIND_BY_MATRICOLA.stop(start, ok);
     }
   }
 
   public void deleteById(Long id) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
-    EntityTransaction tx = em.getTransaction();
+    long start = DELETE_BY_ID.start();
+    boolean ok = false;
     try {
-      tx.begin();
-      Student s = em.find(Student.class, id);
-      if (s != null) em.remove(s);
-      tx.commit();
+      UnitOfWork.callRetryingDeadlocks(em -> {
+        Student s = em.find(Student.class, id);
+        if (s != null) {
+          SeatCounter.releaseAllOf(em, id);
+          em.remove(s);
+        }
+        return null;
+      });
+      ok = true;
     } finally {
-      if (tx.isActive()) tx.rollback();
-      em.close();
+      DELETE_BY_ID.stop(start, ok);
     }
   }
 
   public Student updateStudent(Long id, String matricola, String fullName, String email, Long courseIdOrNull) {
-    EntityManager em = JpaUtil.emf().createEntityManager();
-    EntityTransaction tx = em.getTransaction();
+    long start = UPDATE_STUDENT.start();
+    boolean ok = false;
     try {
-      tx.begin();
+      Student updated = UnitOfWork.callRetryingDeadlocks(em -> {
 
-      Student s = em.find(Student.class, id);
-      if (s == null) throw new IllegalArgumentException("Student not found: " + id);
+        Student s = em.find(Student.class, id);
+        if (s == null) throw new IllegalArgumentException("Student not found: " + id);
 
-      List<Student> dup = em.createQuery(
-          "from Student st where lower(st.matricola)=:m and st.id<>:id", Student.class)
-          .setParameter("m", matricola.toLowerCase())
-          .setParameter("id", id)
-          .getResultList();
-      if (!dup.isEmpty()) throw new IllegalArgumentException("Matricola already exists: " + matricola);
+        List<Student> dup = em.createQuery(
+            "from Student st where lower(st.matricola)=:m and st.id<>:id", Student.class)
+            .setParameter("m", matricola.toLowerCase())
+            .setParameter("id", id)
+            .getResultList();
+        if (!dup.isEmpty()) throw new IllegalArgumentException("Matricola already exists: " + matricola);
 
-      s.setMatricola(matricola);
-      s.setFullName(fullName);
-      s.setEmail(email);
+        s.setMatricola(matricola);
+        s.setFullName(fullName);
+        s.setEmail(email);
 
-      s.getCourses().clear();
-      if (courseIdOrNull != null) {
-        Course c = em.find(Course.class, courseIdOrNull);
-        if (c == null) throw new IllegalArgumentException("Course not found: " + courseIdOrNull);
-        s.getCourses().add(c);
-      }
+        Set<Long> before = courseIdsOf(s);
+        s.getCourses().clear();
+        if (courseIdOrNull != null) {
+          Course c = em.find(Course.class, courseIdOrNull);
+          if (c == null) throw new IllegalArgumentException("Course not found: " + courseIdOrNull);
+          s.getCourses().add(c);
+        }
+        s.touch();
+        adjustSeats(em, id, before,
+            courseIdOrNull == null ? Collections.<Long>emptySet() : Collections.singleton(courseIdOrNull));
 
-      em.flush();
-      tx.commit();
-      return s;
+        em.flush();
+        return s;
+      });
+      ok = true;
+      return updated;
     } finally {
-      if (tx.isActive()) tx.rollback();
-      em.close();
+      UPDATE_STUDENT.stop(start, ok);
+    }
+  }
+
+  /**
+   * Enrollments as stored. Not flushed first: inside a unit of work the
+   * student may already be managed with unsaved course changes.
+   */
+  private List<Long> courseIdsOf(EntityManager em, Long studentId) {
+    return em.createQuery(
+        "select c.id from Student s join s.courses c where s.id = :id", Long.class)
+        .setParameter("id", studentId)
+        .setFlushMode(FlushModeType.COMMIT)
+        .getResultList();
+  }
+
+  /** Enrollments as held by the (possibly unsaved) entity. */
+  private static Set<Long> courseIdsOf(Student s) {
+    Set<Long> ids = new HashSet<>();
+    for (Course c : s.getCourses()) ids.add(c.getId());
+    return ids;
+  }
+
+  /**
+   * Keeps the seat counters in step with a raw change of enrollments, and
+   * announces the change once committed. These repository writes are
+   * unguarded; capacity-checked enrollment goes through EnrollmentService.
+   * <p>
+   * The counters are updated in one pass in course id order, like every
+   * counter update, so two students swapping courses cannot deadlock.
+   */
+  private void adjustSeats(EntityManager em, Long studentId, Set<Long> before, Set<Long> after) {
+    Map<Long, Integer> deltas = new TreeMap<>();
+    for (Long id : before) deltas.merge(id, -1, Integer::sum);
+    for (Long id : after) deltas.merge(id, 1, Integer::sum);
+    Set<Long> left = new HashSet<>();
+    Set<Long> joined = new HashSet<>();
+    for (Map.Entry<Long, Integer> d : deltas.entrySet()) {
+      if (d.getValue() == 0) continue;
+      SeatCounter.add(em, d.getKey(), d.getValue());
+      (d.getValue() > 0 ? joined : left).add(d.getKey());
     }
+    EnrollmentChanges.afterCommit(em, studentId, joined, left);
   }
 }
@@ -0,0 +1,257 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * One EntityManager and one transaction for a whole operation.
+ * <p>
+ * {@link #call} binds the unit to the calling thread. The repositories (and
+ * EnrollmentService) run on its EntityManager instead of opening their own,
+ * so an operation that reads and writes through several of them checks out
+ * one connection and commits once; a nested {@code call} joins the unit that
+ * is already open. The work also gets the EntityManager passed in, for code
+ * that takes it explicitly.
+ * <p>
+ * Outside a unit the repositories behave as before: one EntityManager (and
+ * one transaction for writes) per method.
+ * <p>
+ * {@link #stats()} counts the EntityManagers every unit opened while it ran,
+ * its own included: 1 when everything joined.
+ * <p>
+ * {@link #callRetryingDeadlocks} runs a unit again when the database picked
+ * it as a deadlock victim; the failed attempt is rolled back first.
+ * <p>
+ * {@link #savepoint} runs part of a unit so that, if it throws, only that
+ * part is undone and the unit can still commit. Code that reacts to the
+ * transaction's outcome registers through {@link #afterCompletion}, so the
+ * part undone is not reported as committed with the rest.
+ */
+public final class UnitOfWork {
+
+  /** Attempts of {@link #callRetryingDeadlocks} before the deadlock is rethrown. */
+  public static final int DEADLOCK_ATTEMPTS = 5;
+
+  private static final ThreadLocal<EntityManager> CURRENT = new ThreadLocal<>();
+  /** Completion actions of the innermost {@link #savepoint} running on this thread. */
+  private static final ThreadLocal<Held> HELD = new ThreadLocal<>();
+
+  private static final LongAdder operations = new LongAdder();
+  private static final LongAdder entityManagers = new LongAdder();
+  private static final LongAdder multiEntityManagerOperations = new LongAdder();
+  private static final AtomicLong maxPerOperation = new AtomicLong();
+
+  private UnitOfWork() { }
+
+  /** Runs {@code work} in the thread's unit of work, opening one on JpaUtil's factory if none is active. */
+  public static <T> T call(Function<EntityManager, T> work) {
+    EntityManager joined = CURRENT.get();
+    return joined != null ? work.apply(joined) : open(JpaUtil.emf(), work);
+  }
+
+  /** As {@link #call(Function)}, opening the unit on {@code emf} if none is active. */
+  public static <T> T call(EntityManagerFactory emf, Function<EntityManager, T> work) {
+    EntityManager joined = CURRENT.get();
+    return joined != null ? work.apply(joined) : open(emf, work);
+  }
+
+  /**
+   * As {@link #call(Function)}, but when the database aborts the unit as a
+   * deadlock victim it is rolled back and {@code work} runs again, in a new
+   * unit, up to {@link #DEADLOCK_ATTEMPTS} times. {@code work} must
+   * therefore read everything it needs inside the unit. Joining an
+   * enclosing unit it cannot restart alone, so it runs once and the
+   * deadlock goes to the unit's owner.
+   */
+  public static <T> T callRetryingDeadlocks(Function<EntityManager, T> work) {
+    EntityManager joined = CURRENT.get();
+    if (joined != null) return work.apply(joined);
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return open(JpaUtil.emf(), work);
+      } catch (RuntimeException e) {
+        if (attempt >= DEADLOCK_ATTEMPTS || !isDeadlock(e)) throw e;
+        backOff(attempt);
+      }
+    }
+  }
+
+  public static void run(Consumer<EntityManager> work) {
+    call(em -> {
+      work.accept(em);
+      return null;
+    });
+  }
+
+  /**
+   * Runs a read in the thread's unit of work, or on a short-lived
+   * EntityManager (no transaction) if none is active.
+   */
+  public static <T> T read(Function<EntityManager, T> work) {
+    EntityManager joined = CURRENT.get();
+    return joined != null ? work.apply(joined) : readOnce(JpaUtil.emf(), work);
+  }
+
+  public static <T> T read(EntityManagerFactory emf, Function<EntityManager, T> work) {
+    EntityManager joined = CURRENT.get();
+    return joined != null ? work.apply(joined) : readOnce(emf, work);
+  }
+
+  /**
+   * Runs {@code action} with the outcome of {@code em}'s transaction (true
+   * if it committed) once it completes. Inside a {@link #savepoint} on
+   * {@code em} the action is held until the savepoint's work returns, and
+   * runs with false right away if that work is rolled back.
+   */
+  public static void afterCompletion(EntityManager em, Consumer<Boolean> action) {
+    Held held = HELD.get();
+    if (held != null && held.em == em) held.actions.add(action);
+    else register(em, action);
+  }
+
+  /**
+   * Runs {@code work} in {@code em}'s transaction behind a savepoint. If it
+   * throws, its statements are rolled back to the savepoint, the persistence
+   * context is cleared (what came before was flushed first), its completion
+   * actions run with false, and the exception is rethrown; the transaction
+   * can go on and commit.
+   * <p>
+   * A persistence error that marked the transaction rollback-only, or a
+   * deadlock, cannot be undone this way: the caller must roll back the
+   * whole transaction (see {@link #mustRollBack}).
+   */
+  public static <T> T savepoint(EntityManager em, Function<EntityManager, T> work) {
+    em.flush();
+    Session session = em.unwrap(Session.class);
+    Savepoint savepoint = session.doReturningWork(conn -> conn.setSavepoint());
+    Held outer = HELD.get();
+    Held held = new Held(em);
+    HELD.set(held);
+    try {
+      T result = work.apply(em);
+      // Not released: the commit drops it, one round trip less.
+      em.flush();
+      HELD.set(outer);
+      for (Consumer<Boolean> action : held.actions) afterCompletion(em, action);
+      return result;
+    } catch (RuntimeException | Error e) {
+      HELD.set(outer);
+      if (!mustRollBack(em, e)) {
+        session.doWork(conn -> conn.rollback(savepoint));
+        em.clear();
+      }
+      for (Consumer<Boolean> action : held.actions) action.accept(false);
+      throw e;
+    }
+  }
+
+  /** True if {@code failure} leaves {@code em}'s transaction good only for a rollback. */
+  public static boolean mustRollBack(EntityManager em, Throwable failure) {
+    return !(failure instanceof RuntimeException) || isDeadlock(failure)
+        || em.getTransaction().getRollbackOnly();
+  }
+
+  /** @return true if a unit of work is open on this thread */
+  public static boolean isActive() {
+    return CURRENT.get() != null;
+  }
+
+  public static UnitOfWorkStats stats() {
+    return new UnitOfWorkStats(operations.sum(), entityManagers.sum(), maxPerOperation.get(),
+        multiEntityManagerOperations.sum());
+  }
+
+  private static <T> T open(EntityManagerFactory emf, Function<EntityManager, T> work) {
+    long openedBefore = JpaUtil.entityManagersOpenedByThread();
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    CURRENT.set(em);
+    try {
+      tx.begin();
+      T result = work.apply(em);
+      tx.commit();
+      return result;
+    } finally {
+      CURRENT.remove();
+      try {
+        if (tx.isActive()) tx.rollback();
+      } finally {
+        em.close();
+        record(JpaUtil.entityManagersOpenedByThread() - openedBefore);
+      }
+    }
+  }
+
+  private static <T> T readOnce(EntityManagerFactory emf, Function<EntityManager, T> work) {
+    EntityManager em = emf.createEntityManager();
+    try {
+      return work.apply(em);
+    } finally {
+      em.close();
+    }
+  }
+
+  /**
+   * True if {@code e} was caused by the database breaking a deadlock
+   * (PostgreSQL 40P01) or failing a transaction for serialization, which
+   * is how H2 reports a deadlock (40001).
+   */
+  public static boolean isDeadlock(Throwable e) {
+    for (Throwable c = e; c != null; c = c.getCause()) {
+      if (c instanceof SQLException) {
+        String state = ((SQLException) c).getSQLState();
+        if ("40P01".equals(state) || "40001".equals(state)) return true;
+      }
+    }
+    return false;
+  }
+
+  /** Random pause growing with the attempt, so the two victims do not collide again. */
+  private static void backOff(int attempt) {
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(1, 10L * attempt + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void register(EntityManager em, Consumer<Boolean> action) {
+    em.unwrap(SessionImplementor.class).getActionQueue()
+        .registerProcess((success, session) -> action.accept(success));
+  }
+
+  private static final class Held {
+    final EntityManager em;
+    final List<Consumer<Boolean>> actions = new ArrayList<>();
+
+    Held(EntityManager em) {
+      this.em = em;
+    }
+  }
+
+  private static void record(long opened) {
+    // A factory passed in by hand (not JpaUtil's) is not counted; the unit still used one.
+    long n = Math.max(opened, 1);
+    operations.increment();
+    entityManagers.add(n);
+    if (n > 1) multiEntityManagerOperations.increment();
+    long max;
+    while (n > (max = maxPerOperation.get())) {
+      if (maxPerOperation.compareAndSet(max, n)) break;
+    }
+  }
+}
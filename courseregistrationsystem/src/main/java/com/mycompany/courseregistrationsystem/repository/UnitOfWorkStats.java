@@ -0,0 +1,37 @@
+package com.mycompany.courseregistrationsystem.repository;
+
+/** EntityManagers opened per unit of work, since startup. */
+public final class UnitOfWorkStats {
+
+  private final long operations;
+  private final long entityManagers;
+  private final long maxPerOperation;
+  private final long multiEntityManagerOperations;
+
+  UnitOfWorkStats(long operations, long entityManagers, long maxPerOperation,
+                  long multiEntityManagerOperations) {
+    this.operations = operations;
+    this.entityManagers = entityManagers;
+    this.maxPerOperation = maxPerOperation;
+    this.multiEntityManagerOperations = multiEntityManagerOperations;
+  }
+
+  /** Units of work completed (committed or rolled back). */
+  public long getOperations() { return operations; }
+  /** EntityManagers opened by those units, their own included. */
+  public long getEntityManagers() { return entityManagers; }
+  public long getMaxPerOperation() { return maxPerOperation; }
+  /** Units during which some code opened an EntityManager of its own instead of joining. */
+  public long getMultiEntityManagerOperations() { return multiEntityManagerOperations; }
+
+  public double getAveragePerOperation() {
+    return operations == 0 ? 0d : (double) entityManagers / operations;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("operations=%d entityManagers=%d avg=%.2f max=%d multi=%d",
+        operations, entityManagers, getAveragePerOperation(), maxPerOperation,
+        multiEntityManagerOperations);
+  }
+}
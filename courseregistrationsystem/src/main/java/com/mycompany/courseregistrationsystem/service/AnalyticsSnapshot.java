@@ -0,0 +1,296 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import com.mycompany.courseregistrationsystem.model.EnrollmentRow;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Columnar copy of the registration data for reports that look at every
+ * course and student: fill rates, CFU loads and their histograms.
+ * <p>
+ * Courses are parallel primitive arrays (id, cfu, maxSeats, enrolled) in id
+ * order; students are an id array plus their courses in compressed sparse
+ * row form: the courses of the student at position {@code s} are the
+ * course positions {@code courses[first[s]]} to
+ * {@code courses[first[s + 1] - 1]}. 100k students with 1M enrollments take
+ * under 6 MB, and no entity is ever loaded.
+ * <p>
+ * The aggregates split the rows into ranges of {@link #DEFAULT_GRAIN} and
+ * run them on a fork/join pool. The snapshot is read once by
+ * {@link #load()} and never changes, so any number of threads can query it.
+ */
+public final class AnalyticsSnapshot {
+
+  /** Rows per fork/join leaf task. */
+  public static final int DEFAULT_GRAIN = 4096;
+
+  private final long[] courseIds;
+  private final String[] courseCodes;
+  private final int[] cfu;
+  private final int[] maxSeats;
+  private final int[] enrolled;
+
+  private final long[] studentIds;
+  private final int[] first;     // studentIds.length + 1 entries
+  private final int[] courses;   // course positions, ascending per student
+
+  private final ForkJoinPool pool;
+  private final int grain;
+
+  AnalyticsSnapshot(List<CourseSummary> courseRows, long[] studentIds, int[] first, int[] courses,
+                    ForkJoinPool pool, int grain) {
+    if (grain <= 0) throw new IllegalArgumentException("Grain must be positive.");
+    if (first.length != studentIds.length + 1 || first[studentIds.length] != courses.length)
+      throw new IllegalArgumentException("Course offsets do not match the students.");
+    int n = courseRows.size();
+    this.courseIds = new long[n];
+    this.courseCodes = new String[n];
+    this.cfu = new int[n];
+    this.maxSeats = new int[n];
+    this.enrolled = new int[n];
+    for (int i = 0; i < n; i++) {
+      CourseSummary c = courseRows.get(i);
+      courseIds[i] = c.getId();
+      courseCodes[i] = c.getCode();
+      cfu[i] = c.getCfu();
+      maxSeats[i] = c.getMaxSeats();
+      enrolled[i] = c.getEnrolled();
+    }
+    this.studentIds = studentIds;
+    this.first = first;
+    this.courses = courses;
+    this.pool = pool;
+    this.grain = grain;
+  }
+
+  /** Reads the snapshot through the default repositories; aggregates run on the common pool. */
+  public static AnalyticsSnapshot load() {
+    return load(new CourseRepository(), new StudentRepository(), StudentRepository.DEFAULT_FETCH_SIZE,
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Reads the courses, the student ids and the enrollments in one unit of
+   * work, the last two with forward-only cursors. Enrollments of a student
+   * or course created after it was read are left out.
+   */
+  public static AnalyticsSnapshot load(CourseRepository courseRepo, StudentRepository studentRepo,
+                                       int fetchSize, ForkJoinPool pool) {
+    if (fetchSize <= 0) throw new IllegalArgumentException("Fetch size must be positive.");
+    return UnitOfWork.call(em -> {
+      List<CourseSummary> courseRows = courseRepo.findAllSummaries();
+      long[] courseIds = new long[courseRows.size()];
+      for (int i = 0; i < courseIds.length; i++) courseIds[i] = courseRows.get(i).getId();
+
+      IdCollector ids = new IdCollector();
+      studentRepo.forEachIdUpTo(Long.MAX_VALUE, fetchSize, ids);
+      long[] studentIds = Arrays.copyOf(ids.ids, ids.size);
+
+      PairCollector pairs = new PairCollector(courseIds, studentIds);
+      studentRepo.forEachEnrollment(fetchSize, pairs);
+
+      // Counting sort by student: the pairs come in course order, so each
+      // student's courses land in ascending position order.
+      int[] first = new int[studentIds.length + 1];
+      for (int i = 0; i < pairs.size; i++) first[pairs.students[i] + 1]++;
+      for (int s = 0; s < studentIds.length; s++) first[s + 1] += first[s];
+      int[] next = Arrays.copyOf(first, studentIds.length);
+      int[] adjacency = new int[pairs.size];
+      for (int i = 0; i < pairs.size; i++) adjacency[next[pairs.students[i]]++] = pairs.courses[i];
+
+      return new AnalyticsSnapshot(courseRows, studentIds, first, adjacency, pool, DEFAULT_GRAIN);
+    });
+  }
+
+  public int courseCount() { return courseIds.length; }
+  public int studentCount() { return studentIds.length; }
+  public int enrollmentCount() { return courses.length; }
+
+  public long courseId(int position) { return courseIds[position]; }
+  public String courseCode(int position) { return courseCodes[position]; }
+  public int cfu(int position) { return cfu[position]; }
+  public int maxSeats(int position) { return maxSeats[position]; }
+  public int enrolled(int position) { return enrolled[position]; }
+
+  public long studentId(int position) { return studentIds[position]; }
+
+  /** The number of courses the student at {@code position} takes. */
+  public int courseCountOf(int position) { return first[position + 1] - first[position]; }
+
+  // ------------------- Aggregates -------------------
+
+  /** The CFU of each student's courses added up, by student position. */
+  public int[] cfuTotals() {
+    int[] totals = new int[studentIds.length];
+    forEach(totals.length, s -> totals[s] = cfuOf(s));
+    return totals;
+  }
+
+  /** {@code enrolled / maxSeats} of each course, by course position; 0 for a course without seats. */
+  public double[] fillRatios() {
+    double[] ratios = new double[courseIds.length];
+    forEach(ratios.length, c -> ratios[c] = fillRatio(c));
+    return ratios;
+  }
+
+  /**
+   * Students by CFU load: element {@code i} counts those whose courses add
+   * up to between {@code i * bucketWidth} and {@code (i + 1) * bucketWidth - 1}.
+   * The array ends at the highest non-empty bucket.
+   */
+  public long[] cfuLoadHistogram(int bucketWidth) {
+    if (bucketWidth <= 0) throw new IllegalArgumentException("Bucket width must be positive.");
+    return histogram(studentIds.length, s -> cfuOf(s) / bucketWidth);
+  }
+
+  /**
+   * Courses by fill ratio: {@code buckets} equal ranges over [0, 1), then
+   * one more (element {@code buckets}) for the full and oversubscribed ones.
+   */
+  public long[] fillRatioHistogram(int buckets) {
+    if (buckets <= 0) throw new IllegalArgumentException("Bucket count must be positive.");
+    long[] h = histogram(courseIds.length, c -> {
+      double r = fillRatio(c);
+      return r >= 1d ? buckets : (int) (r * buckets);
+    });
+    return Arrays.copyOf(h, buckets + 1);
+  }
+
+  private int cfuOf(int student) {
+    int total = 0;
+    for (int k = first[student], end = first[student + 1]; k < end; k++) total += cfu[courses[k]];
+    return total;
+  }
+
+  private double fillRatio(int course) {
+    return maxSeats[course] <= 0 ? 0d : (double) enrolled[course] / maxSeats[course];
+  }
+
+  private void forEach(int n, IntConsumer body) {
+    if (n > 0) pool.invoke(new Apply(0, n, body));
+  }
+
+  private long[] histogram(int n, IntUnaryOperator bucketOf) {
+    long[] h = n > 0 ? pool.invoke(new Count(0, n, bucketOf)) : new long[0];
+    int length = h.length;
+    while (length > 0 && h[length - 1] == 0) length--;
+    return length == h.length ? h : Arrays.copyOf(h, length);
+  }
+
+  /** Applies the body to every position of a range, halving it down to the grain. */
+  private final class Apply extends RecursiveAction {
+
+    private final int from;
+    private final int to;
+    private final IntConsumer body;
+
+    Apply(int from, int to, IntConsumer body) {
+      this.from = from;
+      this.to = to;
+      this.body = body;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= grain) {
+        for (int i = from; i < to; i++) body.accept(i);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new Apply(from, mid, body), new Apply(mid, to, body));
+      }
+    }
+  }
+
+  /** Counts the positions of a range per bucket; leaves grow their array as buckets appear. */
+  private final class Count extends RecursiveTask<long[]> {
+
+    private final int from;
+    private final int to;
+    private final IntUnaryOperator bucketOf;
+
+    Count(int from, int to, IntUnaryOperator bucketOf) {
+      this.from = from;
+      this.to = to;
+      this.bucketOf = bucketOf;
+    }
+
+    @Override
+    protected long[] compute() {
+      if (to - from <= grain) {
+        long[] h = new long[16];
+        for (int i = from; i < to; i++) {
+          int b = bucketOf.applyAsInt(i);
+          if (b >= h.length) h = Arrays.copyOf(h, Math.max(b + 1, 2 * h.length));
+          h[b]++;
+        }
+        return h;
+      }
+      int mid = (from + to) >>> 1;
+      Count left = new Count(from, mid, bucketOf);
+      left.fork();
+      long[] right = new Count(mid, to, bucketOf).compute();
+      long[] l = left.join();
+      long[] sum = l.length >= right.length ? l : right;
+      long[] other = sum == l ? right : l;
+      for (int i = 0; i < other.length; i++) sum[i] += other[i];
+      return sum;
+    }
+  }
+
+  /** Student ids from the cursor, ascending. */
+  private static final class IdCollector implements Consumer<Long> {
+
+    long[] ids = new long[1024];
+    int size;
+
+    @Override
+    public void accept(Long id) {
+      if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+      ids[size++] = id;
+    }
+  }
+
+  /** Enrollments as (student position, course position) pairs; rows of unknown ids are skipped. */
+  private static final class PairCollector implements Consumer<EnrollmentRow> {
+
+    private final long[] courseIds;
+    private final long[] studentIds;
+    int[] students = new int[1024];
+    int[] courses = new int[1024];
+    int size;
+    private long lastCourseId = Long.MIN_VALUE;
+    private int lastCourse = -1;
+
+    PairCollector(long[] courseIds, long[] studentIds) {
+      this.courseIds = courseIds;
+      this.studentIds = studentIds;
+    }
+
+    @Override
+    public void accept(EnrollmentRow r) {
+      if (r.getCourseId() != lastCourseId) {   // rows come grouped by course
+        lastCourseId = r.getCourseId();
+        lastCourse = Arrays.binarySearch(courseIds, lastCourseId);
+      }
+      int s = Arrays.binarySearch(studentIds, r.getStudentId());
+      if (lastCourse < 0 || s < 0) return;
+      if (size == students.length) {
+        students = Arrays.copyOf(students, size * 2);
+        courses = Arrays.copyOf(courses, size * 2);
+      }
+      students[size] = s;
+      courses[size++] = lastCourse;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of students answered by EnrollmentIndex, e.g. "enrolled in A and B
+ * but not C": {@code index.allOf(a, b).andNot(index.course(c))}.
+ * <p>
+ * Immutable: every operation returns a new cohort, and the bitmap behind it
+ * is never changed after it was built, so cohorts can be kept and shared
+ * between threads. A cohort is the enrollments as they were when it was
+ * taken from the index.
+ */
+public final class Cohort {
+
+  private final RoaringBitmap students;
+
+  Cohort(RoaringBitmap students) {
+    this.students = students;
+  }
+
+  /** The students in both. */
+  public Cohort and(Cohort other) {
+    return new Cohort(RoaringBitmap.and(students, other.students));
+  }
+
+  /** The students in either. */
+  public Cohort or(Cohort other) {
+    return new Cohort(RoaringBitmap.or(students, other.students));
+  }
+
+  /** The students in this cohort and not in {@code other}. */
+  public Cohort andNot(Cohort other) {
+    return new Cohort(RoaringBitmap.andNot(students, other.students));
+  }
+
+  /** The number of students in both, without building that cohort. */
+  public int andSize(Cohort other) {
+    return RoaringBitmap.andCardinality(students, other.students);
+  }
+
+  public int size() {
+    return students.getCardinality();
+  }
+
+  public boolean isEmpty() {
+    return students.isEmpty();
+  }
+
+  public boolean contains(Long studentId) {
+    return studentId != null && studentId >= 0 && studentId <= EnrollmentIndex.MAX_STUDENT_ID
+        && students.contains((int) studentId.longValue());
+  }
+
+  /** The student ids, ascending. */
+  public List<Long> studentIds() {
+    List<Long> ids = new ArrayList<>(size());
+    for (IntIterator it = students.getIntIterator(); it.hasNext(); ) {
+      ids.add(Integer.toUnsignedLong(it.next()));
+    }
+    return ids;
+  }
+
+  RoaringBitmap bitmap() {
+    return students;
+  }
+
+  @Override
+  public String toString() {
+    return "Cohort[" + size() + " students]";
+  }
+}
@@ -0,0 +1,16 @@
+package com.mycompany.courseregistrationsystem.service;
+
+/** Thrown when a seat reservation finds the course at capacity. */
+public class CourseFullException extends IllegalArgumentException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final Long courseId;
+
+  public CourseFullException(Long courseId, String courseCode) {
+    super("Course is full: " + courseCode);
+    this.courseId = courseId;
+  }
+
+  public Long getCourseId() { return courseId; }
+}
@@ -0,0 +1,39 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.repository.SeatCounter;
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seats live in the {@code courses.enrolled} counter; every call is a
+ * statement in the caller's transaction, so a rollback undoes it.
+ */
+public class DatabaseSeatInventory implements SeatInventory {
+
+  @Override
+  public boolean tryReserve(EntityManager em, Long courseId) {
+    return SeatCounter.tryReserve(em, courseId);
+  }
+
+  @Override
+  public boolean record(EntityManager em, Long studentId, Long courseId) {
+    return em.createNativeQuery(EnrollmentSql.INSERT_IF_ABSENT_NAMED)
+        .unwrap(NativeQuery.class)
+        .addSynchronizedQuerySpace(EnrollmentSql.TABLE)
+        .setParameter("sid", studentId)
+        .setParameter("cid", courseId)
+        .executeUpdate() == 1;
+  }
+
+  @Override
+  public void release(EntityManager em, Long courseId) {
+    SeatCounter.release(em, courseId);
+  }
+
+  @Override
+  public boolean sync(long timeout, TimeUnit unit) {
+    return true;
+  }
+}
@@ -0,0 +1,430 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.repository.EnrollmentChanges;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Seeds the database with a synthetic but realistic catalog: courses,
+ * students and their enrollments, for benchmarks and load tests.
+ * <p>
+ * The data is a pure function of the seed and the scale: the same arguments
+ * against an empty database always produce the same rows. Course popularity
+ * follows a Zipf distribution of exponent {@code skew}, so a few courses
+ * draw most of the demand; seats are spread evenly regardless, so the
+ * popular courses are oversubscribed and fill up, and their surplus demand
+ * goes to the student's next choices. Seat counters are set to match.
+ * <p>
+ * Rows are streamed, never held in memory, and bulk-loaded in one
+ * transaction: through the COPY protocol on PostgreSQL, with JDBC insert
+ * batches on any other database (H2 in tests). Ids continue after both the
+ * existing rows and the id sequences, and the sequences are moved past the
+ * new rows, so the application keeps working on the loaded data.
+ */
+public class DatasetGenerator {
+
+  public static final long DEFAULT_SEED = 42L;
+  public static final int DEFAULT_STUDENTS = 100_000;
+  public static final int DEFAULT_COURSES = 3_000;
+  public static final long DEFAULT_ENROLLMENTS = 1_000_000L;
+  public static final double DEFAULT_SKEW = 1.0;
+
+  /** Total seats as a multiple of the enrollments to place. */
+  static final double SEAT_HEADROOM = 2.0;
+  static final int MIN_SEATS = 10;
+  static final int INSERT_BATCH_SIZE = 1000;
+
+  /** Matches the allocationSize of the entities' sequence generators. */
+  static final int ID_ALLOCATION_SIZE = 50;
+
+  /** Draws from the popularity distribution before a student settles for any course with a seat. */
+  private static final int MAX_DRAWS = 16;
+
+  private static final String[] FIRST_NAMES = {
+      "Alessandro", "Alice", "Andrea", "Anna", "Beatrice", "Chiara", "Davide", "Elena", "Emma",
+      "Federico", "Francesca", "Gabriele", "Giorgia", "Giulia", "Lorenzo", "Luca", "Marco",
+      "Maria", "Martina", "Matteo", "Nicola", "Paolo", "Riccardo", "Sara", "Simone", "Sofia",
+      "Stefano", "Tommaso", "Valentina", "Viola" };
+  private static final String[] LAST_NAMES = {
+      "Barbieri", "Bianchi", "Bruno", "Colombo", "Conti", "Costa", "De Luca", "Esposito",
+      "Fabbri", "Ferrara", "Ferrari", "Fontana", "Galli", "Gallo", "Giordano", "Greco",
+      "Lombardi", "Mancini", "Marino", "Martini", "Moretti", "Ricci", "Rinaldi", "Rizzo",
+      "Romano", "Rossi", "Russo", "Santoro", "Villa", "Caruso" };
+  private static final String[] SUBJECTS = {
+      "Algorithms", "Analysis", "Architecture", "Biology", "Calculus", "Chemistry", "Compilers",
+      "Cryptography", "Databases", "Economics", "Electronics", "Geometry", "Graphics",
+      "Linear Algebra", "Logic", "Machine Learning", "Mechanics", "Networks", "Operating Systems",
+      "Physics", "Probability", "Programming", "Security", "Signal Processing", "Software Engineering",
+      "Statistics", "Thermodynamics" };
+  private static final String[] LEVELS = { "I", "II", "III", "Advanced", "Lab", "Seminar" };
+  private static final int[] CFU = { 3, 6, 6, 6, 9, 9, 12 };
+
+  private final long seed;
+  private final int students;
+  private final int courses;
+  private final long enrollments;
+  private final double skew;
+
+  public DatasetGenerator() {
+    this(DEFAULT_SEED, DEFAULT_STUDENTS, DEFAULT_COURSES, DEFAULT_ENROLLMENTS, DEFAULT_SKEW);
+  }
+
+  public DatasetGenerator(long seed, int students, int courses, long enrollments, double skew) {
+    if (students <= 0 || courses <= 0)
+      throw new IllegalArgumentException("Student and course counts must be positive.");
+    if (enrollments < 0 || enrollments > (long) students * courses)
+      throw new IllegalArgumentException("Enrollments must be between 0 and students * courses.");
+    if (!(skew >= 0))
+      throw new IllegalArgumentException("Skew must not be negative.");
+    this.seed = seed;
+    this.students = students;
+    this.courses = courses;
+    this.enrollments = enrollments;
+    this.skew = skew;
+  }
+
+  /** Generates the dataset and loads it in one transaction. */
+  public DatasetReport load() {
+    long start = System.nanoTime();
+    EntityManager em = JpaUtil.emf().createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    Dialect dialect = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+        .getJdbcServices().getDialect();
+    try {
+      tx.begin();
+      Plan[] plan = new Plan[1];
+      boolean[] copy = new boolean[1];
+      long[] first = new long[1];
+      em.unwrap(Session.class).doWork(conn -> {
+        long firstCourse = firstFreeId(conn, dialect, "courses", "course_seq");
+        first[0] = firstCourse;
+        long firstStudent = firstFreeId(conn, dialect, "students", "student_seq");
+        copy[0] = conn.isWrapperFor(PGConnection.class);
+        Plan p = new Plan(courses);
+        try (Sink rows = sink(conn, copy[0], "courses", "id", "code", "title", "cfu", "maxSeats")) {
+          writeCourses(firstCourse, p, rows);
+        }
+        try (Sink rows = sink(conn, copy[0], "students", "id", "matricola", "fullName", "email")) {
+          writeStudents(firstStudent, rows);
+        }
+        try (Sink rows = sink(conn, copy[0], "enrollments", "student_id", "course_id")) {
+          writeEnrollments(firstCourse, firstStudent, p, rows);
+        }
+        plan[0] = p;
+        setSeats(conn, firstCourse, p.taken);
+        restartSequence(conn, "course_seq", firstCourse + courses - 1);
+        restartSequence(conn, "student_seq", firstStudent + students - 1);
+      });
+      tx.commit();
+      // Plain JDBC bypassed Hibernate's invalidation: drop every cached entity and query result,
+      // and tell the enrollment listeners about the new courses.
+      em.getEntityManagerFactory().getCache().unwrap(org.hibernate.Cache.class).evictAllRegions();
+      List<Long> courseIds = new ArrayList<>(courses);
+      for (int i = 0; i < courses; i++) courseIds.add(first[0] + i);
+      EnrollmentChanges.fireCoursesChanged(courseIds);
+      return new DatasetReport(courses, students, enrollments, plan[0].oversubscribed(),
+          plan[0].full(), copy[0] ? "COPY" : "batch insert", System.nanoTime() - start);
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  /**
+   * The tables are written one after the other (a connection carries one
+   * COPY at a time), each from its own random stream, so changing one never
+   * reshuffles the others.
+   */
+  void writeCourses(long firstCourse, Plan plan, Sink rows) throws SQLException {
+    Random rnd = new Random(seed);
+    long seatsTotal = 0;
+    double avgSeats = Math.max(MIN_SEATS, enrollments * SEAT_HEADROOM / courses);
+    for (int c = 0; c < courses; c++) {
+      plan.seats[c] = Math.max(MIN_SEATS, (int) Math.round(avgSeats * (0.5 + rnd.nextDouble())));
+      seatsTotal += plan.seats[c];
+    }
+    for (int c = 0; seatsTotal < enrollments; c = (c + 1) % courses, seatsTotal++) plan.seats[c]++;
+    for (int c = 0; c < courses; c++) {
+      long id = firstCourse + c;
+      String title = SUBJECTS[rnd.nextInt(SUBJECTS.length)] + " " + LEVELS[rnd.nextInt(LEVELS.length)];
+      rows.row(id, String.format("GC%06d", id), title, CFU[rnd.nextInt(CFU.length)], plan.seats[c]);
+    }
+  }
+
+  void writeStudents(long firstStudent, Sink rows) throws SQLException {
+    Random rnd = new Random(seed + 1);
+    for (int s = 0; s < students; s++) {
+      long id = firstStudent + s;
+      String first = FIRST_NAMES[rnd.nextInt(FIRST_NAMES.length)];
+      String last = LAST_NAMES[rnd.nextInt(LAST_NAMES.length)];
+      String email = (first + "." + last).toLowerCase(Locale.ROOT).replace(" ", "") + id + "@studenti.example.edu";
+      rows.row(id, String.format("G%08d", id), first + " " + last, email);
+    }
+  }
+
+  /**
+   * Every student takes {@code enrollments / students} courses (the first
+   * few one more), each drawn by popularity; a full course counts as demand
+   * and the student draws again.
+   */
+  void writeEnrollments(long firstCourse, long firstStudent, Plan plan, Sink rows) throws SQLException {
+    Random rnd = new Random(seed + 2);
+    int[] byRank = shuffledCourses(rnd);
+    double[] cdf = zipfCdf();
+    int[] chosen = new int[(int) Math.min(courses, enrollments / students + 1)];
+    for (int s = 0; s < students; s++) {
+      int k = (int) (enrollments / students + (s < enrollments % students ? 1 : 0));
+      for (int j = 0; j < k; j++) {
+        int c = -1;
+        for (int draw = 0; draw < MAX_DRAWS && c < 0; draw++) {
+          int candidate = byRank[rank(cdf, rnd.nextDouble())];
+          if (contains(chosen, j, candidate)) continue;
+          plan.demand[candidate]++;
+          if (plan.taken[candidate] < plan.seats[candidate]) c = candidate;
+        }
+        if (c < 0) c = anyWithSeat(plan, chosen, j, rnd.nextInt(courses));
+        chosen[j] = c;
+        plan.taken[c]++;
+        rows.row(firstStudent + s, firstCourse + c);
+      }
+    }
+  }
+
+  private int[] shuffledCourses(Random rnd) {
+    int[] order = new int[courses];
+    for (int i = 0; i < courses; i++) order[i] = i;
+    for (int i = courses - 1; i > 0; i--) {
+      int j = rnd.nextInt(i + 1);
+      int t = order[i];
+      order[i] = order[j];
+      order[j] = t;
+    }
+    return order;
+  }
+
+  /** Cumulative Zipf weights 1/rank^skew, normalized to end at 1. */
+  private double[] zipfCdf() {
+    double[] cdf = new double[courses];
+    double sum = 0;
+    for (int r = 0; r < courses; r++) cdf[r] = sum += 1d / Math.pow(r + 1, skew);
+    for (int r = 0; r < courses; r++) cdf[r] /= sum;
+    return cdf;
+  }
+
+  private static int rank(double[] cdf, double u) {
+    int i = Arrays.binarySearch(cdf, u);
+    return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+  }
+
+  private static boolean contains(int[] values, int n, int value) {
+    for (int i = 0; i < n; i++) if (values[i] == value) return true;
+    return false;
+  }
+
+  /** Seats always cover the enrollments and a student takes at most every course, so one is found. */
+  private int anyWithSeat(Plan plan, int[] chosen, int n, int from) {
+    for (int i = 0; i < courses; i++) {
+      int c = (from + i) % courses;
+      if (plan.taken[c] < plan.seats[c] && !contains(chosen, n, c)) return c;
+    }
+    throw new IllegalStateException("No course with a free seat left.");
+  }
+
+  /**
+   * First id above both the table's rows and the ids the pooled sequence may
+   * already have handed out (its current value is the top of that range).
+   */
+  private static long firstFreeId(Connection conn, Dialect dialect, String table, String sequence)
+      throws SQLException {
+    try (Statement st = conn.createStatement()) {
+      long maxId;
+      try (ResultSet rs = st.executeQuery("select coalesce(max(id), 0) from " + table)) {
+        rs.next();
+        maxId = rs.getLong(1);
+      }
+      try (ResultSet rs = st.executeQuery(dialect.getSequenceNextValString(sequence))) {
+        rs.next();
+        return Math.max(maxId, rs.getLong(1)) + 1;
+      }
+    }
+  }
+
+  /** Makes the next pooled block start right after {@code lastId}. */
+  private static void restartSequence(Connection conn, String sequence, long lastId) throws SQLException {
+    try (Statement st = conn.createStatement()) {
+      st.execute("alter sequence " + sequence + " restart with " + (lastId + ID_ALLOCATION_SIZE));
+    }
+  }
+
+  private static void setSeats(Connection conn, long firstCourse, int[] taken) throws SQLException {
+    try (PreparedStatement ps = conn.prepareStatement("update courses set enrolled = ? where id = ?")) {
+      for (int c = 0; c < taken.length; c++) {
+        ps.setInt(1, taken[c]);
+        ps.setLong(2, firstCourse + c);
+        ps.addBatch();
+        if ((c + 1) % INSERT_BATCH_SIZE == 0) ps.executeBatch();
+      }
+      ps.executeBatch();
+    }
+  }
+
+  private static Sink sink(Connection conn, boolean copy, String table, String... columns)
+      throws SQLException {
+    return copy ? new CopySink(conn, table, columns) : new BatchSink(conn, table, columns);
+  }
+
+  /** Destination of one table's rows; closing flushes what is left. */
+  interface Sink extends AutoCloseable {
+    void row(Object... values) throws SQLException;
+
+    @Override
+    default void close() throws SQLException { }
+  }
+
+  /** Streams CSV text through {@code COPY ... FROM STDIN}. */
+  private static final class CopySink implements Sink {
+    private final Writer out;
+
+    CopySink(Connection conn, String table, String... columns) throws SQLException {
+      PGConnection pg = conn.unwrap(PGConnection.class);
+      String sql = "copy " + table + " (" + String.join(", ", columns) + ") from stdin with (format csv)";
+      out = new BufferedWriter(new OutputStreamWriter(
+          new PGCopyOutputStream(pg, sql, 1 << 16), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public void row(Object... values) throws SQLException {
+      try {
+        write(values);
+      } catch (IOException e) {
+        throw copyFailed(e);
+      }
+    }
+
+    private void write(Object[] values) throws IOException {
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) out.write(',');
+        String v = values[i].toString();
+        if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0 || v.indexOf('\n') >= 0) {
+          out.write('"');
+          out.write(v.replace("\"", "\"\""));
+          out.write('"');
+        } else {
+          out.write(v);
+        }
+      }
+      out.write('\n');
+    }
+
+    @Override
+    public void close() throws SQLException {
+      try {
+        out.close();   // ends the COPY
+      } catch (IOException e) {
+        throw copyFailed(e);
+      }
+    }
+
+    /** PGCopyOutputStream reports the server's SQLException as the cause of an IOException. */
+    private static SQLException copyFailed(IOException e) {
+      return e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e);
+    }
+  }
+
+  /** Multi-row JDBC batches of one parameterized insert. */
+  private static final class BatchSink implements Sink {
+    private final PreparedStatement insert;
+    private int pending;
+
+    BatchSink(Connection conn, String table, String... columns) throws SQLException {
+      char[] marks = new char[columns.length * 2 - 1];
+      Arrays.fill(marks, ',');
+      for (int i = 0; i < marks.length; i += 2) marks[i] = '?';
+      insert = conn.prepareStatement("insert into " + table + " (" + String.join(", ", columns)
+          + ") values (" + new String(marks) + ")");
+    }
+
+    @Override
+    public void row(Object... values) throws SQLException {
+      for (int i = 0; i < values.length; i++) insert.setObject(i + 1, values[i]);
+      insert.addBatch();
+      if (++pending == INSERT_BATCH_SIZE) {
+        insert.executeBatch();
+        pending = 0;
+      }
+    }
+
+    @Override
+    public void close() throws SQLException {
+      try {
+        if (pending > 0) insert.executeBatch();
+      } finally {
+        insert.close();
+      }
+    }
+  }
+
+  /** Per-course seats, how many were taken and how many students tried. */
+  static final class Plan {
+    final int[] seats;
+    final int[] taken;
+    final int[] demand;
+
+    Plan(int courses) {
+      seats = new int[courses];
+      taken = new int[courses];
+      demand = new int[courses];
+    }
+
+    int oversubscribed() {
+      int n = 0;
+      for (int c = 0; c < seats.length; c++) if (demand[c] > seats[c]) n++;
+      return n;
+    }
+
+    int full() {
+      int n = 0;
+      for (int c = 0; c < seats.length; c++) if (taken[c] == seats[c]) n++;
+      return n;
+    }
+  }
+
+  /**
+   * Headless entry point:
+   * {@code DatasetGenerator [students] [courses] [enrollments] [seed] [skew]}.
+   */
+  public static void main(String[] args) {
+    int students = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_STUDENTS;
+    int courses = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COURSES;
+    long enrollments = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_ENROLLMENTS;
+    long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+    double skew = args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_SKEW;
+    try {
+      System.out.println(new DatasetGenerator(seed, students, courses, enrollments, skew).load());
+    } finally {
+      JpaUtil.close();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import java.util.concurrent.TimeUnit;
+
+/** Outcome of one DatasetGenerator run. */
+public final class DatasetReport {
+
+  private final int courses;
+  private final int students;
+  private final long enrollments;
+  private final int oversubscribedCourses;
+  private final int fullCourses;
+  private final String method;
+  private final long elapsedNanos;
+
+  DatasetReport(int courses, int students, long enrollments, int oversubscribedCourses,
+                int fullCourses, String method, long elapsedNanos) {
+    this.courses = courses;
+    this.students = students;
+    this.enrollments = enrollments;
+    this.oversubscribedCourses = oversubscribedCourses;
+    this.fullCourses = fullCourses;
+    this.method = method;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public int getCourses() { return courses; }
+  public int getStudents() { return students; }
+  public long getEnrollments() { return enrollments; }
+  /** Courses that more students tried to take than they have seats for. */
+  public int getOversubscribedCourses() { return oversubscribedCourses; }
+  /** Courses left with no free seat. */
+  public int getFullCourses() { return fullCourses; }
+  /** How the rows were loaded: "COPY" or "batch insert". */
+  public String getMethod() { return method; }
+  public long getElapsedMillis() { return TimeUnit.NANOSECONDS.toMillis(elapsedNanos); }
+
+  /** Rows of all three tables loaded per second of wall-clock time. */
+  public double getRowsPerSecond() {
+    return elapsedNanos == 0 ? 0d : (courses + students + enrollments) * 1_000_000_000d / elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("courses=%d students=%d enrollments=%d oversubscribed=%d full=%d "
+        + "method=%s elapsed=%dms throughput=%.0f rows/s",
+        courses, students, enrollments, oversubscribedCourses, fullCourses,
+        method, getElapsedMillis(), getRowsPerSecond());
+  }
+}
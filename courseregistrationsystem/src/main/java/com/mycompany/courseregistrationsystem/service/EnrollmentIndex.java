@@ -0,0 +1,306 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.model.EnrollmentRow;
+import com.mycompany.courseregistrationsystem.repository.EnrollmentChanges;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-memory copy of the enrollments table as one compressed bitmap
+ * (RoaringBitmap) of student ids per course, for set questions over courses
+ * without loading any student: who takes A and B but not C, how many take
+ * both A and B. A question is answered from memory in microseconds.
+ * <p>
+ * {@link #load()} streams the table once and from then on follows
+ * EnrollmentChanges, so an answer reflects every transaction committed
+ * before it was asked. A student joining or leaving courses, or deleted, is
+ * applied in memory as soon as their transaction commits. Courses changed in
+ * bulk (import, generated data), or while the table was being streamed, are
+ * marked stale and re-read, those courses only, by the next question.
+ * <p>
+ * The bitmaps are never changed once built: a change copies the bitmaps it
+ * touches and replaces the map of them as a whole. Questions never wait for
+ * one another or for a writer; writers only wait for each other, briefly.
+ * Student ids must lie between 0 and {@link #MAX_STUDENT_ID} (the bitmaps
+ * hold 32-bit values).
+ */
+public class EnrollmentIndex implements EnrollmentChanges.Listener, AutoCloseable {
+
+  /** The highest student id the bitmaps can hold. */
+  public static final long MAX_STUDENT_ID = 0xFFFF_FFFFL;
+
+  /** Stale courses re-read per query; keeps the IN list within every driver's limits. */
+  private static final int REFRESH_CHUNK = 500;
+
+  private final StudentRepository students;
+  private final int fetchSize;
+  private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+
+  // Replaced, never changed; null until load(). Replaced holding `writes`.
+  private volatile Map<Long, RoaringBitmap> byCourse;
+
+  private final Object writes = new Object();
+  private boolean loading;                            // guarded by writes
+  private final Set<Long> refreshing = new HashSet<>(); // guarded by writes
+
+  public EnrollmentIndex() {
+    this(new StudentRepository(), StudentRepository.DEFAULT_FETCH_SIZE);
+  }
+
+  public EnrollmentIndex(StudentRepository students, int fetchSize) {
+    if (fetchSize <= 0) throw new IllegalArgumentException("Fetch size must be positive.");
+    this.students = students;
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Reads the whole enrollments table and starts following its changes;
+   * calling it again rebuilds the index.
+   *
+   * @return this index
+   */
+  public synchronized EnrollmentIndex load() {
+    // Listening first: a change committed while the table streams is read again.
+    EnrollmentChanges.addListener(this);
+    synchronized (writes) {
+      loading = true;
+      stale.clear();
+    }
+    Map<Long, RoaringBitmap> loaded = null;
+    try {
+      Builder b = new Builder();
+      students.forEachEnrollment(fetchSize, b);
+      loaded = b.finish();
+    } finally {
+      synchronized (writes) {
+        loading = false;
+        if (loaded != null) byCourse = loaded;
+      }
+    }
+    return this;
+  }
+
+  /** Stops following changes; the index must be loaded again before use. */
+  @Override
+  public synchronized void close() {
+    EnrollmentChanges.removeListener(this);
+    synchronized (writes) {
+      byCourse = null;
+      stale.clear();
+    }
+  }
+
+  /** The students enrolled in the course (none if there is no such course). */
+  public Cohort course(Long courseId) {
+    return new Cohort(bitmapOf(current(), courseId));
+  }
+
+  /** The students enrolled in every one of the courses. */
+  public Cohort allOf(Long... courseIds) {
+    return allOf(Arrays.asList(courseIds));
+  }
+
+  public Cohort allOf(Collection<Long> courseIds) {
+    if (courseIds.isEmpty()) throw new IllegalArgumentException("At least one course is required.");
+    Map<Long, RoaringBitmap> m = current();
+    if (courseIds.size() == 1) return new Cohort(bitmapOf(m, courseIds.iterator().next()));
+    return new Cohort(FastAggregation.and(bitmapsOf(m, courseIds)));
+  }
+
+  /** The students enrolled in at least one of the courses. */
+  public Cohort anyOf(Long... courseIds) {
+    return anyOf(Arrays.asList(courseIds));
+  }
+
+  public Cohort anyOf(Collection<Long> courseIds) {
+    Map<Long, RoaringBitmap> m = current();
+    if (courseIds.size() == 1) return new Cohort(bitmapOf(m, courseIds.iterator().next()));
+    return new Cohort(FastAggregation.or(bitmapsOf(m, courseIds)));
+  }
+
+  /** The number of students enrolled in the course. */
+  public int count(Long courseId) {
+    return bitmapOf(current(), courseId).getCardinality();
+  }
+
+  /** The number of students enrolled in both courses, without building that cohort. */
+  public int overlap(Long courseA, Long courseB) {
+    Map<Long, RoaringBitmap> m = current();
+    return RoaringBitmap.andCardinality(bitmapOf(m, courseA), bitmapOf(m, courseB));
+  }
+
+  /** The courses with at least one student, in no particular order. */
+  public Set<Long> courseIds() {
+    return Collections.unmodifiableSet(current().keySet());
+  }
+
+  /** The number of enrollments held. */
+  public long enrollmentCount() {
+    long n = 0;
+    for (RoaringBitmap b : current().values()) n += b.getLongCardinality();
+    return n;
+  }
+
+  /** The memory taken by the bitmaps, in bytes (their serialized size). */
+  public long sizeInBytes() {
+    long n = 0;
+    for (RoaringBitmap b : current().values()) n += b.serializedSizeInBytes();
+    return n;
+  }
+
+  /** Re-reads the stale courses now instead of on the next question. */
+  public synchronized void refresh() {
+    if (byCourse == null) throw new IllegalStateException("The enrollment index is not loaded.");
+    if (stale.isEmpty()) return;
+    List<Long> ids = new ArrayList<>(stale);
+    synchronized (writes) {
+      // Before reading: a change committed meanwhile marks its course again.
+      stale.removeAll(ids);
+      refreshing.addAll(ids);
+    }
+    try {
+      Builder b = new Builder();
+      for (int i = 0; i < ids.size(); i += REFRESH_CHUNK) {
+        students.forEachEnrollmentIn(ids.subList(i, Math.min(i + REFRESH_CHUNK, ids.size())), fetchSize, b);
+      }
+      Map<Long, RoaringBitmap> fresh = b.finish();
+      synchronized (writes) {
+        Map<Long, RoaringBitmap> m = byCourse;
+        if (m == null) return;   // closed meanwhile
+        Map<Long, RoaringBitmap> next = new HashMap<>(m);
+        for (Long id : ids) {
+          RoaringBitmap bitmap = fresh.get(id);
+          if (bitmap == null) next.remove(id);
+          else next.put(id, bitmap);
+        }
+        byCourse = next;
+      }
+    } catch (RuntimeException e) {
+      stale.addAll(ids);
+      throw e;
+    } finally {
+      synchronized (writes) {
+        refreshing.removeAll(ids);
+      }
+    }
+  }
+
+  @Override
+  public void studentMoved(Long studentId, Collection<Long> joined, Collection<Long> left) {
+    synchronized (writes) {
+      apply(studentId, joined, left);
+    }
+  }
+
+  @Override
+  public void studentRemoved(Long studentId) {
+    synchronized (writes) {
+      Map<Long, RoaringBitmap> m = byCourse;
+      if (m == null || studentId < 0 || studentId > MAX_STUDENT_ID) return;
+      int bit = (int) studentId.longValue();
+      List<Long> left = new ArrayList<>();
+      for (Map.Entry<Long, RoaringBitmap> e : m.entrySet()) {
+        if (e.getValue().contains(bit)) left.add(e.getKey());
+      }
+      apply(studentId, Collections.<Long>emptySet(), left);
+    }
+  }
+
+  @Override
+  public void coursesChanged(Collection<Long> courseIds) {
+    stale.addAll(courseIds);
+  }
+
+  /**
+   * Copies the bitmaps of the courses the student joined or left, changes
+   * the copies and publishes them in a new map. A course being read again
+   * is marked stale as well: the read may predate this change. Holds writes.
+   */
+  private void apply(Long studentId, Collection<Long> joined, Collection<Long> left) {
+    Map<Long, RoaringBitmap> m = byCourse;
+    if (loading || studentId < 0 || studentId > MAX_STUDENT_ID) {
+      // Read again once loaded; an id out of range fails that read.
+      stale.addAll(joined);
+      stale.addAll(left);
+      return;
+    }
+    if (m == null) return;
+    int bit = (int) studentId.longValue();
+    Map<Long, RoaringBitmap> next = new HashMap<>(m);
+    for (Long id : joined) {
+      if (refreshing.contains(id)) stale.add(id);
+      RoaringBitmap b = next.get(id);
+      if (b != null && b.contains(bit)) continue;
+      RoaringBitmap copy = b == null ? new RoaringBitmap() : b.clone();
+      copy.add(bit);
+      next.put(id, copy);
+    }
+    for (Long id : left) {
+      if (refreshing.contains(id)) stale.add(id);
+      RoaringBitmap b = next.get(id);
+      if (b == null || !b.contains(bit)) continue;
+      RoaringBitmap copy = b.clone();
+      copy.remove(bit);
+      if (copy.isEmpty()) next.remove(id);
+      else next.put(id, copy);
+    }
+    byCourse = next;
+  }
+
+  private Map<Long, RoaringBitmap> current() {
+    if (!stale.isEmpty()) refresh();
+    Map<Long, RoaringBitmap> m = byCourse;
+    if (m == null) throw new IllegalStateException("The enrollment index is not loaded.");
+    return m;
+  }
+
+  private static RoaringBitmap bitmapOf(Map<Long, RoaringBitmap> m, Long courseId) {
+    RoaringBitmap b = m.get(courseId);
+    return b != null ? b : new RoaringBitmap();
+  }
+
+  private static Iterator<RoaringBitmap> bitmapsOf(Map<Long, RoaringBitmap> m, Collection<Long> courseIds) {
+    List<RoaringBitmap> bitmaps = new ArrayList<>(courseIds.size());
+    for (Long id : courseIds) bitmaps.add(bitmapOf(m, id));
+    return bitmaps.iterator();
+  }
+
+  /** Collects rows ordered by course into one bitmap per course. */
+  private static final class Builder implements Consumer<EnrollmentRow> {
+
+    private final Map<Long, RoaringBitmap> byCourse = new HashMap<>();
+    private Long course;
+    private RoaringBitmap bitmap;
+
+    @Override
+    public void accept(EnrollmentRow r) {
+      if (!r.getCourseId().equals(course)) {
+        course = r.getCourseId();
+        bitmap = byCourse.computeIfAbsent(course, k -> new RoaringBitmap());
+      }
+      long id = r.getStudentId();
+      if (id < 0 || id > MAX_STUDENT_ID)
+        throw new IllegalArgumentException("Student id " + id + " does not fit the enrollment index.");
+      bitmap.add((int) id);
+    }
+
+    Map<Long, RoaringBitmap> finish() {
+      for (RoaringBitmap b : byCourse.values()) b.runOptimize();
+      return byCourse;
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package com.mycompany.courseregistrationsystem.service;
+
+/** Successful outcomes of enrolling an existing student in a course. */
+public enum EnrollmentOutcome {
+  /** A seat was taken and the enrollment written. */
+  ENROLLED,
+  /** The student was already in the course; no seat was taken. */
+  ALREADY_ENROLLED
+}
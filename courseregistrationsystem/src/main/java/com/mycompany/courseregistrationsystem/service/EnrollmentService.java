@@ -0,0 +1,246 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.EnrollmentChanges;
+import com.mycompany.courseregistrationsystem.repository.SeatCounter;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Enrollment writes with race-free capacity checks.
+ * <p>
+ * Each operation is one transaction (the caller's UnitOfWork when one is
+ * open). The seat is taken with a single conditional update on the course's
+ * seat counter (see SeatCounter), so "full" vs "ok" is decided atomically by
+ * the database instead of by a count query followed by an insert.
+ * <p>
+ * Operations that touch more than one course update the seat counters in
+ * ascending course id order, so two of them running at once lock the
+ * course rows in the same order; a deadlock the database still reports
+ * (e.g. with the enrollment rows) rolls the operation back and retries it.
+ * <p>
+ * Where the seat is taken is up to the {@link SeatInventory}: the database
+ * counter by default, or the in-memory inventory (see SeatInventories).
+ * Both give the same answers through this API.
+ * <p>
+ * With a GroupCommitEnrollmentWriter, concurrent writes from callers not in
+ * a unit of work of their own are committed together: each call still
+ * blocks until its outcome is known, but shares the commit with the others
+ * of its batch.
+ */
+public class EnrollmentService {
+
+  /** How long {@link #resyncSeatCounters} waits for deferred counter writes. */
+  public static final long SYNC_TIMEOUT_MILLIS = 10_000;
+
+  private final SeatInventory inventory;
+  private final GroupCommitEnrollmentWriter groupCommit;
+
+  public EnrollmentService() {
+    this(SeatInventories.shared(), SeatInventories.sharedWriter());
+  }
+
+  public EnrollmentService(SeatInventory inventory) {
+    this(inventory, null);
+  }
+
+  /** {@code groupCommit} may be null: writes then run one transaction each. */
+  public EnrollmentService(SeatInventory inventory, GroupCommitEnrollmentWriter groupCommit) {
+    this.inventory = inventory;
+    this.groupCommit = groupCommit;
+  }
+
+  /**
+   * Creates a student and, when {@code courseId} is given, enrolls them.
+   *
+   * @throws CourseFullException      if the course has no free seat
+   * @throws IllegalArgumentException if the matricola exists or the course does not
+   */
+  public Student register(String matricola, String fullName, String email, Long courseId) {
+    return write(em -> {
+      requireUniqueMatricola(em, matricola, null);
+
+      if (courseId != null) reserve(em, courseId);
+
+      Student s = new Student();
+      s.setMatricola(matricola);
+      s.setFullName(fullName);
+      s.setEmail(email);
+      em.persist(s);
+      em.flush();
+      if (courseId != null && inventory.record(em, s.getId(), courseId))
+        EnrollmentChanges.joinedAfterCommit(em, s.getId(), courseId);
+      return s;
+    });
+  }
+
+  /**
+   * Enrolls an existing student in a course. With a group-commit writer the
+   * request joins the next batch (on the database counter, as one of its
+   * JDBC-batched enrollments); otherwise it runs in its own transaction and
+   * the returned future is already complete.
+   * <p>
+   * The future fails with {@link CourseFullException} if the course has no
+   * free seat, or {@link IllegalArgumentException} if the student or course
+   * does not exist.
+   */
+  public CompletableFuture<EnrollmentOutcome> enroll(Long studentId, Long courseId) {
+    if (groupCommit != null && !UnitOfWork.isActive()) {
+      // The writer's own enrollments take seats from the database counter directly.
+      if (inventory instanceof DatabaseSeatInventory) return groupCommit.enroll(studentId, courseId);
+      return groupCommit.submit(em -> enrollNow(studentId, courseId));
+    }
+    CompletableFuture<EnrollmentOutcome> result = new CompletableFuture<>();
+    try {
+      result.complete(enrollNow(studentId, courseId));
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  private EnrollmentOutcome enrollNow(Long studentId, Long courseId) {
+    if (studentId == null || courseId == null)
+      throw new IllegalArgumentException("Student and course are required.");
+    return UnitOfWork.call(em -> {
+      if (em.find(Student.class, studentId) == null)
+        throw new IllegalArgumentException("Student not found: " + studentId);
+      Long already = em.createQuery(
+          "select count(s) from Student s join s.courses c where s.id = :sid and c.id = :cid", Long.class)
+          .setParameter("sid", studentId)
+          .setParameter("cid", courseId)
+          .getSingleResult();
+      if (already > 0) return EnrollmentOutcome.ALREADY_ENROLLED;
+      reserve(em, courseId);
+      if (inventory.record(em, studentId, courseId)) EnrollmentChanges.joinedAfterCommit(em, studentId, courseId);
+      return EnrollmentOutcome.ENROLLED;
+    });
+  }
+
+  /**
+   * Updates a student's fields and moves them to {@code courseId}
+   * (null = no course). A seat is only reserved when the student is not
+   * already in the target course; seats of the courses left are released.
+   *
+   * @throws CourseFullException      if the target course has no free seat
+   * @throws IllegalArgumentException if the student or course does not exist, or the matricola is taken
+   */
+  public Student reassign(Long studentId, String matricola, String fullName, String email, Long courseId) {
+    return write(em -> {
+      Student s = em.find(Student.class, studentId);
+      if (s == null) throw new IllegalArgumentException("Student not found: " + studentId);
+      requireUniqueMatricola(em, matricola, studentId);
+
+      s.setMatricola(matricola);
+      s.setFullName(fullName);
+      s.setEmail(email);
+
+      boolean alreadyIn = false;
+      SortedSet<Long> counters = new TreeSet<>();
+      for (Iterator<Course> it = s.getCourses().iterator(); it.hasNext(); ) {
+        Course c = it.next();
+        if (c.getId().equals(courseId)) {
+          alreadyIn = true;
+        } else {
+          counters.add(c.getId());
+          it.remove();
+        }
+      }
+      boolean joining = courseId != null && !alreadyIn;
+      if (joining) counters.add(courseId);
+      for (Long id : counters) {
+        if (id.equals(courseId)) reserve(em, id);
+        else inventory.release(em, id);
+      }
+      s.touch();
+
+      em.flush();
+      boolean joined = joining && inventory.record(em, studentId, courseId);
+      Set<Long> left = new HashSet<>(counters);
+      left.remove(courseId);
+      EnrollmentChanges.afterCommit(em, studentId,
+          joined ? Collections.singleton(courseId) : Collections.<Long>emptySet(), left);
+      return s;
+    });
+  }
+
+  /** Deletes the student and gives back the seats they held; unknown ids are ignored. */
+  public void deleteStudent(Long studentId) {
+    write(em -> {
+      Student s = em.find(Student.class, studentId);
+      if (s != null) {
+        SortedSet<Long> counters = new TreeSet<>();
+        for (Course c : s.getCourses()) counters.add(c.getId());
+        for (Long id : counters) inventory.release(em, id);
+        em.remove(s);
+        EnrollmentChanges.afterCommit(em, studentId, Collections.<Long>emptySet(), counters);
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Recomputes all seat counters from the enrollments table (e.g. after a
+   * schema upgrade or a crash with counter changes not yet written).
+   *
+   * @throws IllegalStateException if the inventory's deferred counter
+   *                               writes do not catch up within {@link #SYNC_TIMEOUT_MILLIS}
+   */
+  public int resyncSeatCounters() {
+    if (!inventory.sync(SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+      throw new IllegalStateException("Seat counter writes did not catch up within " + SYNC_TIMEOUT_MILLIS + " ms.");
+    return UnitOfWork.call(SeatCounter::resync);
+  }
+
+  /**
+   * Runs {@code work} in the group-commit writer's next batch, or in its own
+   * unit of work when there is no writer or the caller already has a unit
+   * (which it then joins). Either way a deadlock victim runs again.
+   */
+  private <T> T write(Function<EntityManager, T> work) {
+    if (groupCommit == null || UnitOfWork.isActive()) return UnitOfWork.callRetryingDeadlocks(work);
+    try {
+      return groupCommit.submit(work).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw e;
+    }
+  }
+
+  private void reserve(EntityManager em, Long courseId) {
+    if (inventory.tryReserve(em, courseId)) return;
+    // Failure path only: tell "full" apart from "no such course". A scalar
+    // query, so a rush of rejected requests does not load (and cache) the
+    // Course while its counter is being written.
+    List<String> code = em.createQuery("select c.code from Course c where c.id = :id", String.class)
+        .setParameter("id", courseId)
+        .getResultList();
+    if (code.isEmpty()) throw new IllegalArgumentException("Course not found: " + courseId);
+    throw new CourseFullException(courseId, code.get(0));
+  }
+
+  private void requireUniqueMatricola(EntityManager em, String matricola, Long selfId) {
+    TypedQuery<Long> q = selfId == null
+        ? em.createQuery("select count(s) from Student s where lower(s.matricola) = :m", Long.class)
+        : em.createQuery("select count(s) from Student s where lower(s.matricola) = :m and s.id <> :id",
+            Long.class).setParameter("id", selfId);
+    Long dup = q.setParameter("m", matricola.toLowerCase()).getSingleResult();
+    if (dup > 0) throw new IllegalArgumentException("Matricola already exists: " + matricola);
+  }
+}
@@ -0,0 +1,35 @@
+package com.mycompany.courseregistrationsystem.service;
+
+/** SQL on the enrollments join table shared by the enrollment writers. */
+final class EnrollmentSql {
+
+  private EnrollmentSql() { }
+
+  /** The join table, also the query space native statements on it synchronize with. */
+  static final String TABLE = "enrollments";
+
+  /** Insert that is a no-op (0 rows) when the pair already exists. */
+  static final String INSERT_IF_ABSENT_NAMED =
+      "insert into enrollments (student_id, course_id) select :sid, :cid " +
+      "where not exists (select 1 from enrollments where student_id = :sid and course_id = :cid)";
+
+  /** JDBC form of {@link #INSERT_IF_ABSENT_NAMED}: student, course, student, course. */
+  static final String INSERT_IF_ABSENT =
+      "insert into enrollments (student_id, course_id) select ?, ? " +
+      "where not exists (select 1 from enrollments where student_id = ? and course_id = ?)";
+
+  /** Guarded single-seat reservation; 0 rows when the course is full. */
+  static final String RESERVE_SEAT =
+      "update courses set enrolled = enrolled + 1, modified_at = current_timestamp " +
+      "where id = ? and enrolled < maxSeats";
+
+  static final String INSERT = "insert into enrollments (student_id, course_id) values (?, ?)";
+
+  static final String ADD_SEATS =
+      "update courses set enrolled = enrolled + ?, modified_at = current_timestamp where id = ?";
+
+  /** SQLState class 23: integrity constraint violation (FK, unique, not null). */
+  static boolean isIntegrityViolation(String sqlState) {
+    return sqlState != null && sqlState.startsWith("23");
+  }
+}
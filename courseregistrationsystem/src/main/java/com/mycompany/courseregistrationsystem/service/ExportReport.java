@@ -0,0 +1,48 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import java.util.concurrent.TimeUnit;
+
+/** Outcome of one RosterExporter run. */
+public final class ExportReport {
+
+  private final RosterExporter.Format format;
+  private final boolean gzip;
+  private final long students;
+  private final long enrollments;
+  private final long rows;
+  private final long bytes;
+  private final long elapsedNanos;
+
+  ExportReport(RosterExporter.Format format, boolean gzip, long students, long enrollments,
+               long rows, long bytes, long elapsedNanos) {
+    this.format = format;
+    this.gzip = gzip;
+    this.students = students;
+    this.enrollments = enrollments;
+    this.rows = rows;
+    this.bytes = bytes;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public RosterExporter.Format getFormat() { return format; }
+  public boolean isGzip() { return gzip; }
+  public long getStudents() { return students; }
+  public long getEnrollments() { return enrollments; }
+  /** Size of the file written, compressed if gzip was on. */
+  public long getBytes() { return bytes; }
+  public long getElapsedMillis() { return TimeUnit.NANOSECONDS.toMillis(elapsedNanos); }
+
+  /** Roster rows read from the cursor: one per enrollment, one per student without courses. */
+  public long getRows() { return rows; }
+
+  public double getRowsPerSecond() {
+    return elapsedNanos == 0 ? 0d : rows * 1_000_000_000d / elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("format=%s gzip=%s students=%d enrollments=%d bytes=%d elapsed=%dms "
+        + "throughput=%.0f rows/s", format, gzip, students, enrollments, bytes,
+        getElapsedMillis(), getRowsPerSecond());
+  }
+}
@@ -0,0 +1,49 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.model.CourseFillRate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Fill rate of every course, with the catalog-wide totals (see ReportService#fillRates). */
+public final class FillRateReport {
+
+  private final List<CourseFillRate> courses;
+  private final long totalSeats;
+  private final long totalEnrolled;
+
+  FillRateReport(List<CourseFillRate> courses) {
+    this.courses = Collections.unmodifiableList(new ArrayList<>(courses));
+    long seats = 0;
+    long enrolled = 0;
+    for (CourseFillRate c : courses) {
+      seats += c.getMaxSeats();
+      enrolled += c.getEnrolled();
+    }
+    this.totalSeats = seats;
+    this.totalEnrolled = enrolled;
+  }
+
+  /** In course id order. */
+  public List<CourseFillRate> getCourses() { return courses; }
+  public long getTotalSeats() { return totalSeats; }
+  public long getTotalEnrolled() { return totalEnrolled; }
+
+  /** Enrollments over seats across the catalog; 0 when there are no seats. */
+  public double getOverallFillRate() {
+    return totalSeats == 0 ? 0d : (double) totalEnrolled / totalSeats;
+  }
+
+  public List<CourseFillRate> getOverCapacity() {
+    List<CourseFillRate> over = new ArrayList<>();
+    for (CourseFillRate c : courses) if (c.isOverCapacity()) over.add(c);
+    return over;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("courses=%d seats=%d enrolled=%d fill=%.1f%% overCapacity=%d",
+        courses.size(), totalSeats, totalEnrolled, getOverallFillRate() * 100, getOverCapacity().size());
+  }
+}
@@ -0,0 +1,460 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.repository.EnrollmentChanges;
+import com.mycompany.courseregistrationsystem.repository.SeatCounter;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Group commit for enrollment writes.
+ * <p>
+ * Callers get a future per request; a single writer thread collects the
+ * requests that arrive within a window (or until the batch is full) and
+ * applies them in one transaction, so one commit settles every request.
+ * Two kinds of request share a batch:
+ * <ul>
+ *   <li>{@link #enroll} of an existing student, on the database seat
+ *       counter: the lookups for all of them run as IN queries, the guarded
+ *       seat updates and the enrollment inserts go out as two JDBC batches,
+ *       and a course's seats are granted in arrival order (the courses
+ *       are updated in id order);</li>
+ *   <li>{@link #submit} of any EnrollmentService operation (register,
+ *       reassign, delete, or enroll on the in-memory inventory): each runs in
+ *       arrival order inside the batch's UnitOfWork, which it joins.</li>
+ * </ul>
+ * Each operation runs behind a savepoint (UnitOfWork#savepoint): a
+ * rejection (full course, unknown student) rolls back only that operation,
+ * whose future fails with it, and the batch goes on. A failure the
+ * transaction cannot survive (a persistence error, a deadlock) rolls the
+ * batch back; the operation is retried alone and the rest of the batch is
+ * written again without it. Operations must therefore read everything they
+ * need inside the unit, as for UnitOfWork#callRetryingDeadlocks. If the
+ * batch fails as a whole (e.g. at commit), its requests are replayed one
+ * per transaction so one bad request only fails itself.
+ * <p>
+ * Enroll futures complete with an {@link EnrollmentOutcome}, or
+ * exceptionally with {@link CourseFullException} /
+ * {@link IllegalArgumentException} (unknown student or course) or the
+ * persistence error. The counters are published over JMX by
+ * SeatInventories for the shared writer.
+ */
+public class GroupCommitEnrollmentWriter implements GroupCommitEnrollmentWriterMXBean, AutoCloseable {
+
+  public static final String WINDOW_PROPERTY = "crs.groupcommit.windowMs";
+  public static final String BATCH_PROPERTY = "crs.groupcommit.maxBatch";
+
+  public static final long DEFAULT_WINDOW_MILLIS = 5;
+  public static final int DEFAULT_MAX_BATCH = 100;
+  public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+  /** One batch's lookups are single IN lists, so it cannot exceed this. */
+  static final int MAX_BATCH_LIMIT = StudentImportService.IN_LIST_LIMIT;
+
+  private final BlockingQueue<Request<?>> queue;
+  private final Thread writer;
+  private volatile boolean closed;
+
+  private volatile long windowMillis;
+  private volatile int maxBatch;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong fullBatches = new AtomicLong();
+  private final AtomicLong rerunBatches = new AtomicLong();
+  private final AtomicLong fallbackBatches = new AtomicLong();
+  private final AtomicLong queueWaitNanos = new AtomicLong();
+  private final AtomicLong commitNanos = new AtomicLong();
+  private volatile int largestBatch;
+
+  /** Window and batch size from {@value #WINDOW_PROPERTY} / {@value #BATCH_PROPERTY}, or the defaults. */
+  public GroupCommitEnrollmentWriter() {
+    this(Long.getLong(WINDOW_PROPERTY, DEFAULT_WINDOW_MILLIS),
+        Integer.getInteger(BATCH_PROPERTY, DEFAULT_MAX_BATCH),
+        DEFAULT_QUEUE_CAPACITY);
+  }
+
+  public GroupCommitEnrollmentWriter(long windowMillis, int maxBatch, int queueCapacity) {
+    if (queueCapacity <= 0)
+      throw new IllegalArgumentException("Queue capacity must be positive.");
+    setWindowMillis(windowMillis);
+    setMaxBatch(maxBatch);
+    this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    this.writer = new Thread(this::drainLoop, "enrollment-group-commit");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Queues the enrollment on the database seat counter; blocks only while
+   * the queue is full.
+   *
+   * @throws RejectedExecutionException if the writer is closed
+   */
+  public CompletableFuture<EnrollmentOutcome> enroll(Long studentId, Long courseId) {
+    if (studentId == null || courseId == null)
+      throw new IllegalArgumentException("Student and course are required.");
+    return queue(new Enroll(studentId, courseId));
+  }
+
+  /**
+   * Queues an operation to run inside the next batch's transaction; blocks
+   * only while the queue is full. The future completes once that
+   * transaction committed, or with the operation's exception.
+   *
+   * @throws RejectedExecutionException if the writer is closed
+   */
+  public <T> CompletableFuture<T> submit(Function<EntityManager, T> work) {
+    if (work == null) throw new IllegalArgumentException("Work is required.");
+    return queue(new Operation<>(work));
+  }
+
+  private <T> CompletableFuture<T> queue(Request<T> r) {
+    if (closed) throw new RejectedExecutionException("Enrollment writer is closed.");
+    try {
+      queue.put(r);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      r.result.completeExceptionally(e);
+    }
+    // Lost a race with close(): the writer may have exited before seeing it.
+    if (closed && !writer.isAlive() && queue.remove(r))
+      r.result.completeExceptionally(new RejectedExecutionException("Enrollment writer is closed."));
+    return r.result;
+  }
+
+  // ------------------- Tuning & metrics -------------------
+
+  public long getWindowMillis() { return windowMillis; }
+
+  /** How long the writer waits for more requests after the first one of a batch. */
+  public void setWindowMillis(long windowMillis) {
+    if (windowMillis < 0) throw new IllegalArgumentException("Window must not be negative.");
+    this.windowMillis = windowMillis;
+  }
+
+  public int getMaxBatch() { return maxBatch; }
+
+  /** Requests per transaction; a full batch is written without waiting for the window. */
+  public void setMaxBatch(int maxBatch) {
+    if (maxBatch <= 0 || maxBatch > MAX_BATCH_LIMIT)
+      throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_LIMIT + ".");
+    this.maxBatch = maxBatch;
+  }
+
+  public GroupCommitStats stats() {
+    return new GroupCommitStats(windowMillis, maxBatch, requests.get(), batches.get(),
+        fullBatches.get(), rerunBatches.get(), fallbackBatches.get(), largestBatch, queue.size(),
+        queueWaitNanos.get(), commitNanos.get());
+  }
+
+  @Override public long getRequests() { return requests.get(); }
+  @Override public long getBatches() { return batches.get(); }
+  @Override public long getFullBatches() { return fullBatches.get(); }
+  @Override public long getRerunBatches() { return rerunBatches.get(); }
+  @Override public long getFallbackBatches() { return fallbackBatches.get(); }
+  @Override public int getLargestBatch() { return largestBatch; }
+  @Override public int getQueued() { return queue.size(); }
+  @Override public double getAverageBatchSize() { return stats().getAverageBatchSize(); }
+  @Override public double getAverageQueueWaitMillis() { return stats().getAverageQueueWaitMillis(); }
+  @Override public double getAverageCommitMillis() { return stats().getAverageCommitMillis(); }
+
+  /** Stops accepting requests and waits until the queued ones are written. */
+  @Override
+  public void close() {
+    closed = true;
+    boolean interrupted = false;
+    while (writer.isAlive()) {
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  // ------------------- Writer thread -------------------
+
+  private void drainLoop() {
+    List<Request<?>> batch = new ArrayList<>();
+    while (true) {
+      Request<?> first;
+      try {
+        first = queue.poll(100, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        first = null;
+      }
+      if (first == null) {
+        if (closed && queue.isEmpty()) return;
+        continue;
+      }
+      batch.add(first);
+      collect(batch);
+      apply(batch);
+      batch.clear();
+    }
+  }
+
+  /** Fills the batch until it is full or the window since its first request has passed. */
+  private void collect(List<Request<?>> batch) {
+    int limit = maxBatch;
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    while (batch.size() < limit) {
+      queue.drainTo(batch, limit - batch.size());
+      long left = deadline - System.nanoTime();
+      if (batch.size() >= limit || left <= 0 || closed) break;
+      try {
+        Request<?> next = queue.poll(left, TimeUnit.NANOSECONDS);
+        if (next == null) break;
+        batch.add(next);
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+    if (batch.size() >= limit) fullBatches.incrementAndGet();
+  }
+
+  private void apply(List<Request<?>> batch) {
+    long start = System.nanoTime();
+    for (Request<?> r : batch) queueWaitNanos.addAndGet(start - r.submittedAt);
+    if (batch.size() > largestBatch) largestBatch = batch.size();
+    requests.addAndGet(batch.size());
+    List<Request<?>> pending = new ArrayList<>(batch);
+    while (!pending.isEmpty()) {
+      batches.incrementAndGet();
+      long attempt = System.nanoTime();
+      try {
+        Map<Request<?>, Object> results = write(pending, false);
+        commitNanos.addAndGet(System.nanoTime() - attempt);
+        complete(results);
+        return;
+      } catch (OperationFailed failed) {
+        commitNanos.addAndGet(System.nanoTime() - attempt);
+        pending.remove(failed.request);
+        if (!pending.isEmpty()) rerunBatches.incrementAndGet();
+        alone(failed.request);
+      } catch (RuntimeException batchFailed) {
+        commitNanos.addAndGet(System.nanoTime() - attempt);
+        if (pending.size() == 1) {
+          pending.get(0).result.completeExceptionally(batchFailed);
+        } else {
+          fallbackBatches.incrementAndGet();
+          for (Request<?> r : pending) alone(r);
+        }
+        return;
+      }
+    }
+  }
+
+  /** Writes one request in its own transaction. */
+  private void alone(Request<?> r) {
+    try {
+      if (r instanceof Operation) {
+        Operation<?> op = (Operation<?>) r;
+        op.complete(UnitOfWork.callRetryingDeadlocks(op.work));
+      } else {
+        List<Request<?>> one = new ArrayList<>(1);
+        one.add(r);
+        complete(write(one, true));
+      }
+    } catch (OperationFailed e) {
+      r.result.completeExceptionally(e.getCause());
+    } catch (RuntimeException e) {
+      r.result.completeExceptionally(e);
+    }
+  }
+
+  private static void complete(Map<Request<?>, Object> results) {
+    for (Map.Entry<Request<?>, Object> e : results.entrySet()) e.getKey().complete(e.getValue());
+  }
+
+  /**
+   * One transaction for the batch: the enrollments first, then the
+   * operations in arrival order. Returns each request's outcome, possibly
+   * the exception to fail it with; results are only handed out after
+   * commit. With {@code retryDeadlocks} a deadlock reruns the transaction,
+   * as for a request written alone; a batch that deadlocks falls back to
+   * writing its requests alone instead.
+   *
+   * @throws OperationFailed if an operation failed the whole transaction; it is rolled back
+   */
+  private Map<Request<?>, Object> write(List<Request<?>> batch, boolean retryDeadlocks) {
+    List<Enroll> enrolls = new ArrayList<>();
+    List<Operation<?>> operations = new ArrayList<>();
+    for (Request<?> r : batch) {
+      if (r instanceof Enroll) enrolls.add((Enroll) r);
+      else operations.add((Operation<?>) r);
+    }
+    Map<Request<?>, Object> results = new HashMap<>();
+    Set<Long> courseIds = new HashSet<>();
+    Function<EntityManager, Void> transaction = em -> {
+      results.clear();   // left over from an attempt that deadlocked
+      courseIds.clear();
+      if (!enrolls.isEmpty()) writeEnrollments(em, enrolls, results, courseIds);
+      for (Operation<?> op : operations) {
+        try {
+          results.put(op, UnitOfWork.savepoint(em, op.work));
+        } catch (RuntimeException e) {
+          if (UnitOfWork.mustRollBack(em, e)) throw new OperationFailed(op, e);
+          results.put(op, e);
+        }
+      }
+      return null;
+    };
+    if (retryDeadlocks) UnitOfWork.callRetryingDeadlocks(transaction);
+    else UnitOfWork.call(transaction);
+    if (!courseIds.isEmpty()) {
+      SeatCounter.evictCached(JpaUtil.emf(), courseIds);
+      for (Enroll r : enrolls) {
+        if (results.get(r) == EnrollmentOutcome.ENROLLED) {
+          EnrollmentChanges.fireStudentMoved(r.studentId,
+              Collections.singleton(r.courseId), Collections.<Long>emptySet());
+        }
+      }
+    }
+    return results;
+  }
+
+  private void writeEnrollments(EntityManager em, List<Enroll> batch, Map<Request<?>, Object> results,
+                                Set<Long> courseIds) {
+    Set<Long> studentIds = new HashSet<>();
+    for (Enroll r : batch) {
+      studentIds.add(r.studentId);
+      courseIds.add(r.courseId);
+    }
+
+    Set<Long> students = new HashSet<>(em.createQuery(
+        "select s.id from Student s where s.id in :ids", Long.class)
+        .setParameter("ids", studentIds)
+        .getResultList());
+    Map<Long, String> courses = new HashMap<>();
+    for (Object[] row : em.createQuery(
+        "select c.id, c.code from Course c where c.id in :ids", Object[].class)
+        .setParameter("ids", courseIds)
+        .getResultList()) {
+      courses.put((Long) row[0], (String) row[1]);
+    }
+    Set<List<Long>> enrolled = new HashSet<>();
+    for (Object[] row : em.createQuery(
+        "select s.id, c.id from Student s join s.courses c " +
+        "where s.id in :sids and c.id in :cids", Object[].class)
+        .setParameter("sids", studentIds)
+        .setParameter("cids", courseIds)
+        .getResultList()) {
+      enrolled.add(pair((Long) row[0], (Long) row[1]));
+    }
+
+    List<Enroll> candidates = new ArrayList<>();
+    for (Enroll r : batch) {
+      if (!students.contains(r.studentId)) {
+        results.put(r, new IllegalArgumentException("Student not found: " + r.studentId));
+      } else if (!courses.containsKey(r.courseId)) {
+        results.put(r, new IllegalArgumentException("Course not found: " + r.courseId));
+      } else if (!enrolled.add(pair(r.studentId, r.courseId))) {
+        results.put(r, EnrollmentOutcome.ALREADY_ENROLLED);
+      } else {
+        candidates.add(r);
+      }
+    }
+    if (candidates.isEmpty()) return;
+    // Take the course rows in id order, like every other counter update, so
+    // the batch cannot deadlock with them; arrival order within a course.
+    candidates.sort(Comparator.comparing(r -> r.courseId));
+
+    em.unwrap(Session.class).doWork(conn -> {
+      List<Enroll> granted = new ArrayList<>(candidates.size());
+      try (PreparedStatement reserve = conn.prepareStatement(EnrollmentSql.RESERVE_SEAT)) {
+        for (Enroll r : candidates) {
+          reserve.setLong(1, r.courseId);
+          reserve.addBatch();
+        }
+        int[] counts = reserve.executeBatch();
+        int i = 0;
+        for (Enroll r : candidates) {
+          int n = counts[i++];
+          if (n > 0 || n == Statement.SUCCESS_NO_INFO) {
+            granted.add(r);
+          } else {
+            results.put(r, new CourseFullException(r.courseId, courses.get(r.courseId)));
+          }
+        }
+      }
+      if (granted.isEmpty()) return;
+      try (PreparedStatement insert = conn.prepareStatement(EnrollmentSql.INSERT)) {
+        for (Enroll r : granted) {
+          insert.setLong(1, r.studentId);
+          insert.setLong(2, r.courseId);
+          insert.addBatch();
+          results.put(r, EnrollmentOutcome.ENROLLED);
+        }
+        insert.executeBatch();
+      }
+    });
+  }
+
+  private static List<Long> pair(Long studentId, Long courseId) {
+    return Arrays.asList(studentId, courseId);
+  }
+
+  private abstract static class Request<T> {
+    final long submittedAt = System.nanoTime();
+    final CompletableFuture<T> result = new CompletableFuture<>();
+
+    @SuppressWarnings("unchecked")
+    void complete(Object value) {
+      if (value instanceof RuntimeException) result.completeExceptionally((RuntimeException) value);
+      else result.complete((T) value);
+    }
+  }
+
+  private static final class Enroll extends Request<EnrollmentOutcome> {
+    final Long studentId;
+    final Long courseId;
+
+    Enroll(Long studentId, Long courseId) {
+      this.studentId = studentId;
+      this.courseId = courseId;
+    }
+  }
+
+  private static final class Operation<T> extends Request<T> {
+    final Function<EntityManager, T> work;
+
+    Operation(Function<EntityManager, T> work) {
+      this.work = work;
+    }
+  }
+
+  /** Carries an operation's exception that the transaction cannot survive out of the batch's unit. */
+  private static final class OperationFailed extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final Operation<?> request;
+
+    OperationFailed(Operation<?> request, RuntimeException cause) {
+      super(cause);
+      this.request = request;
+    }
+  }
+}
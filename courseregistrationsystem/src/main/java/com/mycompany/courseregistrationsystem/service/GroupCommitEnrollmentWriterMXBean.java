@@ -0,0 +1,37 @@
+package com.mycompany.courseregistrationsystem.service;
+
+/**
+ * JMX view of a GroupCommitEnrollmentWriter: its tuning, adjustable while
+ * the application runs, and the counters of {@link GroupCommitStats}.
+ */
+public interface GroupCommitEnrollmentWriterMXBean {
+
+  long getWindowMillis();
+
+  void setWindowMillis(long windowMillis);
+
+  int getMaxBatch();
+
+  void setMaxBatch(int maxBatch);
+
+  long getRequests();
+
+  long getBatches();
+
+  long getFullBatches();
+
+  /** Batches rolled back because one of their operations failed, then written without it. */
+  long getRerunBatches();
+
+  long getFallbackBatches();
+
+  int getLargestBatch();
+
+  int getQueued();
+
+  double getAverageBatchSize();
+
+  double getAverageQueueWaitMillis();
+
+  double getAverageCommitMillis();
+}
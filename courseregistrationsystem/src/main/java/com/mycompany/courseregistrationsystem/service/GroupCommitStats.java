@@ -0,0 +1,72 @@
+package com.mycompany.courseregistrationsystem.service;
+
+/** Point-in-time counters of a GroupCommitEnrollmentWriter. */
+public final class GroupCommitStats {
+
+  private final long windowMillis;
+  private final int maxBatch;
+  private final long requests;
+  private final long batches;
+  private final long fullBatches;
+  private final long rerunBatches;
+  private final long fallbackBatches;
+  private final int largestBatch;
+  private final int queued;
+  private final long queueWaitNanos;
+  private final long commitNanos;
+
+  GroupCommitStats(long windowMillis, int maxBatch, long requests, long batches, long fullBatches,
+                   long rerunBatches, long fallbackBatches, int largestBatch, int queued,
+                   long queueWaitNanos, long commitNanos) {
+    this.windowMillis = windowMillis;
+    this.maxBatch = maxBatch;
+    this.requests = requests;
+    this.batches = batches;
+    this.fullBatches = fullBatches;
+    this.rerunBatches = rerunBatches;
+    this.fallbackBatches = fallbackBatches;
+    this.largestBatch = largestBatch;
+    this.queued = queued;
+    this.queueWaitNanos = queueWaitNanos;
+    this.commitNanos = commitNanos;
+  }
+
+  public long getWindowMillis() { return windowMillis; }
+  public int getMaxBatch() { return maxBatch; }
+  /** Requests taken into a batch. */
+  public long getRequests() { return requests; }
+  /** Transactions committed or attempted for a drained batch. */
+  public long getBatches() { return batches; }
+  /** Batches closed because they reached {@link #getMaxBatch()} rather than the window. */
+  public long getFullBatches() { return fullBatches; }
+  /** Batches rolled back because one of their operations failed, then written again without it. */
+  public long getRerunBatches() { return rerunBatches; }
+  /** Batches that failed as a whole and were replayed one request per transaction. */
+  public long getFallbackBatches() { return fallbackBatches; }
+  public int getLargestBatch() { return largestBatch; }
+  /** Requests waiting for the next batch right now. */
+  public int getQueued() { return queued; }
+
+  public double getAverageBatchSize() {
+    return batches == 0 ? 0d : (double) requests / batches;
+  }
+
+  /** Mean time from submit until the request's batch started writing. */
+  public double getAverageQueueWaitMillis() {
+    return requests == 0 ? 0d : queueWaitNanos / 1e6 / requests;
+  }
+
+  /** Mean time to write and commit one batch. */
+  public double getAverageCommitMillis() {
+    return batches == 0 ? 0d : commitNanos / 1e6 / batches;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("window=%dms maxBatch=%d requests=%d batches=%d full=%d rerun=%d fallback=%d "
+        + "avgBatch=%.1f largest=%d queued=%d avgWait=%.2fms avgCommit=%.2fms",
+        windowMillis, maxBatch, requests, batches, fullBatches, rerunBatches, fallbackBatches,
+        getAverageBatchSize(), largestBatch, queued, getAverageQueueWaitMillis(),
+        getAverageCommitMillis());
+  }
+}
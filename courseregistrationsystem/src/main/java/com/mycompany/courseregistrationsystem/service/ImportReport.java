@@ -0,0 +1,51 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/** Outcome of one StudentImportService run. */
+public final class ImportReport {
+
+  private final long rowsRead;
+  private final long imported;
+  private final long duplicates;
+  private final long invalid;
+  private final long enrollments;
+  private final Set<String> unknownCourseCodes;
+  private final long elapsedNanos;
+
+  ImportReport(long rowsRead, long imported, long duplicates, long invalid, long enrollments,
+               Set<String> unknownCourseCodes, long elapsedNanos) {
+    this.rowsRead = rowsRead;
+    this.imported = imported;
+    this.duplicates = duplicates;
+    this.invalid = invalid;
+    this.enrollments = enrollments;
+    this.unknownCourseCodes = Collections.unmodifiableSet(unknownCourseCodes);
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public long getRowsRead() { return rowsRead; }
+  public long getImported() { return imported; }
+  /** Rows skipped because the matricola already exists (in the DB or earlier in the file). */
+  public long getDuplicates() { return duplicates; }
+  /** Rows skipped because a required field was missing. */
+  public long getInvalid() { return invalid; }
+  public long getEnrollments() { return enrollments; }
+  public Set<String> getUnknownCourseCodes() { return unknownCourseCodes; }
+  public long getElapsedMillis() { return TimeUnit.NANOSECONDS.toMillis(elapsedNanos); }
+
+  /** Input rows processed per second of wall-clock time. */
+  public double getRowsPerSecond() {
+    return elapsedNanos == 0 ? 0d : rowsRead * 1_000_000_000d / elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("read=%d imported=%d duplicates=%d invalid=%d enrollments=%d "
+        + "unknownCourses=%s elapsed=%dms throughput=%.0f rows/s",
+        rowsRead, imported, duplicates, invalid, enrollments,
+        unknownCourseCodes, getElapsedMillis(), getRowsPerSecond());
+  }
+}
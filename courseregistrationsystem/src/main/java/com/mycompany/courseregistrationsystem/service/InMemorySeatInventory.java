@@ -0,0 +1,344 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.SeatCounter;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Seat inventory held in process: one atomic counter per course, loaded
+ * from the courses and enrollments tables, so a capacity check is a CAS
+ * instead of a round trip.
+ * <p>
+ * The enrollment row is written in the caller's transaction, like the
+ * database inventory does, so an enrollment is durable exactly when the
+ * caller commits and an integrity violation (student or course deleted
+ * meanwhile) rolls the caller back instead of being discovered later. Only
+ * the {@code courses.enrolled} counter is written behind: committed
+ * enrollments and releases add +1/-1 to a per-course delta, which a single
+ * flusher thread applies in one transaction every {@code flushMillis},
+ * courses in id order. A seat taken by a transaction that rolls back is
+ * handed back.
+ * <p>
+ * The counter is derived data: deltas not yet flushed when the process
+ * dies are repaired by the counter resync (EnrollmentService
+ * #resyncSeatCounters) at the next start. A flush that fails keeps its
+ * deltas and is retried with backoff.
+ * <p>
+ * Only enrollment changes made through EnrollmentService are seen. After
+ * administrative writes (CSV import, raw repository saves) call
+ * {@link #reload()}.
+ */
+public class InMemorySeatInventory implements SeatInventory, AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(InMemorySeatInventory.class);
+
+  public static final long DEFAULT_FLUSH_MILLIS = 50;
+
+  private static final long MAX_BACKOFF_MS = 5_000;
+
+  private final ConcurrentHashMap<Long, Seats> seats = new ConcurrentHashMap<>();
+  /** Counter changes committed but not flushed yet, per course. */
+  private final ConcurrentHashMap<Long, AtomicInteger> deltas = new ConcurrentHashMap<>();
+  private final long flushMillis;
+  private final Thread flusher;
+
+  private final Object progress = new Object();
+  private long started;                 // guarded by progress: flushes begun
+  private long finished;                // guarded by progress: flushes completed
+  private boolean wakeUp;               // guarded by progress
+  private volatile boolean closed;
+
+  public InMemorySeatInventory() {
+    this(DEFAULT_FLUSH_MILLIS);
+  }
+
+  public InMemorySeatInventory(long flushMillis) {
+    if (flushMillis <= 0) throw new IllegalArgumentException("Flush interval must be positive.");
+    this.flushMillis = flushMillis;
+    load();
+    this.flusher = new Thread(this::flushLoop, "seat-counter-flush");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  // ------------------- SeatInventory -------------------
+
+  @Override
+  public boolean tryReserve(EntityManager em, Long courseId) {
+    Seats s = seatsOf(em, courseId);
+    if (s == null || !s.tryTake()) return false;
+    afterCompletion(em, committed -> {
+      if (!committed) s.give();
+    });
+    return true;
+  }
+
+  @Override
+  public boolean record(EntityManager em, Long studentId, Long courseId) {
+    if (closed) throw new IllegalStateException("Seat inventory is closed.");
+    boolean inserted = em.createNativeQuery(EnrollmentSql.INSERT_IF_ABSENT_NAMED)
+        .unwrap(NativeQuery.class)
+        .addSynchronizedQuerySpace(EnrollmentSql.TABLE)
+        .setParameter("sid", studentId)
+        .setParameter("cid", courseId)
+        .executeUpdate() == 1;
+    afterCompletion(em, committed -> {
+      if (!committed) return;
+      if (inserted) {
+        add(courseId, 1);
+      } else {
+        // Already enrolled: the seat just taken for it was taken twice.
+        giveBack(courseId);
+      }
+    });
+    return inserted;
+  }
+
+  @Override
+  public void release(EntityManager em, Long courseId) {
+    afterCompletion(em, committed -> {
+      if (!committed) return;
+      giveBack(courseId);
+      add(courseId, -1);
+    });
+  }
+
+  /** Waits for a flush that starts after this call, so every counter change committed before it is written. */
+  @Override
+  public boolean sync(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    boolean interrupted = false;
+    try {
+      synchronized (progress) {
+        long target = started + 1;
+        wakeUp = true;
+        progress.notifyAll();
+        while (finished < target) {
+          long left = deadline - System.nanoTime();
+          if (left <= 0 || !flusher.isAlive()) return false;
+          try {
+            TimeUnit.NANOSECONDS.timedWait(progress, left);
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        return true;
+      }
+    } finally {
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+  }
+
+  // ------------------- Administration -------------------
+
+  /**
+   * Reloads every course's capacity and enrolled count from the
+   * enrollments table, which already holds every committed enrollment.
+   */
+  public void reload() {
+    seats.clear();
+    load();
+  }
+
+  /**
+   * Picks up a course's new {@code maxSeats}, or forgets the course when it
+   * no longer exists. Seats already taken are kept.
+   */
+  public void refreshCapacity(Long courseId) {
+    Seats s = seats.get(courseId);
+    if (s == null) return;
+    EntityManager em = JpaUtil.emf().createEntityManager();
+    try {
+      List<Integer> max = em.createQuery(
+          "select c.maxSeats from Course c where c.id = :id", Integer.class)
+          .setParameter("id", courseId)
+          .getResultList();
+      if (max.isEmpty()) seats.remove(courseId);
+      else s.max = max.get(0);
+    } finally {
+      em.close();
+    }
+  }
+
+  /** Seats currently taken in {@code courseId}, or -1 if the course is not loaded. */
+  public int taken(Long courseId) {
+    Seats s = seats.get(courseId);
+    return s == null ? -1 : s.taken.get();
+  }
+
+  /** Net counter changes committed but not yet flushed, over all courses. */
+  public long pendingCounterChanges() {
+    long n = 0;
+    for (AtomicInteger d : deltas.values()) n += Math.abs(d.get());
+    return n;
+  }
+
+  /** Stops the flusher after a last flush of the pending counter changes. */
+  @Override
+  public void close() {
+    closed = true;
+    synchronized (progress) {
+      wakeUp = true;
+      progress.notifyAll();
+    }
+    boolean interrupted = false;
+    while (flusher.isAlive()) {
+      try {
+        flusher.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  // ------------------- Internals -------------------
+
+  private void load() {
+    for (CourseSummary c : new CourseRepository().findAllSummaries()) {
+      seats.put(c.getId(), new Seats(c.getMaxSeats(), c.getEnrolled()));
+    }
+  }
+
+  /** Course created after startup: count it once, in the caller's transaction. */
+  private Seats seatsOf(EntityManager em, Long courseId) {
+    Seats s = seats.get(courseId);
+    if (s != null || courseId == null) return s;
+    List<Object[]> rows = em.createQuery(
+        "select c.maxSeats, count(st.id) from Course c left join c.students st " +
+        "where c.id = :id group by c.maxSeats", Object[].class)
+        .setParameter("id", courseId)
+        .getResultList();
+    if (rows.isEmpty()) return null;
+    Object[] row = rows.get(0);
+    Seats loaded = new Seats((Integer) row[0], ((Long) row[1]).intValue());
+    Seats raced = seats.putIfAbsent(courseId, loaded);
+    return raced != null ? raced : loaded;
+  }
+
+  private static void afterCompletion(EntityManager em, Consumer<Boolean> action) {
+    UnitOfWork.afterCompletion(em, action);
+  }
+
+  private void add(Long courseId, int delta) {
+    deltas.computeIfAbsent(courseId, id -> new AtomicInteger()).addAndGet(delta);
+  }
+
+  private void giveBack(Long courseId) {
+    Seats s = seats.get(courseId);
+    if (s != null) s.give();
+  }
+
+  private void flushLoop() {
+    long backoff = flushMillis;
+    while (true) {
+      boolean last = closed;
+      long generation;
+      synchronized (progress) {
+        if (!last && !wakeUp) {
+          try {
+            progress.wait(backoff);
+          } catch (InterruptedException e) {
+            // flush now
+          }
+        }
+        wakeUp = false;
+        generation = ++started;
+      }
+      try {
+        flush();
+        backoff = flushMillis;
+        synchronized (progress) {
+          finished = generation;
+          progress.notifyAll();
+        }
+      } catch (RuntimeException e) {
+        backoff = Math.min(Math.max(backoff, 50) * 2, MAX_BACKOFF_MS);
+        if (last) {
+          log.warn("Last seat counter flush failed; the counter resync at the next start repairs "
+              + "{} pending changes", pendingCounterChanges(), e);
+          return;
+        }
+        log.warn("Seat counter flush failed, retrying in {} ms", backoff, e);
+      }
+      if (last) return;
+    }
+  }
+
+  /** Applies the pending deltas in one transaction; on failure they are put back for the next try. */
+  private void flush() {
+    SortedMap<Long, Integer> batch = new TreeMap<>();
+    for (Map.Entry<Long, AtomicInteger> e : deltas.entrySet()) {
+      int d = e.getValue().getAndSet(0);
+      if (d != 0) batch.put(e.getKey(), d);
+    }
+    if (batch.isEmpty()) return;
+    EntityManager em = JpaUtil.emf().createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      // Course id order, like EnrollmentService, so the flush never deadlocks with a caller.
+      em.unwrap(Session.class).doWork(conn -> {
+        try (PreparedStatement add = conn.prepareStatement(EnrollmentSql.ADD_SEATS)) {
+          for (Map.Entry<Long, Integer> e : batch.entrySet()) {
+            add.setInt(1, e.getValue());
+            add.setLong(2, e.getKey());
+            add.addBatch();
+          }
+          add.executeBatch();
+        }
+      });
+      tx.commit();
+      SeatCounter.evictCourses(em.getEntityManagerFactory(), batch.keySet());
+    } catch (RuntimeException e) {
+      for (Map.Entry<Long, Integer> b : batch.entrySet()) add(b.getKey(), b.getValue());
+      throw e;
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  private static final class Seats {
+    volatile int max;
+    final AtomicInteger taken;
+
+    Seats(int max, int taken) {
+      this.max = max;
+      this.taken = new AtomicInteger(taken);
+    }
+
+    boolean tryTake() {
+      while (true) {
+        int t = taken.get();
+        if (t >= max) return false;
+        if (taken.compareAndSet(t, t + 1)) return true;
+      }
+    }
+
+    void give() {
+      while (true) {
+        int t = taken.get();
+        if (t <= 0 || taken.compareAndSet(t, t - 1)) return;
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.CourseFillRate;
+import com.mycompany.courseregistrationsystem.model.Distribution;
+import com.mycompany.courseregistrationsystem.model.StudentCreditLoad;
+import com.mycompany.courseregistrationsystem.repository.ReportRepository;
+
+import java.util.List;
+
+/**
+ * Catalog reports: fill rates, over-capacity courses, CFU load per student
+ * and their histograms. Each report is one aggregate statement in the
+ * database (see ReportRepository), so its cost does not grow with entity
+ * loading; results are cached when {@code crs.reports.cache} is on.
+ * <p>
+ * Fill rates count the rows of the enrollments table, not the courses'
+ * seat counters, so they also show the courses an import or a raw save
+ * pushed past their seats.
+ */
+public class ReportService {
+
+  private final ReportRepository reports;
+
+  public ReportService() {
+    this(new ReportRepository());
+  }
+
+  public ReportService(ReportRepository reports) {
+    this.reports = reports;
+  }
+
+  public FillRateReport fillRates() {
+    return new FillRateReport(reports.findFillRates());
+  }
+
+  /** Courses with more students than seats, the most oversubscribed first. */
+  public List<CourseFillRate> overCapacity() {
+    return reports.findOverCapacity();
+  }
+
+  /** CFU total and course count of every student, in id order. */
+  public List<StudentCreditLoad> creditLoads() {
+    return reports.findCreditLoads();
+  }
+
+  /** Students per CFU total, {@code cfuWidth} CFU per bucket. */
+  public Distribution creditLoadDistribution(int cfuWidth) {
+    return new Distribution(cfuWidth, reports.countStudentsByCreditLoad(cfuWidth));
+  }
+
+  /**
+   * Courses per fill rate, {@code percentWidth} percent per bucket; the last
+   * bucket holds the full and over-capacity courses.
+   */
+  public Distribution fillRateDistribution(int percentWidth) {
+    return new Distribution(percentWidth, reports.countCoursesByFillRate(percentWidth));
+  }
+
+  /** Runs one report (or all of them) and prints it. */
+  public static void main(String[] args) {
+    String report = args.length > 0 ? args[0].trim().toLowerCase() : "all";
+    if (!report.matches("fill|over|credits|distribution|all")) {
+      System.err.println("usage: ReportService [fill|over|credits|distribution|all]");
+      System.exit(2);
+    }
+    ReportService service = new ReportService();
+    boolean all = report.equals("all");
+    try {
+      if (all || report.equals("fill")) {
+        System.out.println("fill rates: " + service.fillRates());
+      }
+      if (all || report.equals("over")) {
+        List<CourseFillRate> over = service.overCapacity();
+        System.out.println("over capacity: " + over.size() + " courses");
+        for (CourseFillRate c : over) {
+          System.out.printf("  %s %d/%d%n", c.getCode(), c.getEnrolled(), c.getMaxSeats());
+        }
+      }
+      if (all || report.equals("credits")) {
+        List<StudentCreditLoad> loads = service.creditLoads();
+        long cfu = 0;
+        int max = 0;
+        for (StudentCreditLoad l : loads) {
+          cfu += l.getCfu();
+          max = Math.max(max, l.getCfu());
+        }
+        System.out.printf("credit loads: students=%d cfu=%d mean=%.1f max=%d%n",
+            loads.size(), cfu, loads.isEmpty() ? 0d : (double) cfu / loads.size(), max);
+      }
+      if (all || report.equals("distribution")) {
+        System.out.println("cfu load (6 per bucket): " + service.creditLoadDistribution(6));
+        System.out.println("fill rate (10% per bucket, then full): " + service.fillRateDistribution(10));
+      }
+    } finally {
+      JpaUtil.close();
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.RosterRow;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export of the roster (every student with their courses) for the registrar.
+ * <p>
+ * {@link Format#CSV} writes the columns StudentImportService reads,
+ * {@code matricola,fullName,email,courses} with the course codes
+ * ';'-separated, so an export can be imported again. {@link Format#JSONL}
+ * writes one JSON object per student with a {@code courses} array.
+ * <p>
+ * The rows come from StudentRepository#forEachRosterRow, a forward-only
+ * cursor, and only the courses of the student being written are held at a
+ * time. Output goes through a FileChannel with a fixed-size encoder buffer,
+ * optionally gzip-compressed, so the heap used does not depend on the size
+ * of the roster.
+ */
+public class RosterExporter {
+
+  public enum Format {
+    CSV, JSONL;
+
+    /** Case-insensitive, e.g. from a command line argument. */
+    public static Format of(String name) {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+  }
+
+  /** Size of the encoder buffer and of the gzip buffer, in bytes. */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  static final String CSV_HEADER = "matricola,fullName,email,courses";
+
+  private final StudentRepository repo;
+  private final int fetchSize;
+
+  public RosterExporter() {
+    this(new StudentRepository(), StudentRepository.DEFAULT_FETCH_SIZE);
+  }
+
+  public RosterExporter(StudentRepository repo, int fetchSize) {
+    if (fetchSize <= 0) throw new IllegalArgumentException("Fetch size must be positive.");
+    this.repo = repo;
+    this.fetchSize = fetchSize;
+  }
+
+  /** Writes the roster to {@code target}, replacing it if it exists. */
+  public ExportReport export(Path target, Format format, boolean gzip) throws IOException {
+    long start = System.nanoTime();
+    Grouper grouper;
+    long rows;
+    try (Writer out = open(FileChannel.open(target, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), gzip)) {
+      grouper = new Grouper(out, format);
+      if (format == Format.CSV) grouper.line(CSV_HEADER);
+      try {
+        rows = repo.forEachRosterRow(fetchSize, grouper);
+        grouper.flush();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+    return new ExportReport(format, gzip, grouper.students, grouper.enrollments, rows,
+        Files.size(target), System.nanoTime() - start);
+  }
+
+  private static Writer open(WritableByteChannel channel, boolean gzip) throws IOException {
+    WritableByteChannel sink = channel;
+    if (gzip) {
+      try {
+        sink = Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+    return Channels.newWriter(sink, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE);
+  }
+
+  // ------------------- Formatting -------------------
+
+  /** Collects a student's adjacent roster rows and writes the student once the next one starts. */
+  static final class Grouper implements Consumer<RosterRow> {
+    private final Writer out;
+    private final Format format;
+    private final StringBuilder line = new StringBuilder(256);
+    private final List<String> courses = new ArrayList<>();
+    private RosterRow student;
+    long students;
+    long enrollments;
+
+    Grouper(Writer out, Format format) {
+      this.out = out;
+      this.format = format;
+    }
+
+    @Override
+    public void accept(RosterRow row) {
+      if (student != null && !student.getStudentId().equals(row.getStudentId())) flush();
+      if (student == null) student = row;
+      if (row.getCourseCode() != null) courses.add(row.getCourseCode());
+    }
+
+    void flush() {
+      if (student == null) return;
+      line.setLength(0);
+      if (format == Format.CSV) csv(line, student, courses);
+      else json(line, student, courses);
+      line(line);
+      students++;
+      enrollments += courses.size();
+      courses.clear();
+      student = null;
+    }
+
+    void line(CharSequence text) {
+      try {
+        out.append(text).append('\n');
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  static void csv(StringBuilder b, RosterRow s, List<String> courses) {
+    csvField(b, s.getMatricola()).append(',');
+    csvField(b, s.getFullName()).append(',');
+    csvField(b, s.getEmail()).append(',');
+    csvField(b, String.join(";", courses));
+  }
+
+  private static StringBuilder csvField(StringBuilder b, String value) {
+    if (value == null) return b;
+    boolean quote = false;
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char ch = value.charAt(i);
+      quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+    }
+    if (!quote) return b.append(value);
+    b.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char ch = value.charAt(i);
+      if (ch == '"') b.append('"');
+      b.append(ch);
+    }
+    return b.append('"');
+  }
+
+  static void json(StringBuilder b, RosterRow s, List<String> courses) {
+    b.append("{\"matricola\":");
+    jsonString(b, s.getMatricola());
+    b.append(",\"fullName\":");
+    jsonString(b, s.getFullName());
+    b.append(",\"email\":");
+    jsonString(b, s.getEmail());
+    b.append(",\"courses\":[");
+    for (int i = 0; i < courses.size(); i++) {
+      if (i > 0) b.append(',');
+      jsonString(b, courses.get(i));
+    }
+    b.append("]}");
+  }
+
+  private static void jsonString(StringBuilder b, String value) {
+    if (value == null) {
+      b.append("null");
+      return;
+    }
+    b.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char ch = value.charAt(i);
+      switch (ch) {
+        case '"': b.append("\\\""); break;
+        case '\\': b.append("\\\\"); break;
+        case '\n': b.append("\\n"); break;
+        case '\r': b.append("\\r"); break;
+        case '\t': b.append("\\t"); break;
+        default:
+          if (ch < 0x20) b.append(String.format("\\u%04x", (int) ch));
+          else b.append(ch);
+      }
+    }
+    b.append('"');
+  }
+
+  /** {@code RosterExporter <file> [csv|jsonl] [gzip]} */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: RosterExporter <file> [csv|jsonl] [gzip]");
+      System.exit(2);
+    }
+    Format format = args.length > 1 ? Format.of(args[1]) : Format.CSV;
+    boolean gzip = args.length > 2 && "gzip".equalsIgnoreCase(args[2].trim());
+    try {
+      System.out.println(new RosterExporter().export(Paths.get(args[0]), format, gzip));
+    } finally {
+      JpaUtil.close();
+    }
+  }
+}
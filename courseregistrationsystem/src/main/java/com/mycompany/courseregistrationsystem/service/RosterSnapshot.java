@@ -0,0 +1,318 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import com.mycompany.courseregistrationsystem.model.StudentSummary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Read-only copy of the course and student tables in a compact binary file,
+ * memory-mapped so a view can show any page of them before the database is
+ * reachable. RosterSnapshotStore writes it and keeps it up to date.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ *   header   magic "CRSS", version, watermark (epoch millis), course count,
+ *            student count, course index offset, student index offset,
+ *            file length
+ *   courses  per course: id, cfu, maxSeats, enrolled, code, title
+ *   students per student: id, matricola, fullName, email, course count,
+ *            that many course positions (into the courses section)
+ *   indexes  the int offset of every course record, then of every student
+ *            record
+ * </pre>
+ * Strings are an unsigned short byte length followed by UTF-8. Both sections
+ * are in id order, so a row is found by position or by binary search on id.
+ * The watermark is when the database was read: rows changed later are not
+ * in the file.
+ * <p>
+ * Only the course codes are decoded when the file opens; every other row is
+ * read from the mapping when asked for. Instances are immutable and safe to
+ * share between threads.
+ */
+public final class RosterSnapshot {
+
+  /** Format version; a file written with any other is rejected and rebuilt. */
+  public static final int VERSION = 1;
+
+  static final int MAGIC = 0x43525353;   // "CRSS"
+  static final int HEADER_SIZE = 40;
+
+  private final ByteBuffer data;
+  private final Instant watermark;
+  private final int courseCount;
+  private final int studentCount;
+  private final int courseIndex;
+  private final int studentIndex;
+  private final String[] courseCodes;
+
+  private RosterSnapshot(ByteBuffer data, Path file) throws IOException {
+    this.data = data;
+    if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC)
+      throw new IOException("Not a roster snapshot: " + file);
+    int version = data.getInt(4);
+    if (version != VERSION)
+      throw new IOException("Roster snapshot version " + version + " is not supported (expected " + VERSION + "): " + file);
+    this.watermark = Instant.ofEpochMilli(data.getLong(8));
+    this.courseCount = data.getInt(16);
+    this.studentCount = data.getInt(20);
+    this.courseIndex = data.getInt(24);
+    this.studentIndex = data.getInt(28);
+    long length = data.getLong(32);
+    if (length != data.capacity() || courseCount < 0 || studentCount < 0
+        || courseIndex < HEADER_SIZE || (long) courseIndex + 4L * courseCount != studentIndex
+        || (long) studentIndex + 4L * studentCount > length)
+      throw new IOException("Truncated or corrupt roster snapshot: " + file);
+    this.courseCodes = new String[courseCount];
+    for (int i = 0; i < courseCount; i++) courseCodes[i] = string(courseAt(i) + 20);
+  }
+
+  /**
+   * Maps {@code file} read-only.
+   *
+   * @throws IOException if it cannot be read, is not a snapshot, or has another format version
+   */
+  public static RosterSnapshot open(Path file) throws IOException {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = ch.size();
+      if (size > Integer.MAX_VALUE) throw new IOException("Roster snapshot too large to map: " + file);
+      // The mapping stays valid after the channel closes, and even after the file is deleted.
+      return new RosterSnapshot(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), file);
+    }
+  }
+
+  /** When the rows were read; later changes are not in the snapshot. */
+  public Instant getWatermark() { return watermark; }
+  public int courseCount() { return courseCount; }
+  public int studentCount() { return studentCount; }
+
+  /** Up to {@code limit} courses from position {@code offset}, in id order. */
+  public List<CourseSummary> courses(int offset, int limit) {
+    List<CourseSummary> rows = new ArrayList<>(Math.max(0, Math.min(limit, courseCount - offset)));
+    for (int i = Math.max(offset, 0); i < courseCount && rows.size() < limit; i++) rows.add(course(i));
+    return rows;
+  }
+
+  /** Up to {@code limit} students from position {@code offset}, in id order. */
+  public List<StudentSummary> students(int offset, int limit) {
+    List<StudentSummary> rows = new ArrayList<>(Math.max(0, Math.min(limit, studentCount - offset)));
+    for (int i = Math.max(offset, 0); i < studentCount && rows.size() < limit; i++) rows.add(student(i));
+    return rows;
+  }
+
+  CourseSummary course(int position) {
+    int at = courseAt(position);
+    int code = at + 20;
+    return new CourseSummary(data.getLong(at), courseCodes[position], string(next(code)),
+        data.getInt(at + 8), data.getInt(at + 12), data.getInt(at + 16));
+  }
+
+  StudentSummary student(int position) {
+    int at = studentAt(position);
+    int matricola = at + 8;
+    int fullName = next(matricola);
+    int email = next(fullName);
+    int courses = next(email);
+    int n = data.getInt(courses);
+    List<String> codes = n == 0 ? Collections.<String>emptyList() : new ArrayList<>(n);
+    for (int i = 0; i < n; i++) codes.add(courseCodes[data.getInt(courses + 4 + 4 * i)]);
+    return new StudentSummary(data.getLong(at), string(matricola), string(fullName), string(email), codes);
+  }
+
+  long courseId(int position) { return data.getLong(courseAt(position)); }
+  long studentId(int position) { return data.getLong(studentAt(position)); }
+
+  /** The highest course id, or 0 if there are none. */
+  long maxCourseId() { return courseCount == 0 ? 0 : courseId(courseCount - 1); }
+  long maxStudentId() { return studentCount == 0 ? 0 : studentId(studentCount - 1); }
+
+  /** @return the position of the course with {@code id}, or -1 */
+  int indexOfCourse(long id) {
+    return search(id, courseCount, this::courseId);
+  }
+
+  /** @return the position of the student with {@code id}, or -1 */
+  int indexOfStudent(long id) {
+    return search(id, studentCount, this::studentId);
+  }
+
+  private static int search(long id, int count, IntToLongFunction idAt) {
+    int lo = 0, hi = count - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long m = idAt.applyAsLong(mid);
+      if (m < id) lo = mid + 1;
+      else if (m > id) hi = mid - 1;
+      else return mid;
+    }
+    return -1;
+  }
+
+  private int courseAt(int position) {
+    checkPosition(position, courseCount);
+    return data.getInt(courseIndex + 4 * position);
+  }
+
+  private int studentAt(int position) {
+    checkPosition(position, studentCount);
+    return data.getInt(studentIndex + 4 * position);
+  }
+
+  private static void checkPosition(int position, int count) {
+    if (position < 0 || position >= count)
+      throw new IndexOutOfBoundsException("Position " + position + " of " + count);
+  }
+
+  /** The offset just past the string at {@code at}. */
+  private int next(int at) {
+    return at + 2 + Short.toUnsignedInt(data.getShort(at));
+  }
+
+  private String string(int at) {
+    int length = Short.toUnsignedInt(data.getShort(at));
+    byte[] bytes = new byte[length];
+    ByteBuffer b = data.duplicate();
+    b.position(at + 2);
+    b.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  // ------------------- Writing -------------------
+
+  /**
+   * Writes a snapshot in one pass: every course, then every student, each
+   * in ascending id order. Records stream through a fixed-size buffer; only
+   * the record offsets (4 bytes a row) are held until {@link #finish()}.
+   */
+  static final class Writer implements Closeable {
+
+    private static final int BUFFER_SIZE = 128 * 1024;   // room for the longest string
+
+    private final FileChannel channel;
+    private final Instant watermark;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Map<String, Integer> positionByCode = new HashMap<>();
+    private int[] courseOffsets = new int[64];
+    private int[] studentOffsets = new int[1024];
+    private int courses;
+    private int students;
+    private long lastId = Long.MIN_VALUE;
+    private long written = HEADER_SIZE;
+
+    Writer(Path file, Instant watermark) throws IOException {
+      this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      this.watermark = watermark;
+      channel.position(HEADER_SIZE);
+    }
+
+    void course(CourseSummary c) throws IOException {
+      if (students > 0) throw new IllegalStateException("Courses must come before students.");
+      checkOrder(c.getId());
+      if (courses == courseOffsets.length) courseOffsets = Arrays.copyOf(courseOffsets, courses * 2);
+      courseOffsets[courses] = offset();
+      positionByCode.put(c.getCode(), courses++);
+      putLong(c.getId());
+      putInt(c.getCfu());
+      putInt(c.getMaxSeats());
+      putInt(c.getEnrolled());
+      putString(c.getCode());
+      putString(c.getTitle());
+    }
+
+    /** Course codes not written with {@link #course} are dropped (the course is gone). */
+    void student(StudentSummary s) throws IOException {
+      if (students == 0) lastId = Long.MIN_VALUE;
+      checkOrder(s.getId());
+      if (students == studentOffsets.length) studentOffsets = Arrays.copyOf(studentOffsets, students * 2);
+      studentOffsets[students++] = offset();
+      putLong(s.getId());
+      putString(s.getMatricola());
+      putString(s.getFullName());
+      putString(s.getEmail());
+      int[] positions = new int[s.getCourseCodes().size()];
+      int n = 0;
+      for (String code : s.getCourseCodes()) {
+        Integer p = positionByCode.get(code);
+        if (p != null) positions[n++] = p;
+      }
+      putInt(n);
+      for (int i = 0; i < n; i++) putInt(positions[i]);
+    }
+
+    /** Writes the indexes and the header and forces the file to disk. */
+    void finish() throws IOException {
+      int courseIndex = offset();
+      for (int i = 0; i < courses; i++) putInt(courseOffsets[i]);
+      int studentIndex = offset();
+      for (int i = 0; i < students; i++) putInt(studentOffsets[i]);
+      flush();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).putLong(watermark.toEpochMilli())
+          .putInt(courses).putInt(students).putInt(courseIndex).putInt(studentIndex)
+          .putLong(written);
+      header.flip();
+      while (header.hasRemaining()) channel.write(header, header.position());
+      channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    private void checkOrder(Long id) {
+      if (id == null || id <= lastId) throw new IllegalArgumentException("Rows must come in ascending id order.");
+      lastId = id;
+    }
+
+    private int offset() throws IOException {
+      if (written > Integer.MAX_VALUE) throw new IOException("Roster snapshot too large to map.");
+      return (int) written;
+    }
+
+    private void putLong(long v) throws IOException {
+      room(8);
+      buffer.putLong(v);
+      written += 8;
+    }
+
+    private void putInt(int v) throws IOException {
+      room(4);
+      buffer.putInt(v);
+      written += 4;
+    }
+
+    private void putString(String s) throws IOException {
+      byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+      if (bytes.length > 0xFFFF) throw new IllegalArgumentException("Value too long for a snapshot: " + bytes.length + " bytes");
+      room(2 + bytes.length);
+      buffer.putShort((short) bytes.length).put(bytes);
+      written += 2 + bytes.length;
+    }
+
+    private void room(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) flush();
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) channel.write(buffer);
+      buffer.clear();
+    }
+  }
+}
@@ -0,0 +1,377 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import com.mycompany.courseregistrationsystem.model.RosterRow;
+import com.mycompany.courseregistrationsystem.model.StudentSummary;
+import com.mycompany.courseregistrationsystem.repository.CourseRepository;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the roster snapshot file (see RosterSnapshot) in step with the
+ * database, so the desktop views can start from it.
+ * <p>
+ * {@link #opened()} maps the file as it is on disk, without touching the
+ * database. {@link #catchUp()} then reads only what may have changed since
+ * the snapshot's watermark: courses and students stamped later
+ * ({@code modified_at}), or created since (an id above the snapshot's
+ * highest), and the students of any course stamped later, since enrolling
+ * stamps only the course. Deletions are found by comparing row counts and,
+ * only when they differ, the ids. Without a readable snapshot the whole
+ * roster is streamed into a new one instead.
+ * <p>
+ * A mapped file cannot be replaced or deleted on Windows, and the views
+ * keep reading the snapshot they opened. So every write goes to a new
+ * version file next to {@code file} ({@code roster.snapshot.<n>.v}), and
+ * {@code file} itself only names the current version: a small pointer,
+ * never mapped, that is swapped with an atomic move. Older versions are
+ * deleted afterwards where the platform allows it (on Windows once nothing
+ * maps them any more, at a later write).
+ * <p>
+ * Writers stamp rows with the clock of the machine that wrote them, so the
+ * catch-up reads from {@link #OVERLAP_PROPERTY} before the watermark;
+ * re-reading a row that did not change is harmless.
+ */
+public class RosterSnapshotStore {
+
+  public static final String FILE_PROPERTY = "crs.snapshot.file";
+  public static final String OVERLAP_PROPERTY = "crs.snapshot.overlapMillis";
+  public static final long DEFAULT_OVERLAP_MILLIS = 60_000;
+
+  private static final Logger log = LoggerFactory.getLogger(RosterSnapshotStore.class);
+
+  private static final String VERSION_SUFFIX = ".v";
+  /** A pointer is one file name; anything longer is not one. */
+  private static final int MAX_POINTER_BYTES = 1024;
+
+  private static volatile RosterSnapshotStore shared;
+
+  private final Path file;
+  private final long overlapMillis;
+  private final StudentRepository students;
+  private final CourseRepository courses;
+  private final int fetchSize;
+
+  // Guarded by this
+  private RosterSnapshot current;
+  private boolean opened;
+
+  public RosterSnapshotStore(Path file) {
+    this(file, DEFAULT_OVERLAP_MILLIS, new StudentRepository(), new CourseRepository(),
+        StudentRepository.DEFAULT_FETCH_SIZE);
+  }
+
+  public RosterSnapshotStore(Path file, long overlapMillis, StudentRepository students,
+                             CourseRepository courses, int fetchSize) {
+    if (overlapMillis < 0) throw new IllegalArgumentException("Overlap must not be negative.");
+    if (fetchSize <= 0) throw new IllegalArgumentException("Fetch size must be positive.");
+    this.file = Objects.requireNonNull(file, "file");
+    this.overlapMillis = overlapMillis;
+    this.students = students;
+    this.courses = courses;
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * The store of the desktop app: {@link #FILE_PROPERTY}, by default
+   * {@code roster.snapshot} in {@code ~/.courseregistration}.
+   */
+  public static RosterSnapshotStore shared() {
+    RosterSnapshotStore s = shared;
+    if (s == null) {
+      synchronized (RosterSnapshotStore.class) {
+        s = shared;
+        if (s == null) {
+          String path = System.getProperty(FILE_PROPERTY);
+          Path file = path != null && !path.trim().isEmpty()
+              ? Paths.get(path.trim())
+              : Paths.get(System.getProperty("user.home"), ".courseregistration", "roster.snapshot");
+          s = shared = new RosterSnapshotStore(file, Long.getLong(OVERLAP_PROPERTY, DEFAULT_OVERLAP_MILLIS),
+              new StudentRepository(), new CourseRepository(), StudentRepository.DEFAULT_FETCH_SIZE);
+        }
+      }
+    }
+    return s;
+  }
+
+  /** The pointer file; the snapshot itself is the version file it names. */
+  public Path getFile() { return file; }
+
+  /**
+   * The snapshot as last written, mapped on the first call; null if there
+   * is none yet or it cannot be used (unreadable, corrupt, or written in
+   * another format version). Does not touch the database.
+   */
+  public synchronized RosterSnapshot opened() {
+    if (!opened) {
+      opened = true;
+      try {
+        current = RosterSnapshot.open(currentVersion());
+      } catch (NoSuchFileException e) {
+        log.info("No roster snapshot at {} yet", file);
+      } catch (IOException e) {
+        log.warn("Ignoring roster snapshot {}: {}", file, e.getMessage());
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Brings the snapshot up to date with the database, rewriting the file
+   * only if something changed, and returns it.
+   */
+  public synchronized RosterSnapshot catchUp() throws IOException {
+    RosterSnapshot old = opened();
+    Instant watermark = Instant.now();
+    current = old == null ? rebuild(watermark) : merge(old, watermark);
+    return current;
+  }
+
+  /** Rewrites the snapshot from the whole roster, whatever is on disk. */
+  public synchronized RosterSnapshot rebuild() throws IOException {
+    opened = true;
+    current = rebuild(Instant.now());
+    return current;
+  }
+
+  private RosterSnapshot rebuild(Instant watermark) throws IOException {
+    long start = System.nanoTime();
+    RosterSnapshot snapshot = write(watermark, w -> {
+      for (CourseSummary c : courses.findAllSummaries()) course(w, c);
+      Grouper grouper = new Grouper(s -> student(w, s));
+      students.forEachRosterRow(fetchSize, grouper);
+      grouper.flush();
+    });
+    log.info("Wrote roster snapshot {} ({} courses, {} students) in {} ms", file,
+        snapshot.courseCount(), snapshot.studentCount(), (System.nanoTime() - start) / 1_000_000);
+    return snapshot;
+  }
+
+  private RosterSnapshot merge(RosterSnapshot old, Instant watermark) throws IOException {
+    long start = System.nanoTime();
+    Instant since = old.getWatermark().minusMillis(overlapMillis);
+    long maxStudentId = old.maxStudentId();
+
+    List<CourseSummary> changedCourses = courses.findSummariesChangedSince(since, old.maxCourseId());
+    List<Long> courseIds = courses.findIds();
+    List<StudentSummary> changedStudents = new ArrayList<>();
+    Grouper grouper = new Grouper(changedStudents::add);
+    students.forEachRosterRowChangedSince(since, maxStudentId, fetchSize, grouper);
+    grouper.flush();
+
+    // Every live id up to the old maximum is either in the snapshot or
+    // was created since (and so is among the changed rows); any other
+    // difference in the count is a deletion.
+    long createdBelowMax = 0;
+    boolean studentsChanged = false;
+    for (StudentSummary s : changedStudents) {
+      int p = old.indexOfStudent(s.getId());
+      if (p < 0) {
+        studentsChanged = true;
+        if (s.getId() <= maxStudentId) createdBelowMax++;
+      } else if (!same(old.student(p), s)) {
+        studentsChanged = true;
+      }
+    }
+    long[] liveIds = null;
+    if (students.countUpTo(maxStudentId) != old.studentCount() + createdBelowMax) {
+      liveIds = liveStudentIdsUpTo(maxStudentId);
+      studentsChanged = true;
+    }
+    boolean coursesChanged = courseIds.size() != old.courseCount();
+    for (int i = 0; !coursesChanged && i < old.courseCount(); i++) coursesChanged = old.courseId(i) != courseIds.get(i);
+    for (CourseSummary c : changedCourses) coursesChanged |= !same(old, c);
+
+    if (!coursesChanged && !studentsChanged) {
+      log.info("Roster snapshot {} is up to date ({} rows checked in {} ms)", file,
+          changedCourses.size() + changedStudents.size(), (System.nanoTime() - start) / 1_000_000);
+      return old;
+    }
+    long[] live = liveIds;
+    RosterSnapshot snapshot = write(watermark, w -> {
+      Iterator<CourseSummary> changed = changedCourses.iterator();
+      CourseSummary next = changed.hasNext() ? changed.next() : null;
+      int p = 0;
+      for (Long id : courseIds) {
+        while (p < old.courseCount() && old.courseId(p) < id) p++;
+        while (next != null && next.getId() < id) next = changed.hasNext() ? changed.next() : null;
+        if (next != null && next.getId().equals(id)) course(w, next);
+        else if (p < old.courseCount() && old.courseId(p) == id) course(w, old.course(p));
+        // else: created after the ids were listed; the next catch-up picks it up
+      }
+      mergeStudents(w, old, changedStudents, live);
+    });
+    log.info("Caught up roster snapshot {} ({} courses, {} students changed) in {} ms", file,
+        changedCourses.size(), changedStudents.size(), (System.nanoTime() - start) / 1_000_000);
+    return snapshot;
+  }
+
+  /** Old rows in id order, replaced by the changed ones and without the deleted ones. */
+  private static void mergeStudents(RosterSnapshot.Writer w, RosterSnapshot old,
+                                    List<StudentSummary> changed, long[] liveIds) throws IOException {
+    int c = 0;
+    for (int p = 0; p < old.studentCount(); p++) {
+      long id = old.studentId(p);
+      while (c < changed.size() && changed.get(c).getId() < id) student(w, changed.get(c++));
+      if (c < changed.size() && changed.get(c).getId() == id) student(w, changed.get(c++));
+      else if (liveIds == null || Arrays.binarySearch(liveIds, id) >= 0) student(w, old.student(p));
+    }
+    while (c < changed.size()) student(w, changed.get(c++));
+  }
+
+  private long[] liveStudentIdsUpTo(long maxId) {
+    long[][] ids = { new long[1024] };
+    int[] n = { 0 };
+    students.forEachIdUpTo(maxId, fetchSize, id -> {
+      if (n[0] == ids[0].length) ids[0] = Arrays.copyOf(ids[0], n[0] * 2);
+      ids[0][n[0]++] = id;
+    });
+    return Arrays.copyOf(ids[0], n[0]);
+  }
+
+  private interface Body {
+    void write(RosterSnapshot.Writer w) throws IOException;
+  }
+
+  /** The version file the pointer names. */
+  private Path currentVersion() throws IOException {
+    byte[] pointer = Files.readAllBytes(file);
+    String name = pointer.length > MAX_POINTER_BYTES ? "" : new String(pointer, StandardCharsets.UTF_8).trim();
+    if (!isVersion(name)) throw new IOException("Not a roster snapshot pointer: " + file);
+    return file.resolveSibling(name);
+  }
+
+  private boolean isVersion(String name) {
+    String prefix = file.getFileName() + ".";
+    return name.startsWith(prefix) && name.endsWith(VERSION_SUFFIX)
+        && name.indexOf('/') < 0 && name.indexOf('\\') < 0;
+  }
+
+  /**
+   * Writes a new version file, points {@code file} at it and deletes the
+   * older versions that can be deleted. No file that may be mapped is ever
+   * written over.
+   */
+  private RosterSnapshot write(Instant watermark, Body body) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    String name = file.getFileName().toString();
+    Path version = Files.createTempFile(dir, name + ".", VERSION_SUFFIX);
+    Path pointer = Files.createTempFile(dir, name, ".tmp");
+    boolean swapped = false;
+    try {
+      try (RosterSnapshot.Writer w = new RosterSnapshot.Writer(version, watermark)) {
+        body.write(w);
+        w.finish();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      Files.write(pointer, version.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+      Files.move(pointer, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      swapped = true;
+    } finally {
+      Files.deleteIfExists(pointer);
+      if (!swapped) Files.deleteIfExists(version);
+    }
+    deleteVersionsOtherThan(dir, version);
+    return RosterSnapshot.open(version);
+  }
+
+  private void deleteVersionsOtherThan(Path dir, Path keep) {
+    try (DirectoryStream<Path> versions = Files.newDirectoryStream(dir, file.getFileName() + ".*" + VERSION_SUFFIX)) {
+      for (Path v : versions) {
+        if (v.equals(keep) || !isVersion(v.getFileName().toString())) continue;
+        try {
+          Files.deleteIfExists(v);
+        } catch (IOException stillMapped) {
+          log.debug("Keeping old roster snapshot {} for now: {}", v, stillMapped.getMessage());
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Could not clean up old roster snapshots next to {}", file, e);
+    }
+  }
+
+  private static void course(RosterSnapshot.Writer w, CourseSummary c) throws IOException {
+    w.course(c);
+  }
+
+  private static void student(RosterSnapshot.Writer w, StudentSummary s) {
+    try {
+      w.student(s);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static boolean same(RosterSnapshot old, CourseSummary c) {
+    int p = old.indexOfCourse(c.getId());
+    if (p < 0) return false;
+    CourseSummary o = old.course(p);
+    return o.getCode().equals(c.getCode()) && o.getTitle().equals(c.getTitle())
+        && o.getCfu() == c.getCfu() && o.getMaxSeats() == c.getMaxSeats() && o.getEnrolled() == c.getEnrolled();
+  }
+
+  private static boolean same(StudentSummary a, StudentSummary b) {
+    return a.getMatricola().equals(b.getMatricola()) && a.getFullName().equals(b.getFullName())
+        && a.getEmail().equals(b.getEmail()) && a.getCourseCodes().equals(b.getCourseCodes());
+  }
+
+  /** Folds a student's adjacent roster rows into one summary. */
+  static final class Grouper implements Consumer<RosterRow> {
+    private final Consumer<StudentSummary> out;
+    private final List<String> codes = new ArrayList<>();
+    private RosterRow student;
+
+    Grouper(Consumer<StudentSummary> out) {
+      this.out = out;
+    }
+
+    @Override
+    public void accept(RosterRow row) {
+      if (student != null && !student.getStudentId().equals(row.getStudentId())) flush();
+      if (student == null) student = row;
+      if (row.getCourseCode() != null) codes.add(row.getCourseCode());
+    }
+
+    void flush() {
+      if (student == null) return;
+      out.accept(new StudentSummary(student.getStudentId(), student.getMatricola(),
+          student.getFullName(), student.getEmail(), codes));
+      codes.clear();
+      student = null;
+    }
+  }
+
+  /** {@code RosterSnapshotStore [file] [rebuild]}: catches up (or rebuilds) the snapshot. */
+  public static void main(String[] args) throws IOException {
+    RosterSnapshotStore store = args.length > 0 ? new RosterSnapshotStore(Paths.get(args[0])) : shared();
+    boolean rebuild = args.length > 1 && "rebuild".equalsIgnoreCase(args[1].trim());
+    try {
+      RosterSnapshot s = rebuild ? store.rebuild() : store.catchUp();
+      System.out.printf("%s: %d courses, %d students, watermark %s%n",
+          store.getFile(), s.courseCount(), s.studentCount(), s.getWatermark());
+    } finally {
+      JpaUtil.close();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.metrics.MethodMetrics;
+import com.mycompany.courseregistrationsystem.repository.SeatCounter;
+import com.mycompany.courseregistrationsystem.repository.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Picks the process-wide seat inventory and group-commit writer.
+ * <p>
+ * {@code -Dcrs.inventory=memory} selects the in-memory inventory (one shared
+ * instance, loaded on first use and drained at JVM shutdown); anything else
+ * keeps the database counter. Either way enrollment writes go through one
+ * shared GroupCommitEnrollmentWriter, published over JMX as
+ * {@code com.mycompany.courseregistrationsystem:type=GroupCommitEnrollmentWriter}.
+ */
+public final class SeatInventories {
+
+  private static final Logger log = LoggerFactory.getLogger(SeatInventories.class);
+
+  public static final String MODE_PROPERTY = "crs.inventory";
+
+  private static InMemorySeatInventory memory;   // guarded by SeatInventories.class
+  private static CompletableFuture<Integer> startupResync;   // guarded by SeatInventories.class
+  private static GroupCommitEnrollmentWriter groupCommit;   // guarded by SeatInventories.class
+
+  private SeatInventories() { }
+
+  public static SeatInventory shared() {
+    if (isMemoryMode()) return memory();
+    return new DatabaseSeatInventory();
+  }
+
+  /** The shared group-commit writer, started on first use and drained at JVM shutdown. */
+  public static synchronized GroupCommitEnrollmentWriter sharedWriter() {
+    if (groupCommit == null) {
+      final GroupCommitEnrollmentWriter created = new GroupCommitEnrollmentWriter();
+      // In memory mode the inventory's drain closes the writer first.
+      if (isMemoryMode()) memory();
+      else Runtime.getRuntime().addShutdownHook(new Thread(created::close, "group-commit-drain"));
+      registerMXBean(created);
+      groupCommit = created;
+    }
+    return groupCommit;
+  }
+
+  /**
+   * Recomputes every seat counter from the enrollments table on
+   * {@code executor}; the first call starts it, later ones return the same
+   * future. Call it before anything uses the shared inventory: the
+   * in-memory one is loaded from the counters, so it waits for the resync.
+   * Database-mode writes can run meanwhile (see SeatCounter#resync).
+   */
+  public static synchronized CompletableFuture<Integer> resyncAtStartup(Executor executor) {
+    if (startupResync == null) {
+      startupResync = CompletableFuture.supplyAsync(() -> UnitOfWork.call(SeatCounter::resync), executor);
+    }
+    return startupResync;
+  }
+
+  private static boolean isMemoryMode() {
+    return "memory".equalsIgnoreCase(System.getProperty(MODE_PROPERTY, "database").trim());
+  }
+
+  private static synchronized InMemorySeatInventory memory() {
+    if (memory == null) {
+      if (startupResync != null) {
+        try {
+          startupResync.join();
+        } catch (CompletionException e) {
+          log.warn("Seat counter resync failed; loading the counters as they are", e.getCause());
+        }
+      }
+      final InMemorySeatInventory created = new InMemorySeatInventory();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        // Writes still queued in the writer need the inventory open.
+        GroupCommitEnrollmentWriter writer;
+        synchronized (SeatInventories.class) {
+          writer = groupCommit;
+        }
+        if (writer != null) writer.close();
+        created.close();
+      }, "seat-inventory-drain"));
+      memory = created;
+    }
+    return memory;
+  }
+
+  private static void registerMXBean(GroupCommitEnrollmentWriter writer) {
+    try {
+      ObjectName name = new ObjectName(MethodMetrics.DOMAIN + ":type=GroupCommitEnrollmentWriter");
+      ManagementFactory.getPlatformMBeanServer().registerMBean(writer, name);
+    } catch (InstanceAlreadyExistsException e) {
+      log.debug("Group commit MXBean already registered");
+    } catch (JMException e) {
+      log.warn("Could not publish the group commit writer over JMX", e);
+    }
+  }
+
+  /**
+   * Tells the shared in-memory inventory, if one is running, that a course's
+   * capacity changed or the course was deleted.
+   */
+  public static void courseChanged(Long courseId) {
+    InMemorySeatInventory m;
+    synchronized (SeatInventories.class) {
+      m = memory;
+    }
+    if (m != null && courseId != null) m.refreshCapacity(courseId);
+  }
+}
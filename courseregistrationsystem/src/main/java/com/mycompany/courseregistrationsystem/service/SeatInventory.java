@@ -0,0 +1,38 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where EnrollmentService takes and gives back seats.
+ * <p>
+ * Every call receives the caller's {@link EntityManager} with an active
+ * transaction. An implementation either works inside that transaction
+ * (DatabaseSeatInventory) or keeps its own state and reacts to the
+ * transaction's outcome (InMemorySeatInventory).
+ */
+public interface SeatInventory {
+
+  /** @return true if a seat in {@code courseId} was taken, false if full or unknown */
+  boolean tryReserve(EntityManager em, Long courseId);
+
+  /**
+   * Writes the enrollment row for a seat just taken with {@link #tryReserve}.
+   *
+   * @return false if the student was already enrolled in the course
+   */
+  boolean record(EntityManager em, Long studentId, Long courseId);
+
+  /** Gives back the seat of an enrollment that {@code em}'s transaction removes. */
+  void release(EntityManager em, Long courseId);
+
+  /**
+   * Waits, at most {@code timeout}, until the seat counter changes committed
+   * so far are written to {@code courses.enrolled}. Enrollment rows are
+   * always written in the caller's transaction; only an implementation that
+   * defers the counter has anything to wait for.
+   *
+   * @return false if the counter writes did not catch up in time
+   */
+  boolean sync(long timeout, TimeUnit unit);
+}
@@ -0,0 +1,267 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.controller.JpaUtil;
+import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.Student;
+import com.mycompany.courseregistrationsystem.repository.EnrollmentChanges;
+import com.mycompany.courseregistrationsystem.repository.SeatCounter;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Bulk import of a term's intake from CSV.
+ * <p>
+ * Expected columns: {@code matricola,fullName,email,courses} where
+ * {@code courses} is an optional ';'-separated list of course codes. A header
+ * line starting with "matricola" is skipped.
+ * <p>
+ * Rows are processed in chunks, one transaction per chunk. For each chunk the
+ * existing matricole and the course codes are resolved with batched IN
+ * queries, then the students are persisted with JDBC insert batching (ids
+ * come from pooled sequences, so Hibernate can batch). Seat counters are
+ * bumped once per course per chunk; as an administrative load the import
+ * does not enforce capacity. A failing chunk is rolled back and aborts the
+ * import; earlier chunks stay committed.
+ */
+public class StudentImportService {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+  public static final int DEFAULT_JDBC_BATCH_SIZE = 50;
+
+  /** Upper bound for the number of bind parameters in one IN list. */
+  static final int IN_LIST_LIMIT = 1000;
+
+  private final int chunkSize;
+  private final int jdbcBatchSize;
+
+  public StudentImportService() {
+    this(DEFAULT_CHUNK_SIZE, DEFAULT_JDBC_BATCH_SIZE);
+  }
+
+  public StudentImportService(int chunkSize, int jdbcBatchSize) {
+    if (chunkSize <= 0 || jdbcBatchSize <= 0)
+      throw new IllegalArgumentException("Chunk size and batch size must be positive.");
+    this.chunkSize = chunkSize;
+    this.jdbcBatchSize = jdbcBatchSize;
+  }
+
+  public ImportReport importCsv(Reader source) throws IOException {
+    long start = System.nanoTime();
+    Tally tally = new Tally();
+    Map<String, Long> courseIds = new HashMap<>();
+
+    BufferedReader in = source instanceof BufferedReader
+        ? (BufferedReader) source : new BufferedReader(source);
+    List<Row> chunk = new ArrayList<>(chunkSize);
+    boolean first = true;
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (line.trim().isEmpty()) continue;
+      List<String> fields = parseLine(line);
+      if (first) {
+        first = false;
+        if ("matricola".equalsIgnoreCase(fields.get(0).trim())) continue;
+      }
+      tally.rowsRead++;
+      Row row = Row.of(fields);
+      if (row == null) {
+        tally.invalid++;
+        continue;
+      }
+      chunk.add(row);
+      if (chunk.size() == chunkSize) {
+        writeChunk(chunk, courseIds, tally);
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) writeChunk(chunk, courseIds, tally);
+
+    return new ImportReport(tally.rowsRead, tally.imported, tally.duplicates, tally.invalid,
+        tally.enrollments, tally.unknownCourses, System.nanoTime() - start);
+  }
+
+  private void writeChunk(List<Row> chunk, Map<String, Long> courseIds, Tally tally) {
+    EntityManager em = JpaUtil.emf().createEntityManager();
+    EntityTransaction tx = em.getTransaction();
+    try {
+      tx.begin();
+      em.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+
+      Set<String> existing = existingMatricole(em, chunk);
+      resolveCourses(em, chunk, courseIds, tally.unknownCourses);
+
+      long imported = 0, duplicates = 0, enrollments = 0;
+      Map<Long, Integer> seatsTaken = new HashMap<>();
+      Set<String> seen = new HashSet<>();
+      for (Row r : chunk) {
+        if (existing.contains(r.matricola) || !seen.add(r.matricola)) {
+          duplicates++;
+          continue;
+        }
+        Student s = new Student();
+        s.setMatricola(r.matricola);
+        s.setFullName(r.fullName);
+        s.setEmail(r.email);
+        for (String code : r.courseCodes) {
+          Long courseId = courseIds.get(code);
+          if (courseId != null && s.getCourses().add(em.getReference(Course.class, courseId))) {
+            seatsTaken.merge(courseId, 1, Integer::sum);
+            enrollments++;
+          }
+        }
+        em.persist(s);
+        if (++imported % jdbcBatchSize == 0) {
+          em.flush();
+          em.clear();
+        }
+      }
+      em.flush();
+      for (Map.Entry<Long, Integer> e : seatsTaken.entrySet()) {
+        SeatCounter.add(em, e.getKey(), e.getValue());
+      }
+      tx.commit();
+      EnrollmentChanges.fireCoursesChanged(seatsTaken.keySet());
+
+      tally.imported += imported;
+      tally.duplicates += duplicates;
+      tally.enrollments += enrollments;
+    } finally {
+      if (tx.isActive()) tx.rollback();
+      em.close();
+    }
+  }
+
+  private Set<String> existingMatricole(EntityManager em, List<Row> chunk) {
+    List<String> all = new ArrayList<>(chunk.size());
+    for (Row r : chunk) all.add(r.matricola);
+    Set<String> existing = new HashSet<>();
+    for (List<String> part : partition(all)) {
+      existing.addAll(em.createQuery(
+          "select s.matricola from Student s where s.matricola in :m", String.class)
+          .setParameter("m", part)
+          .getResultList());
+    }
+    return existing;
+  }
+
+  private void resolveCourses(EntityManager em, List<Row> chunk, Map<String, Long> courseIds,
+                              Set<String> unknown) {
+    Set<String> missing = new HashSet<>();
+    for (Row r : chunk) {
+      for (String code : r.courseCodes) {
+        if (!courseIds.containsKey(code) && !unknown.contains(code)) missing.add(code);
+      }
+    }
+    if (missing.isEmpty()) return;
+    for (List<String> part : partition(new ArrayList<>(missing))) {
+      List<Object[]> rows = em.createQuery(
+          "select c.code, c.id from Course c where c.code in :codes", Object[].class)
+          .setParameter("codes", part)
+          .getResultList();
+      for (Object[] row : rows) courseIds.put((String) row[0], (Long) row[1]);
+    }
+    for (String code : missing) {
+      if (!courseIds.containsKey(code)) unknown.add(code);
+    }
+  }
+
+  private static <T> List<List<T>> partition(List<T> values) {
+    List<List<T>> parts = new ArrayList<>();
+    for (int i = 0; i < values.size(); i += IN_LIST_LIMIT) {
+      parts.add(values.subList(i, Math.min(values.size(), i + IN_LIST_LIMIT)));
+    }
+    return parts;
+  }
+
+  /** Splits one CSV line; supports double-quoted fields with "" escapes. */
+  static List<String> parseLine(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder cur = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char ch = line.charAt(i);
+      if (quoted) {
+        if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          cur.append('"');
+          i++;
+        } else if (ch == '"') {
+          quoted = false;
+        } else {
+          cur.append(ch);
+        }
+      } else if (ch == '"') {
+        quoted = true;
+      } else if (ch == ',') {
+        fields.add(cur.toString());
+        cur.setLength(0);
+      } else {
+        cur.append(ch);
+      }
+    }
+    fields.add(cur.toString());
+    return fields;
+  }
+
+  private static final class Row {
+    final String matricola;
+    final String fullName;
+    final String email;
+    final List<String> courseCodes;
+
+    private Row(String matricola, String fullName, String email, List<String> courseCodes) {
+      this.matricola = matricola;
+      this.fullName = fullName;
+      this.email = email;
+      this.courseCodes = courseCodes;
+    }
+
+    /** @return the row, or null when a required field is missing */
+    static Row of(List<String> f) {
+      if (f.size() < 3) return null;
+      String m = f.get(0).trim(), n = f.get(1).trim(), e = f.get(2).trim();
+      if (m.isEmpty() || n.isEmpty() || e.isEmpty()) return null;
+      List<String> codes = new ArrayList<>();
+      if (f.size() > 3) {
+        for (String code : f.get(3).split(";")) {
+          if (!code.trim().isEmpty()) codes.add(code.trim());
+        }
+      }
+      return new Row(m, n, e, codes);
+    }
+  }
+
+  private static final class Tally {
+    long rowsRead, imported, duplicates, invalid, enrollments;
+    final Set<String> unknownCourses = new TreeSet<>();
+  }
+
+  /** Headless entry point: {@code StudentImportService <file.csv> [chunkSize] [jdbcBatchSize]}. */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: StudentImportService <file.csv> [chunkSize] [jdbcBatchSize]");
+      System.exit(2);
+    }
+    int chunk = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CHUNK_SIZE;
+    int batch = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_JDBC_BATCH_SIZE;
+    try (Reader in = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+      System.out.println(new StudentImportService(chunk, batch).importCsv(in));
+    } finally {
+      JpaUtil.close();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.mycompany.courseregistrationsystem.view.swing;
+
+import com.mycompany.courseregistrationsystem.controller.ControllerExecutor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Runs one of a view's loads off the EDT and hands the result back on it.
+ * <p>
+ * {@link #request()} can be called as often as the UI likes: requests that
+ * arrive within {@link #COALESCE_MILLIS} of each other start a single load.
+ * Starting a load supersedes the previous one: it is cancelled if it has not
+ * begun yet, and otherwise its result is dropped, so a table never flips
+ * back to older data.
+ * <p>
+ * {@code request()} must be called on the EDT. A load is started by
+ * {@code start}, usually one of the controllers' async methods; a plain
+ * {@link #onWorker} load runs on the shared ControllerExecutor. Either way
+ * the load should do all the heavy lifting (query and row building),
+ * leaving {@code publish} a single model swap.
+ */
+final class BackgroundLoader<T> {
+
+    static final int COALESCE_MILLIS = 75;
+
+    private final Supplier<CompletableFuture<T>> load;
+    private final Consumer<T> publish;
+    private final Consumer<Throwable> failed;
+    private final Timer debounce;
+
+    // EDT-confined
+    private CompletableFuture<T> inFlight;
+    private int generation;
+
+    BackgroundLoader(Supplier<CompletableFuture<T>> start, Consumer<T> publish, Consumer<Throwable> failed) {
+        this.load = start;
+        this.publish = publish;
+        this.failed = failed;
+        this.debounce = new Timer(COALESCE_MILLIS, e -> start());
+        this.debounce.setRepeats(false);
+    }
+
+    /** A loader whose loads run {@code load} on the shared ControllerExecutor. */
+    static <T> BackgroundLoader<T> onWorker(Supplier<T> load, Consumer<T> publish, Consumer<Throwable> failed) {
+        return new BackgroundLoader<>(() -> ControllerExecutor.shared().submit(load), publish, failed);
+    }
+
+    /** Schedules a load; bursts of requests collapse into one. */
+    void request() {
+        debounce.restart();
+    }
+
+    /** @return true while a requested load has not been published yet */
+    boolean isPending() {
+        return debounce.isRunning() || inFlight != null;
+    }
+
+    /** Drops any pending or running load, e.g. when the window closes. */
+    void cancel() {
+        debounce.stop();
+        generation++;
+        if (inFlight != null) inFlight.cancel(false);
+        inFlight = null;
+    }
+
+    /**
+     * Runs a one-off load, e.g. of a single changed row, without coalescing
+     * or superseding; {@code publish} or {@code failed} runs on the EDT.
+     */
+    static <T> void once(Supplier<T> load, Consumer<T> publish, Consumer<Throwable> failed) {
+        whenDone(ControllerExecutor.shared().submit(load), publish, failed);
+    }
+
+    /** Hands the outcome of {@code future}, e.g. a controller's async write, to {@code publish} or {@code failed} on the EDT. */
+    static <T> void whenDone(CompletableFuture<T> future, Consumer<T> publish, Consumer<Throwable> failed) {
+        future.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) publish.accept(result);
+            else failed.accept(unwrap(error));
+        }));
+    }
+
+    private void start() {
+        if (inFlight != null) inFlight.cancel(false);
+        final int gen = ++generation;
+        CompletableFuture<T> f;
+        try {
+            f = load.get();
+        } catch (RuntimeException e) {
+            inFlight = null;
+            failed.accept(e);
+            return;
+        }
+        inFlight = f;
+        f.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (gen != generation) return;   // superseded by a newer load
+            inFlight = null;
+            if (error == null) {
+                publish.accept(result);
+            } else if (!(error instanceof CancellationException)) {
+                failed.accept(unwrap(error));
+            }
+        }));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -2,6 +2,8 @@ package com.mycompany.courseregistrationsystem.view.swing;
 
 import com.mycompany.courseregistrationsystem.controller.CourseController;
 import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import com.mycompany.courseregistrationsystem.service.RosterSnapshotStore;
 
 import java.awt.Dialog;
 import java.awt.EventQueue;
@@ -9,6 +11,8 @@ import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.GroupLayout;
 import javax.swing.GroupLayout.Alignment;
@@ -25,7 +29,6 @@ import javax.swing.LayoutStyle.ComponentPlacement;
 import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.JOptionPane;
 
 public class CourseSwingView extends JFrame {
@@ -40,9 +43,11 @@ public class CourseSwingView extends JFrame {
     private JSpinner spnMaxSeats;
 
     private JTable tblCourses;
-    private DefaultTableModel tableModel;
+    private WarmStartPageSource source;
+    private PagedTableModel tableModel;
+
+    private volatile CourseController controller;
 
-    private CourseController controller;
 
     public static void main(String[] args) {
         EventQueue.invokeLater(() -> {
@@ -90,13 +95,22 @@ public class CourseSwingView extends JFrame {
 
         JScrollPane scrollPane = new JScrollPane();
         tblCourses = new JTable();
-        tableModel = new DefaultTableModel(
-            new Object[][] {},
-            new String[] { "ID", "Code", "Title", "CFU", "Max Seats", "Students Enrolled" }
-        ) {
-            private static final long serialVersionUID = 1L;
-            @Override public boolean isCellEditable(int row, int col) { return false; }
-        };
+        source = new WarmStartPageSource(new PagedTableModel.PageSource() {
+            @Override public int rowCount() {
+                return ensureController().countCourses();
+            }
+            @Override public List<Object[]> rows(Object afterKey, int offset, int limit) {
+                return toRows(ensureController().loadSummarySlice((Long) afterKey, offset, limit));
+            }
+        }, snapshot -> new PagedTableModel.PageSource() {
+            @Override public int rowCount() {
+                return snapshot.courseCount();
+            }
+            @Override public List<Object[]> rows(Object afterKey, int offset, int limit) {
+                return toRows(snapshot.courses(offset, limit));
+            }
+        });
+        tableModel = new PagedTableModel(source, "ID", "Code", "Title", "CFU", "Max Seats", "Students Enrolled");
         tblCourses.setModel(tableModel);
         tblCourses.setName("tblCourses");
         tblCourses.addMouseListener(new MouseAdapter() {
@@ -197,7 +211,9 @@ public class CourseSwingView extends JFrame {
         contentPane.setLayout(gl);
 
         addWindowListener(new java.awt.event.WindowAdapter() {
-            @Override public void windowOpened(java.awt.event.WindowEvent e) { refreshTable(); }
+            // The first load, which may come from the roster snapshot.
+            @Override public void windowOpened(java.awt.event.WindowEvent e) { tableModel.refresh(); }
+            @Override public void windowClosed(java.awt.event.WindowEvent e) { tableModel.cancelLoads(); }
         });
     }
 
@@ -206,6 +222,15 @@ public class CourseSwingView extends JFrame {
         this.controller = controller;
     }
 
+    /**
+     * Shows the courses from the store's roster snapshot until the first
+     * refresh, so the table is usable before the database is (see
+     * WarmStartPageSource). Call on the EDT, before the window opens.
+     */
+    public void setSnapshotStore(RosterSnapshotStore store) {
+        source.start(store, tableModel);
+    }
+
     private void onAdd(ActionEvent e) {
         ensureController();
         String code  = txtCode.getText().trim();
@@ -213,16 +238,11 @@ public class CourseSwingView extends JFrame {
         int cfu      = (Integer) spnCfu.getValue();
         int max      = (Integer) spnMaxSeats.getValue();
 
-        try {
-            controller.add(code, title, cfu, max);
+        BackgroundLoader.whenDone(controller.addAsync(code, title, cfu, max), added -> {
             clearForm();
-            refreshTable();
+            reloadRow(added == null ? null : added.getId());
             info("Course added.");
-        } catch (IllegalArgumentException ex) {
-            warn(ex.getMessage());
-        } catch (Exception ex) {
-            error("Failed to add course: " + ex.getMessage());
-        }
+        }, ex -> failed("Failed to add course: ", ex));
     }
 
     private void onUpdate(ActionEvent e) {
@@ -238,16 +258,11 @@ public class CourseSwingView extends JFrame {
 
         if (id == null) { warn("Invalid row selected."); return; }
 
-        try {
-            controller.update(id, code, title, cfu, max);
+        BackgroundLoader.whenDone(controller.updateAsync(id, code, title, cfu, max), updated -> {
             clearForm();
-            refreshTable();
+            reloadRow(id);
             info("Course updated.");
-        } catch (IllegalArgumentException ex) {
-            warn(ex.getMessage());
-        } catch (Exception ex) {
-            error("Failed to update course: " + ex.getMessage());
-        }
+        }, ex -> failed("Failed to update course: ", ex));
     }
 
     private void onDelete(ActionEvent e) {
@@ -262,29 +277,59 @@ public class CourseSwingView extends JFrame {
                 "Delete selected course?", "Confirm", JOptionPane.YES_NO_OPTION);
         if (confirm != JOptionPane.YES_OPTION) return;
 
-        try {
-            controller.delete(id);
+        BackgroundLoader.whenDone(controller.deleteAsync(id), done -> {
             clearForm();
-            refreshTable();
+            source.goLive();
+            tableModel.remove(id);
             info("Course deleted.");
-        } catch (Exception ex) {
-            error("Failed to delete course: " + ex.getMessage());
-        }
+        }, ex -> error("Failed to delete course: " + ex.getMessage()));
+    }
+
+    // Validation failures are the user's to fix; anything else is an error.
+    private void failed(String what, Throwable ex) {
+        if (ex instanceof IllegalArgumentException) warn(ex.getMessage());
+        else error(what + ex.getMessage());
     }
 
+    /**
+     * Reloads the row count in the background, from the database even if
+     * the table started from the roster snapshot; rows are then fetched a
+     * page at a time as they are shown (see PagedTableModel).
+     */
     private void refreshTable() {
-        ensureController();
-        tableModel.setRowCount(0);
-        for (Course c : controller.loadAll()) {
-            int enrolled = 0;
-            try {
-                enrolled = controller.enrolledCount(c.getId());
-            } catch (Exception ignore) { }
-            tableModel.addRow(new Object[] {
-                c.getId(), c.getCode(), c.getTitle(), c.getCfu(), c.getMaxSeats(), enrolled
-            });
+        source.goLive();
+        tableModel.refresh();
+    }
+
+    /**
+     * Applies one course's change to its row only. A full reload that is
+     * already pending would race with it, so that one is restarted instead.
+     */
+    private void reloadRow(Long id) {
+        if (id == null || tableModel.isRefreshing() || source.isWarm()) {
+            refreshTable();
+            return;
         }
-        tblCourses.clearSelection();
+        BackgroundLoader.once(
+                () -> ensureController().loadSummary(id).map(CourseSwingView::toRow),
+                row -> {
+                    if (row.isPresent()) tableModel.upsert(row.get());
+                    else tableModel.remove(id);
+                },
+                ex -> refreshTable());
+    }
+
+    // Runs on a worker thread, so the EDT only gets finished rows.
+    private static List<Object[]> toRows(List<CourseSummary> summaries) {
+        List<Object[]> rows = new ArrayList<>(summaries.size());
+        for (CourseSummary c : summaries) rows.add(toRow(c));
+        return rows;
+    }
+
+    private static Object[] toRow(CourseSummary c) {
+        return new Object[] {
+            c.getId(), c.getCode(), c.getTitle(), c.getCfu(), c.getMaxSeats(), c.getEnrolled()
+        };
     }
 
     private void clearForm() {
@@ -295,10 +340,12 @@ public class CourseSwingView extends JFrame {
         tblCourses.clearSelection();
     }
 
-    private void ensureController() {
+    // Also called from the loader's worker thread, hence synchronized.
+    private synchronized CourseController ensureController() {
         if (controller == null) {
             controller = new CourseController();
         }
+        return controller;
     }
 
     private String val(int row, int col) {
@@ -353,5 +400,5 @@ public class CourseSwingView extends JFrame {
     public JSpinner getSpnCfu() { return spnCfu; }
     public JSpinner getSpnMaxSeats() { return spnMaxSeats; }
     public JTable getTblCourses() { return tblCourses; }
-    public DefaultTableModel getTableModel() { return tableModel; }
+    public PagedTableModel getTableModel() { return tableModel; }
 }
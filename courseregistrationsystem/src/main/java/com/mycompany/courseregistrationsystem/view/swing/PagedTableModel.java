@@ -0,0 +1,330 @@
+package com.mycompany.courseregistrationsystem.view.swing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Read-only table model over a row source too large to materialize.
+ * <p>
+ * Only the row count is loaded up front. Rows are fetched a page at a time
+ * when the JTable first asks for them (that is, when they scroll into view),
+ * on the shared ControllerExecutor; until a page arrives its cells are
+ * blank. At most {@code maxPages} pages are kept, least recently used out
+ * first, so the heap footprint stays at {@code pageSize * maxPages} rows
+ * however long the table is. Reading into the second half of a page
+ * prefetches the next one.
+ * <p>
+ * Rows are keyed by their first column (the entity id) and must come back
+ * in ascending key order: the last key of a cached page lets the next page
+ * seek instead of skipping {@code offset} rows, and a row added or removed
+ * locally is placed by its key among the cached rows, which then shift by
+ * one without a reload.
+ * <p>
+ * Like every Swing model it must only be used on the EDT.
+ */
+public final class PagedTableModel extends AbstractTableModel {
+
+    /** Where the rows come from; called off the EDT. */
+    public interface PageSource {
+
+        int rowCount();
+
+        /**
+         * Up to {@code limit} rows in key order: those after {@code afterKey}
+         * if it is not null, otherwise those from row {@code offset}.
+         */
+        List<Object[]> rows(Object afterKey, int offset, int limit);
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    public static final int DEFAULT_MAX_PAGES = 16;
+
+    /** Page loads in flight at once; a fast scroll queues the rest, newest first. */
+    static final int MAX_LOADS = 2;
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(PagedTableModel.class);
+
+    private final String[] columns;
+    private final transient PageSource source;
+    private final int pageSize;
+    private final int maxPages;
+    private final transient BackgroundLoader<Integer> counter;
+
+    private final Map<Integer, List<Object[]>> pages;
+    private final Set<Integer> stale = new HashSet<>();      // cached, but older than the last refresh
+    private final Map<Integer, Object> lastKeys = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private final ArrayDeque<Integer> wanted = new ArrayDeque<>();
+    private int rowCount;
+    private int generation;
+
+    public PagedTableModel(PageSource source, String... columns) {
+        this(source, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES, columns);
+    }
+
+    public PagedTableModel(PageSource source, int pageSize, int maxPages, String... columns) {
+        if (pageSize <= 0) throw new IllegalArgumentException("Page size must be positive.");
+        if (maxPages < 2) throw new IllegalArgumentException("At least two pages must fit in the cache.");
+        if (columns.length == 0) throw new IllegalArgumentException("At least the key column is required.");
+        this.source = source;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.columns = columns.clone();
+        this.pages = new LinkedHashMap<Integer, List<Object[]>>(maxPages * 2, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override protected boolean removeEldestEntry(Map.Entry<Integer, List<Object[]>> eldest) {
+                if (size() <= PagedTableModel.this.maxPages) return false;
+                stale.remove(eldest.getKey());
+                return true;
+            }
+        };
+        this.counter = BackgroundLoader.onWorker(source::rowCount, this::reset,
+                ex -> log.warn("Failed to count the table rows", ex));
+    }
+
+    @Override public int getRowCount() { return rowCount; }
+    @Override public int getColumnCount() { return columns.length; }
+    @Override public String getColumnName(int column) { return columns[column]; }
+    @Override public boolean isCellEditable(int row, int column) { return false; }
+
+    /** @return the cell, or null while its page is loading */
+    @Override
+    public Object getValueAt(int row, int column) {
+        int p = row / pageSize;
+        int i = row % pageSize;
+        List<Object[]> page = pages.get(p);
+        if (page == null || stale.contains(p)) want(p, true);
+        if (page != null && i >= pageSize / 2) want(p + 1, false);
+        return page != null && i < page.size() ? page.get(i)[column] : null;
+    }
+
+    /**
+     * Reloads the row count in the background and then every page as it is
+     * shown again; until then the old rows stay on screen. Bursts of calls
+     * collapse into one count query.
+     */
+    public void refresh() {
+        counter.request();
+    }
+
+    /** @return true while a refresh has not been applied yet */
+    public boolean isRefreshing() {
+        return counter.isPending();
+    }
+
+    /** Drops pending loads, e.g. when the window closes. */
+    public void cancelLoads() {
+        counter.cancel();
+        generation++;
+        loading.clear();
+        wanted.clear();
+    }
+
+    /** @return the row showing {@code key} if its page is cached, otherwise -1 */
+    public int indexOf(Object key) {
+        for (Map.Entry<Integer, List<Object[]>> e : pages.entrySet()) {
+            List<Object[]> page = e.getValue();
+            for (int i = 0; i < page.size(); i++) {
+                if (key.equals(page.get(i)[0])) return e.getKey() * pageSize + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the cached row with the same key in place, firing one row
+     * update. Otherwise the row is new: it is inserted before the first
+     * cached row with a greater key, the rows after it shift down and one
+     * row insert is fired.
+     */
+    public void upsert(Object[] row) {
+        if (row.length != columns.length)
+            throw new IllegalArgumentException("Expected " + columns.length + " columns, got " + row.length);
+        int index = indexOf(row[0]);
+        if (index >= 0) {
+            List<Object[]> page = pages.get(index / pageSize);
+            if (!Arrays.equals(page.get(index % pageSize), row)) {
+                page.set(index % pageSize, row);
+                fireTableRowsUpdated(index, index);
+            }
+            return;
+        }
+        int[] gap = gapOf(row[0]);
+        if (gap == null) {
+            refresh();
+            return;
+        }
+        shift(gap[0], gap[1], 1, row);
+        fireTableRowsInserted(gap[1], gap[1]);
+    }
+
+    /**
+     * Removes the row with the key: the rows after it shift up and one row
+     * delete is fired. A key that is not cached is taken to be among the
+     * uncached rows just before the next greater cached key.
+     */
+    public void remove(Object key) {
+        int index = indexOf(key);
+        int from = index;
+        if (index < 0) {
+            int[] gap = gapOf(key);
+            if (gap == null) {
+                refresh();
+                return;
+            }
+            if (gap[0] == gap[1]) return;   // between two adjacent cached rows: not in the table
+            from = gap[0];
+            index = gap[1] - 1;
+        }
+        shift(from, index, -1, null);
+        fireTableRowsDeleted(index, index);
+    }
+
+    /**
+     * Where a key that is not cached would sit: after every cached row with a
+     * smaller key ({@code [0]}) and before every one with a greater key
+     * ({@code [1]}). Null if the keys cannot be compared.
+     */
+    private int[] gapOf(Object key) {
+        if (!(key instanceof Comparable)) return null;
+        @SuppressWarnings("unchecked")
+        Comparable<Object> k = (Comparable<Object>) key;
+        int lo = 0;
+        int hi = rowCount;
+        try {
+            for (Map.Entry<Integer, List<Object[]>> e : pages.entrySet()) {
+                List<Object[]> page = e.getValue();
+                for (int i = 0; i < page.size(); i++) {
+                    int at = e.getKey() * pageSize + i;
+                    if (k.compareTo(page.get(i)[0]) > 0) lo = Math.max(lo, at + 1);
+                    else hi = Math.min(hi, at);
+                }
+            }
+        } catch (ClassCastException e) {
+            return null;
+        }
+        return lo <= hi ? new int[] { lo, hi } : null;
+    }
+
+    /**
+     * Moves the cached rows from {@code at} on by {@code by} (+1 to make room
+     * for {@code inserted}, -1 to drop the row at {@code at}) and cuts them
+     * into pages again, keeping the cache's recency order.
+     * <p>
+     * The change may really have happened anywhere from {@code from} to
+     * {@code at}, among uncached rows: the rows after {@code at} move the
+     * same either way, but an insert's own position is then a guess, so its
+     * page is reloaded when shown, as is a page left with a gap (it keeps
+     * its leading rows meanwhile). Loads in flight are for the old positions
+     * and are dropped, and so are the seek keys from {@code from} on.
+     */
+    private void shift(int from, int at, int by, Object[] inserted) {
+        NavigableMap<Integer, Object[]> rows = new TreeMap<>();
+        Set<Integer> staleRows = new HashSet<>();
+        List<Integer> order = new ArrayList<>(pages.keySet());
+        for (Map.Entry<Integer, List<Object[]>> e : pages.entrySet()) {
+            List<Object[]> page = e.getValue();
+            for (int i = 0; i < page.size(); i++) {
+                int index = e.getKey() * pageSize + i;
+                if (by < 0 && index == at) continue;
+                int moved = index >= at ? index + by : index;
+                rows.put(moved, page.get(i));
+                if (stale.contains(e.getKey())) staleRows.add(moved);
+            }
+        }
+        if (inserted != null) {
+            rows.put(at, inserted);
+            if (from < at) staleRows.add(at);
+        }
+
+        rowCount += by;
+        generation++;
+        loading.clear();
+        wanted.clear();
+        int firstMoved = from / pageSize;
+        lastKeys.keySet().removeIf(p -> p >= firstMoved);
+        pages.clear();
+        stale.clear();
+        for (int p : order) {
+            int first = p * pageSize;
+            int size = Math.min(pageSize, rowCount - first);
+            List<Object[]> page = new ArrayList<>(Math.max(size, 0));
+            boolean isStale = false;
+            for (int index = first; index < first + size && rows.containsKey(index); index++) {
+                page.add(rows.get(index));
+                isStale |= staleRows.contains(index);
+            }
+            if (page.isEmpty()) continue;
+            pages.put(p, page);
+            if (isStale || page.size() < size) stale.add(p);
+            else lastKeys.put(p, page.get(page.size() - 1)[0]);
+        }
+    }
+
+    private void reset(int count) {
+        generation++;
+        stale.addAll(pages.keySet());
+        lastKeys.clear();
+        loading.clear();
+        wanted.clear();
+        int old = rowCount;
+        rowCount = count;
+        // Row-range events rather than a data-changed one, so the selection survives.
+        if (count < old) fireTableRowsDeleted(count, old - 1);
+        if (count > old) fireTableRowsInserted(old, count - 1);
+        if (Math.min(old, count) > 0) fireTableRowsUpdated(0, Math.min(old, count) - 1);
+    }
+
+    private void want(int p, boolean shown) {
+        if ((long) p * pageSize >= rowCount || loading.contains(p)) return;
+        if (pages.containsKey(p) && !stale.contains(p)) return;
+        wanted.remove(p);
+        if (shown) wanted.addLast(p);
+        else wanted.addFirst(p);   // prefetches go after everything on screen
+        while (wanted.size() > maxPages) wanted.removeFirst();
+        pump();
+    }
+
+    private void pump() {
+        while (loading.size() < MAX_LOADS && !wanted.isEmpty()) {
+            load(wanted.pollLast());
+        }
+    }
+
+    private void load(int p) {
+        loading.add(p);
+        final int gen = generation;
+        final Object afterKey = p == 0 ? null : lastKeys.get(p - 1);
+        final int offset = p * pageSize;
+        BackgroundLoader.once(() -> source.rows(afterKey, offset, pageSize), rows -> {
+            if (gen != generation) return;   // refreshed meanwhile; the page will be asked for again
+            loading.remove(p);
+            pages.put(p, rows);
+            stale.remove(p);
+            if (!rows.isEmpty()) lastKeys.put(p, rows.get(rows.size() - 1)[0]);
+            int last = Math.min(offset + pageSize, rowCount) - 1;
+            if (last >= offset) fireTableRowsUpdated(offset, last);
+            pump();
+        }, ex -> {
+            if (gen != generation) return;
+            loading.remove(p);
+            log.warn("Failed to load rows {}-{}", offset, offset + pageSize - 1, ex);
+            pump();
+        });
+    }
+}
@@ -1,42 +1,70 @@
 package com.mycompany.courseregistrationsystem.view.swing;
 
-import com.mycompany.courseregistrationsystem.controller.JpaUtil;
 import com.mycompany.courseregistrationsystem.controller.StudentController;
 import com.mycompany.courseregistrationsystem.model.Course;
 import com.mycompany.courseregistrationsystem.model.Student;
-import com.mycompany.courseregistrationsystem.repository.CourseRepository;
-import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import com.mycompany.courseregistrationsystem.model.StudentSummary;
+import com.mycompany.courseregistrationsystem.service.RosterSnapshotStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.persistence.EntityManager;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class StudentSwingView extends JFrame {
 
     private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(StudentSwingView.class);
 
     private JPanel contentPane;
     private JTable tableStudents;
+    private final WarmStartPageSource source = new WarmStartPageSource(new PagedTableModel.PageSource() {
+        @Override public int rowCount() {
+            return ensureController().countStudents();
+        }
+        @Override public List<Object[]> rows(Object afterKey, int offset, int limit) {
+            return toRows(ensureController().findSliceWithCourses((Long) afterKey, offset, limit));
+        }
+    }, snapshot -> new PagedTableModel.PageSource() {
+        @Override public int rowCount() {
+            return snapshot.studentCount();
+        }
+        @Override public List<Object[]> rows(Object afterKey, int offset, int limit) {
+            return toSummaryRows(snapshot.students(offset, limit));
+        }
+    });
+    private final PagedTableModel tableModel = new PagedTableModel(source,
+            "ID", "Matricola", "Full Name", "Email", "Course(s)");
     private JTextField txtMatricola;
     private JTextField txtFullName;
     private JTextField txtEmail;
     private JComboBox<Course> cmbCourse;
     
-    @SuppressWarnings("unused")
-	private StudentController controller;
+    private volatile StudentController controller;
+
+    private final BackgroundLoader<List<Course>> coursesLoader = new BackgroundLoader<>(
+            () -> ensureController().loadAllCoursesAsync(),
+            this::showCourses,
+            ex -> warn("Failed to load courses: " + ex.getMessage()));
 
-    private final StudentRepository studentRepo = new StudentRepository();
-    private final CourseRepository  courseRepo  = new CourseRepository();
-    
     public void setController(StudentController controller) {
         this.controller = controller;
     }
 
+    /**
+     * Shows the students from the store's roster snapshot until the first
+     * refresh, so the table is usable before the database is (see
+     * WarmStartPageSource). Call on the EDT, right after construction.
+     */
+    public void setSnapshotStore(RosterSnapshotStore store) {
+        source.start(store, tableModel);
+    }
+
     public StudentSwingView() {
         setTitle("Student's Portal");
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
@@ -71,6 +99,7 @@ public class StudentSwingView extends JFrame {
 
         gc.gridx = 0; gc.gridy = row; gc.weightx = 0; panelForm.add(new JLabel("Course:"), gc);
         cmbCourse = new JComboBox<>();
+        cmbCourse.addItem(null);   // the placeholder clearForm() selects until the courses load
         cmbCourse.setName("cmbCourse");
         cmbCourse.setRenderer(new DefaultListCellRenderer() {
             private static final long serialVersionUID = 1L;
@@ -90,13 +119,7 @@ public class StudentSwingView extends JFrame {
 
         tableStudents = new JTable();
         tableStudents.setName("tblStudents");
-        tableStudents.setModel(new DefaultTableModel(
-                new Object[][]{},
-                new String[]{"ID", "Matricola", "Full Name", "Email", "Course(s)"}
-        ) {
-            private static final long serialVersionUID = 1L;
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        });
+        tableStudents.setModel(tableModel);
         tableStudents.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
         JScrollPane scroll = new JScrollPane(tableStudents);
         contentPane.add(scroll, BorderLayout.CENTER);
@@ -136,31 +159,83 @@ public class StudentSwingView extends JFrame {
             }
         });
 
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override public void windowClosed(java.awt.event.WindowEvent e) {
+                coursesLoader.cancel();
+                tableModel.cancelLoads();
+            }
+        });
+
         refreshCourses();
         loadStudents();
     }
 
+    /**
+     * Both loads run in the background (see BackgroundLoader): the first
+     * fires shortly after construction, once a controller can be set, and
+     * bursts of refreshes collapse into one query each. The student table
+     * then fetches its rows a page at a time as they are shown (see
+     * PagedTableModel), so a million students never sit in memory at once.
+     */
     private void refreshCourses() {
+        coursesLoader.request();
+    }
+
+    private void loadStudents() {
+        source.goLive();
+        tableModel.refresh();
+    }
+
+    private void showCourses(List<Course> courses) {
         DefaultComboBoxModel<Course> model = new DefaultComboBoxModel<>();
         model.addElement(null);
-        for (Course c : courseRepo.findAll()) model.addElement(c);
+        for (Course c : courses) model.addElement(c);
         cmbCourse.setModel(model);
         cmbCourse.setSelectedIndex(0);
     }
 
-    private void loadStudents() {
-        DefaultTableModel model = (DefaultTableModel) tableStudents.getModel();
-        model.setRowCount(0);
-        List<Student> list = studentRepo.findAllWithCourses();
-        for (Student s : list) {
-            String coursesCol = (s.getCourses() == null || s.getCourses().isEmpty())
-                    ? ""
-                    : s.getCourses().stream()
-                    .map(Course::getCode)
-                    .sorted()
-                    .collect(Collectors.joining(", "));
-            model.addRow(new Object[]{ s.getId(), s.getMatricola(), s.getFullName(), s.getEmail(), coursesCol });
+    /**
+     * Applies one student's change to their row only. A full reload that is
+     * already pending would race with it, so that one is restarted instead.
+     */
+    private void reloadRow(Long id) {
+        if (id == null || tableModel.isRefreshing() || source.isWarm()) {
+            loadStudents();
+            return;
+        }
+        BackgroundLoader.once(
+                () -> ensureController().findWithCourses(id).map(StudentSwingView::toRow),
+                row -> {
+                    if (row.isPresent()) tableModel.upsert(row.get());
+                    else tableModel.remove(id);
+                },
+                ex -> loadStudents());
+    }
+
+    // Runs on a worker thread, courses column included, so the EDT only gets finished rows.
+    private static List<Object[]> toRows(List<Student> students) {
+        List<Object[]> rows = new ArrayList<>(students.size());
+        for (Student s : students) rows.add(toRow(s));
+        return rows;
+    }
+
+    private static Object[] toRow(Student s) {
+        String coursesCol = (s.getCourses() == null || s.getCourses().isEmpty())
+                ? ""
+                : s.getCourses().stream()
+                .map(Course::getCode)
+                .sorted()
+                .collect(Collectors.joining(", "));
+        return new Object[]{ s.getId(), s.getMatricola(), s.getFullName(), s.getEmail(), coursesCol };
+    }
+
+    private static List<Object[]> toSummaryRows(List<StudentSummary> students) {
+        List<Object[]> rows = new ArrayList<>(students.size());
+        for (StudentSummary s : students) {
+            String coursesCol = s.getCourseCodes().stream().sorted().collect(Collectors.joining(", "));
+            rows.add(new Object[]{ s.getId(), s.getMatricola(), s.getFullName(), s.getEmail(), coursesCol });
         }
+        return rows;
     }
 
     private void addStudent(ActionEvent e) {
@@ -172,29 +247,15 @@ public class StudentSwingView extends JFrame {
             warn("Please fill Matricola, Full Name, and Email.");
             return;
         }
-        if (studentRepo.findByMatricola(m).isPresent()) {
-            warn("Matricola already exists: " + m);
-            return;
-        }
 
         Course selected = (Course) cmbCourse.getSelectedItem();
-        if (selected != null) {
-            if (!hasCapacity(selected.getId())) {
-                warn("Course is full: " + selected.getCode());
-                return;
-            }
-        }
+        Long courseId = (selected == null ? null : selected.getId());
 
-        Student s = new Student();
-        s.setMatricola(m);
-        s.setFullName(n);
-        s.setEmail(em);
-        if (selected != null) s.getCourses().add(selected);
-
-        studentRepo.save(s);
-        clearForm();
-        loadStudents();
-        info("Student added.");
+        BackgroundLoader.whenDone(ensureController().addStudentAsync(m, n, em, courseId), added -> {
+            clearForm();
+            reloadRow(added == null ? null : added.getId());
+            info("Student added.");
+        }, ex -> failed("Add failed", ex));
     }
 
     private void updateStudent(ActionEvent e) {
@@ -215,27 +276,11 @@ public class StudentSwingView extends JFrame {
         Course selected = (Course) cmbCourse.getSelectedItem();
         Long targetCourseId = (selected == null ? null : selected.getId());
 
-        if (targetCourseId != null) {
-            boolean alreadyIn = isStudentInCourse(id, targetCourseId);
-            if (!alreadyIn && !hasCapacity(targetCourseId)) {
-                warn("Course is full: " + selected.getCode());
-                return;
-            }
-        }
-
-        try {
-            studentRepo.updateStudent(id, m, n, em, targetCourseId);
+        BackgroundLoader.whenDone(ensureController().updateStudentAsync(id, m, n, em, targetCourseId), updated -> {
             clearForm();
-            loadStudents();
+            reloadRow(id);
             info("Student updated.");
-        } catch (IllegalArgumentException ex) {
-            warn(ex.getMessage());
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this,
-                    "Update failed:\n" + ex.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
-        }
+        }, ex -> failed("Update failed", ex));
     }
 
     private void deleteStudent(ActionEvent e) {
@@ -244,58 +289,32 @@ public class StudentSwingView extends JFrame {
         Long id = parseLong(val(row, 0), null);
         if (id == null) { warn("Invalid row selected."); return; }
 
-        studentRepo.deleteById(id);
-        clearForm();
-        loadStudents();
-        info("Student deleted.");
-    }
-
-    private boolean hasCapacity(Long courseId) {
-        if (courseId == null) return true;
-        int enrolled = enrolledCount(courseId);
-        int max = findMaxSeats(courseId);
-        return enrolled < max;
-    }
-
-    private int enrolledCount(Long courseId) {
-        EntityManager em = JpaUtil.emf().createEntityManager();
-        try {
-            Long cnt = em.createQuery(
-                    "select count(s) from Course c join c.students s where c.id = :cid", Long.class)
-                .setParameter("cid", courseId)
-                .getSingleResult();
-            return cnt == null ? 0 : cnt.intValue();
-        } finally {
-            em.close();
-        }
+        BackgroundLoader.whenDone(ensureController().deleteAsync(id), done -> {
+            clearForm();
+            source.goLive();
+            tableModel.remove(id);
+            info("Student deleted.");
+        }, ex -> failed("Delete failed", ex));
     }
 
-    private int findMaxSeats(Long courseId) {
-        EntityManager em = JpaUtil.emf().createEntityManager();
-        try {
-            Integer seats = em.createQuery(
-                    "select c.maxSeats from Course c where c.id = :cid", Integer.class)
-                .setParameter("cid", courseId)
-                .getSingleResult();
-            return seats == null ? 0 : seats;
-        } finally {
-            em.close();
+    // Validation failures are the user's to fix; anything else is an error.
+    private void failed(String what, Throwable ex) {
+        if (ex instanceof IllegalArgumentException) {
+            warn(ex.getMessage());
+            return;
         }
+        log.warn(what, ex);
+        JOptionPane.showMessageDialog(this,
+                what + ":\n" + ex.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE);
     }
 
-    private boolean isStudentInCourse(Long studentId, Long courseId) {
-        EntityManager em = JpaUtil.emf().createEntityManager();
-        try {
-            Long cnt = em.createQuery(
-                    "select count(s) from Course c join c.students s " +
-                    "where c.id = :cid and s.id = :sid", Long.class)
-                .setParameter("cid", courseId)
-                .setParameter("sid", studentId)
-                .getSingleResult();
-            return cnt != null && cnt > 0;
-        } finally {
-            em.close();
+    // Also called from the loaders' worker thread, hence synchronized.
+    private synchronized StudentController ensureController() {
+        if (controller == null) {
+            controller = new StudentController();
         }
+        return controller;
     }
 
     private void clearForm() {
@@ -0,0 +1,93 @@
+package com.mycompany.courseregistrationsystem.view.swing;
+
+import com.mycompany.courseregistrationsystem.service.RosterSnapshot;
+import com.mycompany.courseregistrationsystem.service.RosterSnapshotStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page source that answers from the roster snapshot until the table is
+ * refreshed for another reason, then from the database.
+ * <p>
+ * {@link #start} shows the snapshot on disk at once, without waiting for
+ * the database, and swaps in the caught-up one when RosterSnapshotStore has
+ * fetched what changed since. The first refresh after that (the Refresh
+ * button, or an edit) goes live through {@link #goLive()}: from then on the
+ * table reads the database as before.
+ * <p>
+ * {@link #start} and {@link #goLive()} must be called on the EDT; the page
+ * methods are called off it.
+ */
+final class WarmStartPageSource implements PagedTableModel.PageSource {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmStartPageSource.class);
+
+    private final PagedTableModel.PageSource live;
+    private final Function<RosterSnapshot, PagedTableModel.PageSource> fromSnapshot;
+    private volatile PagedTableModel.PageSource warm;
+
+    /** {@code fromSnapshot} reads the view's rows out of a snapshot. */
+    WarmStartPageSource(PagedTableModel.PageSource live,
+                        Function<RosterSnapshot, PagedTableModel.PageSource> fromSnapshot) {
+        this.live = live;
+        this.fromSnapshot = fromSnapshot;
+    }
+
+    /**
+     * Serves {@code model} from the store's snapshot, if there is one, and
+     * brings the snapshot up to date in the background (writing a first one
+     * if need be, for the next start).
+     */
+    void start(RosterSnapshotStore store, PagedTableModel model) {
+        RosterSnapshot opened = store.opened();
+        if (opened != null) {
+            warm = fromSnapshot.apply(opened);
+            model.refresh();
+        }
+        BackgroundLoader.once(() -> {
+            try {
+                return store.catchUp();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, fresh -> {
+            if (warm == null) return;   // already live
+            warm = fromSnapshot.apply(fresh);
+            model.refresh();
+        }, ex -> {
+            log.warn("Failed to bring the roster snapshot {} up to date", store.getFile(), ex);
+            if (warm != null) {
+                goLive();
+                model.refresh();
+            }
+        });
+    }
+
+    /** Serves the database from now on; refresh the model after. */
+    void goLive() {
+        warm = null;
+    }
+
+    /** @return true while the rows come from a snapshot */
+    boolean isWarm() {
+        return warm != null;
+    }
+
+    @Override
+    public int rowCount() {
+        PagedTableModel.PageSource w = warm;
+        return w != null ? w.rowCount() : live.rowCount();
+    }
+
+    @Override
+    public List<Object[]> rows(Object afterKey, int offset, int limit) {
+        PagedTableModel.PageSource w = warm;
+        // The key belongs to whichever source loaded the previous page; the offset is always right.
+        return w != null ? w.rows(null, offset, limit) : live.rows(afterKey, offset, limit);
+    }
+}
@@ -0,0 +1,138 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ControllerExecutorTest {
+
+  private ControllerExecutor executor;
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @Before
+  public void setUp() {
+    executor = new ControllerExecutor(2, 3, false);
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    executor.close();
+  }
+
+  @Test
+  public void submit_completesWithTheResult() throws Exception {
+    assertEquals("ok", executor.submit(() -> "ok").get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void submit_failsTheFutureWithTheException() throws Exception {
+    CompletableFuture<Object> f = executor.submit(() -> { throw new IllegalArgumentException("bad"); });
+    try {
+      f.get(5, TimeUnit.SECONDS);
+      fail("expected the future to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+  @Test
+  public void saturatedExecutor_rejectsInsteadOfQueueingWithoutBound() throws Exception {
+    List<CompletableFuture<Void>> accepted = new ArrayList<>();
+    for (int i = 0; i < 5; i++) accepted.add(executor.run(this::awaitRelease));   // 2 running + 3 queued
+    awaitActive(2);
+
+    CompletableFuture<Void> rejected = executor.run(() -> { });
+    assertTrue(rejected.isCompletedExceptionally());
+    try {
+      rejected.get();
+      fail("expected a rejection");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    ControllerExecutorStats stats = executor.stats();
+    assertEquals(2, stats.getActive());
+    assertEquals(3, stats.getQueued());
+    assertEquals(1, stats.getRejected());
+
+    release.countDown();
+    for (CompletableFuture<Void> f : accepted) f.get(5, TimeUnit.SECONDS);
+    assertEquals(5, executor.stats().getCompleted());
+    assertEquals(3, executor.stats().getLargestQueued());
+  }
+
+  @Test
+  public void cancelledBeforeStart_isSkipped() throws Exception {
+    executor.run(this::awaitRelease);
+    executor.run(this::awaitRelease);
+    awaitActive(2);
+    AtomicBoolean ran = new AtomicBoolean();
+    CompletableFuture<Void> queued = executor.run(() -> ran.set(true));
+    queued.cancel(false);
+
+    release.countDown();
+    executor.close();
+    assertFalse(ran.get());
+  }
+
+  @Test
+  public void completedFuture_hasAlreadyFreedItsSlot() throws Exception {
+    ControllerExecutor one = new ControllerExecutor(1, 0, false);
+    try {
+      for (int i = 0; i < 200; i++) {
+        final int n = i;
+        assertEquals(Integer.valueOf(n), one.submit(() -> n).get(5, TimeUnit.SECONDS));
+        assertEquals(i + 1, one.stats().getCompleted());
+      }
+    } finally {
+      one.close();
+    }
+  }
+
+  @Test
+  public void closedExecutor_rejects() {
+    executor.close();
+    assertTrue(executor.submit(() -> "late").isCompletedExceptionally());
+  }
+
+  @Test
+  public void virtualThreads_fallBackOrRunWithTheSameLimits() throws Exception {
+    ControllerExecutor v = new ControllerExecutor(1, 0, true);
+    try {
+      assertEquals("ok", v.submit(() -> "ok").get(5, TimeUnit.SECONDS));
+      v.run(this::awaitRelease);
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (v.stats().getActive() < 1 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+      assertTrue(v.submit(() -> "over").isCompletedExceptionally());
+    } finally {
+      release.countDown();
+      v.close();
+    }
+  }
+
+  private void awaitRelease() {
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void awaitActive(int n) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (executor.stats().getActive() < n && System.currentTimeMillis() < deadline) Thread.sleep(5);
+    assertEquals(n, executor.stats().getActive());
+  }
+}
@@ -0,0 +1,76 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PoolMetricsTest {
+
+  private ObservedConnectionProvider provider;
+  private PoolMetrics.Recorder recorder;
+
+  @Before
+  public void startPool() {
+    Map<String, String> props = new HashMap<>();
+    props.put(AvailableSettings.URL, "jdbc:h2:mem:pool_metrics;DB_CLOSE_DELAY=-1");
+    props.put(AvailableSettings.USER, "sa");
+    props.put(AvailableSettings.PASS, "");
+    props.put("hibernate.hikari.minimumIdle", "1");
+    props.put("hibernate.hikari.maximumPoolSize", "2");
+    props.put("hibernate.hikari.connectionTimeout", "250");
+    provider = new ObservedConnectionProvider();
+    provider.configure(props);
+    recorder = provider.unwrap(PoolMetrics.Recorder.class);
+  }
+
+  @After
+  public void stopPool() {
+    provider.stop();
+  }
+
+  @Test
+  public void startedPool_reportsGaugesAndAcquires() throws SQLException {
+    Connection conn = provider.getConnection();
+    try {
+      PoolMetrics m = recorder.snapshot();
+      assertEquals(1, m.getActive());
+      assertEquals(2, m.getMaxSize());
+      assertEquals(1, m.getMinIdle());
+      assertEquals(1, m.getAcquisitions());
+    } finally {
+      provider.closeConnection(conn);
+    }
+    PoolMetrics after = recorder.snapshot();
+    assertEquals(0, after.getActive());
+    assertEquals(0, after.getTimeouts());
+  }
+
+  @Test
+  public void exhaustedPool_countsTheTimeout() throws SQLException {
+    Connection first = provider.getConnection();
+    Connection second = provider.getConnection();
+    try {
+      provider.getConnection();
+      fail("expected the pool to time out");
+    } catch (SQLException expected) {
+      assertEquals(1, recorder.snapshot().getTimeouts());
+    } finally {
+      provider.closeConnection(first);
+      provider.closeConnection(second);
+    }
+  }
+
+  @Test
+  public void stoppedPool_reportsNothing() {
+    provider.stop();
+    assertSame(PoolMetrics.NONE, recorder.snapshot());
+  }
+}
@@ -0,0 +1,58 @@
+package com.mycompany.courseregistrationsystem.controller;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+public class SlowQueryLogTest {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final List<String> lines = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void statementsOverThreshold_areWrittenAsynchronouslyAndRedacted() {
+    SlowQueryLog log = new SlowQueryLog(100, 1.0, lines::add);
+    log.record("select * from students where id = ?", 99 * MS);
+    log.record("select * from students\n  where email = 'a@b.com' and id = 42", 150 * MS);
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> log.getLogged() == 1);
+    assertEquals(1, log.getSlowStatements());
+    assertEquals(1, lines.size());
+    assertTrue(lines.get(0), lines.get(0).startsWith("150.0ms ["));
+    assertTrue(lines.get(0), lines.get(0).endsWith("select * from students where email = ? and id = ?"));
+  }
+
+  @Test
+  public void redact_keepsIdentifiersAndPlaceholders() {
+    assertEquals("select s1_0.id from students s1_0 where s1_0.matricola=? limit ?",
+        SlowQueryLog.redact("select s1_0.id from students s1_0 where s1_0.matricola=? limit 10"));
+    assertEquals("insert into t (a, b) values (?, ?)",
+        SlowQueryLog.redact("insert into t (a, b) values ('it''s', 3.5)"));
+  }
+
+  @Test
+  public void sampleRateAndThreshold_canChangeAtRuntime() {
+    SlowQueryLog log = new SlowQueryLog(-1, 1.0, lines::add);
+    assertFalse(log.isEnabled());
+    log.record("select 1", 10_000 * MS);
+    assertEquals(0, log.getSlowStatements());
+
+    log.setThresholdMillis(0);
+    log.setSampleRate(0d);
+    log.record("select 1", MS);
+    assertEquals(1, log.getSlowStatements());
+    assertEquals(0, log.getLogged());
+    assertTrue(lines.isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sampleRateOutOfRange_isRejected() {
+    new SlowQueryLog(100, 1.5, lines::add);
+  }
+}
@@ -0,0 +1,108 @@
+package com.mycompany.courseregistrationsystem.metrics;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class MethodTimerTest {
+
+  private final MethodTimer timer = new MethodTimer("Test.method", true);
+
+  @Test
+  public void startStop_countsCallsAndErrors() {
+    assertEquals("x", timed(() -> "x"));
+    timer.stop(timer.start(), true);
+    try {
+      timed(() -> { throw new IllegalStateException("boom"); });
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+
+    assertEquals(3, timer.getCount());
+    assertEquals(1, timer.getErrors());
+  }
+
+  @Test
+  public void startStop_recordsTheTimeInBetween() throws Exception {
+    long start = timer.start();
+    Thread.sleep(20);
+    timer.stop(start, true);
+
+    assertEquals(1, timer.getCount());
+    assertTrue(timer.getMaxMicros() >= 19_000);
+  }
+
+  @Test
+  public void percentiles_comeFromTheRecordedLatencies() {
+    for (int i = 0; i < 999; i++) timer.stop(System.nanoTime() - 1_000_000, true);   // 1ms
+    timer.stop(System.nanoTime() - 100_000_000, true);                               // 100ms
+
+    assertEquals(1_000, timer.getP50Micros(), 50);
+    assertEquals(1_000, timer.getP99Micros(), 50);
+    assertEquals(100_000, timer.getMaxMicros(), 5_000);
+    assertEquals(1_000, timer.getCount());
+  }
+
+  @Test
+  public void timeAsync_recordsWhenTheFutureCompletes() {
+    CompletableFuture<String> pending = new CompletableFuture<>();
+    CompletableFuture<String> failing = new CompletableFuture<>();
+    timer.timeAsync(() -> pending);
+    timer.timeAsync(() -> failing);
+    assertEquals(0, timer.getCount());
+
+    pending.complete("done");
+    failing.completeExceptionally(new IllegalStateException());
+    assertEquals(2, timer.getCount());
+    assertEquals(1, timer.getErrors());
+  }
+
+  @Test
+  public void reset_clearsTotalsButNotTheLogInterval() {
+    timer.stop(timer.start(), true);
+    timer.reset();
+    assertEquals(0, timer.getCount());
+    assertEquals(1, timer.takeSummary().count);
+    assertNull(timer.takeSummary());
+  }
+
+  @Test
+  public void disabled_recordsNothing() {
+    MethodTimer off = new MethodTimer("Test.off", false);
+    off.stop(off.start(), false);
+    assertEquals("x", off.timeAsync(() -> CompletableFuture.completedFuture("x")).join());
+    assertEquals(0, off.getCount());
+    assertEquals(0, off.getErrors());
+  }
+
+  @Test
+  public void timers_arePublishedOverJmx() throws Exception {
+    MethodTimer t = MethodMetrics.timer(MethodTimerTest.class, "published");
+    t.stop(t.start(), true);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(MethodMetrics.DOMAIN
+        + ":type=MethodTimer,class=MethodTimerTest,name=\"published\"");
+    assertEquals(1L, server.getAttribute(name, "Count"));
+    assertSame(t, MethodMetrics.timer(MethodTimerTest.class, "published"));
+  }
+
+  /** A method body timed the way the repositories and controllers do it. */
+  private <T> T timed(Supplier<T> body) {
+    long start = timer.start();
+    boolean ok = false;
+    try {
+      T result = body.get();
+      ok = true;
+      return result;
+    } finally {
+      timer.stop(start, ok);
+    }
+  }
+}
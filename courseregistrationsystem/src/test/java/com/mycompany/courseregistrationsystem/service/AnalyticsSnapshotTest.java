@@ -0,0 +1,94 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class AnalyticsSnapshotTest {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  @AfterClass
+  public static void shutDown() {
+    POOL.shutdown();
+  }
+
+  @Test
+  public void aggregates_readTheColumnsAndTheAdjacency() {
+    List<CourseSummary> courses = Arrays.asList(
+        new CourseSummary(10L, "CS101", "Programmazione", 6, 4, 2),
+        new CourseSummary(20L, "MA101", "Analisi", 9, 2, 2),
+        new CourseSummary(30L, "FI101", "Fisica", 12, 0, 0));
+    // Ann takes CS101 and MA101, Bob nothing, Cy CS101 and MA101.
+    AnalyticsSnapshot s = new AnalyticsSnapshot(courses, new long[] {1, 5, 7},
+        new int[] {0, 2, 2, 4}, new int[] {0, 1, 0, 1}, POOL, 1);
+
+    assertArrayEquals(new int[] {15, 0, 15}, s.cfuTotals());
+    assertArrayEquals(new double[] {0.5, 1.0, 0.0}, s.fillRatios(), 1e-9);
+    assertArrayEquals(new long[] {1, 0, 2}, s.cfuLoadHistogram(6));
+    assertArrayEquals(new long[] {1, 0, 1, 0, 1}, s.fillRatioHistogram(4));
+    assertEquals(4, s.enrollmentCount());
+    assertEquals(0, s.courseCountOf(1));
+    assertEquals("MA101", s.courseCode(1));
+  }
+
+  @Test
+  public void forkJoinSplits_agreeWithASequentialPass() {
+    Random r = new Random(7);
+    List<CourseSummary> courses = new ArrayList<>();
+    for (int c = 0; c < 37; c++) {
+      int seats = r.nextInt(40);
+      courses.add(new CourseSummary((long) c + 1, "C" + c, "Course " + c, 3 + r.nextInt(10), seats,
+          seats == 0 ? 0 : r.nextInt(seats + 5)));
+    }
+    int students = 1_000;
+    int[] first = new int[students + 1];
+    List<Integer> adjacency = new ArrayList<>();
+    for (int s = 0; s < students; s++) {
+      for (int c = 0; c < courses.size(); c++) if (r.nextInt(8) == 0) adjacency.add(c);
+      first[s + 1] = adjacency.size();
+    }
+    int[] adj = adjacency.stream().mapToInt(Integer::intValue).toArray();
+    long[] ids = new long[students];
+    for (int s = 0; s < students; s++) ids[s] = 2L * s + 1;
+
+    AnalyticsSnapshot split = new AnalyticsSnapshot(courses, ids, first, adj, POOL, 7);
+    AnalyticsSnapshot whole = new AnalyticsSnapshot(courses, ids, first, adj, POOL, Integer.MAX_VALUE);
+
+    int[] totals = new int[students];
+    for (int s = 0; s < students; s++) {
+      for (int k = first[s]; k < first[s + 1]; k++) totals[s] += courses.get(adj[k]).getCfu();
+    }
+    assertArrayEquals(totals, split.cfuTotals());
+    assertArrayEquals(whole.fillRatios(), split.fillRatios(), 0d);
+    assertArrayEquals(whole.cfuLoadHistogram(5), split.cfuLoadHistogram(5));
+    assertArrayEquals(whole.fillRatioHistogram(10), split.fillRatioHistogram(10));
+    assertEquals(students, Arrays.stream(split.cfuLoadHistogram(5)).sum());
+    assertEquals(courses.size(), Arrays.stream(split.fillRatioHistogram(10)).sum());
+  }
+
+  @Test
+  public void emptySnapshot_hasEmptyAggregates() {
+    AnalyticsSnapshot s = new AnalyticsSnapshot(Collections.<CourseSummary>emptyList(), new long[0],
+        new int[] {0}, new int[0], POOL, 16);
+
+    assertEquals(0, s.cfuTotals().length);
+    assertEquals(0, s.cfuLoadHistogram(6).length);
+    assertArrayEquals(new long[11], s.fillRatioHistogram(10));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void offsetsNotMatchingTheAdjacency_areRejected() {
+    new AnalyticsSnapshot(Collections.<CourseSummary>emptyList(), new long[] {1},
+        new int[] {0, 2}, new int[] {0}, POOL, 16);
+  }
+}
@@ -0,0 +1,64 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DatasetGeneratorTest {
+
+  @Test
+  public void sameSeed_generatesTheSameRows() throws Exception {
+    assertEquals(rows(new DatasetGenerator(5L, 500, 30, 2000, 1.0)),
+        rows(new DatasetGenerator(5L, 500, 30, 2000, 1.0)));
+    assertNotEquals(rows(new DatasetGenerator(5L, 500, 30, 2000, 1.0)),
+        rows(new DatasetGenerator(6L, 500, 30, 2000, 1.0)));
+  }
+
+  @Test
+  public void enrollments_respectSeatsAndNeverRepeatAPair() throws Exception {
+    DatasetGenerator gen = new DatasetGenerator(5L, 1000, 50, 7000, 1.2);
+    DatasetGenerator.Plan plan = new DatasetGenerator.Plan(50);
+    List<Object[]> pairs = new ArrayList<>();
+    gen.writeCourses(1, plan, values -> { });
+    gen.writeEnrollments(1, 1, plan, pairs::add);
+
+    assertEquals(7000, pairs.size());
+    Set<List<Object>> distinct = new HashSet<>();
+    for (Object[] p : pairs) assertTrue(distinct.add(Arrays.asList(p)));
+    int[] perCourse = new int[50];
+    for (Object[] p : pairs) perCourse[((Long) p[1]).intValue() - 1]++;
+    assertArrayEquals(perCourse, plan.taken);
+    for (int c = 0; c < 50; c++) assertTrue(plan.taken[c] <= plan.seats[c]);
+  }
+
+  @Test
+  public void skew_oversubscribesOnlyThePopularCourses() throws Exception {
+    DatasetGenerator.Plan plan = new DatasetGenerator.Plan(200);
+    DatasetGenerator gen = new DatasetGenerator(5L, 10_000, 200, 50_000, DatasetGenerator.DEFAULT_SKEW);
+    gen.writeCourses(1, plan, values -> { });
+    gen.writeEnrollments(1, 1, plan, values -> { });
+
+    assertTrue(plan.oversubscribed() > 0);
+    assertTrue(plan.oversubscribed() < 200 / 3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void moreEnrollmentsThanPairs_isRejected() {
+    new DatasetGenerator(1L, 10, 3, 31, 1.0);
+  }
+
+  private static List<List<Object>> rows(DatasetGenerator gen) throws Exception {
+    List<List<Object>> rows = new ArrayList<>();
+    DatasetGenerator.Plan plan = new DatasetGenerator.Plan(30);
+    gen.writeCourses(1, plan, values -> rows.add(Arrays.asList(values)));
+    gen.writeStudents(1, values -> rows.add(Arrays.asList(values)));
+    gen.writeEnrollments(1, 1, plan, values -> rows.add(Arrays.asList(values)));
+    return rows;
+  }
+}
@@ -0,0 +1,193 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.model.EnrollmentRow;
+import com.mycompany.courseregistrationsystem.repository.EnrollmentChanges;
+import com.mycompany.courseregistrationsystem.repository.StudentRepository;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class EnrollmentIndexTest {
+
+  private static final Long A = 10L, B = 20L, C = 30L;
+
+  private final Table table = new Table();
+  private final EnrollmentIndex index = new EnrollmentIndex(table, 100);
+
+  @After
+  public void close() {
+    index.close();
+  }
+
+  @Test
+  public void setQueries_combineTheCoursesBitmaps() {
+    table.enroll(A, 1, 2, 3, 4);
+    table.enroll(B, 2, 3, 5);
+    table.enroll(C, 3, 6);
+    index.load();
+
+    assertEquals(Arrays.asList(2L), index.allOf(A, B).andNot(index.course(C)).studentIds());
+    assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L), index.anyOf(A, B, C).studentIds());
+    assertEquals(2, index.overlap(A, B));
+    assertEquals(2, index.course(A).andSize(index.course(B)));
+    assertEquals(4, index.count(A));
+    assertEquals(Arrays.asList(1L, 4L), index.course(A).andNot(index.anyOf(B, C)).studentIds());
+    assertTrue(index.course(A).contains(4L));
+    assertFalse(index.course(A).contains(5L));
+    assertTrue(index.course(99L).isEmpty());
+    assertTrue(index.anyOf(Collections.<Long>emptyList()).isEmpty());
+    assertEquals(9, index.enrollmentCount());
+  }
+
+  @Test
+  public void changedCourses_areReadAgainBeforeTheNextQuestion() {
+    table.enroll(A, 1, 2);
+    table.enroll(B, 2);
+    index.load();
+    Cohort before = index.course(A);
+
+    table.enroll(A, 7);
+    table.enroll(C, 7);
+    EnrollmentChanges.fireCoursesChanged(Arrays.asList(A, C));
+
+    assertEquals(Arrays.asList(1L, 2L, 7L), index.course(A).studentIds());
+    assertEquals(1, index.overlap(A, C));
+    assertEquals(1, table.reads.size());
+    assertEquals(Arrays.asList(A, C), sorted(table.reads.get(0)));
+    assertEquals(2, before.size());   // cohorts already taken do not change
+  }
+
+  @Test
+  public void movedStudent_isAppliedWithoutReading() {
+    table.enroll(A, 1, 2);
+    table.enroll(B, 2);
+    index.load();
+    Cohort before = index.course(A);
+
+    EnrollmentChanges.fireStudentMoved(2L, Collections.singleton(C), Arrays.asList(A, B));
+    EnrollmentChanges.fireStudentMoved(5L, Collections.singleton(A), Collections.<Long>emptySet());
+
+    assertEquals(Arrays.asList(1L, 5L), index.course(A).studentIds());
+    assertEquals(Arrays.asList(2L), index.course(C).studentIds());
+    assertFalse(index.courseIds().contains(B));
+    assertEquals(Arrays.asList(1L, 2L), before.studentIds());   // cohorts already taken do not change
+    assertTrue(table.reads.isEmpty());
+  }
+
+  @Test
+  public void removedStudent_leavesTheirCoursesWithoutReading() {
+    table.enroll(A, 1, 2);
+    table.enroll(B, 2);
+    table.enroll(C, 3);
+    index.load();
+
+    EnrollmentChanges.fireStudentRemoved(2L);
+
+    assertEquals(Arrays.asList(1L), index.anyOf(A, B).studentIds());
+    assertEquals(Arrays.asList(3L), index.course(C).studentIds());
+    assertFalse(index.courseIds().contains(B));
+    assertTrue(table.reads.isEmpty());
+  }
+
+  @Test
+  public void changesWhileLoading_areReadAgain() {
+    table.enroll(A, 1);
+    Table streaming = new Table() {
+      @Override
+      public long forEachEnrollment(int fetchSize, Consumer<? super EnrollmentRow> action) {
+        long n = super.forEachEnrollment(fetchSize, action);
+        rows.add(new EnrollmentRow(4L, B));   // committed while the table streamed
+        EnrollmentChanges.fireStudentMoved(4L, Collections.singleton(B), Collections.<Long>emptySet());
+        return n;
+      }
+    };
+    streaming.rows.addAll(table.rows);
+    EnrollmentIndex loading = new EnrollmentIndex(streaming, 100);
+    try {
+      loading.load();
+      assertEquals(Arrays.asList(4L), loading.course(B).studentIds());
+      assertEquals(Arrays.asList(B), streaming.reads.get(0));
+    } finally {
+      loading.close();
+    }
+  }
+
+  @Test
+  public void closedIndex_stopsListening() {
+    table.enroll(A, 1);
+    index.load();
+    index.close();
+
+    EnrollmentChanges.fireCoursesChanged(Collections.singleton(A));
+
+    assertTrue(table.reads.isEmpty());
+    try {
+      index.course(A);
+      fail("expected the closed index to refuse questions");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void studentIdsBeyondThirtyTwoBits_areRejected() {
+    table.enroll(A, EnrollmentIndex.MAX_STUDENT_ID + 1);
+    index.load();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void allOfNothing_isRejected() {
+    index.load();
+    index.allOf(Collections.<Long>emptyList());
+  }
+
+  private static List<Long> sorted(Collection<Long> ids) {
+    List<Long> l = new ArrayList<>(ids);
+    Collections.sort(l);
+    return l;
+  }
+
+  /** The enrollments table in memory; records which courses were read again. */
+  private static class Table extends StudentRepository {
+
+    final List<EnrollmentRow> rows = new ArrayList<>();
+    final List<List<Long>> reads = new ArrayList<>();
+
+    void enroll(Long courseId, long... studentIds) {
+      for (long s : studentIds) rows.add(new EnrollmentRow(s, courseId));
+    }
+
+    void remove(long studentId) {
+      rows.removeIf(r -> r.getStudentId() == studentId);
+    }
+
+    @Override
+    public long forEachEnrollment(int fetchSize, Consumer<? super EnrollmentRow> action) {
+      return stream(rows, action);
+    }
+
+    @Override
+    public long forEachEnrollmentIn(Collection<Long> courseIds, int fetchSize,
+                                    Consumer<? super EnrollmentRow> action) {
+      reads.add(new ArrayList<>(courseIds));
+      List<EnrollmentRow> in = new ArrayList<>();
+      for (EnrollmentRow r : rows) if (courseIds.contains(r.getCourseId())) in.add(r);
+      return stream(in, action);
+    }
+
+    private static long stream(List<EnrollmentRow> rows, Consumer<? super EnrollmentRow> action) {
+      List<EnrollmentRow> ordered = new ArrayList<>(rows);
+      ordered.sort(Comparator.comparing(EnrollmentRow::getCourseId).thenComparing(EnrollmentRow::getStudentId));
+      ordered.forEach(action);
+      return ordered.size();
+    }
+  }
+}
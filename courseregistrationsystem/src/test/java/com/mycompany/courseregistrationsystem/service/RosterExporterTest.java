@@ -0,0 +1,56 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.model.RosterRow;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class RosterExporterTest {
+
+  @Test
+  public void grouper_writesOneLinePerStudentFromAdjacentRows() {
+    StringWriter out = new StringWriter();
+    RosterExporter.Grouper g = new RosterExporter.Grouper(out, RosterExporter.Format.CSV);
+    g.accept(new RosterRow(1L, "M1", "Ann", "ann@example.com", "CS101"));
+    g.accept(new RosterRow(1L, "M1", "Ann", "ann@example.com", "MA101"));
+    g.accept(new RosterRow(2L, "M2", "Bob", "bob@example.com", null));
+    g.accept(new RosterRow(3L, "M3", "Cy", "cy@example.com", "CS101"));
+    g.flush();
+
+    assertEquals("M1,Ann,ann@example.com,CS101;MA101\n"
+        + "M2,Bob,bob@example.com,\n"
+        + "M3,Cy,cy@example.com,CS101\n", out.toString());
+    assertEquals(3, g.students);
+    assertEquals(3, g.enrollments);
+  }
+
+  @Test
+  public void csv_quotesFieldsTheImportWouldSplit() {
+    StringBuilder b = new StringBuilder();
+    RosterExporter.csv(b, new RosterRow(1L, "M1", "Lee, \"Ann\"", "ann@example.com", null),
+        Collections.<String>emptyList());
+
+    assertEquals("M1,\"Lee, \"\"Ann\"\"\",ann@example.com,", b.toString());
+    assertEquals(Arrays.asList("M1", "Lee, \"Ann\"", "ann@example.com", ""),
+        StudentImportService.parseLine(b.toString()));
+  }
+
+  @Test
+  public void json_escapesQuotesBackslashesAndControlCharacters() {
+    StringBuilder b = new StringBuilder();
+    RosterExporter.json(b, new RosterRow(1L, "M1", "A \"B\" \\ C\n\u0001", "a@example.com", null),
+        Arrays.asList("CS101", "MA101"));
+
+    assertEquals("{\"matricola\":\"M1\",\"fullName\":\"A \\\"B\\\" \\\\ C\\n\\u0001\","
+        + "\"email\":\"a@example.com\",\"courses\":[\"CS101\",\"MA101\"]}", b.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownFormat_isRejected() {
+    RosterExporter.Format.of("xml");
+  }
+}
@@ -0,0 +1,124 @@
+package com.mycompany.courseregistrationsystem.service;
+
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
+import com.mycompany.courseregistrationsystem.model.StudentSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RosterSnapshotTest {
+
+  private static final Instant WATERMARK = Instant.parse("2026-01-15T10:00:00Z");
+
+  private Path file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = Files.createTempFile("roster", ".snapshot");
+  }
+
+  @After
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void rowsRoundTrip_byPositionAndId() throws IOException {
+    try (RosterSnapshot.Writer w = new RosterSnapshot.Writer(file, WATERMARK)) {
+      w.course(new CourseSummary(10L, "CS101", "Programmazione", 6, 120, 2));
+      w.course(new CourseSummary(20L, "MA101", "Analisi è ü", 9, 80, 1));
+      w.student(new StudentSummary(1L, "M1", "Ann", "ann@example.com", Arrays.asList("CS101", "MA101")));
+      w.student(new StudentSummary(5L, "M5", "Bob", "bob@example.com", Collections.<String>emptyList()));
+      w.student(new StudentSummary(7L, "M7", "Cy", "cy@example.com", Collections.singletonList("CS101")));
+      w.finish();
+    }
+
+    RosterSnapshot s = RosterSnapshot.open(file);
+    assertEquals(WATERMARK, s.getWatermark());
+    assertEquals(2, s.courseCount());
+    assertEquals(3, s.studentCount());
+
+    CourseSummary ma = s.courses(1, 10).get(0);
+    assertEquals(Long.valueOf(20), ma.getId());
+    assertEquals("MA101", ma.getCode());
+    assertEquals("Analisi è ü", ma.getTitle());
+    assertEquals(9, ma.getCfu());
+    assertEquals(80, ma.getMaxSeats());
+    assertEquals(1, ma.getEnrolled());
+
+    List<StudentSummary> page = s.students(1, 5);
+    assertEquals(2, page.size());
+    assertEquals("Bob", page.get(0).getFullName());
+    assertTrue(page.get(0).getCourseCodes().isEmpty());
+    assertEquals(Collections.singletonList("CS101"), page.get(1).getCourseCodes());
+    assertEquals(Arrays.asList("CS101", "MA101"), s.students(0, 1).get(0).getCourseCodes());
+
+    assertEquals(2, s.indexOfStudent(7));
+    assertEquals(-1, s.indexOfStudent(6));
+    assertEquals(1, s.indexOfCourse(20));
+    assertEquals(7, s.maxStudentId());
+    assertTrue(s.students(3, 10).isEmpty());
+  }
+
+  @Test
+  public void codesOfCoursesNotInTheSnapshot_areDropped() throws IOException {
+    try (RosterSnapshot.Writer w = new RosterSnapshot.Writer(file, WATERMARK)) {
+      w.course(new CourseSummary(10L, "CS101", "Programmazione", 6, 120, 1));
+      w.student(new StudentSummary(1L, "M1", "Ann", "ann@example.com", Arrays.asList("GONE1", "CS101")));
+      w.finish();
+    }
+
+    assertEquals(Collections.singletonList("CS101"), RosterSnapshot.open(file).students(0, 1).get(0).getCourseCodes());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rowsOutOfIdOrder_areRejected() throws IOException {
+    try (RosterSnapshot.Writer w = new RosterSnapshot.Writer(file, WATERMARK)) {
+      w.student(new StudentSummary(5L, "M5", "Bob", "bob@example.com", Collections.<String>emptyList()));
+      w.student(new StudentSummary(1L, "M1", "Ann", "ann@example.com", Collections.<String>emptyList()));
+    }
+  }
+
+  @Test
+  public void anotherFormatVersion_isRejected() throws IOException {
+    writeEmpty();
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ch.write((ByteBuffer) ByteBuffer.allocate(4).putInt(RosterSnapshot.VERSION + 1).flip(), 4);
+    }
+    try {
+      RosterSnapshot.open(file);
+      fail("expected the version to be rejected");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("version " + (RosterSnapshot.VERSION + 1)));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void truncatedFile_isRejected() throws IOException {
+    writeEmpty();
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ch.truncate(ch.size() - 1);
+    }
+    RosterSnapshot.open(file);
+  }
+
+  private void writeEmpty() throws IOException {
+    try (RosterSnapshot.Writer w = new RosterSnapshot.Writer(file, WATERMARK)) {
+      w.course(new CourseSummary(10L, "CS101", "Programmazione", 6, 120, 0));
+      w.finish();
+    }
+  }
+}
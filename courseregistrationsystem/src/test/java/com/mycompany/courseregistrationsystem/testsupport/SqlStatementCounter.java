@@ -0,0 +1,153 @@
+package com.mycompany.courseregistrationsystem.testsupport;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counts the SQL statements Hibernate prepares, by type, so tests can put a
+ * budget on a block of code and catch N+1 loops:
+ * <pre>
+ *   SqlStatementCounter.count(() -> controller.loadSummaries()).counts()
+ *       .assertAtMost(Type.SELECT, 2);
+ * </pre>
+ * The test persistence unit installs it as
+ * {@code hibernate.session_factory.statement_inspector}. Counting is
+ * process-wide, so statements from other threads running at the same time
+ * (executor tasks, write-behind) are included. A JDBC batch counts once;
+ * plain JDBC inside {@code Session.doWork} and queries answered from the
+ * second-level cache are not counted.
+ */
+public final class SqlStatementCounter implements StatementInspector {
+
+  private static final long serialVersionUID = 1L;
+
+  public enum Type { SELECT, INSERT, UPDATE, DELETE, OTHER }
+
+  private static final LongAdder[] COUNTS = new LongAdder[Type.values().length];
+  private static volatile boolean installed;
+
+  static {
+    for (int i = 0; i < COUNTS.length; i++) COUNTS[i] = new LongAdder();
+  }
+
+  /** Instantiated by Hibernate for every factory built from the test unit. */
+  public SqlStatementCounter() {
+    installed = true;
+  }
+
+  @Override
+  public String inspect(String sql) {
+    COUNTS[typeOf(sql).ordinal()].increment();
+    return sql;
+  }
+
+  /** The statements prepared while {@code block} ran. */
+  public static Counted<Void> count(Runnable block) {
+    return count(() -> {
+      block.run();
+      return null;
+    });
+  }
+
+  /** The statements prepared while {@code block} ran, with its result. */
+  public static <T> Counted<T> count(Supplier<T> block) {
+    if (!installed)
+      throw new IllegalStateException("No factory uses SqlStatementCounter; is the test persistence unit selected?");
+    long[] before = snapshot();
+    T result = block.get();
+    long[] after = snapshot();
+    for (int i = 0; i < after.length; i++) after[i] -= before[i];
+    return new Counted<>(result, new Counts(after));
+  }
+
+  static Type typeOf(String sql) {
+    String s = sql.trim();
+    // Hibernate may prefix a comment (hibernate.use_sql_comments)
+    while (s.startsWith("/*")) {
+      int end = s.indexOf("*/");
+      if (end < 0) break;
+      s = s.substring(end + 2).trim();
+    }
+    int space = 0;
+    while (space < s.length() && Character.isLetter(s.charAt(space))) space++;
+    switch (s.substring(0, space).toLowerCase(Locale.ROOT)) {
+      case "select":
+      case "with":
+        return Type.SELECT;
+      case "insert":
+        return Type.INSERT;
+      case "update":
+        return Type.UPDATE;
+      case "delete":
+        return Type.DELETE;
+      default:
+        return Type.OTHER;
+    }
+  }
+
+  private static long[] snapshot() {
+    long[] s = new long[COUNTS.length];
+    for (int i = 0; i < s.length; i++) s[i] = COUNTS[i].sum();
+    return s;
+  }
+
+  /** Statements per type prepared during one block. */
+  public static final class Counts {
+    private final long[] byType;
+
+    private Counts(long[] byType) {
+      this.byType = byType;
+    }
+
+    public long get(Type type) {
+      return byType[type.ordinal()];
+    }
+
+    public long total() {
+      long t = 0;
+      for (long c : byType) t += c;
+      return t;
+    }
+
+    /** Fails with the full breakdown if more than {@code max} statements of {@code type} ran. */
+    public Counts assertAtMost(Type type, long max) {
+      if (get(type) > max)
+        throw new AssertionError(String.format("expected at most %d %s statement(s) but got %s", max, type, this));
+      return this;
+    }
+
+    /** Fails with the full breakdown if more than {@code max} statements ran in total. */
+    public Counts assertTotalAtMost(long max) {
+      if (total() > max)
+        throw new AssertionError(String.format("expected at most %d statement(s) but got %s", max, this));
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder b = new StringBuilder();
+      for (Type t : Type.values()) {
+        if (b.length() > 0) b.append(' ');
+        b.append(t.name().toLowerCase(Locale.ROOT)).append('=').append(get(t));
+      }
+      return b.toString();
+    }
+  }
+
+  /** A block's result and the statements it prepared. */
+  public static final class Counted<T> {
+    private final T result;
+    private final Counts counts;
+
+    private Counted(T result, Counts counts) {
+      this.result = result;
+      this.counts = counts;
+    }
+
+    public T result() { return result; }
+    public Counts counts() { return counts; }
+  }
+}
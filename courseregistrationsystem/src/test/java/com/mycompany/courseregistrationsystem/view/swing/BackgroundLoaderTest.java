@@ -0,0 +1,213 @@
+package com.mycompany.courseregistrationsystem.view.swing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+public class BackgroundLoaderTest {
+
+  /** Every load the loader started, completed by the test. */
+  private final List<CompletableFuture<String>> loads = Collections.synchronizedList(new ArrayList<>());
+  private final List<String> published = Collections.synchronizedList(new ArrayList<>());
+  private final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+  /** When set, loads ignore cancellation, like a query that is already running. */
+  private volatile boolean uncancellable;
+
+  private BackgroundLoader<String> loader;
+
+  @Before
+  public void setUp() throws Exception {
+    loader = onEdt(() -> new BackgroundLoader<>(() -> {
+      CompletableFuture<String> f = uncancellable ? new Uncancellable() : new CompletableFuture<>();
+      loads.add(f);
+      return f;
+    }, published::add, failures::add));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    onEdt(() -> {
+      loader.cancel();
+      return null;
+    });
+  }
+
+  @Test
+  public void burstOfRequests_startsOneLoad() throws Exception {
+    onEdt(() -> {
+      for (int i = 0; i < 5; i++) loader.request();
+      return null;
+    });
+    awaitLoads(1);
+    for (int i = 0; i < 3; i++) {
+      onEdt(() -> {
+        loader.request();
+        return null;
+      });
+    }
+    awaitLoads(2);
+
+    settle();
+    assertEquals(2, loads.size());
+  }
+
+  @Test
+  public void load_isPublishedOnTheEdt() throws Exception {
+    List<Boolean> onEdt = Collections.synchronizedList(new ArrayList<>());
+    loader = onEdt(() -> new BackgroundLoader<String>(() -> {
+      CompletableFuture<String> f = new CompletableFuture<>();
+      loads.add(f);
+      return f;
+    }, s -> {
+      onEdt.add(SwingUtilities.isEventDispatchThread());
+      published.add(s);
+    }, failures::add));
+    request();
+    awaitLoads(1);
+    assertTrue(onEdt(loader::isPending));
+
+    loads.get(0).complete("rows");
+    await().atMost(5, TimeUnit.SECONDS).until(() -> !onEdt(loader::isPending));
+    assertEquals(Collections.singletonList("rows"), published);
+    assertEquals(Collections.singletonList(true), onEdt);
+  }
+
+  @Test
+  public void newerLoad_cancelsTheOneInFlight() throws Exception {
+    request();
+    awaitLoads(1);
+    request();
+    awaitLoads(2);
+
+    assertTrue(loads.get(0).isCancelled());
+    loads.get(1).complete("new");
+    await().atMost(5, TimeUnit.SECONDS).until(() -> !onEdt(loader::isPending));
+    assertEquals(Collections.singletonList("new"), published);
+    assertTrue(failures.isEmpty());
+  }
+
+  @Test
+  public void staleResult_isDroppedEvenWhenItArrivesLast() throws Exception {
+    uncancellable = true;
+    request();
+    awaitLoads(1);
+    request();
+    awaitLoads(2);
+
+    loads.get(1).complete("new");
+    loads.get(0).complete("old");
+    await().atMost(5, TimeUnit.SECONDS).until(() -> !onEdt(loader::isPending));
+    settle();
+    assertEquals(Collections.singletonList("new"), published);
+  }
+
+  @Test
+  public void cancel_beforeTheLoadStarts_startsNothing() throws Exception {
+    onEdt(() -> {
+      loader.request();
+      loader.request();
+      loader.cancel();
+      return null;
+    });
+
+    settle();
+    assertTrue(loads.isEmpty());
+    assertFalse(onEdt(loader::isPending));
+  }
+
+  @Test
+  public void cancel_whileLoading_dropsTheResult() throws Exception {
+    uncancellable = true;
+    request();
+    awaitLoads(1);
+
+    onEdt(() -> {
+      loader.cancel();
+      return null;
+    });
+    assertFalse(onEdt(loader::isPending));
+    loads.get(0).complete("late");
+
+    settle();
+    assertTrue(published.isEmpty());
+    assertTrue(failures.isEmpty());
+  }
+
+  @Test
+  public void cancel_cancelsTheLoadInFlight() throws Exception {
+    request();
+    awaitLoads(1);
+
+    onEdt(() -> {
+      loader.cancel();
+      return null;
+    });
+
+    assertTrue(loads.get(0).isCancelled());
+    settle();
+    assertTrue(failures.isEmpty());
+  }
+
+  @Test
+  public void failedLoad_reportsTheCause() throws Exception {
+    request();
+    awaitLoads(1);
+
+    IllegalStateException boom = new IllegalStateException("boom");
+    loads.get(0).completeExceptionally(boom);
+    await().atMost(5, TimeUnit.SECONDS).until(() -> !failures.isEmpty());
+    assertEquals(Arrays.asList(boom), failures);
+    assertTrue(published.isEmpty());
+  }
+
+  private void request() throws Exception {
+    onEdt(() -> {
+      loader.request();
+      return null;
+    });
+  }
+
+  private void awaitLoads(int n) {
+    await().atMost(5, TimeUnit.SECONDS).until(() -> loads.size() >= n);
+  }
+
+  /** Waits out another debounce and lets the EDT run whatever was queued. */
+  private static void settle() throws Exception {
+    Thread.sleep(BackgroundLoader.COALESCE_MILLIS * 3);
+    onEdt(() -> null);
+  }
+
+  private static final class Uncancellable extends CompletableFuture<String> {
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return false;
+    }
+  }
+
+  private static <T> T onEdt(Callable<T> call) throws Exception {
+    List<T> result = new ArrayList<>();
+    List<Exception> error = new ArrayList<>();
+    SwingUtilities.invokeAndWait(() -> {
+      try {
+        result.add(call.call());
+      } catch (Exception e) {
+        error.add(e);
+      }
+    });
+    if (!error.isEmpty()) throw error.get(0);
+    return result.get(0);
+  }
+}
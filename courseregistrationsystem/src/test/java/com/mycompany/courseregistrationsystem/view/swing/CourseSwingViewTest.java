@@ -7,6 +7,7 @@ import static org.mockito.Mockito.*;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.assertj.swing.annotation.GUITest;
@@ -26,7 +27,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import com.mycompany.courseregistrationsystem.controller.CourseController;
-import com.mycompany.courseregistrationsystem.model.Course;
+import com.mycompany.courseregistrationsystem.model.CourseSummary;
 
 @RunWith(GUITestRunner.class)
 public class CourseSwingViewTest extends AssertJSwingJUnitTestCase {
@@ -52,13 +53,18 @@ public class CourseSwingViewTest extends AssertJSwingJUnitTestCase {
   private static final int    CFU2   = 6;
   private static final int    MAX2   = 30;
 
+  // The table asks for the row count, then for the rows a page at a time.
+  private void stubCourses(List<CourseSummary> rows) {
+    when(controller.countCourses()).thenReturn(rows.size());
+    when(controller.loadSummarySlice(any(), anyInt(), anyInt())).thenReturn(rows);
+  }
+
   @Override
   protected void onSetUp() {
     mocks = MockitoAnnotations.openMocks(this);
 
 
-    when(controller.loadAll()).thenReturn(Collections.emptyList());
-    when(controller.enrolledCount(anyLong())).thenReturn(0);
+    stubCourses(Collections.emptyList());
 
     view = GuiActionRunner.execute(CourseSwingView::new);
     GuiActionRunner.execute(() -> view.setController(controller));
@@ -95,14 +101,8 @@ public class CourseSwingViewTest extends AssertJSwingJUnitTestCase {
     robot().waitForIdle();
   }
 
-  private Course courseMock(Long id, String code, String title, int cfu, int maxSeats) {
-    Course c = mock(Course.class);
-    when(c.getId()).thenReturn(id);
-    when(c.getCode()).thenReturn(code);
-    when(c.getTitle()).thenReturn(title);
-    when(c.getCfu()).thenReturn(cfu);
-    when(c.getMaxSeats()).thenReturn(maxSeats);
-    return c;
+  private CourseSummary summary(Long id, String code, String title, int cfu, int maxSeats, int enrolled) {
+    return new CourseSummary(id, code, title, cfu, maxSeats, enrolled);
   }
 
 
@@ -170,12 +170,10 @@ public class CourseSwingViewTest extends AssertJSwingJUnitTestCase {
   @Test
   @GUITest
   public void refresh_showsCoursesInTable() {
-    Course c1 = courseMock(ID1, CODE1, TITLE1, CFU1, MAX1);
-    Course c2 = courseMock(ID2, CODE2, TITLE2, CFU2, MAX2);
+    CourseSummary c1 = summary(ID1, CODE1, TITLE1, CFU1, MAX1, 0);
+    CourseSummary c2 = summary(ID2, CODE2, TITLE2, CFU2, MAX2, 3);
 
-    when(controller.loadAll()).thenReturn(Arrays.asList(c1, c2));
-    when(controller.enrolledCount(ID1)).thenReturn(0);
-    when(controller.enrolledCount(ID2)).thenReturn(3);
+    stubCourses(Arrays.asList(c1, c2));
 
     click("btnRefreshCourse");
 
@@ -192,14 +190,16 @@ public class CourseSwingViewTest extends AssertJSwingJUnitTestCase {
 
     assertThat(rows[1][1]).isEqualTo(CODE2);
     assertThat(rows[1][2]).isEqualTo(TITLE2);
+    assertThat(rows[1][5]).isEqualTo("3");
+
+    verify(controller, never()).enrolledCount(anyLong());
   }
 
 //  @Test
 //  @GUITest
 //  public void selectRow_loadsFormFields() {
-//    Course c1 = courseMock(ID1, CODE1, TITLE1, CFU1, MAX1);
-//    when(controller.loadAll()).thenReturn(Arrays.asList(c1));
-//    when(controller.enrolledCount(ID1)).thenReturn(0);
+//    CourseSummary c1 = summary(ID1, CODE1, TITLE1, CFU1, MAX1, 0);
+//    when(controller.loadSummaries()).thenReturn(Arrays.asList(c1));
 //
 //    click("btnRefreshCourse");
 //
@@ -214,9 +214,8 @@ public class CourseSwingViewTest extends AssertJSwingJUnitTestCase {
   @Test
   @GUITest
   public void delete_chooseNo_keepsRow() {
-    Course c1 = courseMock(ID1, CODE1, TITLE1, CFU1, MAX1);
-    when(controller.loadAll()).thenReturn(Arrays.asList(c1));
-    when(controller.enrolledCount(ID1)).thenReturn(0);
+    CourseSummary c1 = summary(ID1, CODE1, TITLE1, CFU1, MAX1, 0);
+    stubCourses(Arrays.asList(c1));
 
     click("btnRefreshCourse");
 
@@ -233,9 +232,8 @@ public class CourseSwingViewTest extends AssertJSwingJUnitTestCase {
   @Test
   @GUITest
   public void clearButton_resetsFormAndSelection() {
-    Course c1 = courseMock(ID1, CODE1, TITLE1, CFU1, MAX1);
-    when(controller.loadAll()).thenReturn(Arrays.asList(c1));
-    when(controller.enrolledCount(ID1)).thenReturn(0);
+    CourseSummary c1 = summary(ID1, CODE1, TITLE1, CFU1, MAX1, 0);
+    stubCourses(Arrays.asList(c1));
 
     click("btnRefreshCourse");
 
@@ -0,0 +1,197 @@
+package com.mycompany.courseregistrationsystem.view.swing;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+public class PagedTableModelTest {
+
+  private static final int ROWS = 1_000_000;
+  private static final int PAGE = 100;
+
+  /** Ids 1..ROWS without materializing them; records every page request. */
+  private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+  private final PagedTableModel.PageSource source = new PagedTableModel.PageSource() {
+    @Override public int rowCount() {
+      return ROWS;
+    }
+    @Override public List<Object[]> rows(Object afterKey, int offset, int limit) {
+      requests.add(afterKey != null ? "after " + afterKey : "offset " + offset);
+      long first = afterKey != null ? (Long) afterKey + 1 : offset + 1;
+      List<Object[]> rows = new ArrayList<>();
+      for (long id = first; id < first + limit && id <= ROWS; id++) rows.add(new Object[] { id, "name" + id });
+      return rows;
+    }
+  };
+
+  private PagedTableModel model;
+  private final List<TableModelEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+  @Before
+  public void setUp() throws Exception {
+    model = onEdt(() -> new PagedTableModel(source, PAGE, 3, "ID", "Name"));
+    onEdt(() -> {
+      model.addTableModelListener(events::add);
+      model.refresh();
+      return null;
+    });
+    await().atMost(5, TimeUnit.SECONDS).until(() -> onEdt(model::getRowCount) == ROWS);
+  }
+
+  @Test
+  public void refresh_loadsOnlyTheCount() {
+    assertTrue(requests.isEmpty());
+  }
+
+  @Test
+  public void cells_areBlankUntilTheirPageArrives() throws Exception {
+    assertNull(onEdt(() -> model.getValueAt(123_420, 1)));
+
+    awaitValue(123_420, "name123421");
+    assertEquals(Collections.singletonList("offset 123400"), requests);
+  }
+
+  @Test
+  public void nextPage_seeksFromTheLastKeyOfTheCachedOne() throws Exception {
+    onEdt(() -> model.getValueAt(10, 0));
+    awaitValue(10, "name11");
+
+    onEdt(() -> model.getValueAt(PAGE + 10, 0));
+    awaitValue(PAGE + 10, "name111");
+
+    assertEquals("after 100", requests.get(1));
+  }
+
+  @Test
+  public void readingTheSecondHalfOfAPage_prefetchesTheNextOne() throws Exception {
+    onEdt(() -> model.getValueAt(10, 0));
+    awaitValue(10, "name11");
+
+    onEdt(() -> model.getValueAt(PAGE - 1, 0));
+    await().atMost(5, TimeUnit.SECONDS).until(() -> requests.size() == 2);
+    awaitValue(PAGE, "name" + (PAGE + 1));
+    assertEquals(2, requests.size());
+  }
+
+  @Test
+  public void cache_keepsOnlyMaxPages() throws Exception {
+    for (int p = 0; p < 4; p++) {
+      int row = p * PAGE * 10;
+      onEdt(() -> model.getValueAt(row, 0));
+      awaitValue(row, "name" + (row + 1));
+    }
+    int loads = requests.size();
+
+    onEdt(() -> model.getValueAt(0, 0));   // least recently used: evicted
+    await().atMost(5, TimeUnit.SECONDS).until(() -> requests.size() == loads + 1);
+    awaitValue(0, "name1");
+  }
+
+  @Test
+  public void upsert_ofACachedRow_updatesOnlyThatRow() throws Exception {
+    onEdt(() -> model.getValueAt(5, 0));
+    awaitValue(5, "name6");
+    events.clear();
+
+    onEdt(() -> {
+      model.upsert(new Object[] { 6L, "renamed" });
+      return null;
+    });
+
+    assertEquals(1, events.size());
+    assertEquals(5, events.get(0).getFirstRow());
+    assertEquals(5, events.get(0).getLastRow());
+    assertEquals("renamed", onEdt(() -> model.getValueAt(5, 1)));
+  }
+
+  @Test
+  public void removeAndInsert_ofACachedPosition_shiftTheCachedRows() throws Exception {
+    onEdt(() -> model.getValueAt(5, 0));
+    awaitValue(5, "name6");
+    events.clear();
+
+    // One EDT turn: the page left short by the removal is reloaded as soon as it is shown.
+    List<Object> seen = onEdt(() -> {
+      List<Object> cells = new ArrayList<>();
+      model.remove(6L);
+      cells.add(model.getRowCount());
+      cells.add(model.getValueAt(4, 1));
+      cells.add(model.getValueAt(5, 1));
+      model.upsert(new Object[] { 6L, "back" });
+      cells.add(model.getRowCount());
+      cells.add(model.getValueAt(5, 1));
+      cells.add(model.getValueAt(6, 1));
+      return cells;
+    });
+
+    assertEquals(Arrays.<Object>asList(ROWS - 1, "name5", "name7", ROWS, "back", "name7"), seen);
+    assertEquals(TableModelEvent.DELETE, events.get(0).getType());
+    assertEquals(5, events.get(0).getFirstRow());
+    assertEquals(TableModelEvent.INSERT, events.get(1).getType());
+    assertEquals(5, events.get(1).getFirstRow());
+    assertEquals(5, events.get(1).getLastRow());
+  }
+
+  @Test
+  public void removeOfAnUncachedKey_dropsARowAfterTheCachedOnes() throws Exception {
+    onEdt(() -> model.getValueAt(5, 0));
+    awaitValue(5, "name6");
+    int loads = requests.size();
+    events.clear();
+
+    onEdt(() -> {
+      model.remove(500_000L);
+      return null;
+    });
+
+    assertEquals(ROWS - 1, (int) onEdt(model::getRowCount));
+    assertEquals(1, events.size());
+    assertEquals(ROWS - 1, events.get(0).getFirstRow());
+    assertEquals("name6", onEdt(() -> model.getValueAt(5, 1)));
+    assertEquals(loads, requests.size());
+  }
+
+  @Test
+  public void refresh_keepsTheOldRowsUntilTheirPageIsReloaded() throws Exception {
+    onEdt(() -> model.getValueAt(5, 0));
+    awaitValue(5, "name6");
+
+    onEdt(() -> {
+      model.refresh();
+      return null;
+    });
+    await().atMost(5, TimeUnit.SECONDS).until(() -> !onEdt(model::isRefreshing));
+
+    assertEquals("name6", onEdt(() -> model.getValueAt(5, 1)));
+    await().atMost(5, TimeUnit.SECONDS).until(() -> requests.size() == 2);
+  }
+
+  private void awaitValue(int row, Object expected) {
+    await().atMost(5, TimeUnit.SECONDS).until(() -> expected.equals(onEdt(() -> model.getValueAt(row, 1))));
+  }
+
+  private static <T> T onEdt(Callable<T> call) throws Exception {
+    List<T> result = new ArrayList<>();
+    List<Exception> error = new ArrayList<>();
+    SwingUtilities.invokeAndWait(() -> {
+      try {
+        result.add(call.call());
+      } catch (Exception e) {
+        error.add(e);
+      }
+    });
+    if (!error.isEmpty()) throw error.get(0);
+    return result.get(0);
+  }
+}
@@ -44,7 +44,7 @@ public class StudentSwingViewTest extends AssertJSwingJUnitTestCase {
 
     // Safe defaults so constructor refreshes don't explode
     when(controller.loadAllCourses()).thenReturn(Collections.emptyList());
-    when(controller.findAllWithCourses()).thenReturn(Collections.emptyList());
+    when(controller.countStudents()).thenReturn(0);
 
     view = execute(StudentSwingView::new);
     execute(() -> view.setController(controller));